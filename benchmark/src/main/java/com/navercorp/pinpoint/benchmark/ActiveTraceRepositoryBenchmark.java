@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.google.common.cache.CacheBuilder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.profiler.context.ActiveTrace;
+import com.navercorp.pinpoint.profiler.context.DisableTrace;
+import com.navercorp.pinpoint.profiler.context.active.ActiveTraceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registering and unregistering a request in the active trace registry, which happens on every request.
+ * guavaCache is the previous ActiveTraceRepository (weak valued Guava cache keyed by a boxed id) kept as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ActiveTraceRepositoryBenchmark {
+
+    private static final int MAX_ACTIVE_TRACE_SIZE = 1024 * 10;
+
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    private final ActiveTraceRepository slotRepository = new ActiveTraceRepository(MAX_ACTIVE_TRACE_SIZE);
+    private final ConcurrentMap<Long, ActiveTrace> guavaCache = CacheBuilder.newBuilder()
+            .concurrencyLevel(64)
+            .initialCapacity(MAX_ACTIVE_TRACE_SIZE)
+            .maximumSize(MAX_ACTIVE_TRACE_SIZE)
+            .weakValues()
+            .<Long, ActiveTrace>build()
+            .asMap();
+
+    @Benchmark
+    public ActiveTrace slotArray() {
+        final ActiveTrace activeTrace = newActiveTrace();
+        slotRepository.put(activeTrace);
+        return slotRepository.remove(activeTrace.getId());
+    }
+
+    @Benchmark
+    public ActiveTrace guavaCache() {
+        final ActiveTrace activeTrace = newActiveTrace();
+        guavaCache.put(activeTrace.getId(), activeTrace);
+        return guavaCache.remove(activeTrace.getId());
+    }
+
+    private ActiveTrace newActiveTrace() {
+        final Trace trace = new DisableTrace(idGenerator.incrementAndGet());
+        return new ActiveTrace(trace);
+    }
+}
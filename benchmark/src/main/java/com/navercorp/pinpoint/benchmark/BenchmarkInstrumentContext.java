@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClass;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentContext;
+import com.navercorp.pinpoint.bootstrap.instrument.matcher.Matcher;
+import com.navercorp.pinpoint.bootstrap.instrument.transformer.TransformCallback;
+import com.navercorp.pinpoint.bootstrap.interceptor.scope.InterceptorScope;
+
+/**
+ * {@link InstrumentContext} of the instrument benchmarks, interceptor classes are loaded from the benchmark class path.
+ */
+class BenchmarkInstrumentContext implements InstrumentContext {
+
+    private final TraceContext traceContext;
+
+    BenchmarkInstrumentContext(TraceContext traceContext) {
+        this.traceContext = traceContext;
+    }
+
+    @Override
+    public TraceContext getTraceContext() {
+        return traceContext;
+    }
+
+    @Override
+    public InstrumentClass getInstrumentClass(ClassLoader classLoader, String className, byte[] classfileBuffer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean exist(ClassLoader classLoader, String className) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public InterceptorScope getInterceptorScope(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Class<? extends T> injectClass(ClassLoader targetClassLoader, String className) {
+        try {
+            return (Class<? extends T>) Class.forName(className, false, targetClassLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException(className + " not found", e);
+        }
+    }
+
+    @Override
+    public void addClassFileTransformer(ClassLoader classLoader, String targetClassName, TransformCallback transformCallback) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addClassFileTransformer(String targetClassName, TransformCallback transformCallback) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addClassFileTransformer(Matcher matcher, TransformCallback transformCallback) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void retransform(Class<?> target, TransformCallback transformCallback) {
+        throw new UnsupportedOperationException();
+    }
+}
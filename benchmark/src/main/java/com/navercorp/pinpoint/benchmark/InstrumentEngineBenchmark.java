@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClass;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClassPool;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentContext;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentException;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentMethod;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.profiler.context.DefaultTraceContext;
+import com.navercorp.pinpoint.profiler.instrument.ASMClassPool;
+import com.navercorp.pinpoint.profiler.instrument.JavassistClassPool;
+import com.navercorp.pinpoint.profiler.interceptor.registry.DefaultInterceptorRegistryBinder;
+import com.navercorp.pinpoint.test.TestAgentInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transform of the Javassist and ASM instrument engines : one operation adds an interceptor to every method
+ * of CLASS_NAMES and writes the transformed class files, as a plugin does for the classes it instruments.
+ * The heap and metaspace kept by the engine after the run, such as the class pools of Javassist,
+ * are printed at the end of the trial, next to the allocation per operation reported by the gc profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InstrumentEngineBenchmark {
+
+    private static final String[] CLASS_NAMES = {
+            "com/navercorp/pinpoint/profiler/context/DefaultTrace",
+            "com/navercorp/pinpoint/profiler/context/DefaultTraceContext",
+            "com/navercorp/pinpoint/profiler/context/CallStack",
+            "com/navercorp/pinpoint/profiler/context/SpanEvent",
+            "com/navercorp/pinpoint/profiler/sender/TcpDataSender",
+            "com/navercorp/pinpoint/profiler/sender/UdpDataSender",
+            "com/navercorp/pinpoint/profiler/DefaultAgent",
+            "com/navercorp/pinpoint/thrift/dto/TSpan",
+            "com/navercorp/pinpoint/thrift/dto/TSpanEvent",
+            "com/navercorp/pinpoint/thrift/dto/TAgentInfo",
+            "com/navercorp/pinpoint/common/util/BytesUtils",
+            "com/navercorp/pinpoint/common/buffer/AutomaticBuffer",
+    };
+
+    @Param({"javassist", "asm"})
+    String engine;
+
+    private final ClassLoader classLoader = InstrumentEngineBenchmark.class.getClassLoader();
+    private final List<byte[]> classFiles = new ArrayList<byte[]>(CLASS_NAMES.length);
+
+    private DefaultInterceptorRegistryBinder interceptorRegistryBinder;
+    private InstrumentClassPool classPool;
+    private InstrumentContext instrumentContext;
+    private int interceptorId;
+
+    private long heapUsedBefore;
+    private long metaspaceUsedBefore;
+
+    @Setup
+    public void setup() throws IOException {
+        for (String className : CLASS_NAMES) {
+            classFiles.add(readClassFile(className));
+        }
+
+        final DefaultTraceContext traceContext = new DefaultTraceContext(new TestAgentInformation());
+        traceContext.setProfilerConfig(new DefaultProfilerConfig());
+        this.instrumentContext = new BenchmarkInstrumentContext(traceContext);
+
+        this.interceptorRegistryBinder = new DefaultInterceptorRegistryBinder();
+        interceptorRegistryBinder.bind();
+        // the same interceptor for every method, the registry does not grow with the operations
+        this.interceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(new NoopInterceptor());
+
+        collectGarbage();
+        this.heapUsedBefore = getHeapUsed();
+        this.metaspaceUsedBefore = getMetaspaceUsed();
+
+        if ("javassist".equals(engine)) {
+            this.classPool = new JavassistClassPool(interceptorRegistryBinder, null);
+        } else if ("asm".equals(engine)) {
+            this.classPool = new ASMClassPool(interceptorRegistryBinder, null, null);
+        } else {
+            throw new IllegalArgumentException("unknown engine " + engine);
+        }
+    }
+
+    private byte[] readClassFile(String className) throws IOException {
+        final InputStream inputStream = classLoader.getResourceAsStream(className + ".class");
+        if (inputStream == null) {
+            throw new IllegalStateException(className + " not found in the class path");
+        }
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Benchmark
+    public void transform(Blackhole blackhole) throws InstrumentException {
+        for (int i = 0; i < CLASS_NAMES.length; i++) {
+            final InstrumentClass instrumentClass = classPool.getClass(instrumentContext, classLoader, CLASS_NAMES[i], classFiles.get(i));
+            for (InstrumentMethod method : instrumentClass.getDeclaredMethods()) {
+                if ((method.getModifiers() & (Modifier.ABSTRACT | Modifier.NATIVE)) == 0) {
+                    method.addInterceptor(interceptorId);
+                }
+            }
+            blackhole.consume(instrumentClass.toBytecode());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // the class pool is still referenced, what it keeps is counted
+        collectGarbage();
+        System.out.println();
+        System.out.println(engine + " retained heap:" + (getHeapUsed() - heapUsedBefore) / 1024 + "KB"
+                + ", retained metaspace:" + (getMetaspaceUsed() - metaspaceUsedBefore) / 1024 + "KB");
+        this.classPool = null;
+        interceptorRegistryBinder.unbind();
+    }
+
+    private static void collectGarbage() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+    }
+
+    private static long getHeapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long getMetaspaceUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final String name = memoryPool.getName();
+            // PermGen before java 8
+            if (name.contains("Metaspace") || name.contains("Perm Gen")) {
+                used += memoryPool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    public static class NoopInterceptor implements AroundInterceptor {
+        @Override
+        public void before(Object target, Object[] args) {
+        }
+
+        @Override
+        public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClass;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClassPool;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentException;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor2;
+import com.navercorp.pinpoint.profiler.context.DefaultTraceContext;
+import com.navercorp.pinpoint.profiler.instrument.ASMClassPool;
+import com.navercorp.pinpoint.profiler.instrument.JavassistClassPool;
+import com.navercorp.pinpoint.profiler.interceptor.registry.DefaultInterceptorRegistryBinder;
+import com.navercorp.pinpoint.test.TestAgentInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the interceptor calls woven into a method, measured on a loop calling an instrumented method with two int arguments.
+ * "none" runs the original class, "registry" gets the interceptor from the InterceptorRegistry and boxes the arguments on every call,
+ * "field" reads the interceptor from a static final field of the class and calls its unboxed overloads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InterceptorDispatchBenchmark {
+
+    private static final int CALLS = 1000;
+
+    private static final String TARGET_CLASS_NAME = "com/navercorp/pinpoint/benchmark/InterceptorDispatchBenchmark$Calculator";
+
+    @Param({"javassist", "asm"})
+    String engine;
+
+    @Param({"none", "registry", "field"})
+    String dispatch;
+
+    private final ClassLoader classLoader = InterceptorDispatchBenchmark.class.getClassLoader();
+
+    private DefaultInterceptorRegistryBinder interceptorRegistryBinder;
+    private Adder adder;
+
+    @Setup
+    public void setup() throws Exception {
+        this.interceptorRegistryBinder = new DefaultInterceptorRegistryBinder();
+        interceptorRegistryBinder.bind();
+
+        byte[] classFile = readClassFile(TARGET_CLASS_NAME);
+        if (!"none".equals(dispatch)) {
+            classFile = instrument(classFile);
+        }
+        this.adder = (Adder) defineClass(classFile).newInstance();
+    }
+
+    private byte[] instrument(byte[] classFile) throws InstrumentException {
+        final Properties properties = new Properties();
+        if ("field".equals(dispatch)) {
+            properties.setProperty("profiler.instrument.interceptor.dispatch", DefaultProfilerConfig.INTERCEPTOR_DISPATCH_FIELD);
+        } else if ("registry".equals(dispatch)) {
+            properties.setProperty("profiler.instrument.interceptor.dispatch", DefaultProfilerConfig.INTERCEPTOR_DISPATCH_REGISTRY);
+        } else {
+            throw new IllegalArgumentException("unknown dispatch " + dispatch);
+        }
+        final DefaultTraceContext traceContext = new DefaultTraceContext(new TestAgentInformation());
+        traceContext.setProfilerConfig(new DefaultProfilerConfig(properties));
+
+        final InstrumentClassPool classPool;
+        if ("javassist".equals(engine)) {
+            classPool = new JavassistClassPool(interceptorRegistryBinder, null);
+        } else if ("asm".equals(engine)) {
+            classPool = new ASMClassPool(interceptorRegistryBinder, null, null);
+        } else {
+            throw new IllegalArgumentException("unknown engine " + engine);
+        }
+
+        final int interceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(new CountingInterceptor());
+        final InstrumentClass target = classPool.getClass(new BenchmarkInstrumentContext(traceContext), classLoader, TARGET_CLASS_NAME, classFile);
+        target.getDeclaredMethod("add", "int", "int").addInterceptor(interceptorId);
+        final byte[] bytecode = target.toBytecode();
+        if (bytecode == null) {
+            throw new IllegalStateException("Failed to instrument " + TARGET_CLASS_NAME);
+        }
+        return bytecode;
+    }
+
+    private byte[] readClassFile(String className) throws IOException {
+        final InputStream inputStream = classLoader.getResourceAsStream(className + ".class");
+        if (inputStream == null) {
+            throw new IllegalStateException(className + " not found in the class path");
+        }
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private Class<?> defineClass(final byte[] classFile) throws ClassNotFoundException {
+        final String className = TARGET_CLASS_NAME.replace('/', '.');
+        // the instrumented class is defined by a child loader, the interceptor is loaded by the benchmark class loader
+        final ClassLoader targetClassLoader = new ClassLoader(classLoader) {
+            @Override
+            protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (name.equals(className)) {
+                    Class<?> loaded = findLoadedClass(name);
+                    if (loaded == null) {
+                        loaded = defineClass(name, classFile, 0, classFile.length);
+                    }
+                    return loaded;
+                }
+                return super.loadClass(name, resolve);
+            }
+        };
+        return targetClassLoader.loadClass(className);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int call() {
+        final Adder adder = this.adder;
+        int sum = 0;
+        for (int i = 0; i < CALLS; i++) {
+            sum = adder.add(sum, i);
+        }
+        return sum;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        interceptorRegistryBinder.unbind();
+    }
+
+    public interface Adder {
+        int add(int a, int b);
+    }
+
+    public static class Calculator implements Adder {
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+    }
+
+    public static class CountingInterceptor implements AroundInterceptor2 {
+
+        private long count;
+
+        @Override
+        public void before(Object target, Object arg0, Object arg1) {
+            count++;
+        }
+
+        // called with unboxed arguments when the interceptor is dispatched from a field
+        public void before(Object target, int arg0, int arg1) {
+            count++;
+        }
+
+        @Override
+        public void after(Object target, Object arg0, Object arg1, Object result, Throwable throwable) {
+            count++;
+        }
+
+        public void after(Object target, int arg0, int arg1, int result, Throwable throwable) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.profiler.sender.CompactSpanEncoder;
+import com.navercorp.pinpoint.thrift.dto.TAnnotation;
+import com.navercorp.pinpoint.thrift.dto.TAnnotationValue;
+import com.navercorp.pinpoint.thrift.dto.TIntStringValue;
+import com.navercorp.pinpoint.thrift.dto.TSpan;
+import com.navercorp.pinpoint.thrift.dto.TSpanEvent;
+import com.navercorp.pinpoint.thrift.io.HeaderTBaseSerializer;
+import com.navercorp.pinpoint.thrift.io.HeaderTBaseSerializerFactory;
+import org.apache.thrift.TException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a span the way the span data sender does it.
+ * <ul>
+ *     <li>udpSerializer : the serializer setting of UdpDataSender, the internal buffer is handed out without a copy</li>
+ *     <li>safeSerializer : the default serializer which copies the result</li>
+ *     <li>compactEncoder : profiler.spandatasender.direct.encode.enable, written straight into the send buffer</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpanSerializeBenchmark {
+
+    private static final int UDP_MAX_PACKET_LENGTH = 1024 * 64;
+
+    @Param({"0", "10", "50"})
+    int spanEventCount;
+
+    private TSpan span;
+
+    private final HeaderTBaseSerializer udpSerializer = new HeaderTBaseSerializerFactory(false, UDP_MAX_PACKET_LENGTH, false).createSerializer();
+    private final HeaderTBaseSerializer safeSerializer = new HeaderTBaseSerializerFactory().createSerializer();
+    private final CompactSpanEncoder compactEncoder = new CompactSpanEncoder();
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(UDP_MAX_PACKET_LENGTH);
+
+    @Setup
+    public void setup() {
+        span = createSpan(spanEventCount);
+    }
+
+    @Benchmark
+    public byte[] udpSerializer() throws TException {
+        return udpSerializer.serialize(span);
+    }
+
+    @Benchmark
+    public byte[] safeSerializer() throws TException {
+        return safeSerializer.serialize(span);
+    }
+
+    @Benchmark
+    public ByteBuffer compactEncoder() {
+        compactEncoder.encode(span, sendBuffer);
+        return sendBuffer;
+    }
+
+    private static TSpan createSpan(int spanEventCount) {
+        final long startTime = System.currentTimeMillis();
+
+        final TSpan span = new TSpan();
+        span.setAgentId("benchmark-agent");
+        span.setApplicationName("BENCHMARK_APPLICATION");
+        span.setAgentStartTime(startTime - 60000);
+        span.setTransactionId(new byte[] {0, 15, 98, 101, 110, 99, 104, 109, 97, 114, 107, 45, 97, 103, 101, 110, 116, -64, -72, -46, -23, -16, 42, 1});
+        span.setSpanId(-3928283947238472L);
+        span.setParentSpanId(-1);
+        span.setStartTime(startTime);
+        span.setElapsed(120);
+        span.setRpc("/api/member/list.pinpoint");
+        span.setServiceType((short) 1010);
+        span.setEndPoint("localhost:8080");
+        span.setRemoteAddr("10.0.0.1");
+        span.setApplicationServiceType((short) 1010);
+        span.setApiId(1);
+        span.setAnnotations(createAnnotations());
+
+        final List<TSpanEvent> spanEventList = new ArrayList<>(spanEventCount);
+        for (int i = 0; i < spanEventCount; i++) {
+            final TSpanEvent spanEvent = new TSpanEvent();
+            spanEvent.setSequence((short) i);
+            spanEvent.setStartElapsed(i);
+            spanEvent.setEndElapsed(2);
+            spanEvent.setDepth(i % 5 + 1);
+            spanEvent.setServiceType((short) 5000);
+            spanEvent.setApiId(100 + i);
+            spanEvent.setAnnotations(createAnnotations());
+            if (i % 5 == 0) {
+                spanEvent.setServiceType((short) 2101);
+                spanEvent.setEndPoint("mysql:3306");
+                spanEvent.setDestinationId("member");
+                spanEvent.setNextSpanId(i);
+            }
+            spanEventList.add(spanEvent);
+        }
+        span.setSpanEventList(spanEventList);
+        return span;
+    }
+
+    private static List<TAnnotation> createAnnotations() {
+        final List<TAnnotation> annotations = new ArrayList<>(2);
+        final TAnnotation args = new TAnnotation(-1);
+        args.setValue(TAnnotationValue.stringValue("arguments"));
+        annotations.add(args);
+
+        final TAnnotation sql = new TAnnotation(20);
+        sql.setValue(TAnnotationValue.intStringValue(new TIntStringValue(1)));
+        annotations.add(sql);
+        return annotations;
+    }
+}
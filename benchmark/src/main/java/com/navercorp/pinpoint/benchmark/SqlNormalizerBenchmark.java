@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.context.ParsingResult;
+import com.navercorp.pinpoint.common.util.DefaultSqlParser;
+import com.navercorp.pinpoint.common.util.NormalizedSql;
+import com.navercorp.pinpoint.profiler.context.DefaultCachingSqlNormalizer;
+import com.navercorp.pinpoint.profiler.metadata.LRUCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL normalization done for every jdbc statement execution.
+ * The caching normalizer is measured with the statement already cached, which is the steady state of an application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlNormalizerBenchmark {
+
+    @Param({"simple", "literal", "complex"})
+    String sqlType;
+
+    private String sql;
+
+    private final DefaultSqlParser sqlParser = new DefaultSqlParser();
+    private final DefaultCachingSqlNormalizer cachingSqlNormalizer = new DefaultCachingSqlNormalizer(LRUCache.DEFAULT_CACHE_SIZE);
+
+    @Setup
+    public void setup() {
+        if ("simple".equals(sqlType)) {
+            sql = "select * from member where id = ?";
+        } else if ("literal".equals(sqlType)) {
+            sql = "select name, age from member where id = 1234 and name = 'pinpoint' and status in (1, 2, 3)";
+        } else if ("complex".equals(sqlType)) {
+            sql = "/* member list */ select m.id, m.name, o.order_id, o.amount from member m " +
+                    "inner join orders o on m.id = o.member_id " +
+                    "where m.status = 'ACTIVE' and o.amount > 10.5 and o.created_at between '2016-01-01' and '2016-12-31' " +
+                    "-- recent orders\n" +
+                    "order by o.created_at desc limit 100";
+        } else {
+            throw new IllegalArgumentException("unknown sqlType " + sqlType);
+        }
+        // cache the statement
+        cachingSqlNormalizer.normalizedSql(cachingSqlNormalizer.wrapSql(sql));
+    }
+
+    @Benchmark
+    public NormalizedSql sqlParser() {
+        return sqlParser.normalizedSql(sql);
+    }
+
+    @Benchmark
+    public ParsingResult cachingSqlNormalizer() {
+        final ParsingResult parsingResult = cachingSqlNormalizer.wrapSql(sql);
+        cachingSqlNormalizer.normalizedSql(parsingResult);
+        return parsingResult;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.SpanRecorder;
+import com.navercorp.pinpoint.common.trace.AnnotationKey;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.profiler.context.CallStack;
+import com.navercorp.pinpoint.profiler.context.DefaultTrace;
+import com.navercorp.pinpoint.profiler.context.DefaultTraceContext;
+import com.navercorp.pinpoint.profiler.context.Span;
+import com.navercorp.pinpoint.profiler.context.SpanEvent;
+import com.navercorp.pinpoint.profiler.context.storage.SpanStorage;
+import com.navercorp.pinpoint.profiler.sender.DataSender;
+import com.navercorp.pinpoint.test.TestAgentInformation;
+import org.apache.thrift.TBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a traced request : {@link DefaultTrace} creation, span event begin/end and close,
+ * and {@link CallStack} push/pop on their own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraceBenchmark {
+
+    private static final int MAX_CALL_STACK_DEPTH = 64;
+
+    @Param({"1", "10", "30"})
+    int spanEventCount;
+
+    private DefaultTraceContext traceContext;
+    private final LastDataSender dataSender = new LastDataSender();
+
+    @Setup
+    public void setup() {
+        traceContext = new DefaultTraceContext(new TestAgentInformation());
+        traceContext.setProfilerConfig(new DefaultProfilerConfig());
+    }
+
+    @Benchmark
+    public TBase<?, ?> trace() {
+        final DefaultTrace trace = new DefaultTrace(traceContext, 1, true);
+        trace.setStorage(new SpanStorage(dataSender));
+
+        final SpanRecorder spanRecorder = trace.getSpanRecorder();
+        spanRecorder.recordServiceType(ServiceType.STAND_ALONE);
+        spanRecorder.recordRpcName("/benchmark");
+        for (int i = 0; i < spanEventCount; i++) {
+            final SpanEventRecorder spanEventRecorder = trace.traceBlockBegin();
+            spanEventRecorder.recordServiceType(ServiceType.INTERNAL_METHOD);
+            spanEventRecorder.recordApiId(i);
+            spanEventRecorder.recordAttribute(AnnotationKey.ARGS0, "value");
+            trace.traceBlockEnd();
+        }
+        trace.close();
+        return dataSender.last;
+    }
+
+    @Benchmark
+    public void callStack(Blackhole blackhole) {
+        final Span span = new Span();
+        final CallStack callStack = new CallStack(span, MAX_CALL_STACK_DEPTH);
+        for (int i = 0; i < spanEventCount; i++) {
+            callStack.push(new SpanEvent(span));
+            blackhole.consume(callStack.pop());
+        }
+    }
+
+    @Benchmark
+    public void callStackNested(Blackhole blackhole) {
+        final Span span = new Span();
+        final CallStack callStack = new CallStack(span, MAX_CALL_STACK_DEPTH);
+        for (int i = 0; i < spanEventCount; i++) {
+            callStack.push(new SpanEvent(span));
+        }
+        for (int i = 0; i < spanEventCount; i++) {
+            blackhole.consume(callStack.pop());
+        }
+    }
+
+    private static class LastDataSender implements DataSender {
+
+        private TBase<?, ?> last;
+
+        @Override
+        public boolean send(TBase<?, ?> data) {
+            this.last = data;
+            return true;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.profiler.context.IdGenerator;
+import com.navercorp.pinpoint.profiler.sampler.SamplingRateSampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per transaction sampling decision and transaction id generation.
+ * Both are shared by every request thread of the agent, so they are also measured under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionIdBenchmark {
+
+    private static final int CONTENDED_THREADS = 4;
+
+    private final SamplingRateSampler sampler = new SamplingRateSampler(20);
+    private final IdGenerator idGenerator = new IdGenerator();
+
+    @Benchmark
+    public boolean isSampling() {
+        return sampler.isSampling();
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public boolean isSamplingContended() {
+        return sampler.isSampling();
+    }
+
+    @Benchmark
+    public long nextTransactionId() {
+        return idGenerator.nextTransactionId();
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public long nextTransactionIdContended() {
+        return idGenerator.nextTransactionId();
+    }
+
+    @Benchmark
+    public long nextDisabledId() {
+        return idGenerator.nextDisabledId();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.instrument.matcher.Matchers;
+import com.navercorp.pinpoint.profiler.instrument.transformer.DefaultTransformerRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Transformer lookup done by ClassFileTransformerDispatcher for every class defined while an application starts.
+ * One operation looks up CLASS_COUNT classes read from the boot and application class path,
+ * against a registry of REGISTERED_CLASS_COUNT class names plus, depending on registryType,
+ * package matchers or super class and annotation matchers that force the class file to be read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransformerRegistryBenchmark {
+
+    private static final int CLASS_COUNT = 30000;
+    private static final int REGISTERED_CLASS_COUNT = 500;
+
+    @Param({"className", "packageName", "hierarchy"})
+    String registryType;
+
+    private final List<String> classNames = new ArrayList<String>(CLASS_COUNT);
+    private final List<byte[]> classFiles = new ArrayList<byte[]>(CLASS_COUNT);
+
+    private DefaultTransformerRegistry registry;
+
+    @Setup
+    public void setup() throws IOException {
+        readClassFiles(System.getProperty("sun.boot.class.path"));
+        readClassFiles(System.getProperty("java.class.path"));
+        if (classNames.isEmpty()) {
+            throw new IllegalStateException("no class file found in the class path");
+        }
+
+        registry = new DefaultTransformerRegistry();
+        final int step = Math.max(1, classNames.size() / REGISTERED_CLASS_COUNT);
+        final Set<String> registeredClassNames = new HashSet<String>();
+        for (int i = 0; i < classNames.size(); i += step) {
+            final String className = classNames.get(i);
+            // the same class may be in several jars
+            if (registeredClassNames.add(className)) {
+                registry.addTransformer(Matchers.newClassNameMatcher(className), new NoopTransformer());
+            }
+        }
+        if ("packageName".equals(registryType)) {
+            registry.addTransformer(Matchers.newPackageNameMatcher("org.apache.catalina.connector"), new NoopTransformer());
+            registry.addTransformer(Matchers.newPackageNameMatcher("com.mysql.jdbc"), new NoopTransformer());
+            registry.addTransformer(Matchers.newPackageNameMatcher("org.springframework.web.servlet"), new NoopTransformer());
+        } else if ("hierarchy".equals(registryType)) {
+            registry.addTransformer(Matchers.newSuperClassNameMatcher("javax.servlet.http.HttpServlet"), new NoopTransformer());
+            registry.addTransformer(Matchers.newSuperClassNameMatcher("java.sql.Driver"), new NoopTransformer());
+            registry.addTransformer(Matchers.newAnnotationMatcher("org.springframework.stereotype.Controller"), new NoopTransformer());
+        } else if (!"className".equals(registryType)) {
+            throw new IllegalArgumentException("unknown registryType " + registryType);
+        }
+    }
+
+    private void readClassFiles(String classPath) throws IOException {
+        if (classPath == null) {
+            return;
+        }
+        for (String path : classPath.split(File.pathSeparator)) {
+            if (classNames.size() >= CLASS_COUNT) {
+                return;
+            }
+            if (path.endsWith(".jar") && new File(path).isFile()) {
+                readJar(new JarFile(path));
+            }
+        }
+    }
+
+    private void readJar(JarFile jarFile) throws IOException {
+        try {
+            final Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements() && classNames.size() < CLASS_COUNT) {
+                final JarEntry entry = entries.nextElement();
+                final String entryName = entry.getName();
+                if (!entryName.endsWith(".class")) {
+                    continue;
+                }
+                classNames.add(entryName.substring(0, entryName.length() - ".class".length()));
+                classFiles.add(read(jarFile.getInputStream(entry)));
+            }
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    private byte[] read(InputStream inputStream) throws IOException {
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Benchmark
+    public void findTransformer(Blackhole blackhole) {
+        final List<String> classNames = this.classNames;
+        final List<byte[]> classFiles = this.classFiles;
+        for (int i = 0; i < classNames.size(); i++) {
+            blackhole.consume(registry.findTransformer(classNames.get(i), classFiles.get(i)));
+        }
+    }
+
+    private static class NoopTransformer implements ClassFileTransformer {
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            return null;
+        }
+    }
+}
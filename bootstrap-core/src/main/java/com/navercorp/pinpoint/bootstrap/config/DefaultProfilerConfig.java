@@ -41,6 +41,12 @@ public class DefaultProfilerConfig implements ProfilerConfig {
     private static final Logger logger = JavaLoggerFactory.getLogger(DefaultProfilerConfig.class.getName());
     private static final String DEFAULT_IP = "127.0.0.1";
 
+    public static final String INSTRUMENT_ENGINE_JAVASSIST = "JAVASSIST";
+    public static final String INSTRUMENT_ENGINE_ASM = "ASM";
+
+    public static final String INTERCEPTOR_DISPATCH_REGISTRY = "REGISTRY";
+    public static final String INTERCEPTOR_DISPATCH_FIELD = "FIELD";
+
     private final Properties properties;
     private final PropertyPlaceholderHelper propertyPlaceholderHelper = new PropertyPlaceholderHelper("${", "}");
 
@@ -88,6 +94,12 @@ public class DefaultProfilerConfig implements ProfilerConfig {
 
     private int interceptorRegistrySize = 1024*8;
 
+    private boolean transformCacheEnable = false;
+    private String transformCacheDir = "";
+
+    private String profileInstrumentEngine = INSTRUMENT_ENGINE_JAVASSIST;
+    private String interceptorDispatch = INTERCEPTOR_DISPATCH_REGISTRY;
+
     private String collectorSpanServerIp = DEFAULT_IP;
     private int collectorSpanServerPort = 9996;
 
@@ -97,17 +109,29 @@ public class DefaultProfilerConfig implements ProfilerConfig {
     private String collectorTcpServerIp = DEFAULT_IP;
     private int collectorTcpServerPort = 9994;
 
+    private List<String> collectorServers = Collections.emptyList();
+
     private int spanDataSenderWriteQueueSize = 1024 * 5;
     private int spanDataSenderSocketSendBufferSize = 1024 * 64 * 16;
     private int spanDataSenderSocketTimeout = 1000 * 3;
     private int spanDataSenderChunkSize = 1024 * 16;
     private String spanDataSenderSocketType = "OIO";
+    private String spanDataSenderWriteQueueType = "LINKED";
+    private boolean spanDataSenderDirectEncodeEnable = false;
+    private boolean spanDataSenderStreamCompressEnable = false;
 
     private int statDataSenderWriteQueueSize = 1024 * 5;
     private int statDataSenderSocketSendBufferSize = 1024 * 64 * 16;
     private int statDataSenderSocketTimeout = 1000 * 3;
     private int statDataSenderChunkSize = 1024 * 16;
     private String statDataSenderSocketType = "OIO";
+    private String statDataSenderWriteQueueType = "LINKED";
+
+    private boolean spoolEnable = false;
+    private String spoolDir = "";
+    private int spoolSpanSize = 1024 * 1024 * 64;
+    private int spoolStatSize = 1024 * 1024 * 8;
+    private int spoolDrainRate = 500;
 
     private boolean tcpDataSenderCommandAcceptEnable = false;
 
@@ -166,10 +190,17 @@ public class DefaultProfilerConfig implements ProfilerConfig {
     // Sampling
     private boolean samplingEnable = true;
     private int samplingRate = 1;
+    private String samplingType = "COUNTING";
+    private int samplingAdaptiveTracesPerSecond = 20;
+    private boolean samplingTailEnable = false;
+    private long samplingTailLatencyThreshold = 1000;
+    private int samplingTailMaxSpanEventCount = 64;
+    private int samplingTailBufferSize = 4 * 1024 * 1024;
 
     // span buffering
     private boolean ioBufferingEnable;
     private int ioBufferingBufferSize;
+    private boolean ioBufferingRecycleEnable;
 
     private int profileJvmCollectInterval;
     private String profileJvmVendorName;
@@ -205,6 +236,26 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         return interceptorRegistrySize;
     }
 
+    @Override
+    public boolean isTransformCacheEnable() {
+        return transformCacheEnable;
+    }
+
+    @Override
+    public String getTransformCacheDir() {
+        return transformCacheDir;
+    }
+
+    @Override
+    public String getProfileInstrumentEngine() {
+        return profileInstrumentEngine;
+    }
+
+    @Override
+    public String getInterceptorDispatch() {
+        return interceptorDispatch;
+    }
+
     @Override
     public String getCollectorSpanServerIp() {
         return collectorSpanServerIp;
@@ -235,6 +286,11 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         return collectorTcpServerPort;
     }
 
+    @Override
+    public List<String> getCollectorServers() {
+        return collectorServers;
+    }
+
     @Override
     public int getStatDataSenderWriteQueueSize() {
         return statDataSenderWriteQueueSize;
@@ -255,6 +311,36 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         return statDataSenderSocketType;
     }
 
+    @Override
+    public String getStatDataSenderWriteQueueType() {
+        return statDataSenderWriteQueueType;
+    }
+
+    @Override
+    public boolean isSpoolEnable() {
+        return spoolEnable;
+    }
+
+    @Override
+    public String getSpoolDir() {
+        return spoolDir;
+    }
+
+    @Override
+    public int getSpoolSpanSize() {
+        return spoolSpanSize;
+    }
+
+    @Override
+    public int getSpoolStatSize() {
+        return spoolStatSize;
+    }
+
+    @Override
+    public int getSpoolDrainRate() {
+        return spoolDrainRate;
+    }
+
     @Override
     public int getSpanDataSenderWriteQueueSize() {
         return spanDataSenderWriteQueueSize;
@@ -285,6 +371,21 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         return spanDataSenderSocketType;
     }
 
+    @Override
+    public String getSpanDataSenderWriteQueueType() {
+        return spanDataSenderWriteQueueType;
+    }
+
+    @Override
+    public boolean isSpanDataSenderDirectEncodeEnable() {
+        return spanDataSenderDirectEncodeEnable;
+    }
+
+    @Override
+    public boolean isSpanDataSenderStreamCompressEnable() {
+        return spanDataSenderStreamCompressEnable;
+    }
+
     @Override
     public int getSpanDataSenderChunkSize() {
         return spanDataSenderChunkSize;
@@ -326,6 +427,36 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         return samplingRate;
     }
 
+    @Override
+    public String getSamplingType() {
+        return samplingType;
+    }
+
+    @Override
+    public int getSamplingAdaptiveTracesPerSecond() {
+        return samplingAdaptiveTracesPerSecond;
+    }
+
+    @Override
+    public boolean isSamplingTailEnable() {
+        return samplingTailEnable;
+    }
+
+    @Override
+    public long getSamplingTailLatencyThreshold() {
+        return samplingTailLatencyThreshold;
+    }
+
+    @Override
+    public int getSamplingTailMaxSpanEventCount() {
+        return samplingTailMaxSpanEventCount;
+    }
+
+    @Override
+    public int getSamplingTailBufferSize() {
+        return samplingTailBufferSize;
+    }
+
     @Override
     public boolean isIoBufferingEnable() {
         return ioBufferingEnable;
@@ -336,6 +467,11 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         return ioBufferingBufferSize;
     }
 
+    @Override
+    public boolean isIoBufferingRecycleEnable() {
+        return ioBufferingRecycleEnable;
+    }
+
     @Override
     public int getProfileJvmCollectInterval() {
         return profileJvmCollectInterval;
@@ -573,6 +709,12 @@ public class DefaultProfilerConfig implements ProfilerConfig {
 
         this.interceptorRegistrySize = readInt("profiler.interceptorregistry.size", 1024*8);
 
+        this.transformCacheEnable = readBoolean("profiler.transform.cache.enable", false);
+        this.transformCacheDir = readString("profiler.transform.cache.dir", "");
+
+        this.profileInstrumentEngine = readString("profiler.instrument.engine", INSTRUMENT_ENGINE_JAVASSIST);
+        this.interceptorDispatch = readString("profiler.instrument.interceptor.dispatch", INTERCEPTOR_DISPATCH_REGISTRY);
+
         this.collectorSpanServerIp = readString("profiler.collector.span.ip", DEFAULT_IP, placeHolderResolver);
         this.collectorSpanServerPort = readInt("profiler.collector.span.port", 9996);
 
@@ -582,17 +724,29 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         this.collectorTcpServerIp = readString("profiler.collector.tcp.ip", DEFAULT_IP, placeHolderResolver);
         this.collectorTcpServerPort = readInt("profiler.collector.tcp.port", 9994);
 
+        this.collectorServers = readList("profiler.collector.servers");
+
         this.spanDataSenderWriteQueueSize = readInt("profiler.spandatasender.write.queue.size", 1024 * 5);
         this.spanDataSenderSocketSendBufferSize = readInt("profiler.spandatasender.socket.sendbuffersize", 1024 * 64 * 16);
         this.spanDataSenderSocketTimeout = readInt("profiler.spandatasender.socket.timeout", 1000 * 3);
         this.spanDataSenderChunkSize = readInt("profiler.spandatasender.chunk.size", 1024 * 16);
         this.spanDataSenderSocketType = readString("profiler.spandatasender.socket.type", "OIO");
+        this.spanDataSenderWriteQueueType = readString("profiler.spandatasender.write.queue.type", "LINKED");
+        this.spanDataSenderDirectEncodeEnable = readBoolean("profiler.spandatasender.direct.encode.enable", false);
+        this.spanDataSenderStreamCompressEnable = readBoolean("profiler.spandatasender.stream.compress.enable", false);
 
         this.statDataSenderWriteQueueSize = readInt("profiler.statdatasender.write.queue.size", 1024 * 5);
         this.statDataSenderSocketSendBufferSize = readInt("profiler.statdatasender.socket.sendbuffersize", 1024 * 64 * 16);
         this.statDataSenderSocketTimeout = readInt("profiler.statdatasender.socket.timeout", 1000 * 3);
         this.statDataSenderChunkSize = readInt("profiler.statdatasender.chunk.size", 1024 * 16);
         this.statDataSenderSocketType = readString("profiler.statdatasender.socket.type", "OIO");
+        this.statDataSenderWriteQueueType = readString("profiler.statdatasender.write.queue.type", "LINKED");
+
+        this.spoolEnable = readBoolean("profiler.spool.enable", false);
+        this.spoolDir = readString("profiler.spool.dir", "");
+        this.spoolSpanSize = readInt("profiler.spool.span.size", 1024 * 1024 * 64);
+        this.spoolStatSize = readInt("profiler.spool.stat.size", 1024 * 1024 * 8);
+        this.spoolDrainRate = readInt("profiler.spool.drain.rate", 500);
 
         this.tcpDataSenderCommandAcceptEnable = readBoolean("profiler.tcpdatasender.command.accept.enable", false);
 
@@ -673,12 +827,22 @@ public class DefaultProfilerConfig implements ProfilerConfig {
 
         this.samplingEnable = readBoolean("profiler.sampling.enable", true);
         this.samplingRate = readInt("profiler.sampling.rate", 1);
+        // COUNTING : 1 out of samplingRate, ADAPTIVE : up to tracesPerSecond new transactions per second
+        this.samplingType = readString("profiler.sampling.type", "COUNTING");
+        this.samplingAdaptiveTracesPerSecond = readInt("profiler.sampling.adaptive.tracespersecond", 20);
+        // record unsampled transactions in memory and send the slow or failed ones
+        this.samplingTailEnable = readBoolean("profiler.sampling.tail.enable", false);
+        this.samplingTailLatencyThreshold = readLong("profiler.sampling.tail.latency.threshold", 1000);
+        this.samplingTailMaxSpanEventCount = readInt("profiler.sampling.tail.maxspanevent", 64);
+        this.samplingTailBufferSize = readInt("profiler.sampling.tail.buffer.size", 4 * 1024 * 1024);
 
         // configuration for sampling and IO buffer 
         this.ioBufferingEnable = readBoolean("profiler.io.buffering.enable", true);
 
         // it may be a problem to be here.  need to modify(delete or move or .. )  this configuration.
         this.ioBufferingBufferSize = readInt("profiler.io.buffering.buffersize", 20);
+        // recycle SpanEvent, CallStack and their lists after the span has been serialized
+        this.ioBufferingRecycleEnable = readBoolean("profiler.io.buffering.recycle.enable", false);
 
         // JVM
         this.profileJvmCollectInterval = readInt("profiler.jvm.collect.interval", 1000);
@@ -814,6 +978,14 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         builder.append(properties);
         builder.append(", interceptorRegistrySize=");
         builder.append(interceptorRegistrySize);
+        builder.append(", transformCacheEnable=");
+        builder.append(transformCacheEnable);
+        builder.append(", transformCacheDir=");
+        builder.append(transformCacheDir);
+        builder.append(", profileInstrumentEngine=");
+        builder.append(profileInstrumentEngine);
+        builder.append(", interceptorDispatch=");
+        builder.append(interceptorDispatch);
         builder.append(", propertyPlaceholderHelper=");
         builder.append(propertyPlaceholderHelper);
         builder.append(", profileEnable=");
@@ -830,6 +1002,8 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         builder.append(collectorTcpServerIp);
         builder.append(", collectorTcpServerPort=");
         builder.append(collectorTcpServerPort);
+        builder.append(", collectorServers=");
+        builder.append(collectorServers);
         builder.append(", spanDataSenderWriteQueueSize=");
         builder.append(spanDataSenderWriteQueueSize);
         builder.append(", spanDataSenderSocketSendBufferSize=");
@@ -840,6 +1014,12 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         builder.append(spanDataSenderChunkSize);
         builder.append(", spanDataSenderSocketType=");
         builder.append(spanDataSenderSocketType);
+        builder.append(", spanDataSenderWriteQueueType=");
+        builder.append(spanDataSenderWriteQueueType);
+        builder.append(", spanDataSenderDirectEncodeEnable=");
+        builder.append(spanDataSenderDirectEncodeEnable);
+        builder.append(", spanDataSenderStreamCompressEnable=");
+        builder.append(spanDataSenderStreamCompressEnable);
         builder.append(", statDataSenderWriteQueueSize=");
         builder.append(statDataSenderWriteQueueSize);
         builder.append(", statDataSenderSocketSendBufferSize=");
@@ -850,6 +1030,18 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         builder.append(statDataSenderChunkSize);
         builder.append(", statDataSenderSocketType=");
         builder.append(statDataSenderSocketType);
+        builder.append(", statDataSenderWriteQueueType=");
+        builder.append(statDataSenderWriteQueueType);
+        builder.append(", spoolEnable=");
+        builder.append(spoolEnable);
+        builder.append(", spoolDir=");
+        builder.append(spoolDir);
+        builder.append(", spoolSpanSize=");
+        builder.append(spoolSpanSize);
+        builder.append(", spoolStatSize=");
+        builder.append(spoolStatSize);
+        builder.append(", spoolDrainRate=");
+        builder.append(spoolDrainRate);
         builder.append(", tcpDataSenderCommandAcceptEnable=");
         builder.append(tcpDataSenderCommandAcceptEnable);
         builder.append(", traceAgentActiveThread=");
@@ -918,10 +1110,24 @@ public class DefaultProfilerConfig implements ProfilerConfig {
         builder.append(samplingEnable);
         builder.append(", samplingRate=");
         builder.append(samplingRate);
+        builder.append(", samplingType=");
+        builder.append(samplingType);
+        builder.append(", samplingAdaptiveTracesPerSecond=");
+        builder.append(samplingAdaptiveTracesPerSecond);
+        builder.append(", samplingTailEnable=");
+        builder.append(samplingTailEnable);
+        builder.append(", samplingTailLatencyThreshold=");
+        builder.append(samplingTailLatencyThreshold);
+        builder.append(", samplingTailMaxSpanEventCount=");
+        builder.append(samplingTailMaxSpanEventCount);
+        builder.append(", samplingTailBufferSize=");
+        builder.append(samplingTailBufferSize);
         builder.append(", ioBufferingEnable=");
         builder.append(ioBufferingEnable);
         builder.append(", ioBufferingBufferSize=");
         builder.append(ioBufferingBufferSize);
+        builder.append(", ioBufferingRecycleEnable=");
+        builder.append(ioBufferingRecycleEnable);
         builder.append(", profileJvmCollectInterval=");
         builder.append(profileJvmCollectInterval);
         builder.append(", profilableClassFilter=");
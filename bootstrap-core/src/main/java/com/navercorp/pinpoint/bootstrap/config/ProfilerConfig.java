@@ -25,6 +25,14 @@ import java.util.Map;
 public interface ProfilerConfig {
     int getInterceptorRegistrySize();
 
+    boolean isTransformCacheEnable();
+
+    String getTransformCacheDir();
+
+    String getProfileInstrumentEngine();
+
+    String getInterceptorDispatch();
+
     String getCollectorSpanServerIp();
 
     int getCollectorSpanServerPort();
@@ -37,6 +45,8 @@ public interface ProfilerConfig {
 
     int getCollectorTcpServerPort();
 
+    List<String> getCollectorServers();
+
     int getStatDataSenderWriteQueueSize();
 
     int getStatDataSenderSocketSendBufferSize();
@@ -45,6 +55,18 @@ public interface ProfilerConfig {
 
     String getStatDataSenderSocketType();
 
+    String getStatDataSenderWriteQueueType();
+
+    boolean isSpoolEnable();
+
+    String getSpoolDir();
+
+    int getSpoolSpanSize();
+
+    int getSpoolStatSize();
+
+    int getSpoolDrainRate();
+
     int getSpanDataSenderWriteQueueSize();
 
     int getSpanDataSenderSocketSendBufferSize();
@@ -57,6 +79,12 @@ public interface ProfilerConfig {
 
     String getSpanDataSenderSocketType();
 
+    String getSpanDataSenderWriteQueueType();
+
+    boolean isSpanDataSenderDirectEncodeEnable();
+
+    boolean isSpanDataSenderStreamCompressEnable();
+
     int getSpanDataSenderChunkSize();
 
     int getStatDataSenderChunkSize();
@@ -73,10 +101,24 @@ public interface ProfilerConfig {
 
     int getSamplingRate();
 
+    String getSamplingType();
+
+    int getSamplingAdaptiveTracesPerSecond();
+
+    boolean isSamplingTailEnable();
+
+    long getSamplingTailLatencyThreshold();
+
+    int getSamplingTailMaxSpanEventCount();
+
+    int getSamplingTailBufferSize();
+
     boolean isIoBufferingEnable();
 
     int getIoBufferingBufferSize();
 
+    boolean isIoBufferingRecycleEnable();
+
     int getProfileJvmCollectInterval();
 
     String getProfilerJvmVendorName();
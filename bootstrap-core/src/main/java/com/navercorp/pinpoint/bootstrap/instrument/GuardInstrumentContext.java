@@ -17,6 +17,7 @@
 package com.navercorp.pinpoint.bootstrap.instrument;
 
 import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.instrument.matcher.Matcher;
 import com.navercorp.pinpoint.bootstrap.instrument.transformer.TransformCallback;
 import com.navercorp.pinpoint.bootstrap.interceptor.scope.InterceptorScope;
 
@@ -77,6 +78,12 @@ public class GuardInstrumentContext implements InstrumentContext {
         instrumentContext.addClassFileTransformer(targetClassName, transformCallback);
     }
 
+    @Override
+    public void addClassFileTransformer(Matcher matcher, TransformCallback transformCallback) {
+        checkOpen();
+        instrumentContext.addClassFileTransformer(matcher, transformCallback);
+    }
+
     @Override
     public void retransform(Class<?> target, TransformCallback transformCallback) {
         checkOpen();
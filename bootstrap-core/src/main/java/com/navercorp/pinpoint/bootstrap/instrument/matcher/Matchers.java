@@ -46,4 +46,16 @@ public final class Matchers {
         return new DefaultMultiClassNameMatcher(Arrays.asList(classNameList));
     }
 
+    public static Matcher newPackageNameMatcher(String packageName) {
+        return new DefaultPackageNameMatcher(packageName);
+    }
+
+    public static Matcher newSuperClassNameMatcher(String superClassName) {
+        return new DefaultSuperClassNameMatcher(superClassName);
+    }
+
+    public static Matcher newAnnotationMatcher(String annotationName) {
+        return new DefaultAnnotationMatcher(annotationName);
+    }
+
 }
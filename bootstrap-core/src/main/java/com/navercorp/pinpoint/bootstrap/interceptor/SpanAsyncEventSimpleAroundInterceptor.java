@@ -129,6 +129,11 @@ public abstract class SpanAsyncEventSimpleAroundInterceptor implements AroundInt
             logger.warn("Failed to continue async trace. 'result is null'");
             return null;
         }
+        if (!trace.canSampled()) {
+            // the origin of the async call is not recorded
+            traceContext.removeTraceObject();
+            return null;
+        }
         if (isDebug) {
             logger.debug("Continue async trace {}, id={}", trace, asyncTraceId);
         }
@@ -37,12 +37,38 @@ public final class DefaultInterceptorRegistryAdaptor implements InterceptorRegis
             return -1;
         }
         
-        final int newId = nextId();
-        if (newId >= registrySize) {
-            throw new IndexOutOfBoundsException("size=" + index.length() + " id=" + id);
+        while (true) {
+            final int newId = nextId();
+            if (newId >= registrySize) {
+                throw new IndexOutOfBoundsException("size=" + index.length() + " id=" + id);
+            }
+            // skip the ids bound by addInterceptor(int, Interceptor)
+            if (index.compareAndSet(newId, null, interceptor)) {
+                return newId;
+            }
         }
-        index.set(newId, interceptor);
-        return newId;
+    }
+
+    @Override
+    public boolean addInterceptor(int interceptorId, Interceptor interceptor) {
+        if (interceptor == null) {
+            return false;
+        }
+        if (interceptorId < 0 || interceptorId >= registrySize) {
+            return false;
+        }
+        return index.compareAndSet(interceptorId, null, interceptor);
+    }
+
+    @Override
+    public boolean removeInterceptor(int interceptorId, Interceptor interceptor) {
+        if (interceptor == null) {
+            return false;
+        }
+        if (interceptorId < 0 || interceptorId >= registrySize) {
+            return false;
+        }
+        return index.compareAndSet(interceptorId, interceptor, null);
     }
 
     private int nextId() {
@@ -37,6 +37,16 @@ public final class EmptyRegistryAdaptor implements InterceptorRegistryAdaptor {
         return -1;
     }
 
+    @Override
+    public boolean addInterceptor(int interceptorId, Interceptor interceptor) {
+        return false;
+    }
+
+    @Override
+    public boolean removeInterceptor(int interceptorId, Interceptor interceptor) {
+        return false;
+    }
+
 
     public Interceptor getInterceptor(int key) {
         return LOGGING_INTERCEPTOR;
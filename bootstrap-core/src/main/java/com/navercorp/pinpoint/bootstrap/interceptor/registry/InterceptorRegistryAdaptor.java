@@ -8,5 +8,18 @@ import com.navercorp.pinpoint.bootstrap.interceptor.Interceptor;
  */
 public interface InterceptorRegistryAdaptor {
     int addInterceptor(Interceptor interceptor);
+
+    /**
+     * Binds the interceptor to the given id, so that bytecode woven in a previous run keeps calling it.
+     * @return false if the id is out of range or already bound
+     */
+    boolean addInterceptor(int interceptorId, Interceptor interceptor);
+
+    /**
+     * Unbinds the interceptor from the given id, so that the id can be bound again.
+     * @return false if the id is not bound to the given interceptor
+     */
+    boolean removeInterceptor(int interceptorId, Interceptor interceptor);
+
     Interceptor getInterceptor(int key);
 }
@@ -39,6 +39,10 @@ public final class WeakAtomicReferenceArray<T> {
 //        this.array[index] = newValue;
     }
 
+    public boolean compareAndSet(int index, T expect, T update) {
+        return this.atomicArray.compareAndSet(index, expect, update);
+    }
+
     public int length() {
         return length;
     }
@@ -64,4 +64,18 @@ public class DefaultInterceptorRegistryAdaptorTest {
 
         Assert.assertSame(mock, find);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void addInterceptorWithId() {
+        InterceptorRegistryAdaptor registry = new DefaultInterceptorRegistryAdaptor(4);
+        AroundInterceptor bound = mock(AroundInterceptor.class);
+        Assert.assertTrue(registry.addInterceptor(1, bound));
+        Assert.assertFalse(registry.addInterceptor(1, mock(AroundInterceptor.class)));
+        Assert.assertFalse(registry.addInterceptor(4, mock(AroundInterceptor.class)));
+        Assert.assertSame(bound, registry.getInterceptor(1));
+
+        // sequential ids skip the bound id
+        Assert.assertEquals(0, registry.addInterceptor(mock(AroundInterceptor.class)));
+        Assert.assertEquals(2, registry.addInterceptor(mock(AroundInterceptor.class)));
+    }
+}
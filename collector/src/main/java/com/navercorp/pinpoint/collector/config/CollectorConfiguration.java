@@ -70,6 +70,7 @@ public class CollectorConfiguration implements InitializingBean {
     private String udpSpanListenIp = DEFAULT_LISTEN_IP;
     private int udpSpanListenPort;
 
+    private String udpSpanReceiverType;
     private String udpSpanWorkerType;
     private int udpSpanWorkerThread;
     private int udpSpanWorkerQueueSize;
@@ -182,6 +183,14 @@ public class CollectorConfiguration implements InitializingBean {
         this.udpSpanListenPort = udpSpanListenPort;
     }
 
+    public String getUdpSpanReceiverType() {
+        return udpSpanReceiverType;
+    }
+
+    public void setUdpSpanReceiverType(String udpSpanReceiverType) {
+        this.udpSpanReceiverType = udpSpanReceiverType;
+    }
+
     public String getUdpSpanWorkerType() {
         return udpSpanWorkerType;
     }
@@ -323,6 +332,7 @@ public class CollectorConfiguration implements InitializingBean {
         this.udpSpanListenIp = readString(properties, "collector.udpSpanListenIp", DEFAULT_LISTEN_IP);
         this.udpSpanListenPort = readInt(properties, "collector.udpSpanListenPort", udpSpanListenPort);
 
+        this.udpSpanReceiverType = readString(properties, "collector.udpSpanReceiverType", "DEFAULT_RECEIVER");
         this.udpSpanWorkerType = readString(properties, "collector.udpSpanWorkerType", "DEFAULT_EXECUTOR");
         this.udpSpanWorkerThread = readInt(properties, "collector.udpSpanWorkerThread", 256);
         this.udpSpanWorkerQueueSize = readInt(properties, "collector.udpSpanWorkerQueueSize", 1024 * 5);
@@ -397,6 +407,7 @@ public class CollectorConfiguration implements InitializingBean {
         sb.append(", udpStatSocketReceiveBufferSize=").append(udpStatSocketReceiveBufferSize);
         sb.append(", udpSpanListenIp='").append(udpSpanListenIp).append('\'');
         sb.append(", udpSpanListenPort=").append(udpSpanListenPort);
+        sb.append(", udpSpanReceiverType=").append(udpSpanReceiverType);
         sb.append(", udpSpanWorkerType=").append(udpSpanWorkerType);
         sb.append(", udpSpanWorkerThread=").append(udpSpanWorkerThread);
         sb.append(", udpSpanWorkerQueueSize=").append(udpSpanWorkerQueueSize);
@@ -39,6 +39,9 @@ import com.navercorp.pinpoint.thrift.dto.TJvmGcType;
 import com.navercorp.pinpoint.thrift.dto.TTransaction;
 import com.sematext.hbase.wd.AbstractRowKeyDistributor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author harebox
  * @author emeroad
@@ -69,6 +72,22 @@ public class HbaseAgentStatDao implements AgentStatDao {
         }
     }
 
+    @Override
+    public void insert(List<TAgentStat> agentStatList) {
+        if (agentStatList == null) {
+            throw new NullPointerException("agentStatList must not be null");
+        }
+        final List<Put> putList = new ArrayList<>(agentStatList.size());
+        for (TAgentStat agentStat : agentStatList) {
+            putList.add(createPut(agentStat));
+        }
+
+        List<Put> rejectedPutList = hbaseTemplate.asyncPut(AGENT_STAT, putList);
+        if (!rejectedPutList.isEmpty()) {
+            hbaseTemplate.put(AGENT_STAT, rejectedPutList);
+        }
+    }
+
     private Put createPut(TAgentStat agentStat) {
         long timestamp = agentStat.getTimestamp();
         byte[] key = getDistributedRowKey(agentStat, timestamp);
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+import com.navercorp.pinpoint.collector.dao.AgentStatDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+/**
+ * AgentStatDao Factory for the storage format migration.
+ * The web reads both formats, so it must be upgraded before collectors are switched to v2.
+ */
+@Repository
+public class HbaseAgentStatDaoFactory implements FactoryBean<AgentStatDao> {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    @Qualifier("hbaseAgentStatDao")
+    private AgentStatDao v1;
+
+    @Autowired
+    @Qualifier("hbaseAgentStatDaoV2")
+    private AgentStatDao v2;
+
+    @Value("#{pinpoint_collector_properties['collector.experimental.agentStat.format.version'] ?: 'v1'}")
+    private String mode = "v1";
+
+    @Override
+    public AgentStatDao getObject() throws Exception {
+
+        logger.info("AgentStatDao format {}", mode);
+
+        if (mode.equalsIgnoreCase("v2")) {
+            return v2;
+        }
+        return v1;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return AgentStatDao.class;
+    }
+
+    @Override
+    public boolean isSingleton() {
+        return true;
+    }
+}
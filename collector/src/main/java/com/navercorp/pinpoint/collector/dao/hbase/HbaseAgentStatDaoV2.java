@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+import static com.navercorp.pinpoint.common.hbase.HBaseTables.*;
+
+import com.navercorp.pinpoint.collector.dao.AgentStatDao;
+import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
+import com.navercorp.pinpoint.common.server.bo.serializer.stat.AgentStatBlockCodec;
+import com.navercorp.pinpoint.common.server.util.RowKeyUtils;
+import com.navercorp.pinpoint.common.util.BytesUtils;
+import com.navercorp.pinpoint.common.util.TimeUtils;
+import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.sematext.hbase.wd.AbstractRowKeyDistributor;
+import org.apache.hadoop.hbase.client.Put;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes the stats of an agent batch into a single row, as a delta encoded block.
+ * The row key is the timestamp of the first stat of the block.
+ */
+@Repository
+public class HbaseAgentStatDaoV2 implements AgentStatDao {
+
+    private static final Comparator<TAgentStat> TIMESTAMP_COMPARATOR = new Comparator<TAgentStat>() {
+        @Override
+        public int compare(TAgentStat o1, TAgentStat o2) {
+            final long timestamp1 = o1.getTimestamp();
+            final long timestamp2 = o2.getTimestamp();
+            return timestamp1 < timestamp2 ? -1 : (timestamp1 == timestamp2 ? 0 : 1);
+        }
+    };
+
+    @Autowired
+    private HbaseOperations2 hbaseTemplate;
+
+    @Autowired
+    @Qualifier("agentStatRowKeyDistributor")
+    private AbstractRowKeyDistributor rowKeyDistributor;
+
+    private final AgentStatBlockCodec agentStatBlockCodec = new AgentStatBlockCodec();
+
+    @Override
+    public void insert(TAgentStat agentStat) {
+        if (agentStat == null) {
+            throw new NullPointerException("agentStat must not be null");
+        }
+        insert(Collections.singletonList(agentStat));
+    }
+
+    @Override
+    public void insert(List<TAgentStat> agentStatList) {
+        if (agentStatList == null) {
+            throw new NullPointerException("agentStatList must not be null");
+        }
+        if (agentStatList.isEmpty()) {
+            return;
+        }
+        final List<TAgentStat> sortedList = new ArrayList<>(agentStatList);
+        Collections.sort(sortedList, TIMESTAMP_COMPARATOR);
+
+        final List<Put> putList = new ArrayList<>();
+        int blockStart = 0;
+        for (int i = 1; i <= sortedList.size(); i++) {
+            final boolean blockEnd = i == sortedList.size()
+                    || sortedList.get(i).getTimestamp() - sortedList.get(blockStart).getTimestamp() >= AgentStatBlockCodec.MAX_BLOCK_SPAN;
+            if (blockEnd) {
+                putList.add(createPut(sortedList.subList(blockStart, i)));
+                blockStart = i;
+            }
+        }
+
+        List<Put> rejectedPutList = hbaseTemplate.asyncPut(AGENT_STAT, putList);
+        if (!rejectedPutList.isEmpty()) {
+            hbaseTemplate.put(AGENT_STAT, rejectedPutList);
+        }
+    }
+
+    private Put createPut(List<TAgentStat> block) {
+        final TAgentStat first = block.get(0);
+        final byte[] rowKey = getDistributedRowKey(first.getAgentId(), first.getTimestamp());
+
+        final Put put = new Put(rowKey);
+        put.addColumn(AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_STAT_BLOCK, agentStatBlockCodec.encode(block));
+        return put;
+    }
+
+    /**
+     * Same row key as the v1 format, so that both formats are read with a single scan
+     */
+    private byte[] getDistributedRowKey(String agentId, long timestamp) {
+        if (agentId == null) {
+            throw new IllegalArgumentException("agentId must not null");
+        }
+        byte[] bAgentId = BytesUtils.toBytes(agentId);
+        byte[] key = RowKeyUtils.concatFixedByteAndLong(bAgentId, AGENT_NAME_MAX_LEN, TimeUtils.reverseTimeMillis(timestamp));
+        return rowKeyDistributor.getDistributedKey(key);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+import static com.navercorp.pinpoint.common.hbase.HBaseTables.*;
+
+import com.navercorp.pinpoint.collector.dao.AgentStatRollupDao;
+import com.navercorp.pinpoint.collector.dao.hbase.statistics.AgentStatRollup;
+import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
+import com.navercorp.pinpoint.common.server.util.RowKeyUtils;
+import com.navercorp.pinpoint.common.util.BytesUtils;
+import com.navercorp.pinpoint.common.util.TimeUtils;
+import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.sematext.hbase.wd.AbstractRowKeyDistributor;
+import org.apache.hadoop.hbase.client.Put;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains 1 minute and 1 hour rollups of agent stats and writes them to AgentStatAggr,
+ * so that long range inspector charts do not have to scan every raw AgentStat row.
+ * 1 minute rollups use the same column family as raw stats, 1 hour rollups are written to the hourly column family.
+ */
+@Repository
+public class HbaseAgentStatRollupDao implements AgentStatRollupDao {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    // agents send stats in batches, so a window is kept open for a while after it ends
+    private static final long DEFAULT_FLUSH_DELAY = MINUTE;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private HbaseOperations2 hbaseTemplate;
+
+    @Autowired
+    @Qualifier("agentStatRowKeyDistributor")
+    private AbstractRowKeyDistributor rowKeyDistributor;
+
+    private final RollupLevel[] rollupLevels = {
+            new RollupLevel(MINUTE, AGENT_STAT_CF_STATISTICS),
+            new RollupLevel(HOUR, AGENT_STAT_AGGR_CF_HOURLY)
+    };
+
+    private final long flushDelay;
+
+    public HbaseAgentStatRollupDao() {
+        this(DEFAULT_FLUSH_DELAY);
+    }
+
+    public HbaseAgentStatRollupDao(long flushDelay) {
+        if (flushDelay < 0) {
+            throw new IllegalArgumentException("flushDelay must not be negative");
+        }
+        this.flushDelay = flushDelay;
+    }
+
+    @Override
+    public void insert(TAgentStat agentStat) {
+        insert(agentStat, System.currentTimeMillis());
+    }
+
+    void insert(TAgentStat agentStat, long currentTime) {
+        if (agentStat == null) {
+            throw new NullPointerException("agentStat must not be null");
+        }
+        final String agentId = agentStat.getAgentId();
+        final long timestamp = agentStat.getTimestamp();
+        for (RollupLevel rollupLevel : rollupLevels) {
+            final long windowTimestamp = rollupLevel.getWindowTimestamp(timestamp);
+            if (isFlushable(windowTimestamp, rollupLevel.interval, currentTime)) {
+                // already written, the late stat remains in the raw table only
+                logger.debug("drop late agentStat. agentId:{}, timestamp:{}, interval:{}", agentId, timestamp, rollupLevel.interval);
+                continue;
+            }
+            final RollupKey rollupKey = new RollupKey(agentId, windowTimestamp);
+            final AgentStatRollup rollup = rollupLevel.getRollup(rollupKey, currentTime);
+            if (rollup == null || !rollup.add(agentStat)) {
+                logger.debug("drop late agentStat. agentId:{}, timestamp:{}, interval:{}", agentId, timestamp, rollupLevel.interval);
+            }
+        }
+    }
+
+    @Override
+    public void flushAll() {
+        flush(System.currentTimeMillis());
+    }
+
+    void flush(long currentTime) {
+        for (RollupLevel rollupLevel : rollupLevels) {
+            final List<Put> putList = new ArrayList<>();
+            for (AgentStatRollup rollup : rollupLevel.removeFlushable(currentTime)) {
+                // stats added before close() are still written
+                final byte[] rowKey = getDistributedRowKey(rollup.getAgentId(), rollup.getTimestamp());
+                putList.add(rollup.close(rowKey, rollupLevel.family));
+            }
+            if (putList.isEmpty()) {
+                continue;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("flush agentStat rollup. interval:{}, size:{}", rollupLevel.interval, putList.size());
+            }
+            try {
+                hbaseTemplate.put(AGENT_STAT_AGGR, putList);
+            } catch (Exception e) {
+                // keep flushing the other levels, a missing hourly column family should not stop minute rollups
+                logger.warn("agentStat rollup flush error. interval:{}, Caused:{}", rollupLevel.interval, e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean isFlushable(long windowTimestamp, long interval, long currentTime) {
+        return windowTimestamp + interval + flushDelay <= currentTime;
+    }
+
+    /**
+     * Same row key as the raw AgentStat table
+     */
+    private byte[] getDistributedRowKey(String agentId, long timestamp) {
+        byte[] bAgentId = BytesUtils.toBytes(agentId);
+        byte[] key = RowKeyUtils.concatFixedByteAndLong(bAgentId, AGENT_NAME_MAX_LEN, TimeUtils.reverseTimeMillis(timestamp));
+        return rowKeyDistributor.getDistributedKey(key);
+    }
+
+    private class RollupLevel {
+        private final long interval;
+        private final byte[] family;
+        private final ConcurrentMap<RollupKey, AgentStatRollup> rollupMap = new ConcurrentHashMap<>();
+        // latest flush time, guarded by this. Windows are opened and removed under the same lock
+        private long flushTime = Long.MIN_VALUE;
+
+        private RollupLevel(long interval, byte[] family) {
+            this.interval = interval;
+            this.family = family;
+        }
+
+        private long getWindowTimestamp(long timestamp) {
+            return timestamp - (timestamp % interval);
+        }
+
+        /**
+         * @return null if the window has already been flushed
+         */
+        private AgentStatRollup getRollup(RollupKey rollupKey, long currentTime) {
+            final AgentStatRollup rollup = rollupMap.get(rollupKey);
+            if (rollup != null) {
+                return rollup;
+            }
+            synchronized (this) {
+                // a window removed by a concurrent flush must not be opened again, its row would be overwritten with partial data
+                if (isFlushable(rollupKey.timestamp, interval, Math.max(currentTime, flushTime))) {
+                    return null;
+                }
+                final AgentStatRollup newRollup = new AgentStatRollup(rollupKey.agentId, rollupKey.timestamp, interval);
+                final AgentStatRollup before = rollupMap.putIfAbsent(rollupKey, newRollup);
+                if (before != null) {
+                    return before;
+                }
+                return newRollup;
+            }
+        }
+
+        private synchronized List<AgentStatRollup> removeFlushable(long currentTime) {
+            this.flushTime = Math.max(flushTime, currentTime);
+            final List<AgentStatRollup> flushable = new ArrayList<>();
+            final Iterator<Map.Entry<RollupKey, AgentStatRollup>> iterator = rollupMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final AgentStatRollup rollup = iterator.next().getValue();
+                if (isFlushable(rollup.getTimestamp(), rollup.getInterval(), flushTime)) {
+                    iterator.remove();
+                    flushable.add(rollup);
+                }
+            }
+            return flushable;
+        }
+    }
+
+    private static final class RollupKey {
+        private final String agentId;
+        private final long timestamp;
+
+        private RollupKey(String agentId, long timestamp) {
+            if (agentId == null) {
+                throw new NullPointerException("agentId must not be null");
+            }
+            this.agentId = agentId;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            RollupKey that = (RollupKey) o;
+
+            if (timestamp != that.timestamp) return false;
+            return agentId.equals(that.agentId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = agentId.hashCode();
+            result = 31 * result + (int) (timestamp ^ (timestamp >>> 32));
+            return result;
+        }
+    }
+}
@@ -22,7 +22,6 @@ import com.navercorp.pinpoint.collector.dao.ApplicationTraceIndexDao;
 import com.navercorp.pinpoint.common.server.util.AcceptedTimeService;
 import com.navercorp.pinpoint.common.buffer.AutomaticBuffer;
 import com.navercorp.pinpoint.common.buffer.Buffer;
-import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.server.util.SpanUtils;
 import com.navercorp.pinpoint.thrift.dto.TSpan;
 import com.sematext.hbase.wd.AbstractRowKeyDistributor;
@@ -42,7 +41,7 @@ import org.springframework.stereotype.Repository;
 public class HbaseApplicationTraceIndexDao implements ApplicationTraceIndexDao {
 
     @Autowired
-    private HbaseOperations2 hbaseTemplate;
+    private HbaseWritePipeline writePipeline;
 
     @Autowired
     private AcceptedTimeService acceptedTimeService;
@@ -69,10 +68,7 @@ public class HbaseApplicationTraceIndexDao implements ApplicationTraceIndexDao {
 
         put.addColumn(APPLICATION_TRACE_INDEX_CF_TRACE, makeQualifier(span) , acceptedTime, value);
 
-        boolean success = hbaseTemplate.asyncPut(APPLICATION_TRACE_INDEX, put);
-        if (!success) {
-            hbaseTemplate.put(APPLICATION_TRACE_INDEX, put);
-        }
+        writePipeline.write(APPLICATION_TRACE_INDEX, put, WritePriority.TRACE_INDEX);
     }
 
     private byte[] makeQualifier(final TSpan span) {
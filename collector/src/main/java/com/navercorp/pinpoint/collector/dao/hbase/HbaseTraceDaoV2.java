@@ -1,7 +1,6 @@
 package com.navercorp.pinpoint.collector.dao.hbase;
 
 import com.navercorp.pinpoint.collector.dao.TraceDao;
-import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.server.bo.BasicSpan;
 import com.navercorp.pinpoint.common.server.bo.SpanBo;
 import com.navercorp.pinpoint.common.server.bo.SpanChunkBo;
@@ -31,7 +30,7 @@ public class HbaseTraceDaoV2 implements TraceDao {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     @Autowired
-    private HbaseOperations2 hbaseTemplate;
+    private HbaseWritePipeline writePipeline;
 
 
     @Autowired
@@ -61,10 +60,7 @@ public class HbaseTraceDaoV2 implements TraceDao {
         this.spanSerializer.serialize(spanBo, put, null);
 
 
-        boolean success = hbaseTemplate.asyncPut(TRACE_V2, put);
-        if (!success) {
-            hbaseTemplate.put(TRACE_V2, put);
-        }
+        writePipeline.write(TRACE_V2, put, WritePriority.SPAN);
 
     }
 
@@ -87,10 +83,7 @@ public class HbaseTraceDaoV2 implements TraceDao {
         this.spanChunkSerializer.serialize(spanChunkBo, put, null);
 
         if (!put.isEmpty()) {
-            boolean success = hbaseTemplate.asyncPut(TRACE_V2, put);
-            if (!success) {
-                hbaseTemplate.put(TRACE_V2, put);
-            }
+            writePipeline.write(TRACE_V2, put, WritePriority.SPAN_EVENT);
         }
     }
 
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.navercorp.pinpoint.collector.util.BackpressureSignal;
+import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
+import com.navercorp.pinpoint.common.util.PinpointThreadFactory;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes puts through {@link HbaseOperations2#asyncPut(TableName, Put)}, and queues the puts the HTableMultiplexer rejects
+ * into a bounded queue per table, written in batches by a thread of that table.
+ * Receiver workers never block on a stalled region server : when a queue fills up, puts are shed by {@link ShedPolicy},
+ * and once a queue cannot take any more put, {@link #isOverloaded()} tells the receivers to drop packets on arrival.
+ */
+@Component
+public class HbaseWritePipeline implements BackpressureSignal {
+
+    private static final long POLL_TIMEOUT = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private HbaseOperations2 hbaseTemplate;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Value("#{pinpoint_collector_properties['collector.hbase.write.queueSize'] ?: 10240}")
+    private int queueSize;
+
+    @Value("#{pinpoint_collector_properties['collector.hbase.write.batchSize'] ?: 100}")
+    private int batchSize;
+
+    @Value("#{pinpoint_collector_properties['collector.hbase.write.shedPolicy'] ?: 'PRIORITY'}")
+    private String shedPolicyName;
+
+    private ShedPolicy shedPolicy;
+
+    private final ConcurrentMap<TableName, TableWriter> tableWriters = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+
+    public HbaseWritePipeline() {
+    }
+
+    HbaseWritePipeline(HbaseOperations2 hbaseTemplate, MetricRegistry metricRegistry, int queueSize, int batchSize, ShedPolicy shedPolicy) {
+        this.hbaseTemplate = hbaseTemplate;
+        this.metricRegistry = metricRegistry;
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+        this.shedPolicyName = shedPolicy.name();
+        afterPropertiesSet();
+    }
+
+    @PostConstruct
+    public void afterPropertiesSet() {
+        if (hbaseTemplate == null) {
+            throw new NullPointerException("hbaseTemplate must not be null");
+        }
+        if (metricRegistry == null) {
+            throw new NullPointerException("metricRegistry must not be null");
+        }
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("Invalid queueSize " + queueSize);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batchSize " + batchSize);
+        }
+        this.shedPolicy = ShedPolicy.valueOf(shedPolicyName);
+        logger.info("HbaseWritePipeline queueSize:{}, batchSize:{}, shedPolicy:{}", queueSize, batchSize, shedPolicy);
+    }
+
+    /**
+     * @return false if the put was shed
+     */
+    public boolean write(TableName tableName, Put put, WritePriority priority) {
+        if (tableName == null) {
+            throw new NullPointerException("tableName must not be null");
+        }
+        if (put == null) {
+            throw new NullPointerException("put must not be null");
+        }
+        if (priority == null) {
+            throw new NullPointerException("priority must not be null");
+        }
+        if (hbaseTemplate.asyncPut(tableName, put)) {
+            return true;
+        }
+        return getTableWriter(tableName).offer(put, priority);
+    }
+
+    private TableWriter getTableWriter(TableName tableName) {
+        final TableWriter tableWriter = tableWriters.get(tableName);
+        if (tableWriter != null) {
+            return tableWriter;
+        }
+        synchronized (tableWriters) {
+            final TableWriter exist = tableWriters.get(tableName);
+            if (exist != null) {
+                return exist;
+            }
+            final TableWriter newTableWriter = new TableWriter(tableName);
+            tableWriters.put(tableName, newTableWriter);
+            newTableWriter.start();
+            return newTableWriter;
+        }
+    }
+
+    @Override
+    public boolean isOverloaded() {
+        for (TableWriter tableWriter : tableWriters.values()) {
+            if (tableWriter.isFull()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.running = false;
+        for (TableWriter tableWriter : tableWriters.values()) {
+            tableWriter.stop();
+        }
+    }
+
+    private class TableWriter implements Runnable {
+
+        private final TableName tableName;
+        private final BlockingQueue<Put> queue;
+        private final Thread thread;
+
+        private final Counter queuedCounter;
+        private final Counter flushedCounter;
+        private final Counter failedCounter;
+        private final Counter callerRunsCounter;
+        private final Map<WritePriority, Counter> shedCounters = new EnumMap<>(WritePriority.class);
+
+        private TableWriter(TableName tableName) {
+            this.tableName = tableName;
+            this.queue = new LinkedBlockingQueue<>(queueSize);
+
+            final String table = tableName.getNameAsString();
+            final ThreadFactory threadFactory = new PinpointThreadFactory("Pinpoint-HbaseWrite-" + table, true);
+            this.thread = threadFactory.newThread(this);
+
+            final String metricPrefix = "HbaseWritePipeline-" + table;
+            this.queuedCounter = metricRegistry.counter(metricPrefix + "-queued");
+            this.flushedCounter = metricRegistry.counter(metricPrefix + "-flushed");
+            this.failedCounter = metricRegistry.counter(metricPrefix + "-failed");
+            this.callerRunsCounter = metricRegistry.counter(metricPrefix + "-callerRuns");
+            for (WritePriority priority : WritePriority.values()) {
+                shedCounters.put(priority, metricRegistry.counter(metricPrefix + "-shed-" + priority.name()));
+            }
+            metricRegistry.register(metricPrefix + "-queueSize", new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return queue.size();
+                }
+            });
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private boolean offer(Put put, WritePriority priority) {
+            if (shedPolicy == ShedPolicy.CALLER_RUNS) {
+                if (!queue.offer(put)) {
+                    callerRunsCounter.inc();
+                    hbaseTemplate.put(tableName, put);
+                    return true;
+                }
+                queuedCounter.inc();
+                return true;
+            }
+            final int admissionLimit = shedPolicy.getAdmissionLimit(priority, queueSize);
+            if (queue.size() >= admissionLimit || !queue.offer(put)) {
+                shed(priority);
+                return false;
+            }
+            queuedCounter.inc();
+            return true;
+        }
+
+        private void shed(WritePriority priority) {
+            final Counter shedCounter = shedCounters.get(priority);
+            shedCounter.inc();
+            if (shedCounter.getCount() % 1000 == 1) {
+                logger.warn("{} put shed. priority:{}, count:{}, queueSize:{}", tableName, priority, shedCounter.getCount(), queue.size());
+            }
+        }
+
+        private boolean isFull() {
+            return queue.remainingCapacity() == 0;
+        }
+
+        @Override
+        public void run() {
+            final List<Put> batch = new ArrayList<>(batchSize);
+            while (running) {
+                try {
+                    final Put put = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (put == null) {
+                        continue;
+                    }
+                    batch.add(put);
+                    queue.drainTo(batch, batchSize - 1);
+                    flush(batch);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            // write what is left before shutdown
+            while (queue.drainTo(batch, batchSize) > 0) {
+                flush(batch);
+            }
+        }
+
+        private void flush(List<Put> batch) {
+            try {
+                hbaseTemplate.put(tableName, batch);
+                flushedCounter.inc(batch.size());
+            } catch (Exception e) {
+                failedCounter.inc(batch.size());
+                logger.warn("{} batch put failed. size:{}, Caused:{}", tableName, batch.size(), e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        private void stop() {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
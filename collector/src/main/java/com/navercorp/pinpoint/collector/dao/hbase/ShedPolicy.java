@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+/**
+ * What the {@link HbaseWritePipeline} does with a put its table queue cannot take.
+ */
+public enum ShedPolicy {
+
+    /**
+     * shed by {@link WritePriority}, span events first and index rows last
+     */
+    PRIORITY,
+    /**
+     * shed any put once the queue is full
+     */
+    DROP_NEWEST,
+    /**
+     * put synchronously on the calling receiver worker once the queue is full
+     */
+    CALLER_RUNS;
+
+    int getAdmissionLimit(WritePriority priority, int capacity) {
+        if (this == PRIORITY) {
+            return (int) (capacity * priority.getAdmissionRatio());
+        }
+        return capacity;
+    }
+}
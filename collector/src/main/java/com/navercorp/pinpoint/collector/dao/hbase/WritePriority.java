@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+/**
+ * Importance of a put queued in the {@link HbaseWritePipeline}.
+ * With {@link ShedPolicy#PRIORITY}, a put is accepted while the queue of its table is filled below admissionRatio,
+ * so span events are shed first, then spans, and index rows last.
+ */
+public enum WritePriority {
+
+    SPAN_EVENT(0.5),
+    SPAN(0.8),
+    TRACE_INDEX(1.0);
+
+    private final double admissionRatio;
+
+    WritePriority(double admissionRatio) {
+        this.admissionRatio = admissionRatio;
+    }
+
+    public double getAdmissionRatio() {
+        return admissionRatio;
+    }
+}
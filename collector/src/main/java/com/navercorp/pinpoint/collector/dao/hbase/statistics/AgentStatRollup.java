@@ -0,0 +1,279 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase.statistics;
+
+import static com.navercorp.pinpoint.common.hbase.HBaseTables.*;
+
+import com.navercorp.pinpoint.common.server.bo.ActiveTraceHistogramBo;
+import com.navercorp.pinpoint.thrift.dto.TActiveTraceHistogram;
+import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.navercorp.pinpoint.thrift.dto.TCpuLoad;
+import com.navercorp.pinpoint.thrift.dto.TJvmGc;
+import com.navercorp.pinpoint.thrift.dto.TJvmGcType;
+import com.navercorp.pinpoint.thrift.dto.TTransaction;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Agent stats of one agent rolled up into a single time window.
+ * The row uses the columns of a raw AgentStat row so that it can be read with the same mapper :
+ * heap/non-heap used and CPU usage hold the average (min and max are kept in separate columns),
+ * heap max is the max, transaction counts are summed, and gc counters and the active trace histogram
+ * keep the latest and the per slot max value respectively.
+ */
+public class AgentStatRollup {
+
+    private final String agentId;
+    private final long timestamp;
+    private final long interval;
+
+    private boolean closed;
+    private int sampleCount;
+
+    private long latestTimestamp = Long.MIN_VALUE;
+    private String gcType;
+    private long gcOldCount = -1;
+    private long gcOldTime = -1;
+
+    private final LongStat heapUsed = new LongStat();
+    private final LongStat nonHeapUsed = new LongStat();
+    private long heapMax = -1;
+    private long nonHeapMax = -1;
+
+    private final DoubleStat jvmCpuLoad = new DoubleStat();
+    private final DoubleStat systemCpuLoad = new DoubleStat();
+
+    private boolean transactionCollected;
+    private long sampledNewCount;
+    private long sampledContinuationCount;
+    private long unsampledNewCount;
+    private long unsampledContinuationCount;
+
+    private int activeTraceVersion;
+    private int activeTraceSchemaType;
+    private int[] activeTraceMaxCounts;
+
+    public AgentStatRollup(String agentId, long timestamp, long interval) {
+        if (agentId == null) {
+            throw new NullPointerException("agentId must not be null");
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.agentId = agentId;
+        this.timestamp = timestamp;
+        this.interval = interval;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    /**
+     * @return start of the window
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public synchronized int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return false if the rollup has already been closed by {@link #close(byte[], byte[])}
+     */
+    public synchronized boolean add(TAgentStat agentStat) {
+        if (agentStat == null) {
+            throw new NullPointerException("agentStat must not be null");
+        }
+        if (closed) {
+            return false;
+        }
+        sampleCount++;
+        final boolean latest = agentStat.getTimestamp() >= latestTimestamp;
+        if (latest) {
+            latestTimestamp = agentStat.getTimestamp();
+        }
+
+        if (agentStat.isSetGc()) {
+            final TJvmGc gc = agentStat.getGc();
+            if (latest || gcType == null) {
+                gcType = gc.getType().name();
+                gcOldCount = gc.getJvmGcOldCount();
+                gcOldTime = gc.getJvmGcOldTime();
+            }
+            heapUsed.add(gc.getJvmMemoryHeapUsed());
+            nonHeapUsed.add(gc.getJvmMemoryNonHeapUsed());
+            heapMax = Math.max(heapMax, gc.getJvmMemoryHeapMax());
+            nonHeapMax = Math.max(nonHeapMax, gc.getJvmMemoryNonHeapMax());
+        }
+        if (agentStat.isSetCpuLoad()) {
+            final TCpuLoad cpuLoad = agentStat.getCpuLoad();
+            // negative load means that the agent could not collect it
+            if (cpuLoad.isSetJvmCpuLoad() && cpuLoad.getJvmCpuLoad() >= 0) {
+                jvmCpuLoad.add(cpuLoad.getJvmCpuLoad());
+            }
+            if (cpuLoad.isSetSystemCpuLoad() && cpuLoad.getSystemCpuLoad() >= 0) {
+                systemCpuLoad.add(cpuLoad.getSystemCpuLoad());
+            }
+        }
+        if (agentStat.isSetTransaction()) {
+            final TTransaction transaction = agentStat.getTransaction();
+            transactionCollected = true;
+            sampledNewCount += transaction.getSampledNewCount();
+            sampledContinuationCount += transaction.getSampledContinuationCount();
+            unsampledNewCount += transaction.getUnsampledNewCount();
+            unsampledContinuationCount += transaction.getUnsampledContinuationCount();
+        }
+        if (agentStat.isSetActiveTrace() && agentStat.getActiveTrace().isSetHistogram()) {
+            addActiveTraceHistogram(agentStat.getActiveTrace().getHistogram());
+        }
+        return true;
+    }
+
+    private void addActiveTraceHistogram(TActiveTraceHistogram histogram) {
+        final List<Integer> activeTraceCount = histogram.getActiveTraceCount();
+        if (activeTraceCount == null) {
+            return;
+        }
+        if (activeTraceMaxCounts == null || activeTraceMaxCounts.length != activeTraceCount.size()) {
+            activeTraceVersion = histogram.getVersion();
+            activeTraceSchemaType = histogram.getHistogramSchemaType();
+            activeTraceMaxCounts = new int[activeTraceCount.size()];
+        }
+        for (int i = 0; i < activeTraceMaxCounts.length; i++) {
+            final Integer count = activeTraceCount.get(i);
+            if (count != null && count > activeTraceMaxCounts[i]) {
+                activeTraceMaxCounts[i] = count;
+            }
+        }
+    }
+
+    /**
+     * Closes the rollup so that no more samples are added, and creates the row to write.
+     */
+    public synchronized Put close(byte[] rowKey, byte[] family) {
+        if (rowKey == null) {
+            throw new NullPointerException("rowKey must not be null");
+        }
+        if (family == null) {
+            throw new NullPointerException("family must not be null");
+        }
+        closed = true;
+
+        final Put put = new Put(rowKey);
+        put.addColumn(family, AGENT_STAT_COL_INTERVAL, Bytes.toBytes(interval));
+        put.addColumn(family, AGENT_STAT_COL_SAMPLE_COUNT, Bytes.toBytes(sampleCount));
+        // GC, Memory
+        if (gcType != null) {
+            put.addColumn(family, AGENT_STAT_COL_GC_TYPE, Bytes.toBytes(gcType));
+            put.addColumn(family, AGENT_STAT_COL_GC_OLD_COUNT, Bytes.toBytes(gcOldCount));
+            put.addColumn(family, AGENT_STAT_COL_GC_OLD_TIME, Bytes.toBytes(gcOldTime));
+            put.addColumn(family, AGENT_STAT_COL_HEAP_USED, Bytes.toBytes(heapUsed.avg()));
+            put.addColumn(family, AGENT_STAT_COL_HEAP_USED_MIN, Bytes.toBytes(heapUsed.min));
+            put.addColumn(family, AGENT_STAT_COL_HEAP_USED_MAX, Bytes.toBytes(heapUsed.max));
+            put.addColumn(family, AGENT_STAT_COL_HEAP_MAX, Bytes.toBytes(heapMax));
+            put.addColumn(family, AGENT_STAT_COL_NON_HEAP_USED, Bytes.toBytes(nonHeapUsed.avg()));
+            put.addColumn(family, AGENT_STAT_COL_NON_HEAP_USED_MIN, Bytes.toBytes(nonHeapUsed.min));
+            put.addColumn(family, AGENT_STAT_COL_NON_HEAP_USED_MAX, Bytes.toBytes(nonHeapUsed.max));
+            put.addColumn(family, AGENT_STAT_COL_NON_HEAP_MAX, Bytes.toBytes(nonHeapMax));
+        } else {
+            put.addColumn(family, AGENT_STAT_COL_GC_TYPE, Bytes.toBytes(TJvmGcType.UNKNOWN.name()));
+        }
+        // CPU
+        if (jvmCpuLoad.count > 0) {
+            put.addColumn(family, AGENT_STAT_COL_JVM_CPU, Bytes.toBytes(jvmCpuLoad.avg()));
+            put.addColumn(family, AGENT_STAT_COL_JVM_CPU_MIN, Bytes.toBytes(jvmCpuLoad.min));
+            put.addColumn(family, AGENT_STAT_COL_JVM_CPU_MAX, Bytes.toBytes(jvmCpuLoad.max));
+        }
+        if (systemCpuLoad.count > 0) {
+            put.addColumn(family, AGENT_STAT_COL_SYS_CPU, Bytes.toBytes(systemCpuLoad.avg()));
+            put.addColumn(family, AGENT_STAT_COL_SYS_CPU_MIN, Bytes.toBytes(systemCpuLoad.min));
+            put.addColumn(family, AGENT_STAT_COL_SYS_CPU_MAX, Bytes.toBytes(systemCpuLoad.max));
+        }
+        // Transaction
+        if (transactionCollected) {
+            put.addColumn(family, AGENT_STAT_COL_TRANSACTION_SAMPLED_NEW, Bytes.toBytes(sampledNewCount));
+            put.addColumn(family, AGENT_STAT_COL_TRANSACTION_SAMPLED_CONTINUATION, Bytes.toBytes(sampledContinuationCount));
+            put.addColumn(family, AGENT_STAT_COL_TRANSACTION_UNSAMPLED_NEW, Bytes.toBytes(unsampledNewCount));
+            put.addColumn(family, AGENT_STAT_COL_TRANSACTION_UNSAMPLED_CONTINUATION, Bytes.toBytes(unsampledContinuationCount));
+        }
+        // Active Trace
+        if (activeTraceMaxCounts != null) {
+            final List<Integer> counts = new ArrayList<Integer>(activeTraceMaxCounts.length);
+            for (int count : activeTraceMaxCounts) {
+                counts.add(count);
+            }
+            final ActiveTraceHistogramBo activeTraceHistogramBo = new ActiveTraceHistogramBo(activeTraceVersion, activeTraceSchemaType, counts);
+            put.addColumn(family, AGENT_STAT_COL_ACTIVE_TRACE_HISTOGRAM, activeTraceHistogramBo.writeValue());
+        }
+        return put;
+    }
+
+    private static class LongStat {
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private long sum;
+        private int count;
+
+        private void add(long value) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+        }
+
+        private long avg() {
+            return count == 0 ? 0 : sum / count;
+        }
+    }
+
+    private static class DoubleStat {
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private double sum;
+        private int count;
+
+        private void add(double value) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+        }
+
+        private double avg() {
+            return count == 0 ? 0 : sum / count;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AgentStatRollup{" +
+                "agentId='" + agentId + '\'' +
+                ", timestamp=" + timestamp +
+                ", interval=" + interval +
+                '}';
+    }
+}
@@ -20,12 +20,16 @@ import org.apache.thrift.TBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import com.navercorp.pinpoint.collector.dao.AgentStatDao;
+import com.navercorp.pinpoint.collector.dao.AgentStatRollupDao;
 import com.navercorp.pinpoint.thrift.dto.TAgentStat;
 import com.navercorp.pinpoint.thrift.dto.TAgentStatBatch;
 
+import java.util.List;
+
 /**
  * @author emeroad
  * @author hyungil.jeong
@@ -36,8 +40,12 @@ public class AgentStatHandler implements Handler {
     private final Logger logger = LoggerFactory.getLogger(AgentStatHandler.class.getName());
 
     @Autowired
+    @Qualifier("hbaseAgentStatDaoFactory")
     private AgentStatDao agentStatDao;
 
+    @Autowired
+    private AgentStatRollupDao agentStatRollupDao;
+
     public void handle(TBase<?, ?> tbase) {
         // FIXME (2014.08) Legacy - TAgentStats should not be sent over the wire.
         if (tbase instanceof TAgentStat) {
@@ -57,6 +65,7 @@ public class AgentStatHandler implements Handler {
             agentStat.setAgentId(agentId);
             agentStat.setStartTimestamp(startTimestamp);
             agentStatDao.insert(agentStat);
+            agentStatRollupDao.insert(agentStat);
         } catch (Exception e) {
             logger.warn("AgentStat handle error. Caused:{}", e.getMessage());
         }
@@ -68,8 +77,38 @@ public class AgentStatHandler implements Handler {
         }
         String agentId = agentStatBatch.getAgentId();
         long startTimestamp = agentStatBatch.getStartTimestamp();
-        for (TAgentStat agentStat : agentStatBatch.getAgentStats()) {
-            handleAgentStat(agentId, startTimestamp, agentStat);
+        List<TAgentStat> agentStatList = agentStatBatch.getAgentStats();
+        if (agentStatList == null || agentStatList.isEmpty()) {
+            return;
+        }
+        for (TAgentStat agentStat : agentStatList) {
+            agentStat.setAgentId(agentId);
+            agentStat.setStartTimestamp(startTimestamp);
+        }
+        try {
+            // the whole batch is handed over so that the dao can store it as a block
+            agentStatDao.insert(agentStatList);
+        } catch (Exception e) {
+            // a bad stat must not take the whole batch with it
+            logger.warn("AgentStatBatch insert error, inserting one by one. Caused:{}", e.getMessage());
+            for (TAgentStat agentStat : agentStatList) {
+                insertAgentStat(agentStat);
+            }
+        }
+        for (TAgentStat agentStat : agentStatList) {
+            try {
+                agentStatRollupDao.insert(agentStat);
+            } catch (Exception e) {
+                logger.warn("AgentStat rollup error. Caused:{}", e.getMessage());
+            }
+        }
+    }
+
+    private void insertAgentStat(TAgentStat agentStat) {
+        try {
+            agentStatDao.insert(agentStat);
+        } catch (Exception e) {
+            logger.warn("AgentStat handle error. Caused:{}", e.getMessage());
         }
     }
 }
@@ -21,6 +21,7 @@ import com.navercorp.pinpoint.collector.config.CollectorConfiguration;
 import com.navercorp.pinpoint.collector.receiver.DispatchHandler;
 import com.navercorp.pinpoint.collector.rpc.handler.AgentEventHandler;
 import com.navercorp.pinpoint.collector.rpc.handler.AgentLifeCycleHandler;
+import com.navercorp.pinpoint.collector.util.BackpressureSignal;
 import com.navercorp.pinpoint.collector.util.PacketUtils;
 import com.navercorp.pinpoint.common.server.util.AgentEventType;
 import com.navercorp.pinpoint.common.server.util.AgentLifeCycleState;
@@ -52,6 +53,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author emeroad
@@ -71,6 +73,10 @@ public class TCPReceiver {
 
     private final ThreadPoolExecutor worker;
 
+    // null if the receiver does not drop packets while the storage is overloaded
+    private BackpressureSignal backpressureSignal;
+    private final AtomicInteger backpressureDroppedCount = new AtomicInteger();
+
     private final SerializerFactory<HeaderTBaseSerializer> serializerFactory = new ThreadLocalHeaderTBaseSerializerFactory<>(new HeaderTBaseSerializerFactory(true, HeaderTBaseSerializerFactory.DEFAULT_UDP_STREAM_MAX_SIZE));
     private final DeserializerFactory<HeaderTBaseDeserializer> deserializerFactory = new ThreadLocalHeaderTBaseDeserializerFactory<>(new HeaderTBaseDeserializerFactory());
 
@@ -184,7 +190,19 @@ public class TCPReceiver {
 
     }
 
+    public void setBackpressureSignal(BackpressureSignal backpressureSignal) {
+        this.backpressureSignal = backpressureSignal;
+    }
+
     private void receive(SendPacket sendPacket, PinpointSocket pinpointSocket) {
+        if (backpressureSignal != null && backpressureSignal.isOverloaded()) {
+            // requests are still served, the agent retries them and they carry the metadata spans refer to
+            final int dropped = backpressureDroppedCount.incrementAndGet();
+            if ((dropped % 1000) == 1) {
+                logger.warn("storage overloaded. BackpressureDroppedCount={}", dropped);
+            }
+            return;
+        }
         try {
             worker.execute(new Dispatch(sendPacket.getPayload(), pinpointSocket.getRemoteAddress()));
         } catch (RejectedExecutionException e) {
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.receiver.udp;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.navercorp.pinpoint.collector.receiver.DataReceiver;
+import com.navercorp.pinpoint.collector.util.BackpressureSignal;
+import com.navercorp.pinpoint.collector.util.ByteBufferFactory;
+import com.navercorp.pinpoint.collector.util.FixedObjectPool;
+import com.navercorp.pinpoint.collector.util.ObjectPool;
+import com.navercorp.pinpoint.collector.util.PooledObject;
+import com.navercorp.pinpoint.common.server.util.concurrent.DisruptorExecutors;
+import com.navercorp.pinpoint.common.server.util.concurrent.PinpointExecutorType;
+import com.navercorp.pinpoint.common.util.ExecutorFactory;
+import com.navercorp.pinpoint.common.util.PinpointThreadFactory;
+import com.navercorp.pinpoint.rpc.util.CpuUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DatagramChannel} based alternative to {@link UDPReceiver}.
+ * <p>
+ * Io threads drain the channel into pooled {@link ByteBuffer}s and hand packets to the worker
+ * in batches of up to {@code batchSize}, so the executor handoff is paid once per batch instead of once per packet.
+ * Each worker thread points its own reusable {@link DatagramPacket} at the array of the pooled buffer, so
+ * existing {@link PacketHandlerFactory} implementations deserialize the packet in place.
+ * <p>
+ * The buffer pool has a fixed size. Packets read while every buffer is in use are discarded and counted in {@code -dropped}.
+ */
+public class NioUDPReceiver implements DataReceiver {
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final Logger logger;
+
+    private final String bindAddress;
+    private final int port;
+
+    private final String receiverName;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private final boolean enableCollectorMetric;
+
+    private Timer timer;
+    private Meter packetMeter;
+    private Counter rejectedCounter;
+    private Counter droppedCounter;
+    private Counter backpressureDroppedCounter;
+
+    // null if the receiver does not drop packets while the storage is overloaded
+    private BackpressureSignal backpressureSignal;
+
+    private final int ioThreadSize;
+    private final int batchSize;
+    private ThreadPoolExecutor io;
+
+    private ExecutorService worker;
+    private final PinpointExecutorType workerType;
+    private final int workerThreadSize;
+    private final int workerThreadQueueSize;
+
+    private ObjectPool<ByteBuffer> bufferPool;
+
+    private final DatagramChannel channel;
+
+    private final PacketHandlerFactory<DatagramPacket> packetHandlerFactory;
+
+    private final ThreadLocal<DatagramPacket> workerPacket = new ThreadLocal<DatagramPacket>() {
+        @Override
+        protected DatagramPacket initialValue() {
+            return new DatagramPacket(new byte[0], 0);
+        }
+    };
+
+    private final AtomicInteger rejectedExecutionCount = new AtomicInteger(0);
+
+    private final AtomicBoolean state = new AtomicBoolean(true);
+
+    public NioUDPReceiver(String receiverName, PacketHandlerFactory<DatagramPacket> packetHandlerFactory, String bindAddress, int port, int receiverBufferSize, String workerType, int workerThreadSize, int workerThreadQueueSize, boolean enableCollectorMetric) {
+        this(receiverName, packetHandlerFactory, bindAddress, port, receiverBufferSize, workerType, workerThreadSize, workerThreadQueueSize, CpuUtils.cpuCount(), DEFAULT_BATCH_SIZE, enableCollectorMetric);
+    }
+
+    public NioUDPReceiver(String receiverName, PacketHandlerFactory<DatagramPacket> packetHandlerFactory, String bindAddress, int port, int receiverBufferSize, String workerType, int workerThreadSize, int workerThreadQueueSize, int ioThreadSize, int batchSize, boolean enableCollectorMetric) {
+        if (receiverName != null) {
+            this.logger = LoggerFactory.getLogger(receiverName);
+        } else {
+            this.logger = LoggerFactory.getLogger(this.getClass());
+        }
+        if (packetHandlerFactory == null) {
+            throw new NullPointerException("packetHandlerFactory must not be null");
+        }
+        if (bindAddress == null) {
+            throw new NullPointerException("bindAddress must not be null");
+        }
+        if (ioThreadSize <= 0) {
+            throw new IllegalArgumentException("ioThreadSize must be greater than 0. ioThreadSize:" + ioThreadSize);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than 0. batchSize:" + batchSize);
+        }
+
+        this.receiverName = receiverName;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.channel = createChannel(receiverBufferSize);
+
+        this.ioThreadSize = ioThreadSize;
+        this.batchSize = batchSize;
+        this.workerType = PinpointExecutorType.getValue(workerType);
+        this.workerThreadSize = workerThreadSize;
+        this.workerThreadQueueSize = adaptQueueSize(this.workerType, workerThreadQueueSize);
+        this.packetHandlerFactory = packetHandlerFactory;
+        this.enableCollectorMetric = enableCollectorMetric;
+    }
+
+    private int adaptQueueSize(PinpointExecutorType workerType, int workerThreadQueueSize) {
+        if (workerType == PinpointExecutorType.DISRUPTOR_EXECUTOR) {
+            int adaptedQueueSize = DisruptorExecutors.nextPowerOfTwo(workerThreadQueueSize);
+            logger.info("queueSize changed {} -> {}(DisruptorExecutor only support power of 2).", workerThreadQueueSize, adaptedQueueSize);
+            return adaptedQueueSize;
+        }
+        return workerThreadQueueSize;
+    }
+
+    public void setBackpressureSignal(BackpressureSignal backpressureSignal) {
+        this.backpressureSignal = backpressureSignal;
+    }
+
+    public void afterPropertiesSet() {
+        Assert.notNull(metricRegistry, "metricRegistry must not be null");
+        Assert.notNull(packetHandlerFactory, "packetHandlerFactory must not be null");
+
+        this.worker = createWorker(workerType, workerThreadSize, workerThreadQueueSize, receiverName);
+        final int bufferPoolSize = getBufferPoolSize(workerThreadSize, workerThreadQueueSize);
+        this.bufferPool = new FixedObjectPool<>(new ByteBufferFactory(ByteBufferFactory.UDP_MAX_PACKET_LENGTH), bufferPoolSize);
+
+        this.timer = metricRegistry.timer(receiverName + "-timer");
+        this.packetMeter = metricRegistry.meter(receiverName + "-packets");
+        this.rejectedCounter = metricRegistry.counter(receiverName + "-rejected");
+        this.droppedCounter = metricRegistry.counter(receiverName + "-dropped");
+        this.backpressureDroppedCounter = metricRegistry.counter(receiverName + "-backpressureDropped");
+        this.io = (ThreadPoolExecutor) Executors.newCachedThreadPool(new PinpointThreadFactory(receiverName + "-Io", true));
+    }
+
+    private ExecutorService createWorker(PinpointExecutorType workerType, int workerThreadSize, int workerThreadQueueSize, String receiverName) {
+        if (workerType == PinpointExecutorType.DISRUPTOR_EXECUTOR) {
+            PinpointThreadFactory threadFactory = new PinpointThreadFactory(receiverName + "-Worker", true);
+            return DisruptorExecutors.newMultiProducerExecutor(workerThreadSize, workerThreadQueueSize, threadFactory);
+        } else {
+            return ExecutorFactory.newFixedThreadPool(workerThreadSize, workerThreadQueueSize, receiverName + "-Worker", true);
+        }
+    }
+
+    private void receive(final DatagramChannel channel) {
+        if (logger.isInfoEnabled()) {
+            logger.info("start ioThread localAddress:{}, IoThread:{}", getLocalAddress(channel), Thread.currentThread().getName());
+        }
+        // datagrams read while the buffer pool is empty are received here and discarded
+        final ByteBuffer discardBuffer = ByteBuffer.allocate(ByteBufferFactory.UDP_MAX_PACKET_LENGTH);
+        Selector selector = null;
+        try {
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+
+            while (state.get()) {
+                final int selected = selector.select(1000 * 5);
+                if (selected == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+                drain(channel, discardBuffer);
+            }
+        } catch (ClosedChannelException e) {
+            // shutdown
+        } catch (IOException e) {
+            if (state.get()) {
+                logger.error("IoError, Caused:{}", e.getMessage(), e);
+            }
+        } finally {
+            closeSelector(selector);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("stop ioThread IoThread:{}", Thread.currentThread().getName());
+        }
+    }
+
+    private void drain(final DatagramChannel channel, final ByteBuffer discardBuffer) {
+        PacketBatch batch = null;
+        while (state.get()) {
+            final AddressedPooledBuffer pooledBuffer = read0(channel, discardBuffer);
+            if (pooledBuffer == null) {
+                break;
+            }
+            if (pooledBuffer == SKIP) {
+                continue;
+            }
+            if (backpressureSignal != null && backpressureSignal.isOverloaded()) {
+                // cheaper to drop here than to deserialize a packet the storage would shed anyway
+                pooledBuffer.returnObject();
+                handleBackpressure();
+                continue;
+            }
+            if (batch == null) {
+                batch = new PacketBatch(batchSize);
+            }
+            batch.add(pooledBuffer);
+            if (batch.isFull()) {
+                dispatch(batch);
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * @return null if nothing is left in the socket buffer, {@link #SKIP} if the datagram read is empty or discarded
+     */
+    private AddressedPooledBuffer read0(final DatagramChannel channel, final ByteBuffer discardBuffer) {
+        final PooledObject<ByteBuffer> pooledBuffer = bufferPool.getObject();
+        if (pooledBuffer == null) {
+            return discard(channel, discardBuffer);
+        }
+        boolean success = false;
+        try {
+            final ByteBuffer buffer = pooledBuffer.getObject();
+            final SocketAddress remoteAddress = channel.receive(buffer);
+            if (remoteAddress == null) {
+                // nothing left in the socket buffer
+                return null;
+            }
+            buffer.flip();
+            if (!buffer.hasRemaining()) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("length is 0 remoteAddress:{}", remoteAddress);
+                }
+                return SKIP;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Datagram SocketAddress:{} read size:{}", remoteAddress, buffer.remaining());
+            }
+            packetMeter.mark();
+            success = true;
+            return new AddressedPooledBuffer(pooledBuffer, remoteAddress);
+        } catch (IOException e) {
+            if (state.get()) {
+                logger.error("IoError, Caused:{}", e.getMessage(), e);
+            }
+            return null;
+        } finally {
+            if (!success) {
+                pooledBuffer.returnObject();
+            }
+        }
+    }
+
+    private AddressedPooledBuffer discard(final DatagramChannel channel, final ByteBuffer discardBuffer) {
+        discardBuffer.clear();
+        try {
+            if (channel.receive(discardBuffer) == null) {
+                return null;
+            }
+        } catch (IOException e) {
+            if (state.get()) {
+                logger.error("IoError, Caused:{}", e.getMessage(), e);
+            }
+            return null;
+        }
+        packetMeter.mark();
+        droppedCounter.inc();
+        final long dropped = droppedCounter.getCount();
+        if ((dropped % 1000) == 1) {
+            logger.warn("bufferPool is empty. DroppedCount={}", dropped);
+        }
+        return SKIP;
+    }
+
+    private void dispatch(PacketBatch batch) {
+        try {
+            worker.execute(batch);
+        } catch (RejectedExecutionException ree) {
+            handleRejectedExecutionException(batch, ree);
+        }
+    }
+
+    private void handleRejectedExecutionException(PacketBatch batch, RejectedExecutionException ree) {
+        final int packetCount = batch.size();
+        batch.release();
+
+        rejectedCounter.inc(packetCount);
+        final int error = rejectedExecutionCount.incrementAndGet();
+        final int mod = 100;
+        if ((error % mod) == 0) {
+            logger.warn("RejectedExecutionCount={}", error);
+        }
+    }
+
+    private void handleBackpressure() {
+        backpressureDroppedCounter.inc();
+        final long dropped = backpressureDroppedCounter.getCount();
+        if ((dropped % 1000) == 1) {
+            logger.warn("storage overloaded. BackpressureDroppedCount={}", dropped);
+        }
+    }
+
+    private void handle(PacketHandler<DatagramPacket> packetHandler, AddressedPooledBuffer pooledBuffer) {
+        final ByteBuffer buffer = pooledBuffer.getObject();
+        final DatagramPacket packet = workerPacket.get();
+        packet.setData(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        packet.setSocketAddress(pooledBuffer.getRemoteAddress());
+
+        if (enableCollectorMetric) {
+            final Timer.Context time = timer.time();
+            try {
+                packetHandler.receive(packet);
+            } finally {
+                time.stop();
+            }
+        } else {
+            packetHandler.receive(packet);
+        }
+    }
+
+    private DatagramChannel createChannel(int receiveBufferSize) {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            final DatagramSocket socket = channel.socket();
+            socket.setReceiveBufferSize(receiveBufferSize);
+            if (logger.isWarnEnabled()) {
+                final int checkReceiveBufferSize = socket.getReceiveBufferSize();
+                if (receiveBufferSize != checkReceiveBufferSize) {
+                    logger.warn("DatagramSocket.setReceiveBufferSize() error. {}!={}", receiveBufferSize, checkReceiveBufferSize);
+                }
+            }
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException ex) {
+            throw new RuntimeException("DatagramChannel create Fail. Caused:" + ex.getMessage(), ex);
+        }
+    }
+
+    private void bindChannel(DatagramChannel channel, String bindAddress, int port) {
+        if (channel == null) {
+            throw new NullPointerException("channel must not be null");
+        }
+        try {
+            logger.info("DatagramChannel.bind() {}/{}", bindAddress, port);
+            channel.socket().bind(new InetSocketAddress(bindAddress, port));
+        } catch (IOException ex) {
+            throw new IllegalStateException("DatagramChannel bind Fail. port:" + port + " Caused:" + ex.getMessage(), ex);
+        }
+    }
+
+    private SocketAddress getLocalAddress(DatagramChannel channel) {
+        return channel.socket().getLocalSocketAddress();
+    }
+
+    private void closeSelector(Selector selector) {
+        if (selector == null) {
+            return;
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.debug("Selector.close() error. Caused:{}", e.getMessage(), e);
+        }
+    }
+
+    private int getBufferPoolSize(int workerThreadSize, int workerThreadQueueSize) {
+        // same sizing as UDPReceiver plus one in-flight batch per io thread.
+        return workerThreadSize + workerThreadQueueSize + (ioThreadSize * batchSize);
+    }
+
+    @PostConstruct
+    @Override
+    public void start() {
+        logger.info("{} start.", receiverName);
+        afterPropertiesSet();
+        final DatagramChannel channel = this.channel;
+        if (channel == null) {
+            throw new IllegalStateException("channel is null.");
+        }
+        bindChannel(channel, bindAddress, port);
+
+        logger.info("UDP Packet reader:{} batchSize:{} started.", ioThreadSize, batchSize);
+        for (int i = 0; i < ioThreadSize; i++) {
+            io.execute(new Runnable() {
+                @Override
+                public void run() {
+                    receive(channel);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        logger.info("{} shutdown.", this.receiverName);
+        state.set(false);
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("DatagramChannel.close() error. Caused:{}", e.getMessage(), e);
+            }
+        }
+        shutdownExecutor(io, "IoExecutor");
+        shutdownExecutor(worker, "WorkerExecutor");
+    }
+
+    private void shutdownExecutor(ExecutorService executor, String executorName) {
+        if (executor == null) {
+            return;
+        }
+        logger.info("{} shutdown.", executorName);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1000*10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            logger.info("{}.shutdown() Interrupted", executorName, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final AddressedPooledBuffer SKIP = new AddressedPooledBuffer(null, null);
+
+    private static class AddressedPooledBuffer implements PooledObject<ByteBuffer> {
+        private final PooledObject<ByteBuffer> pooledBuffer;
+        private final SocketAddress remoteAddress;
+
+        private AddressedPooledBuffer(PooledObject<ByteBuffer> pooledBuffer, SocketAddress remoteAddress) {
+            this.pooledBuffer = pooledBuffer;
+            this.remoteAddress = remoteAddress;
+        }
+
+        public SocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        @Override
+        public ByteBuffer getObject() {
+            return pooledBuffer.getObject();
+        }
+
+        @Override
+        public void returnObject() {
+            pooledBuffer.returnObject();
+        }
+    }
+
+    private class PacketBatch implements Runnable {
+        private final AddressedPooledBuffer[] buffers;
+        private int size;
+
+        private PacketBatch(int capacity) {
+            this.buffers = new AddressedPooledBuffer[capacity];
+        }
+
+        private void add(AddressedPooledBuffer pooledBuffer) {
+            buffers[size++] = pooledBuffer;
+        }
+
+        private boolean isFull() {
+            return size == buffers.length;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void release() {
+            for (int i = 0; i < size; i++) {
+                buffers[i].returnObject();
+                buffers[i] = null;
+            }
+            size = 0;
+        }
+
+        @Override
+        public void run() {
+            final PacketHandler<DatagramPacket> packetHandler = packetHandlerFactory.createPacketHandler();
+            try {
+                for (int i = 0; i < size; i++) {
+                    try {
+                        handle(packetHandler, buffers[i]);
+                    } catch (Exception e) {
+                        logger.warn("Unexpected error. remoteAddress:{} Caused:{}", buffers[i].getRemoteAddress(), e.getMessage(), e);
+                    }
+                }
+            } finally {
+                release();
+            }
+        }
+    }
+
+}
@@ -31,6 +31,8 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * @author Taejin Koo
@@ -46,6 +48,24 @@ public class SpanStreamUDPPacketHandlerFactory<T extends DatagramPacket> impleme
     private final TBaseFilter<SocketAddress>  filter;
     private final PacketHandler<T> dispatchPacket = new DispatchPacket();
 
+    // a packet never carries more than a datagram before compression
+    private static final int MAX_INFLATED_SIZE = 64 * 1024;
+
+    // packet handlers run on the receiver worker threads, which live as long as the collector
+    private final ThreadLocal<Inflater> inflaterHolder = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+    // the inflated packet is parsed before receive() returns, so the buffer is reused for the next packet
+    private final ThreadLocal<byte[]> inflateBufferHolder = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[MAX_INFLATED_SIZE];
+        }
+    };
+
     public SpanStreamUDPPacketHandlerFactory(DispatchHandler dispatchHandler, TBaseFilter<SocketAddress>  filter) {
         if (dispatchHandler == null) {
             throw new NullPointerException("dispatchHandler must not be null");
@@ -87,6 +107,12 @@ public class SpanStreamUDPPacketHandlerFactory<T extends DatagramPacket> impleme
 
             byte version = requestBuffer.get();
             int chunkSize = 0xff & requestBuffer.get();
+            if (version == SpanStreamConstants.Protocol.SPAN_STREAM_COMPRESSED_VERSION) {
+                requestBuffer = inflate(packet, requestBuffer.position());
+                if (requestBuffer == null) {
+                    return;
+                }
+            }
             SocketAddress socketAddress = packet.getSocketAddress();
             
             try {
@@ -126,6 +152,31 @@ public class SpanStreamUDPPacketHandlerFactory<T extends DatagramPacket> impleme
         }
     }
 
+    private ByteBuffer inflate(DatagramPacket packet, int position) {
+        final Inflater inflater = inflaterHolder.get();
+        inflater.reset();
+        inflater.setInput(packet.getData(), position, packet.getOffset() + packet.getLength() - position);
+        try {
+            final byte[] buffer = inflateBufferHolder.get();
+            int length = 0;
+            while (!inflater.finished() && length < buffer.length) {
+                final int inflated = inflater.inflate(buffer, length, buffer.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (!inflater.finished()) {
+                logger.warn("Failed to inflate packet. remote:{}, inflated:{}", packet.getSocketAddress(), length);
+                return null;
+            }
+            return ByteBuffer.wrap(buffer, 0, length);
+        } catch (DataFormatException e) {
+            logger.warn("Failed to inflate packet. remote:{}", packet.getSocketAddress(), e);
+            return null;
+        }
+    }
+
     private byte[] getComponentData(ByteBuffer buffer, HeaderTBaseDeserializer deserializer) {
         if (buffer.remaining() < 2) {
             logger.warn("Can't available {} fixed buffer.", 2);
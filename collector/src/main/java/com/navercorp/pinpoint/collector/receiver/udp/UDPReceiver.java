@@ -20,6 +20,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.navercorp.pinpoint.collector.receiver.DataReceiver;
+import com.navercorp.pinpoint.collector.util.BackpressureSignal;
 import com.navercorp.pinpoint.collector.util.DatagramPacketFactory;
 import com.navercorp.pinpoint.collector.util.DefaultObjectPool;
 import com.navercorp.pinpoint.collector.util.ObjectPool;
@@ -74,6 +75,10 @@ public class UDPReceiver implements DataReceiver {
 
     private Timer timer;
     private Counter rejectedCounter;
+    private Counter backpressureDroppedCounter;
+
+    // null if the receiver does not drop packets while the storage is overloaded
+    private BackpressureSignal backpressureSignal;
 
     // increasing ioThread size wasn't very effective
     private final int ioThreadSize = CpuUtils.cpuCount();
@@ -128,6 +133,10 @@ public class UDPReceiver implements DataReceiver {
         this.enableCollectorMetric = enableCollectorMetric;
     }
 
+    public void setBackpressureSignal(BackpressureSignal backpressureSignal) {
+        this.backpressureSignal = backpressureSignal;
+    }
+
     private int adaptQueueSize(PinpointExecutorType workerType, int workerThreadQueueSize) {
         if (workerType == PinpointExecutorType.DISRUPTOR_EXECUTOR) {
             int adaptedQueueSize = DisruptorExecutors.nextPowerOfTwo(workerThreadQueueSize);
@@ -148,6 +157,7 @@ public class UDPReceiver implements DataReceiver {
 
         this.timer = metricRegistry.timer(receiverName + "-timer");
         this.rejectedCounter = metricRegistry.counter(receiverName + "-rejected");
+        this.backpressureDroppedCounter = metricRegistry.counter(receiverName + "-backpressureDropped");
         this.io = (ThreadPoolExecutor) Executors.newCachedThreadPool(new PinpointThreadFactory(receiverName + "-Io", true));
     }
 
@@ -180,6 +190,12 @@ public class UDPReceiver implements DataReceiver {
                 }
                 return;
             }
+            if (backpressureSignal != null && backpressureSignal.isOverloaded()) {
+                // cheaper to drop here than to deserialize a packet the storage would shed anyway
+                pooledPacket.returnObject();
+                handleBackpressure();
+                continue;
+            }
             try {
                 Runnable dispatchTask = wrapDispatchTask(pooledPacket);
                 worker.execute(dispatchTask);
@@ -201,6 +217,14 @@ public class UDPReceiver implements DataReceiver {
         }
     }
 
+    private void handleBackpressure() {
+        backpressureDroppedCounter.inc();
+        final long dropped = backpressureDroppedCounter.getCount();
+        if ((dropped % 1000) == 1) {
+            logger.warn("storage overloaded. BackpressureDroppedCount={}", dropped);
+        }
+    }
+
     private Runnable wrapDispatchTask(final PooledObject<DatagramPacket> pooledPacket) {
         final Runnable lazyExecution = new Runnable() {
             @Override
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.pinpoint.collector.receiver.udp;
+
+import com.navercorp.pinpoint.collector.receiver.DataReceiver;
+
+import java.net.DatagramPacket;
+
+/**
+ * Creates the UDP receiver selected by the receiver type. {@link UDPReceiver} is used unless {@link #NIO_RECEIVER} is given.
+ */
+public final class UDPReceiverFactory {
+
+    public static final String DEFAULT_RECEIVER = "DEFAULT_RECEIVER";
+    public static final String NIO_RECEIVER = "NIO_RECEIVER";
+
+    private UDPReceiverFactory() {
+    }
+
+    public static DataReceiver createReceiver(String receiverType, String receiverName, PacketHandlerFactory<DatagramPacket> packetHandlerFactory, String bindAddress, int port, int receiverBufferSize, String workerType, int workerThreadSize, int workerThreadQueueSize, boolean enableCollectorMetric) {
+        if (NIO_RECEIVER.equalsIgnoreCase(receiverType)) {
+            return new NioUDPReceiver(receiverName, packetHandlerFactory, bindAddress, port, receiverBufferSize, workerType, workerThreadSize, workerThreadQueueSize, enableCollectorMetric);
+        }
+        return new UDPReceiver(receiverName, packetHandlerFactory, bindAddress, port, receiverBufferSize, workerType, workerThreadSize, workerThreadQueueSize, enableCollectorMetric);
+    }
+}
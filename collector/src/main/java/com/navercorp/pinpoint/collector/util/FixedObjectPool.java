@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.pinpoint.collector.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * {@link ObjectPool} holding exactly {@code size} objects. {@link #getObject()} returns null while all of them are in use.
+ */
+public class FixedObjectPool<T> implements ObjectPool<T> {
+
+    private final Queue<PooledObject<T>> queue = new ConcurrentLinkedQueue<>();
+
+    private final ObjectPoolFactory<T> factory;
+
+    public FixedObjectPool(ObjectPoolFactory<T> factory, int size) {
+        if (factory == null) {
+            throw new NullPointerException("factory must not be null");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be greater than 0. size:" + size);
+        }
+        this.factory = factory;
+        for (int i = 0; i < size; i++) {
+            queue.offer(new PooledObjectWrapper(factory.create()));
+        }
+    }
+
+    /**
+     * @return null if every object of the pool is in use
+     */
+    @Override
+    public PooledObject<T> getObject() {
+        return queue.poll();
+    }
+
+    private void returnObject(PooledObject<T> t) {
+        factory.beforeReturn(t.getObject());
+        queue.offer(t);
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private class PooledObjectWrapper implements PooledObject<T> {
+        private final T value;
+
+        public PooledObjectWrapper(T value) {
+            if (value == null) {
+                throw new NullPointerException("value must not be null");
+            }
+            this.value = value;
+        }
+
+        @Override
+        public T getObject() {
+            return value;
+        }
+
+        @Override
+        public void returnObject() {
+            FixedObjectPool.this.returnObject(this);
+        }
+    }
+}
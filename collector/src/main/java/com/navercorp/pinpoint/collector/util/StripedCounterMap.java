@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.util;
+
+import com.navercorp.pinpoint.common.server.util.concurrent.DisruptorExecutors;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free replacement for {@link ConcurrentCounterMap}.
+ * <p>
+ * Writers are pinned to a stripe by thread id, and each stripe is an open addressing table with
+ * primitive long slots. {@link #remove()} swaps every stripe for an empty table and waits for writers
+ * still inside the old table before reading it, so no increment is lost or counted twice.
+ * Keys are never reused across {@link #remove()} calls, which matters because callers mutate the returned keys.
+ *
+ * @see ConcurrentCounterMap
+ */
+public class StripedCounterMap<T> {
+
+    private static final int MAX_PROBE = 8;
+    private static final int DEFAULT_TABLE_CAPACITY = 64;
+    private static final int MAX_TABLE_CAPACITY = 1 << 16;
+
+    private final AtomicReference<Table<T>>[] stripes;
+    private final int stripeMask;
+
+    public StripedCounterMap() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedCounterMap(int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel must be greater than 0. concurrencyLevel:" + concurrencyLevel);
+        }
+        final int stripeSize = DisruptorExecutors.nextPowerOfTwo(concurrencyLevel);
+        this.stripes = new AtomicReference[stripeSize];
+        for (int i = 0; i < stripeSize; i++) {
+            this.stripes[i] = new AtomicReference<>(new Table<T>(DEFAULT_TABLE_CAPACITY));
+        }
+        this.stripeMask = stripeSize - 1;
+    }
+
+    private AtomicReference<Table<T>> getStripe() {
+        final long threadId = Thread.currentThread().getId();
+        final int hash = spread((int) (threadId ^ (threadId >>> 32)));
+        return stripes[hash & stripeMask];
+    }
+
+    public void increment(T key, long increment) {
+        if (key == null) {
+            throw new NullPointerException("key must not be null");
+        }
+        final AtomicReference<Table<T>> stripe = getStripe();
+        while (true) {
+            final Table<T> table = stripe.get();
+            table.enter();
+            try {
+                // the table may have been swapped out between get() and enter()
+                if (stripe.get() != table) {
+                    continue;
+                }
+                table.increment(key, increment);
+                return;
+            } finally {
+                table.exit();
+            }
+        }
+    }
+
+    public Map<T, ConcurrentCounterMap.LongAdder> remove() {
+        final Map<T, ConcurrentCounterMap.LongAdder> mergeMap = new HashMap<>();
+        for (AtomicReference<Table<T>> stripe : stripes) {
+            final Table<T> old = stripe.get();
+            if (old.isEmpty()) {
+                continue;
+            }
+            stripe.set(new Table<T>(old.nextCapacity()));
+            old.awaitWriters();
+            old.drainTo(mergeMap);
+        }
+        return mergeMap;
+    }
+
+    static int spread(int hash) {
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash;
+    }
+
+    private static class Table<T> {
+
+        private final AtomicInteger writers = new AtomicInteger();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private final AtomicReferenceArray<T> keys;
+        private final AtomicLongArray values;
+        private final int mask;
+
+        // only used when the probe sequence is exhausted
+        private final ConcurrentMap<T, AtomicLong> overflow = new ConcurrentHashMap<>();
+
+        private Table(int capacity) {
+            this.keys = new AtomicReferenceArray<>(capacity);
+            this.values = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        private void enter() {
+            writers.incrementAndGet();
+        }
+
+        private void exit() {
+            writers.decrementAndGet();
+        }
+
+        private void awaitWriters() {
+            while (writers.get() != 0) {
+                Thread.yield();
+            }
+        }
+
+        private boolean isEmpty() {
+            return size.get() == 0;
+        }
+
+        private int nextCapacity() {
+            final int expected = size.get() * 2;
+            if (expected <= DEFAULT_TABLE_CAPACITY) {
+                return DEFAULT_TABLE_CAPACITY;
+            }
+            return Math.min(DisruptorExecutors.nextPowerOfTwo(expected), MAX_TABLE_CAPACITY);
+        }
+
+        private void increment(T key, long increment) {
+            final int hash = spread(key.hashCode());
+            for (int probe = 0; probe < MAX_PROBE; probe++) {
+                final int index = (hash + probe) & mask;
+                T slotKey = keys.get(index);
+                if (slotKey == null) {
+                    if (keys.compareAndSet(index, null, key)) {
+                        size.incrementAndGet();
+                        values.addAndGet(index, increment);
+                        return;
+                    }
+                    slotKey = keys.get(index);
+                }
+                if (slotKey.equals(key)) {
+                    values.addAndGet(index, increment);
+                    return;
+                }
+            }
+            incrementOverflow(key, increment);
+        }
+
+        private void incrementOverflow(T key, long increment) {
+            AtomicLong counter = overflow.get(key);
+            if (counter == null) {
+                final AtomicLong newCounter = new AtomicLong();
+                counter = overflow.putIfAbsent(key, newCounter);
+                if (counter == null) {
+                    size.incrementAndGet();
+                    counter = newCounter;
+                }
+            }
+            counter.addAndGet(increment);
+        }
+
+        private void drainTo(Map<T, ConcurrentCounterMap.LongAdder> mergeMap) {
+            final int capacity = keys.length();
+            for (int i = 0; i < capacity; i++) {
+                final T key = keys.get(i);
+                if (key != null) {
+                    merge(mergeMap, key, values.get(i));
+                }
+            }
+            for (Map.Entry<T, AtomicLong> entry : overflow.entrySet()) {
+                merge(mergeMap, entry.getKey(), entry.getValue().get());
+            }
+        }
+
+        private void merge(Map<T, ConcurrentCounterMap.LongAdder> mergeMap, T key, long value) {
+            final ConcurrentCounterMap.LongAdder longAdder = mergeMap.get(key);
+            if (longAdder == null) {
+                mergeMap.put(key, new ConcurrentCounterMap.LongAdder(value));
+            } else {
+                longAdder.increment(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+import static com.navercorp.pinpoint.common.hbase.HBaseTables.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
+import com.navercorp.pinpoint.common.hbase.distributor.RangeOneByteSimpleHash;
+import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.navercorp.pinpoint.thrift.dto.TJvmGc;
+import com.navercorp.pinpoint.thrift.dto.TJvmGcType;
+import com.navercorp.pinpoint.thrift.dto.TTransaction;
+import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HbaseAgentStatRollupDaoTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long START = TimeUnit.DAYS.toMillis(17000);
+
+    @Mock
+    private HbaseOperations2 hbaseTemplate;
+
+    @Captor
+    private ArgumentCaptor<List<Put>> putListCaptor;
+
+    private HbaseAgentStatRollupDao rollupDao;
+
+    @Before
+    public void setUp() {
+        rollupDao = new HbaseAgentStatRollupDao(0);
+        ReflectionTestUtils.setField(rollupDao, "hbaseTemplate", hbaseTemplate);
+        ReflectionTestUtils.setField(rollupDao, "rowKeyDistributor", new RowKeyDistributorByHashPrefix(new RangeOneByteSimpleHash(0, 24, 32)));
+    }
+
+    @Test
+    public void closedMinuteIsFlushed() {
+        rollupDao.insert(createAgentStat(START, 100, 10), START);
+        rollupDao.insert(createAgentStat(START + 5000, 300, 20), START);
+        rollupDao.insert(createAgentStat(START + MINUTE + 5000, 1000, 30), START);
+
+        rollupDao.flush(START + MINUTE - 1);
+        verify(hbaseTemplate, never()).put(any(TableName.class), anyListOf(Put.class));
+
+        rollupDao.flush(START + MINUTE);
+        verify(hbaseTemplate).put(eq(AGENT_STAT_AGGR), putListCaptor.capture());
+        List<Put> putList = putListCaptor.getValue();
+        Assert.assertEquals(1, putList.size());
+
+        Put put = putList.get(0);
+        Assert.assertEquals(MINUTE, getLong(put, AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_INTERVAL));
+        Assert.assertEquals(2, Bytes.toInt(getValue(put, AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_SAMPLE_COUNT)));
+        Assert.assertEquals(200, getLong(put, AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_HEAP_USED));
+        Assert.assertEquals(100, getLong(put, AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_HEAP_USED_MIN));
+        Assert.assertEquals(300, getLong(put, AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_HEAP_USED_MAX));
+        Assert.assertEquals(30, getLong(put, AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_TRANSACTION_SAMPLED_NEW));
+    }
+
+    @Test
+    public void lateStatIsDropped() {
+        rollupDao.insert(createAgentStat(START, 100, 10), START);
+        rollupDao.flush(START + MINUTE);
+
+        rollupDao.insert(createAgentStat(START + 10000, 500, 10), START + MINUTE);
+        rollupDao.insert(createAgentStat(START + MINUTE, 200, 10), START + MINUTE);
+
+        rollupDao.flush(START + HOUR);
+        verify(hbaseTemplate, times(3)).put(eq(AGENT_STAT_AGGR), putListCaptor.capture());
+        List<List<Put>> putListList = putListCaptor.getAllValues();
+
+        // minute rollups
+        Assert.assertEquals(1, putListList.get(0).size());
+        Assert.assertEquals(1, putListList.get(1).size());
+        Assert.assertEquals(200, getLong(putListList.get(1).get(0), AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_HEAP_USED));
+
+        // hour rollup includes every stat received while the hour was open
+        Put hourPut = putListList.get(2).get(0);
+        Assert.assertEquals(HOUR, getLong(hourPut, AGENT_STAT_AGGR_CF_HOURLY, AGENT_STAT_COL_INTERVAL));
+        Assert.assertEquals(3, Bytes.toInt(getValue(hourPut, AGENT_STAT_AGGR_CF_HOURLY, AGENT_STAT_COL_SAMPLE_COUNT)));
+        Assert.assertEquals(500, getLong(hourPut, AGENT_STAT_AGGR_CF_HOURLY, AGENT_STAT_COL_HEAP_USED_MAX));
+        Assert.assertFalse(hourPut.has(AGENT_STAT_CF_STATISTICS, AGENT_STAT_COL_INTERVAL));
+    }
+
+    @Test
+    public void flushedWindowIsNotReopened() {
+        rollupDao.insert(createAgentStat(START, 100, 10), START);
+        rollupDao.flush(START + MINUTE);
+
+        // time read before the flush removed the window
+        rollupDao.insert(createAgentStat(START + 10000, 500, 10), START + MINUTE - 1);
+        rollupDao.flush(START + 2 * MINUTE);
+
+        // the minute row is not overwritten by a second, partial rollup
+        verify(hbaseTemplate, times(1)).put(eq(AGENT_STAT_AGGR), anyListOf(Put.class));
+    }
+
+    private TAgentStat createAgentStat(long timestamp, long heapUsed, long sampledNewCount) {
+        TAgentStat agentStat = new TAgentStat();
+        agentStat.setAgentId("agentId");
+        agentStat.setTimestamp(timestamp);
+        agentStat.setCollectInterval(5000);
+
+        TJvmGc gc = new TJvmGc();
+        gc.setType(TJvmGcType.G1);
+        gc.setJvmMemoryHeapUsed(heapUsed);
+        gc.setJvmMemoryHeapMax(1024);
+        agentStat.setGc(gc);
+
+        TTransaction transaction = new TTransaction();
+        transaction.setSampledNewCount(sampledNewCount);
+        agentStat.setTransaction(transaction);
+        return agentStat;
+    }
+
+    private long getLong(Put put, byte[] family, byte[] qualifier) {
+        return Bytes.toLong(getValue(put, family, qualifier));
+    }
+
+    private byte[] getValue(Put put, byte[] family, byte[] qualifier) {
+        return CellUtil.cloneValue(put.get(family, qualifier).get(0));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.dao.hbase;
+
+import com.codahale.metrics.MetricRegistry;
+import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HbaseWritePipelineTest {
+
+    private static final TableName TABLE = TableName.valueOf("WritePipelineTest");
+
+    private HbaseOperations2 hbaseTemplate;
+    private MetricRegistry metricRegistry;
+
+    private final CountDownLatch flushEntered = new CountDownLatch(1);
+    private final CountDownLatch flushReleased = new CountDownLatch(1);
+    private final AtomicInteger flushedCount = new AtomicInteger();
+
+    private HbaseWritePipeline writePipeline;
+
+    @Before
+    public void setUp() {
+        hbaseTemplate = mock(HbaseOperations2.class);
+        when(hbaseTemplate.asyncPut(any(TableName.class), any(Put.class))).thenReturn(false);
+        // the first batch blocks the writer thread, as a stalled region server would
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                flushEntered.countDown();
+                flushReleased.await();
+                List<?> puts = (List<?>) invocation.getArguments()[1];
+                flushedCount.addAndGet(puts.size());
+                return null;
+            }
+        }).when(hbaseTemplate).put(eq(TABLE), anyListOf(Put.class));
+        metricRegistry = new MetricRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        flushReleased.countDown();
+        if (writePipeline != null) {
+            writePipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void asyncPut() {
+        writePipeline = new HbaseWritePipeline(hbaseTemplate, metricRegistry, 10, 1, ShedPolicy.PRIORITY);
+        when(hbaseTemplate.asyncPut(any(TableName.class), any(Put.class))).thenReturn(true);
+
+        Assert.assertTrue(writePipeline.write(TABLE, newPut(0), WritePriority.SPAN_EVENT));
+        Assert.assertFalse(writePipeline.isOverloaded());
+        Assert.assertEquals(0, metricRegistry.counter("HbaseWritePipeline-WritePipelineTest-queued").getCount());
+    }
+
+    @Test
+    public void shedByPriority() throws Exception {
+        writePipeline = new HbaseWritePipeline(hbaseTemplate, metricRegistry, 10, 1, ShedPolicy.PRIORITY);
+        blockWriter();
+
+        // span events are admitted up to half of the queue
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(writePipeline.write(TABLE, newPut(i), WritePriority.SPAN_EVENT));
+        }
+        Assert.assertFalse(writePipeline.write(TABLE, newPut(5), WritePriority.SPAN_EVENT));
+
+        // spans up to 80%
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(writePipeline.write(TABLE, newPut(i), WritePriority.SPAN));
+        }
+        Assert.assertFalse(writePipeline.write(TABLE, newPut(3), WritePriority.SPAN));
+        Assert.assertFalse(writePipeline.isOverloaded());
+
+        // index rows fill the queue
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(writePipeline.write(TABLE, newPut(i), WritePriority.TRACE_INDEX));
+        }
+        Assert.assertTrue(writePipeline.isOverloaded());
+        Assert.assertFalse(writePipeline.write(TABLE, newPut(2), WritePriority.TRACE_INDEX));
+
+        Assert.assertEquals(1, metricRegistry.counter("HbaseWritePipeline-WritePipelineTest-shed-SPAN_EVENT").getCount());
+        Assert.assertEquals(1, metricRegistry.counter("HbaseWritePipeline-WritePipelineTest-shed-SPAN").getCount());
+        Assert.assertEquals(1, metricRegistry.counter("HbaseWritePipeline-WritePipelineTest-shed-TRACE_INDEX").getCount());
+
+        flushReleased.countDown();
+        awaitFlushedCount(11);
+        Assert.assertFalse(writePipeline.isOverloaded());
+    }
+
+    @Test
+    public void dropNewest() throws Exception {
+        writePipeline = new HbaseWritePipeline(hbaseTemplate, metricRegistry, 4, 2, ShedPolicy.DROP_NEWEST);
+        blockWriter();
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(writePipeline.write(TABLE, newPut(i), WritePriority.SPAN_EVENT));
+        }
+        Assert.assertTrue(writePipeline.isOverloaded());
+        Assert.assertFalse(writePipeline.write(TABLE, newPut(4), WritePriority.TRACE_INDEX));
+
+        flushReleased.countDown();
+        awaitFlushedCount(5);
+    }
+
+    @Test
+    public void callerRuns() throws Exception {
+        writePipeline = new HbaseWritePipeline(hbaseTemplate, metricRegistry, 2, 1, ShedPolicy.CALLER_RUNS);
+        blockWriter();
+
+        Assert.assertTrue(writePipeline.write(TABLE, newPut(0), WritePriority.SPAN_EVENT));
+        Assert.assertTrue(writePipeline.write(TABLE, newPut(1), WritePriority.SPAN_EVENT));
+        Put put = newPut(2);
+        Assert.assertTrue(writePipeline.write(TABLE, put, WritePriority.SPAN_EVENT));
+
+        verify(hbaseTemplate, times(1)).put(TABLE, put);
+        Assert.assertEquals(1, metricRegistry.counter("HbaseWritePipeline-WritePipelineTest-callerRuns").getCount());
+    }
+
+    private void blockWriter() throws InterruptedException {
+        writePipeline.write(TABLE, newPut(-1), WritePriority.TRACE_INDEX);
+        Assert.assertTrue(flushEntered.await(5, TimeUnit.SECONDS));
+    }
+
+    private void awaitFlushedCount(int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (flushedCount.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, flushedCount.get());
+    }
+
+    private Put newPut(int row) {
+        return new Put(Bytes.toBytes(row));
+    }
+}
@@ -29,6 +29,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import com.navercorp.pinpoint.collector.dao.AgentStatDao;
+import com.navercorp.pinpoint.collector.dao.AgentStatRollupDao;
 import com.navercorp.pinpoint.collector.handler.AgentStatHandler;
 import com.navercorp.pinpoint.thrift.dto.TAgentInfo;
 import com.navercorp.pinpoint.thrift.dto.TAgentStat;
@@ -44,6 +45,9 @@ public class AgentStatHandlerTest {
     @Mock
     private AgentStatDao agentStatDao;
 
+    @Mock
+    private AgentStatRollupDao agentStatRollupDao;
+
     @InjectMocks
     private AgentStatHandler agentStatHandler = new AgentStatHandler();
 
@@ -62,6 +66,7 @@ public class AgentStatHandlerTest {
         agentStatHandler.handle(agentStat);
         // Then
         verify(agentStatDao).insert(any(TAgentStat.class));
+        verify(agentStatRollupDao).insert(any(TAgentStat.class));
     }
 
     @Test
@@ -74,7 +79,21 @@ public class AgentStatHandlerTest {
         // When
         agentStatHandler.handle(agentStatBatch);
         // Then
+        verify(agentStatDao).insert(anyListOf(TAgentStat.class));
+        verify(agentStatRollupDao, times(numBatches)).insert(any(TAgentStat.class));
+    }
+
+    @Test
+    public void testHandleForTAgentStatBatch_insertError() {
+        // Given
+        final int numBatches = 6;
+        final TAgentStatBatch agentStatBatch = createAgentStatBatch("agentId", Long.MAX_VALUE, numBatches);
+        doThrow(new IllegalArgumentException()).when(agentStatDao).insert(anyListOf(TAgentStat.class));
+        // When
+        agentStatHandler.handle(agentStatBatch);
+        // Then
         verify(agentStatDao, times(numBatches)).insert(any(TAgentStat.class));
+        verify(agentStatRollupDao, times(numBatches)).insert(any(TAgentStat.class));
     }
 
     @Test(expected=IllegalArgumentException.class)
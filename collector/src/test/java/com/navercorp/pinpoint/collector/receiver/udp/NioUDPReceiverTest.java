@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.receiver.udp;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.SocketUtils;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NioUDPReceiverTest {
+
+    private final int PORT = SocketUtils.findAvailableUdpPort(11999);
+
+    @Test
+    public void receive() throws Exception {
+        final int packetCount = 100;
+        final byte[] payload = new byte[] {1, 2, 3, 4, 5};
+
+        final CountDownLatch latch = new CountDownLatch(packetCount);
+        final AtomicInteger mismatch = new AtomicInteger();
+        PacketHandlerFactory<DatagramPacket> packetHandlerFactory = new PacketHandlerFactory<DatagramPacket>() {
+            @Override
+            public PacketHandler<DatagramPacket> createPacketHandler() {
+                return new PacketHandler<DatagramPacket>() {
+                    @Override
+                    public void receive(DatagramPacket packet) {
+                        byte[] received = Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset() + packet.getLength());
+                        if (!Arrays.equals(payload, received) || packet.getSocketAddress() == null) {
+                            mismatch.incrementAndGet();
+                        }
+                        latch.countDown();
+                    }
+                };
+            }
+        };
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        // the buffer pool holds more buffers than packets sent, so nothing is dropped
+        NioUDPReceiver receiver = new NioUDPReceiver("test", packetHandlerFactory, "127.0.0.1", PORT, 1024 * 64, "DEFAULT_EXECUTOR", 2, 128, 1, 8, true);
+        ReflectionTestUtils.setField(receiver, "metricRegistry", metricRegistry);
+        receiver.start();
+        DatagramSocket sender = new DatagramSocket();
+        try {
+            sender.connect(new InetSocketAddress("127.0.0.1", PORT));
+            for (int i = 0; i < packetCount; i++) {
+                sender.send(new DatagramPacket(payload, payload.length));
+            }
+            Assert.assertTrue(latch.await(5000, TimeUnit.MILLISECONDS));
+            Assert.assertEquals(0, mismatch.get());
+            Assert.assertEquals(packetCount, metricRegistry.meter("test-packets").getCount());
+            Assert.assertEquals(0, metricRegistry.counter("test-dropped").getCount());
+        } finally {
+            sender.close();
+            receiver.shutdown();
+        }
+    }
+
+    @Test
+    public void countDroppedAndRejectedSeparately() throws Exception {
+        final int packetCount = 20;
+        final byte[] payload = new byte[] {1, 2, 3, 4, 5};
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        PacketHandlerFactory<DatagramPacket> packetHandlerFactory = new PacketHandlerFactory<DatagramPacket>() {
+            @Override
+            public PacketHandler<DatagramPacket> createPacketHandler() {
+                return new PacketHandler<DatagramPacket>() {
+                    @Override
+                    public void receive(DatagramPacket packet) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        handled.incrementAndGet();
+                    }
+                };
+            }
+        };
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        // one blocked worker, one queued batch and 4 buffers
+        NioUDPReceiver receiver = new NioUDPReceiver("test", packetHandlerFactory, "127.0.0.1", PORT, 1024 * 64, "DEFAULT_EXECUTOR", 1, 1, 1, 2, false);
+        ReflectionTestUtils.setField(receiver, "metricRegistry", metricRegistry);
+        receiver.start();
+        DatagramSocket sender = new DatagramSocket();
+        try {
+            sender.connect(new InetSocketAddress("127.0.0.1", PORT));
+            for (int i = 0; i < packetCount; i++) {
+                sender.send(new DatagramPacket(payload, payload.length));
+            }
+            final Meter packets = metricRegistry.meter("test-packets");
+            final Counter dropped = metricRegistry.counter("test-dropped");
+            final Counter rejected = metricRegistry.counter("test-rejected");
+            awaitCount(packets, packetCount);
+            release.countDown();
+
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (handled.get() + dropped.getCount() + rejected.getCount() < packetCount && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(packetCount, handled.get() + dropped.getCount() + rejected.getCount());
+            Assert.assertTrue(dropped.getCount() + rejected.getCount() > 0);
+        } finally {
+            release.countDown();
+            sender.close();
+            receiver.shutdown();
+        }
+    }
+
+    private void awaitCount(Meter meter, long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (meter.getCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, meter.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBatchSize() {
+        new NioUDPReceiver("test", new BaseUDPHandlerFactoryStub(), "127.0.0.1", PORT, 1024, "DEFAULT_EXECUTOR", 1, 10, 1, 0, false);
+    }
+
+    private static class BaseUDPHandlerFactoryStub implements PacketHandlerFactory<DatagramPacket> {
+        @Override
+        public PacketHandler<DatagramPacket> createPacketHandler() {
+            return null;
+        }
+    }
+}
@@ -139,6 +139,29 @@ public class SpanStreamUDPSenderTest {
         }
     }
 
+    @Test
+    public void sendTest_compressed() throws InterruptedException {
+        SpanStreamUdpSender sender = null;
+        try {
+            sender = new SpanStreamUdpSender("127.0.0.1", port, "threadName", 10, 200, SpanStreamUdpSender.SEND_BUFFER_SIZE, SpanStreamUdpSender.DEFAULT_BUFFER_SIZE, true);
+            sender.send(createSpan(10));
+            sender.send(createSpanChunk(10));
+
+            awaitMessageReceived(1, messageHolder, TSpan.class);
+            awaitMessageReceived(1, messageHolder, TSpanChunk.class);
+
+            Assert.assertTrue(sender.getCompressor().getCompressedPacketCount() > 0);
+            Assert.assertTrue(sender.getCompressor().getCompressionRatio() < 1.0);
+
+            List<TBase> tBaseList = messageHolder.getMessageHolder();
+            tBaseList.clear();
+        } finally {
+            if (sender != null) {
+                sender.stop();
+            }
+        }
+    }
+
     private Span createSpan(int spanEventSize) throws InterruptedException {
         AgentInformation agentInformation = new AgentInformation("agentId", "applicationName", 0, 0, "machineName", "127.0.0.1", ServiceType.STAND_ALONE,
                 JvmUtils.getSystemProperty(SystemPropertyKey.JAVA_VERSION), Version.VERSION);
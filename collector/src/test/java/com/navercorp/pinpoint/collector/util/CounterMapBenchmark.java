@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ConcurrentCounterMap} and {@link StripedCounterMap} under 8/32/128 writer threads
+ * while a background thread flushes every second like {@code AutoFlusher}.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.navercorp.pinpoint.collector.util.CounterMapBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CounterMapBenchmark {
+
+    private static final int KEY_SIZE = 1024;
+
+    @State(Scope.Benchmark)
+    public static class CounterMapState {
+        final String[] keys = new String[KEY_SIZE];
+        final ConcurrentCounterMap<String> concurrentCounterMap = new ConcurrentCounterMap<>();
+        final StripedCounterMap<String> stripedCounterMap = new StripedCounterMap<>();
+        ScheduledExecutorService flusher;
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = "application-" + i;
+            }
+            flusher = Executors.newSingleThreadScheduledExecutor();
+            flusher.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    concurrentCounterMap.remove();
+                    stripedCounterMap.remove();
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+        }
+
+        @TearDown
+        public void tearDown() {
+            flusher.shutdownNow();
+        }
+
+        String nextKey() {
+            return keys[ThreadLocalRandom.current().nextInt(KEY_SIZE)];
+        }
+    }
+
+    @Benchmark
+    public void concurrentCounterMap(CounterMapState state) {
+        state.concurrentCounterMap.increment(state.nextKey(), 1L);
+    }
+
+    @Benchmark
+    public void stripedCounterMap(CounterMapState state) {
+        state.stripedCounterMap.increment(state.nextKey(), 1L);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : new int[] {8, 32, 128}) {
+            Options options = new OptionsBuilder()
+                    .include(CounterMapBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.pinpoint.collector.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class FixedObjectPoolTest {
+
+    @Test
+    public void getObject() {
+        FixedObjectPool<ByteBuffer> pool = new FixedObjectPool<>(new ByteBufferFactory(16), 2);
+
+        PooledObject<ByteBuffer> first = pool.getObject();
+        PooledObject<ByteBuffer> second = pool.getObject();
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertNull(pool.getObject());
+
+        first.getObject().put((byte) 1);
+        first.returnObject();
+        Assert.assertEquals(1, pool.size());
+
+        PooledObject<ByteBuffer> reused = pool.getObject();
+        Assert.assertSame(first.getObject(), reused.getObject());
+        Assert.assertEquals(0, reused.getObject().position());
+        Assert.assertNull(pool.getObject());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSize() {
+        new FixedObjectPool<>(new ByteBufferFactory(16), 0);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.collector.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class StripedCounterMapTest {
+
+    @Test
+    public void testIncrement() throws Exception {
+        StripedCounterMap<String> cache = new StripedCounterMap<>();
+        cache.increment("a", 1L);
+        cache.increment("a", 2L);
+        cache.increment("b", 5L);
+
+        Map<String, ConcurrentCounterMap.LongAdder> remove = cache.remove();
+        Assert.assertEquals(3L, remove.get("a").get());
+        Assert.assertEquals(5L, remove.get("b").get());
+
+        cache.increment("a", 1L);
+        Map<String, ConcurrentCounterMap.LongAdder> remove2 = cache.remove();
+        Assert.assertEquals(1L, remove2.get("a").get());
+        Assert.assertNull(remove2.get("b"));
+
+        Assert.assertTrue(cache.remove().isEmpty());
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        StripedCounterMap<Integer> cache = new StripedCounterMap<>(1);
+        final int keySize = 10000;
+        for (int i = 0; i < keySize; i++) {
+            cache.increment(i, 1L);
+            cache.increment(i, 1L);
+        }
+        Map<Integer, ConcurrentCounterMap.LongAdder> remove = cache.remove();
+        Assert.assertEquals(keySize, remove.size());
+        for (ConcurrentCounterMap.LongAdder longAdder : remove.values()) {
+            Assert.assertEquals(2L, longAdder.get());
+        }
+    }
+
+    @Test
+    public void testConcurrentIncrementAndRemove() throws Exception {
+        final StripedCounterMap<String> cache = new StripedCounterMap<>(4);
+        final int threadSize = 8;
+        final int incrementCount = 100000;
+        final String[] keys = {"a", "b", "c"};
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadSize);
+        final CountDownLatch latch = new CountDownLatch(threadSize);
+        for (int i = 0; i < threadSize; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < incrementCount; j++) {
+                        cache.increment(keys[j % keys.length], 1L);
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+
+        long total = 0;
+        while (latch.getCount() != 0) {
+            total += sum(cache.remove());
+        }
+        total += sum(cache.remove());
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals((long) threadSize * incrementCount, total);
+    }
+
+    private long sum(Map<String, ConcurrentCounterMap.LongAdder> map) {
+        long sum = 0;
+        for (ConcurrentCounterMap.LongAdder longAdder : map.values()) {
+            sum += longAdder.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.common.hbase;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sematext.hbase.wd.AbstractRowKeyDistributor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Scan;
+
+import java.util.List;
+
+/**
+ * Read operations of {@link HbaseOperations2} that return immediately,
+ * so that a caller can issue several round trips at once and wait for all of them afterwards.
+ * Use {@link HbaseFutures#getResult(java.util.concurrent.Future)} to wait for a result with the exceptions of {@link HbaseOperations2}.
+ */
+public interface AsyncHbaseOperations {
+
+    <T> ListenableFuture<T> get(TableName tableName, Get get, RowMapper<T> mapper);
+
+    <T> ListenableFuture<List<T>> get(TableName tableName, List<Get> getList, RowMapper<T> mapper);
+
+    <T> ListenableFuture<T> find(TableName tableName, Scan scan, ResultsExtractor<T> action);
+
+    <T> ListenableFuture<List<T>> find(TableName tableName, Scan scan, RowMapper<T> action);
+
+    /**
+     * Runs {@link HbaseOperations2#findParallel(TableName, Scan, AbstractRowKeyDistributor, ResultsExtractor, int)} asynchronously.
+     * The buckets are scanned by the parallel scanner of the underlying {@link HbaseOperations2}, never by the executor of this operations.
+     */
+    <T> ListenableFuture<T> findParallel(TableName tableName, Scan scan, AbstractRowKeyDistributor rowKeyDistributor, ResultsExtractor<T> action, int numParallelThreads);
+}
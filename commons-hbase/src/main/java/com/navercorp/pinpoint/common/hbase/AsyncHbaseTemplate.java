@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.common.hbase;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sematext.hbase.wd.AbstractRowKeyDistributor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Scan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link AsyncHbaseOperations} running the blocking calls of {@link HbaseOperations2} on a shared executor.
+ * The hbase 1.x client has no non-blocking api, so the executor bounds the number of round trips in flight for the whole web,
+ * instead of each feature keeping a thread pool of its own.
+ * Calls rejected by the executor run on the calling thread.
+ * <p>
+ * Tasks submitted here must not wait for other tasks of the same executor.
+ */
+public class AsyncHbaseTemplate implements AsyncHbaseOperations {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final HbaseOperations2 hbaseOperations;
+
+    private final ListeningExecutorService executor;
+
+    public AsyncHbaseTemplate(HbaseOperations2 hbaseOperations, ExecutorService executor) {
+        if (hbaseOperations == null) {
+            throw new NullPointerException("hbaseOperations must not be null");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor must not be null");
+        }
+        this.hbaseOperations = hbaseOperations;
+        this.executor = MoreExecutors.listeningDecorator(executor);
+    }
+
+    @Override
+    public <T> ListenableFuture<T> get(final TableName tableName, final Get get, final RowMapper<T> mapper) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return hbaseOperations.get(tableName, get, mapper);
+            }
+        });
+    }
+
+    @Override
+    public <T> ListenableFuture<List<T>> get(final TableName tableName, final List<Get> getList, final RowMapper<T> mapper) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                return hbaseOperations.get(tableName, getList, mapper);
+            }
+        });
+    }
+
+    @Override
+    public <T> ListenableFuture<T> find(final TableName tableName, final Scan scan, final ResultsExtractor<T> action) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return hbaseOperations.find(tableName, scan, action);
+            }
+        });
+    }
+
+    @Override
+    public <T> ListenableFuture<List<T>> find(final TableName tableName, final Scan scan, final RowMapper<T> action) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                return hbaseOperations.find(tableName, scan, action);
+            }
+        });
+    }
+
+    @Override
+    public <T> ListenableFuture<T> findParallel(final TableName tableName, final Scan scan, final AbstractRowKeyDistributor rowKeyDistributor, final ResultsExtractor<T> action, final int numParallelThreads) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return hbaseOperations.findParallel(tableName, scan, rowKeyDistributor, action, numParallelThreads);
+            }
+        });
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> callable) {
+        try {
+            return executor.submit(callable);
+        } catch (RejectedExecutionException e) {
+            logger.debug("hbase task rejected. run on the calling thread. task:{}", callable);
+            try {
+                return Futures.immediateFuture(callable.call());
+            } catch (Exception callException) {
+                return Futures.immediateFailedFuture(callException);
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@ public final class HBaseTables {
     public static final TableName AGENT_STAT = TableName.valueOf("AgentStat");
     public static final TableName AGENT_STAT_AGGR = TableName.valueOf("AgentStatAggr");
     public static final byte[] AGENT_STAT_CF_STATISTICS = Bytes.toBytes("S"); // agent statistics column family
+    public static final byte[] AGENT_STAT_AGGR_CF_HOURLY = Bytes.toBytes("H"); // hourly rollup column family of AgentStatAggr
     // FIXME (2014.08) Legacy column for storing serialzied TAgentStat Thrift DTO.
     @Deprecated public static final byte[] AGENT_STAT_CF_STATISTICS_V1 = Bytes.toBytes("V1"); // qualifier
     // FIXME (2015.10) Legacy column for storing serialzied Bos separately.
@@ -57,6 +58,16 @@ public final class HBaseTables {
     public static final byte[] AGENT_STAT_COL_TRANSACTION_UNSAMPLED_NEW = Bytes.toBytes("tUnSN"); // qualifier for unsampled new count
     public static final byte[] AGENT_STAT_COL_TRANSACTION_UNSAMPLED_CONTINUATION = Bytes.toBytes("tUnSC"); // qualifier for unsampled continuation count
     public static final byte[] AGENT_STAT_COL_ACTIVE_TRACE_HISTOGRAM = Bytes.toBytes("aH"); // qualifier for active trace histogram
+    public static final byte[] AGENT_STAT_COL_STAT_BLOCK = Bytes.toBytes("blk"); // qualifier for delta encoded block of agent stats
+    public static final byte[] AGENT_STAT_COL_SAMPLE_COUNT = Bytes.toBytes("cnt"); // qualifier for number of rolled up samples
+    public static final byte[] AGENT_STAT_COL_HEAP_USED_MIN = Bytes.toBytes("hpUMin"); // qualifier for rolled up heap used min
+    public static final byte[] AGENT_STAT_COL_HEAP_USED_MAX = Bytes.toBytes("hpUMax"); // qualifier for rolled up heap used max
+    public static final byte[] AGENT_STAT_COL_NON_HEAP_USED_MIN = Bytes.toBytes("nHpUMin"); // qualifier for rolled up non-heap used min
+    public static final byte[] AGENT_STAT_COL_NON_HEAP_USED_MAX = Bytes.toBytes("nHpUMax"); // qualifier for rolled up non-heap used max
+    public static final byte[] AGENT_STAT_COL_JVM_CPU_MIN = Bytes.toBytes("jvmCpuMin"); // qualifier for rolled up JVM CPU usage min
+    public static final byte[] AGENT_STAT_COL_JVM_CPU_MAX = Bytes.toBytes("jvmCpuMax"); // qualifier for rolled up JVM CPU usage max
+    public static final byte[] AGENT_STAT_COL_SYS_CPU_MIN = Bytes.toBytes("sysCpuMin"); // qualifier for rolled up system CPU usage min
+    public static final byte[] AGENT_STAT_COL_SYS_CPU_MAX = Bytes.toBytes("sysCpuMax"); // qualifier for rolled up system CPU usage max
     public static final int AGENT_STAT_ROW_DISTRIBUTE_SIZE = 1; // agent statistics hash size
 
     @Deprecated
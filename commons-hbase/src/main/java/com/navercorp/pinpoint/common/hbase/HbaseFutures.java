@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.common.hbase;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Waits for the futures of {@link AsyncHbaseOperations}.
+ */
+public final class HbaseFutures {
+
+    private HbaseFutures() {
+    }
+
+    /**
+     * Unchecked exceptions are rethrown as is, other failures are wrapped in {@link HbaseSystemException}
+     * like the synchronous {@link HbaseOperations2} does.
+     */
+    public static <T> T getResult(Future<T> future) {
+        if (future == null) {
+            throw new NullPointerException("future must not be null");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HBaseAccessException("interrupted while waiting for hbase", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new HbaseSystemException((Exception) cause);
+        }
+    }
+}
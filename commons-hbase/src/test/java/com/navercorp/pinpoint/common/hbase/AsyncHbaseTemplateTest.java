@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.common.hbase;
+
+import static org.mockito.Mockito.*;
+
+import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AsyncHbaseTemplateTest {
+
+    private static final TableName TABLE_NAME = TableName.valueOf("test");
+
+    private final RowKeyDistributorByHashPrefix rowKeyDistributor = new RowKeyDistributorByHashPrefix(new RowKeyDistributorByHashPrefix.OneByteSimpleHash(4));
+
+    private final RowMapper<String> originalKeyMapper = new RowMapper<String>() {
+        @Override
+        public String mapRow(Result result, int rowNum) throws Exception {
+            return Bytes.toString(rowKeyDistributor.getOriginalKey(result.getRow()));
+        }
+    };
+
+    private ExecutorService executor;
+
+    private HbaseOperations2 hbaseOperations;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        hbaseOperations = mock(HbaseOperations2.class);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void get() {
+        final Get get = new Get(Bytes.toBytes("row"));
+        when(hbaseOperations.get(TABLE_NAME, get, originalKeyMapper)).thenReturn("value");
+
+        AsyncHbaseTemplate asyncTemplate = new AsyncHbaseTemplate(hbaseOperations, executor);
+        Future<String> future = asyncTemplate.get(TABLE_NAME, get, originalKeyMapper);
+
+        Assert.assertEquals("value", HbaseFutures.getResult(future));
+    }
+
+    @Test
+    public void rejectedTaskRunsOnCallingThread() {
+        final Get get = new Get(Bytes.toBytes("row"));
+        when(hbaseOperations.get(TABLE_NAME, get, originalKeyMapper)).thenReturn("value");
+        executor.shutdown();
+
+        AsyncHbaseTemplate asyncTemplate = new AsyncHbaseTemplate(hbaseOperations, executor);
+        Future<String> future = asyncTemplate.get(TABLE_NAME, get, originalKeyMapper);
+
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals("value", HbaseFutures.getResult(future));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failure() {
+        final Get get = new Get(Bytes.toBytes("row"));
+        when(hbaseOperations.get(TABLE_NAME, get, originalKeyMapper)).thenThrow(new IllegalStateException("test"));
+
+        AsyncHbaseTemplate asyncTemplate = new AsyncHbaseTemplate(hbaseOperations, executor);
+        HbaseFutures.getResult(asyncTemplate.get(TABLE_NAME, get, originalKeyMapper));
+    }
+
+    @Test
+    public void findParallel() {
+        final Scan scan = new Scan();
+        final ResultsExtractor<String> resultsExtractor = new ResultsExtractor<String>() {
+            @Override
+            public String extractData(ResultScanner results) throws Exception {
+                return "rows";
+            }
+        };
+        when(hbaseOperations.findParallel(TABLE_NAME, scan, rowKeyDistributor, resultsExtractor, 4)).thenReturn("rows");
+
+        AsyncHbaseTemplate asyncTemplate = new AsyncHbaseTemplate(hbaseOperations, executor);
+        Future<String> future = asyncTemplate.findParallel(TABLE_NAME, scan, rowKeyDistributor, resultsExtractor, 4);
+
+        Assert.assertEquals("rows", HbaseFutures.getResult(future));
+        verify(hbaseOperations).findParallel(TABLE_NAME, scan, rowKeyDistributor, resultsExtractor, 4);
+    }
+}
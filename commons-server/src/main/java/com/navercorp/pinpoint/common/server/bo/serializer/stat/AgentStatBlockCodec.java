@@ -0,0 +1,351 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.common.server.bo.serializer.stat;
+
+import com.navercorp.pinpoint.common.buffer.AutomaticBuffer;
+import com.navercorp.pinpoint.common.buffer.Buffer;
+import com.navercorp.pinpoint.common.buffer.FixedBuffer;
+import com.navercorp.pinpoint.thrift.dto.TActiveTrace;
+import com.navercorp.pinpoint.thrift.dto.TActiveTraceHistogram;
+import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.navercorp.pinpoint.thrift.dto.TCpuLoad;
+import com.navercorp.pinpoint.thrift.dto.TJvmGc;
+import com.navercorp.pinpoint.thrift.dto.TJvmGcType;
+import com.navercorp.pinpoint.thrift.dto.TTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the agent stats of one agent into a single column value, column by column.
+ * <ul>
+ *     <li>timestamps : first value, first delta, then delta of delta</li>
+ *     <li>gc counters, memory : delta from the previous sample</li>
+ *     <li>cpu load : fixed point with {@link #CPU_LOAD_SCALE}, delta from the previous sample</li>
+ *     <li>transaction and active trace counts : as is</li>
+ * </ul>
+ * All values are written with the variable length encoding of {@link Buffer}.
+ * Samples must be sorted by timestamp and must not span more than {@link #MAX_BLOCK_SPAN},
+ * so that readers can find every block of a range by scanning from {@code from - MAX_BLOCK_SPAN}.
+ */
+public class AgentStatBlockCodec {
+
+    public static final long MAX_BLOCK_SPAN = TimeUnit.MINUTES.toMillis(5);
+
+    private static final byte VERSION = 0;
+
+    // cpu load is a ratio, 4 decimal places (0.01%) are kept
+    static final double CPU_LOAD_SCALE = 10000;
+
+    private static final int GC = 1;
+    private static final int JVM_CPU_LOAD = 1 << 1;
+    private static final int SYSTEM_CPU_LOAD = 1 << 2;
+    private static final int TRANSACTION = 1 << 3;
+    private static final int ACTIVE_TRACE = 1 << 4;
+
+    public byte[] encode(List<TAgentStat> agentStatList) {
+        if (agentStatList == null) {
+            throw new NullPointerException("agentStatList must not be null");
+        }
+        if (agentStatList.isEmpty()) {
+            throw new IllegalArgumentException("agentStatList must not be empty");
+        }
+        final int size = agentStatList.size();
+        final TAgentStat first = agentStatList.get(0);
+        final TAgentStat last = agentStatList.get(size - 1);
+        if (last.getTimestamp() - first.getTimestamp() >= MAX_BLOCK_SPAN) {
+            throw new IllegalArgumentException("agentStatList span exceeds " + MAX_BLOCK_SPAN + "ms");
+        }
+
+        final Buffer buffer = new AutomaticBuffer(16 * size);
+        buffer.putByte(VERSION);
+        buffer.putVInt(size);
+        buffer.putVLong(first.getStartTimestamp());
+
+        // timestamp
+        long prevTimestamp = 0;
+        long prevDelta = 0;
+        for (int i = 0; i < size; i++) {
+            final long timestamp = agentStatList.get(i).getTimestamp();
+            if (i == 0) {
+                buffer.putVLong(timestamp);
+            } else {
+                final long delta = timestamp - prevTimestamp;
+                if (delta < 0) {
+                    throw new IllegalArgumentException("agentStatList must be sorted by timestamp");
+                }
+                buffer.putSVLong(delta - prevDelta);
+                prevDelta = delta;
+            }
+            prevTimestamp = timestamp;
+        }
+
+        long prevCollectInterval = 0;
+        final List<TJvmGc> gcList = new ArrayList<TJvmGc>(size);
+        final List<TCpuLoad> cpuLoadList = new ArrayList<TCpuLoad>(size);
+        final List<TTransaction> transactionList = new ArrayList<TTransaction>(size);
+        final List<TActiveTraceHistogram> histogramList = new ArrayList<TActiveTraceHistogram>(size);
+        for (TAgentStat agentStat : agentStatList) {
+            buffer.putSVLong(agentStat.getCollectInterval() - prevCollectInterval);
+            prevCollectInterval = agentStat.getCollectInterval();
+
+            int flag = 0;
+            if (agentStat.isSetGc()) {
+                flag |= GC;
+                gcList.add(agentStat.getGc());
+            }
+            if (agentStat.isSetCpuLoad()) {
+                final TCpuLoad cpuLoad = agentStat.getCpuLoad();
+                if (cpuLoad.isSetJvmCpuLoad()) {
+                    flag |= JVM_CPU_LOAD;
+                }
+                if (cpuLoad.isSetSystemCpuLoad()) {
+                    flag |= SYSTEM_CPU_LOAD;
+                }
+                cpuLoadList.add(cpuLoad);
+            }
+            if (agentStat.isSetTransaction()) {
+                flag |= TRANSACTION;
+                transactionList.add(agentStat.getTransaction());
+            }
+            if (agentStat.isSetActiveTrace() && agentStat.getActiveTrace().isSetHistogram()) {
+                flag |= ACTIVE_TRACE;
+                histogramList.add(agentStat.getActiveTrace().getHistogram());
+            }
+            buffer.putByte((byte) flag);
+        }
+
+        encodeGc(buffer, gcList);
+        encodeCpuLoad(buffer, cpuLoadList);
+        encodeTransaction(buffer, transactionList);
+        encodeActiveTrace(buffer, histogramList);
+        return buffer.getBuffer();
+    }
+
+    private void encodeGc(Buffer buffer, List<TJvmGc> gcList) {
+        for (TJvmGc gc : gcList) {
+            final TJvmGcType type = gc.getType();
+            buffer.putVInt(type == null ? TJvmGcType.UNKNOWN.getValue() : type.getValue());
+        }
+        long prevOldCount = 0;
+        long prevOldTime = 0;
+        for (TJvmGc gc : gcList) {
+            buffer.putSVLong(gc.getJvmGcOldCount() - prevOldCount);
+            prevOldCount = gc.getJvmGcOldCount();
+            buffer.putSVLong(gc.getJvmGcOldTime() - prevOldTime);
+            prevOldTime = gc.getJvmGcOldTime();
+        }
+        long prevHeapUsed = 0;
+        long prevHeapMax = 0;
+        long prevNonHeapUsed = 0;
+        long prevNonHeapMax = 0;
+        for (TJvmGc gc : gcList) {
+            buffer.putSVLong(gc.getJvmMemoryHeapUsed() - prevHeapUsed);
+            prevHeapUsed = gc.getJvmMemoryHeapUsed();
+            buffer.putSVLong(gc.getJvmMemoryHeapMax() - prevHeapMax);
+            prevHeapMax = gc.getJvmMemoryHeapMax();
+            buffer.putSVLong(gc.getJvmMemoryNonHeapUsed() - prevNonHeapUsed);
+            prevNonHeapUsed = gc.getJvmMemoryNonHeapUsed();
+            buffer.putSVLong(gc.getJvmMemoryNonHeapMax() - prevNonHeapMax);
+            prevNonHeapMax = gc.getJvmMemoryNonHeapMax();
+        }
+    }
+
+    private void encodeCpuLoad(Buffer buffer, List<TCpuLoad> cpuLoadList) {
+        long prevJvmCpuLoad = 0;
+        long prevSystemCpuLoad = 0;
+        for (TCpuLoad cpuLoad : cpuLoadList) {
+            if (cpuLoad.isSetJvmCpuLoad()) {
+                final long jvmCpuLoad = toFixedPoint(cpuLoad.getJvmCpuLoad());
+                buffer.putSVLong(jvmCpuLoad - prevJvmCpuLoad);
+                prevJvmCpuLoad = jvmCpuLoad;
+            }
+            if (cpuLoad.isSetSystemCpuLoad()) {
+                final long systemCpuLoad = toFixedPoint(cpuLoad.getSystemCpuLoad());
+                buffer.putSVLong(systemCpuLoad - prevSystemCpuLoad);
+                prevSystemCpuLoad = systemCpuLoad;
+            }
+        }
+    }
+
+    private long toFixedPoint(double cpuLoad) {
+        return Math.round(cpuLoad * CPU_LOAD_SCALE);
+    }
+
+    private void encodeTransaction(Buffer buffer, List<TTransaction> transactionList) {
+        for (TTransaction transaction : transactionList) {
+            buffer.putVLong(transaction.getSampledNewCount());
+            buffer.putVLong(transaction.getSampledContinuationCount());
+            buffer.putVLong(transaction.getUnsampledNewCount());
+            buffer.putVLong(transaction.getUnsampledContinuationCount());
+        }
+    }
+
+    private void encodeActiveTrace(Buffer buffer, List<TActiveTraceHistogram> histogramList) {
+        for (TActiveTraceHistogram histogram : histogramList) {
+            buffer.putVInt(histogram.getVersion());
+            buffer.putVInt(histogram.getHistogramSchemaType());
+            final List<Integer> activeTraceCount = histogram.getActiveTraceCount();
+            if (activeTraceCount == null) {
+                buffer.putVInt(0);
+                continue;
+            }
+            buffer.putVInt(activeTraceCount.size());
+            for (Integer count : activeTraceCount) {
+                buffer.putVInt(count == null ? 0 : count);
+            }
+        }
+    }
+
+    public List<TAgentStat> decode(String agentId, byte[] value) {
+        if (agentId == null) {
+            throw new NullPointerException("agentId must not be null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value must not be null");
+        }
+        final Buffer buffer = new FixedBuffer(value);
+        final byte version = buffer.readByte();
+        if (version != VERSION) {
+            throw new IllegalStateException("unknown agent stat block version:" + version);
+        }
+        final int size = buffer.readVInt();
+        final long startTimestamp = buffer.readVLong();
+
+        final List<TAgentStat> agentStatList = new ArrayList<TAgentStat>(size);
+        long timestamp = 0;
+        long delta = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                timestamp = buffer.readVLong();
+            } else {
+                delta += buffer.readSVLong();
+                timestamp += delta;
+            }
+            final TAgentStat agentStat = new TAgentStat();
+            agentStat.setAgentId(agentId);
+            agentStat.setStartTimestamp(startTimestamp);
+            agentStat.setTimestamp(timestamp);
+            agentStatList.add(agentStat);
+        }
+
+        long collectInterval = 0;
+        final int[] flags = new int[size];
+        for (int i = 0; i < size; i++) {
+            collectInterval += buffer.readSVLong();
+            agentStatList.get(i).setCollectInterval(collectInterval);
+            flags[i] = buffer.readByte();
+        }
+
+        decodeGc(buffer, agentStatList, flags);
+        decodeCpuLoad(buffer, agentStatList, flags);
+        decodeTransaction(buffer, agentStatList, flags);
+        decodeActiveTrace(buffer, agentStatList, flags);
+        return agentStatList;
+    }
+
+    private void decodeGc(Buffer buffer, List<TAgentStat> agentStatList, int[] flags) {
+        final List<TJvmGc> gcList = new ArrayList<TJvmGc>(agentStatList.size());
+        for (int i = 0; i < flags.length; i++) {
+            if ((flags[i] & GC) != 0) {
+                final TJvmGc gc = new TJvmGc();
+                final TJvmGcType type = TJvmGcType.findByValue(buffer.readVInt());
+                gc.setType(type == null ? TJvmGcType.UNKNOWN : type);
+                agentStatList.get(i).setGc(gc);
+                gcList.add(gc);
+            }
+        }
+        long oldCount = 0;
+        long oldTime = 0;
+        for (TJvmGc gc : gcList) {
+            oldCount += buffer.readSVLong();
+            gc.setJvmGcOldCount(oldCount);
+            oldTime += buffer.readSVLong();
+            gc.setJvmGcOldTime(oldTime);
+        }
+        long heapUsed = 0;
+        long heapMax = 0;
+        long nonHeapUsed = 0;
+        long nonHeapMax = 0;
+        for (TJvmGc gc : gcList) {
+            heapUsed += buffer.readSVLong();
+            gc.setJvmMemoryHeapUsed(heapUsed);
+            heapMax += buffer.readSVLong();
+            gc.setJvmMemoryHeapMax(heapMax);
+            nonHeapUsed += buffer.readSVLong();
+            gc.setJvmMemoryNonHeapUsed(nonHeapUsed);
+            nonHeapMax += buffer.readSVLong();
+            gc.setJvmMemoryNonHeapMax(nonHeapMax);
+        }
+    }
+
+    private void decodeCpuLoad(Buffer buffer, List<TAgentStat> agentStatList, int[] flags) {
+        long jvmCpuLoad = 0;
+        long systemCpuLoad = 0;
+        for (int i = 0; i < flags.length; i++) {
+            final boolean jvmCpuLoadSet = (flags[i] & JVM_CPU_LOAD) != 0;
+            final boolean systemCpuLoadSet = (flags[i] & SYSTEM_CPU_LOAD) != 0;
+            if (!jvmCpuLoadSet && !systemCpuLoadSet) {
+                continue;
+            }
+            final TCpuLoad cpuLoad = new TCpuLoad();
+            if (jvmCpuLoadSet) {
+                jvmCpuLoad += buffer.readSVLong();
+                cpuLoad.setJvmCpuLoad(jvmCpuLoad / CPU_LOAD_SCALE);
+            }
+            if (systemCpuLoadSet) {
+                systemCpuLoad += buffer.readSVLong();
+                cpuLoad.setSystemCpuLoad(systemCpuLoad / CPU_LOAD_SCALE);
+            }
+            agentStatList.get(i).setCpuLoad(cpuLoad);
+        }
+    }
+
+    private void decodeTransaction(Buffer buffer, List<TAgentStat> agentStatList, int[] flags) {
+        for (int i = 0; i < flags.length; i++) {
+            if ((flags[i] & TRANSACTION) != 0) {
+                final TTransaction transaction = new TTransaction();
+                transaction.setSampledNewCount(buffer.readVLong());
+                transaction.setSampledContinuationCount(buffer.readVLong());
+                transaction.setUnsampledNewCount(buffer.readVLong());
+                transaction.setUnsampledContinuationCount(buffer.readVLong());
+                agentStatList.get(i).setTransaction(transaction);
+            }
+        }
+    }
+
+    private void decodeActiveTrace(Buffer buffer, List<TAgentStat> agentStatList, int[] flags) {
+        for (int i = 0; i < flags.length; i++) {
+            if ((flags[i] & ACTIVE_TRACE) != 0) {
+                final TActiveTraceHistogram histogram = new TActiveTraceHistogram();
+                histogram.setVersion((short) buffer.readVInt());
+                histogram.setHistogramSchemaType(buffer.readVInt());
+                final int countSize = buffer.readVInt();
+                final List<Integer> activeTraceCount = new ArrayList<Integer>(countSize);
+                for (int j = 0; j < countSize; j++) {
+                    activeTraceCount.add(buffer.readVInt());
+                }
+                histogram.setActiveTraceCount(activeTraceCount);
+
+                final TActiveTrace activeTrace = new TActiveTrace();
+                activeTrace.setHistogram(histogram);
+                agentStatList.get(i).setActiveTrace(activeTrace);
+            }
+        }
+    }
+}
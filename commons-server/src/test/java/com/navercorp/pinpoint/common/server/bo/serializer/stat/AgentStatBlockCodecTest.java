@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.common.server.bo.serializer.stat;
+
+import com.navercorp.pinpoint.thrift.dto.TActiveTrace;
+import com.navercorp.pinpoint.thrift.dto.TActiveTraceHistogram;
+import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.navercorp.pinpoint.thrift.dto.TCpuLoad;
+import com.navercorp.pinpoint.thrift.dto.TJvmGc;
+import com.navercorp.pinpoint.thrift.dto.TJvmGcType;
+import com.navercorp.pinpoint.thrift.dto.TTransaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class AgentStatBlockCodecTest {
+
+    private static final String AGENT_ID = "agentId";
+    private static final long START_TIMESTAMP = 1460000000000L;
+
+    private final AgentStatBlockCodec codec = new AgentStatBlockCodec();
+
+    private final Random random = new Random();
+
+    @Test
+    public void encodeAndDecode() {
+        final List<TAgentStat> agentStatList = new ArrayList<>();
+        long timestamp = START_TIMESTAMP + 60000;
+        for (int i = 0; i < 6; i++) {
+            // collection jitter
+            timestamp += 5000 + random.nextInt(20);
+            agentStatList.add(createAgentStat(timestamp));
+        }
+
+        final byte[] block = codec.encode(agentStatList);
+        final List<TAgentStat> decoded = codec.decode(AGENT_ID, block);
+
+        Assert.assertEquals(agentStatList, decoded);
+    }
+
+    @Test
+    public void encodeAndDecode_missingColumns() {
+        final TAgentStat full = createAgentStat(START_TIMESTAMP + 5000);
+        final TAgentStat empty = new TAgentStat();
+        empty.setAgentId(AGENT_ID);
+        empty.setStartTimestamp(START_TIMESTAMP);
+        empty.setTimestamp(START_TIMESTAMP + 10000);
+        empty.setCollectInterval(5000);
+        final TAgentStat jvmCpuOnly = new TAgentStat(empty);
+        jvmCpuOnly.setTimestamp(START_TIMESTAMP + 15000);
+        final TCpuLoad cpuLoad = new TCpuLoad();
+        cpuLoad.setJvmCpuLoad(0.5);
+        jvmCpuOnly.setCpuLoad(cpuLoad);
+
+        final List<TAgentStat> agentStatList = Arrays.asList(full, empty, jvmCpuOnly);
+        final List<TAgentStat> decoded = codec.decode(AGENT_ID, codec.encode(agentStatList));
+
+        Assert.assertEquals(agentStatList, decoded);
+        Assert.assertFalse(decoded.get(2).getCpuLoad().isSetSystemCpuLoad());
+    }
+
+    @Test
+    public void blockIsSmallerThanColumns() {
+        final List<TAgentStat> agentStatList = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            agentStatList.add(createAgentStat(START_TIMESTAMP + 5000 * (i + 1)));
+        }
+        final byte[] block = codec.encode(agentStatList);
+        // a v1 row has 15 columns of 8 bytes for each stat, without the cell overhead
+        Assert.assertTrue(block.length < agentStatList.size() * 15 * 8);
+    }
+
+    @Test
+    public void cpuLoadPrecision() {
+        final TAgentStat agentStat = createAgentStat(START_TIMESTAMP + 5000);
+        agentStat.getCpuLoad().setJvmCpuLoad(0.123456789);
+        // not available
+        agentStat.getCpuLoad().setSystemCpuLoad(-1);
+
+        final TCpuLoad decoded = codec.decode(AGENT_ID, codec.encode(Collections.singletonList(agentStat))).get(0).getCpuLoad();
+
+        Assert.assertEquals(0.1235, decoded.getJvmCpuLoad(), 0);
+        Assert.assertEquals(-1, decoded.getSystemCpuLoad(), 0);
+    }
+
+    @Test
+    public void cpuLoadSize() {
+        final List<TAgentStat> agentStatList = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            final TAgentStat agentStat = new TAgentStat();
+            agentStat.setStartTimestamp(START_TIMESTAMP);
+            agentStat.setTimestamp(START_TIMESTAMP + 5000 * (i + 1));
+            final TCpuLoad cpuLoad = new TCpuLoad();
+            cpuLoad.setJvmCpuLoad(random.nextDouble());
+            cpuLoad.setSystemCpuLoad(random.nextDouble());
+            agentStat.setCpuLoad(cpuLoad);
+            agentStatList.add(agentStat);
+        }
+        final byte[] block = codec.encode(agentStatList);
+        // 32 bytes of header, timestamps and flags, at most 3 bytes for each cpu load delta
+        Assert.assertTrue(block.length <= 32 + agentStatList.size() * 2 * 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsorted() {
+        codec.encode(Arrays.asList(createAgentStat(START_TIMESTAMP + 10000), createAgentStat(START_TIMESTAMP + 5000), createAgentStat(START_TIMESTAMP + 20000)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exceedMaxBlockSpan() {
+        codec.encode(Arrays.asList(createAgentStat(START_TIMESTAMP), createAgentStat(START_TIMESTAMP + AgentStatBlockCodec.MAX_BLOCK_SPAN)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void empty() {
+        codec.encode(Collections.<TAgentStat>emptyList());
+    }
+
+    private TAgentStat createAgentStat(long timestamp) {
+        final TAgentStat agentStat = new TAgentStat();
+        agentStat.setAgentId(AGENT_ID);
+        agentStat.setStartTimestamp(START_TIMESTAMP);
+        agentStat.setTimestamp(timestamp);
+        agentStat.setCollectInterval(5000);
+
+        final TJvmGc gc = new TJvmGc();
+        gc.setType(TJvmGcType.CMS);
+        gc.setJvmGcOldCount(10 + random.nextInt(3));
+        gc.setJvmGcOldTime(1000 + random.nextInt(100));
+        gc.setJvmMemoryHeapUsed(512 * 1024 * 1024 + random.nextInt(1024 * 1024));
+        gc.setJvmMemoryHeapMax(1024 * 1024 * 1024);
+        gc.setJvmMemoryNonHeapUsed(64 * 1024 * 1024 + random.nextInt(1024));
+        gc.setJvmMemoryNonHeapMax(-1);
+        agentStat.setGc(gc);
+
+        final TCpuLoad cpuLoad = new TCpuLoad();
+        cpuLoad.setJvmCpuLoad(randomCpuLoad());
+        cpuLoad.setSystemCpuLoad(randomCpuLoad());
+        agentStat.setCpuLoad(cpuLoad);
+
+        final TTransaction transaction = new TTransaction();
+        transaction.setSampledNewCount(random.nextInt(100));
+        transaction.setSampledContinuationCount(random.nextInt(100));
+        transaction.setUnsampledNewCount(random.nextInt(100));
+        transaction.setUnsampledContinuationCount(random.nextInt(100));
+        agentStat.setTransaction(transaction);
+
+        final TActiveTraceHistogram histogram = new TActiveTraceHistogram();
+        histogram.setVersion((short) 0);
+        histogram.setHistogramSchemaType(2);
+        histogram.setActiveTraceCount(Arrays.asList(random.nextInt(10), random.nextInt(10), 0, 1));
+        final TActiveTrace activeTrace = new TActiveTrace();
+        activeTrace.setHistogram(histogram);
+        agentStat.setActiveTrace(activeTrace);
+        return agentStat;
+    }
+
+    private double randomCpuLoad() {
+        // precision kept by the codec
+        return random.nextInt((int) AgentStatBlockCodec.CPU_LOAD_SCALE + 1) / AgentStatBlockCodec.CPU_LOAD_SCALE;
+    }
+}
@@ -28,6 +28,9 @@ import org.slf4j.LoggerFactory;
 import com.navercorp.pinpoint.bootstrap.config.Filter;
 import com.navercorp.pinpoint.bootstrap.instrument.DynamicTransformRequestListener;
 import com.navercorp.pinpoint.profiler.instrument.LegacyProfilerPluginClassInjector;
+import com.navercorp.pinpoint.profiler.instrument.cache.TransformCacheService;
+import com.navercorp.pinpoint.profiler.instrument.cache.TransformSession;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorField;
 import com.navercorp.pinpoint.profiler.instrument.transformer.DebugTransformer;
 import com.navercorp.pinpoint.profiler.instrument.transformer.DefaultTransformerRegistry;
 import com.navercorp.pinpoint.profiler.instrument.transformer.TransformerRegistry;
@@ -54,11 +57,19 @@ public class ClassFileTransformerDispatcher implements ClassFileTransformer, Dyn
 
     private final ClassFileFilter pinpointClassFilter;
     private final ClassFileFilter unmodifiableFilter;
+
+    // null if the transform cache is disabled
+    private final TransformCacheService transformCacheService;
     
     public ClassFileTransformerDispatcher(DefaultAgent agent, List<DefaultProfilerPluginContext> pluginContexts) {
+        this(agent, pluginContexts, null);
+    }
+
+    public ClassFileTransformerDispatcher(DefaultAgent agent, List<DefaultProfilerPluginContext> pluginContexts, TransformCacheService transformCacheService) {
         if (agent == null) {
             throw new NullPointerException("agent must not be null");
         }
+        this.transformCacheService = transformCacheService;
         
         this.globalContext = new DefaultProfilerPluginContext(agent, new LegacyProfilerPluginClassInjector(getClass().getClassLoader()));
         this.debugTargetFilter = agent.getProfilerConfig().getProfilableClassFilter();
@@ -86,7 +97,10 @@ public class ClassFileTransformerDispatcher implements ClassFileTransformer, Dyn
             return null;
         }
 
-        ClassFileTransformer transformer = this.transformerRegistry.findTransformer(jvmClassName);
+        ClassFileTransformer transformer = this.transformerRegistry.findTransformer(jvmClassName, classFileBuffer);
+        if (transformer != null && transformCacheService != null && classBeingRedefined == null) {
+            return transform0(classLoader, jvmClassName, classBeingRedefined, protectionDomain, classFileBuffer, transformer, true);
+        }
         if (transformer == null) {
             // For debug
             // TODO What if a modifier is duplicated?
@@ -102,6 +116,10 @@ public class ClassFileTransformerDispatcher implements ClassFileTransformer, Dyn
     }
 
     private byte[] transform0(ClassLoader classLoader, String jvmClassName, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classFileBuffer, ClassFileTransformer transformer) {
+        return transform0(classLoader, jvmClassName, classBeingRedefined, protectionDomain, classFileBuffer, transformer, false);
+    }
+
+    private byte[] transform0(ClassLoader classLoader, String jvmClassName, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classFileBuffer, ClassFileTransformer transformer, boolean cacheable) {
         final String javaClassName = JavaAssistUtils.jvmNameToJavaName(jvmClassName);
 
         if (isDebug) {
@@ -116,11 +134,25 @@ public class ClassFileTransformerDispatcher implements ClassFileTransformer, Dyn
             final Thread thread = Thread.currentThread();
             final ClassLoader before = getContextClassLoader(thread);
             thread.setContextClassLoader(this.agentClassLoader);
+            final boolean previousRedefining = InterceptorField.setRedefining(classBeingRedefined != null);
             try {
-                return transformer.transform(classLoader, javaClassName, classBeingRedefined, protectionDomain, classFileBuffer);
+                if (cacheable) {
+                    return transformCacheService.transform(transformer, classLoader, javaClassName, protectionDomain, classFileBuffer);
+                }
+                if (transformCacheService == null) {
+                    return transformer.transform(classLoader, javaClassName, classBeingRedefined, protectionDomain, classFileBuffer);
+                }
+                // not cached, so must not take part in the session of a class being transformed on this thread
+                final TransformSession previous = TransformSession.begin(null);
+                try {
+                    return transformer.transform(classLoader, javaClassName, classBeingRedefined, protectionDomain, classFileBuffer);
+                } finally {
+                    TransformSession.end(previous);
+                }
             } finally {
                 // The context class loader have to be recovered even if it was null.
                 thread.setContextClassLoader(before);
+                InterceptorField.setRedefining(previousRedefining);
             }
         } catch (Throwable e) {
             logger.error("Transformer:{} threw an exception. cl:{} ctxCl:{} agentCl:{} Cause:{}",
@@ -19,9 +19,11 @@ package com.navercorp.pinpoint.profiler;
 import com.navercorp.pinpoint.ProductInfo;
 import com.navercorp.pinpoint.bootstrap.Agent;
 import com.navercorp.pinpoint.bootstrap.AgentOption;
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
 import com.navercorp.pinpoint.bootstrap.config.ProfilerConfig;
 import com.navercorp.pinpoint.bootstrap.context.ServerMetaDataHolder;
 import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClassPool;
 import com.navercorp.pinpoint.bootstrap.interceptor.InterceptorInvokerHelper;
 import com.navercorp.pinpoint.bootstrap.logging.PLogger;
 import com.navercorp.pinpoint.bootstrap.logging.PLoggerBinder;
@@ -37,8 +39,10 @@ import com.navercorp.pinpoint.profiler.context.storage.BufferedStorageFactory;
 import com.navercorp.pinpoint.profiler.context.storage.SpanStorageFactory;
 import com.navercorp.pinpoint.profiler.context.storage.StorageFactory;
 import com.navercorp.pinpoint.profiler.instrument.ASMBytecodeDumpService;
+import com.navercorp.pinpoint.profiler.instrument.ASMClassPool;
 import com.navercorp.pinpoint.profiler.instrument.BytecodeDumpTransformer;
 import com.navercorp.pinpoint.profiler.instrument.JavassistClassPool;
+import com.navercorp.pinpoint.profiler.instrument.cache.TransformCacheService;
 import com.navercorp.pinpoint.profiler.interceptor.registry.DefaultInterceptorRegistryBinder;
 import com.navercorp.pinpoint.profiler.interceptor.registry.InterceptorRegistryBinder;
 import com.navercorp.pinpoint.profiler.logging.Slf4jLoggerBinder;
@@ -49,12 +53,21 @@ import com.navercorp.pinpoint.profiler.plugin.ProfilerPluginLoader;
 import com.navercorp.pinpoint.profiler.receiver.CommandDispatcher;
 import com.navercorp.pinpoint.profiler.receiver.service.ActiveThreadService;
 import com.navercorp.pinpoint.profiler.receiver.service.EchoService;
+import com.navercorp.pinpoint.profiler.receiver.service.SamplingRateService;
 import com.navercorp.pinpoint.profiler.receiver.service.ThreadDumpService;
+import com.navercorp.pinpoint.profiler.sampler.AdaptiveSampler;
 import com.navercorp.pinpoint.profiler.sampler.SamplerFactory;
+import com.navercorp.pinpoint.profiler.sampler.TailSampler;
+import com.navercorp.pinpoint.profiler.sender.AsyncQueueType;
+import com.navercorp.pinpoint.profiler.sender.CollectorAvailability;
+import com.navercorp.pinpoint.profiler.sender.ConsistentHashRing;
 import com.navercorp.pinpoint.profiler.sender.DataSender;
 import com.navercorp.pinpoint.profiler.sender.EnhancedDataSender;
+import com.navercorp.pinpoint.profiler.sender.RoutingDataSender;
 import com.navercorp.pinpoint.profiler.sender.TcpDataSender;
 import com.navercorp.pinpoint.profiler.sender.UdpDataSenderFactory;
+import com.navercorp.pinpoint.profiler.sender.spool.FileSpool;
+import com.navercorp.pinpoint.profiler.sender.spool.PacketSpool;
 import com.navercorp.pinpoint.profiler.util.ApplicationServerTypeResolver;
 import com.navercorp.pinpoint.profiler.util.RuntimeMXBeanUtils;
 import com.navercorp.pinpoint.rpc.ClassPreLoader;
@@ -64,8 +77,11 @@ import com.navercorp.pinpoint.rpc.util.ClientFactoryUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -93,6 +109,10 @@ public class DefaultAgent implements Agent {
 
     private PinpointClientFactory clientFactory;
     private PinpointClient client;
+    // ping only connections to the other collectors of profiler.collector.servers
+    private PinpointClientFactory healthCheckClientFactory;
+    private final List<PinpointClient> healthCheckClients = new ArrayList<PinpointClient>();
+    private List<CollectorAvailability> collectorAvailabilities;
     private final EnhancedDataSender tcpDataSender;
 
     private final DataSender statDataSender;
@@ -108,9 +128,10 @@ public class DefaultAgent implements Agent {
     private final ServiceTypeRegistryService serviceTypeRegistryService;
     
     private final Instrumentation instrumentation;
-    private final JavassistClassPool classPool;
+    private final InstrumentClassPool classPool;
     private final DynamicTransformService dynamicTransformService;
     private final List<DefaultProfilerPluginContext> pluginContexts;
+    private final TransformCacheService transformCacheService;
     
 
     static {
@@ -168,7 +189,7 @@ public class DefaultAgent implements Agent {
         this.profilerConfig = agentOption.getProfilerConfig();
         this.instrumentation = agentOption.getInstrumentation();
         this.agentOption = agentOption;
-        this.classPool = new JavassistClassPool(interceptorRegistryBinder, agentOption.getBootStrapCoreJarPath());
+        this.classPool = createClassPool(agentOption);
         
         if (logger.isInfoEnabled()) {
             logger.info("DefaultAgent classLoader:{}", this.getClass().getClassLoader());
@@ -176,7 +197,8 @@ public class DefaultAgent implements Agent {
 
         pluginContexts = loadPlugins(agentOption);
 
-        this.classFileTransformer = new ClassFileTransformerDispatcher(this, pluginContexts);
+        this.transformCacheService = TransformCacheService.create(profilerConfig, agentOption.getPluginJars());
+        this.classFileTransformer = new ClassFileTransformerDispatcher(this, pluginContexts, transformCacheService);
         this.dynamicTransformService = new DynamicTransformService(instrumentation, classFileTransformer);
 
         ClassFileTransformer wrappedTransformer = wrapClassFileTransformer(classFileTransformer);
@@ -246,6 +268,10 @@ public class DefaultAgent implements Agent {
             if (activeTraceLocator != null) {
                 commandDispatcher.registerCommandService(new ActiveThreadService(activeTraceLocator));
             }
+            Sampler sampler = ((DefaultTraceContext) traceContext).getSampler();
+            if (sampler instanceof AdaptiveSampler) {
+                commandDispatcher.registerCommandService(new SamplingRateService((AdaptiveSampler) sampler));
+            }
         }
     }
     
@@ -268,10 +294,23 @@ public class DefaultAgent implements Agent {
         return classFileTransformer;
     }
     
-    public JavassistClassPool getClassPool() {
+    public InstrumentClassPool getClassPool() {
         return classPool;
     }
 
+    private InstrumentClassPool createClassPool(AgentOption agentOption) {
+        final String instrumentEngine = profilerConfig.getProfileInstrumentEngine();
+        if (DefaultProfilerConfig.INSTRUMENT_ENGINE_ASM.equalsIgnoreCase(instrumentEngine)) {
+            logger.info("ASM instrument engine");
+            return new ASMClassPool(interceptorRegistryBinder, agentOption.getBootStrapCoreJarPath(), agentOption.getPluginJars());
+        }
+        if (!DefaultProfilerConfig.INSTRUMENT_ENGINE_JAVASSIST.equalsIgnoreCase(instrumentEngine)) {
+            logger.warn("Unknown instrument engine {}, JAVASSIST is used", instrumentEngine);
+        }
+        logger.info("JAVASSIST instrument engine");
+        return new JavassistClassPool(interceptorRegistryBinder, agentOption.getBootStrapCoreJarPath());
+    }
+
     private void dumpSystemProperties() {
         if (logger.isInfoEnabled()) {
             Properties properties = System.getProperties();
@@ -315,10 +354,13 @@ public class DefaultAgent implements Agent {
 
         final Sampler sampler = createSampler();
         logger.info("SamplerType:{}", sampler);
+
+        final TailSampler tailSampler = createTailSampler();
+        logger.info("TailSampler:{}", tailSampler);
         
         final int jdbcSqlCacheSize = profilerConfig.getJdbcSqlCacheSize();
         final boolean traceActiveThread = profilerConfig.isTraceAgentActiveThread();
-        final DefaultTraceContext traceContext = new DefaultTraceContext(jdbcSqlCacheSize, this.agentInformation, storageFactory, sampler, this.serverMetaDataHolder, traceActiveThread);
+        final DefaultTraceContext traceContext = new DefaultTraceContext(jdbcSqlCacheSize, this.agentInformation, storageFactory, sampler, tailSampler, this.serverMetaDataHolder, traceActiveThread);
         traceContext.setPriorityDataSender(this.tcpDataSender);
         traceContext.setProfilerConfig(profilerConfig);
 
@@ -336,10 +378,22 @@ public class DefaultAgent implements Agent {
 
     private Sampler createSampler() {
         boolean samplingEnable = this.profilerConfig.isSamplingEnable();
+        String samplingType = this.profilerConfig.getSamplingType();
         int samplingRate = this.profilerConfig.getSamplingRate();
+        int tracesPerSecond = this.profilerConfig.getSamplingAdaptiveTracesPerSecond();
 
         SamplerFactory samplerFactory = new SamplerFactory();
-        return samplerFactory.createSampler(samplingEnable, samplingRate);
+        return samplerFactory.createSampler(samplingEnable, samplingType, samplingRate, tracesPerSecond);
+    }
+
+    private TailSampler createTailSampler() {
+        if (!this.profilerConfig.isSamplingEnable() || !this.profilerConfig.isSamplingTailEnable()) {
+            return null;
+        }
+        long latencyThreshold = this.profilerConfig.getSamplingTailLatencyThreshold();
+        int maxSpanEventCount = this.profilerConfig.getSamplingTailMaxSpanEventCount();
+        int bufferSize = this.profilerConfig.getSamplingTailBufferSize();
+        return new TailSampler(latencyThreshold, maxSpanEventCount, bufferSize);
     }
     
     protected ServerMetaDataHolder createServerMetaDataHolder() {
@@ -371,20 +425,145 @@ public class DefaultAgent implements Agent {
 
     protected EnhancedDataSender createTcpDataSender(CommandDispatcher commandDispatcher) {
         this.clientFactory = createPinpointClientFactory(commandDispatcher);
-        this.client = ClientFactoryUtils.createPinpointClient(this.profilerConfig.getCollectorTcpServerIp(), this.profilerConfig.getCollectorTcpServerPort(), clientFactory);
+        String tcpServerIp = this.profilerConfig.getCollectorTcpServerIp();
+        final List<String> collectorServers = getCollectorServers();
+        if (!collectorServers.isEmpty()) {
+            tcpServerIp = collectorServers.get(0);
+        }
+        this.client = ClientFactoryUtils.createPinpointClient(tcpServerIp, this.profilerConfig.getCollectorTcpServerPort(), clientFactory);
         return new TcpDataSender(client);
     }
 
     protected DataSender createUdpStatDataSender(int port, String threadName, int writeQueueSize, int timeout, int sendBufferSize) {
-        UdpDataSenderFactory factory = new UdpDataSenderFactory(this.profilerConfig.getCollectorStatServerIp(), port, threadName, writeQueueSize, timeout, sendBufferSize);
+        final AsyncQueueType queueType = getAsyncQueueType(profilerConfig.getStatDataSenderWriteQueueType());
+        final List<String> collectorServers = getCollectorServers();
+        if (!collectorServers.isEmpty()) {
+            return createRoutingDataSender(collectorServers, "stat", port, threadName, writeQueueSize, timeout, sendBufferSize, queueType, false, false,
+                    profilerConfig.getStatDataSenderSocketType(), profilerConfig.getSpoolStatSize());
+        }
+        PacketSpool packetSpool = createPacketSpool("stat.spool", profilerConfig.getSpoolStatSize(), new PinpointClientAvailability(this.client));
+        UdpDataSenderFactory factory = new UdpDataSenderFactory(this.profilerConfig.getCollectorStatServerIp(), port, threadName, writeQueueSize, timeout, sendBufferSize,
+                queueType, false, packetSpool);
         return factory.create(profilerConfig.getStatDataSenderSocketType());
     }
     
     protected DataSender createUdpSpanDataSender(int port, String threadName, int writeQueueSize, int timeout, int sendBufferSize) {
-        UdpDataSenderFactory factory = new UdpDataSenderFactory(this.profilerConfig.getCollectorSpanServerIp(), port, threadName, writeQueueSize, timeout, sendBufferSize);
+        final AsyncQueueType queueType = getAsyncQueueType(profilerConfig.getSpanDataSenderWriteQueueType());
+        final List<String> collectorServers = getCollectorServers();
+        if (!collectorServers.isEmpty()) {
+            return createRoutingDataSender(collectorServers, "span", port, threadName, writeQueueSize, timeout, sendBufferSize, queueType,
+                    profilerConfig.isSpanDataSenderDirectEncodeEnable(), profilerConfig.isSpanDataSenderStreamCompressEnable(),
+                    profilerConfig.getSpanDataSenderSocketType(), profilerConfig.getSpoolSpanSize());
+        }
+        PacketSpool packetSpool = createPacketSpool("span.spool", profilerConfig.getSpoolSpanSize(), new PinpointClientAvailability(this.client));
+        UdpDataSenderFactory factory = new UdpDataSenderFactory(this.profilerConfig.getCollectorSpanServerIp(), port, threadName, writeQueueSize, timeout, sendBufferSize,
+                queueType, profilerConfig.isSpanDataSenderDirectEncodeEnable(), packetSpool, profilerConfig.isSpanDataSenderStreamCompressEnable());
         return factory.create(profilerConfig.getSpanDataSenderSocketType());
     }
 
+    private AsyncQueueType getAsyncQueueType(String queueType) {
+        for (AsyncQueueType type : AsyncQueueType.values()) {
+            if (type.name().equalsIgnoreCase(queueType)) {
+                return type;
+            }
+        }
+        logger.warn("Unknown write queue type {}, LINKED is used", queueType);
+        return AsyncQueueType.LINKED;
+    }
+
+    private List<String> getCollectorServers() {
+        final List<String> collectorServers = new ArrayList<String>();
+        for (String collectorServer : profilerConfig.getCollectorServers()) {
+            final String host = collectorServer.trim();
+            if (!host.isEmpty()) {
+                collectorServers.add(host);
+            }
+        }
+        return collectorServers;
+    }
+
+    private DataSender createRoutingDataSender(List<String> collectorServers, String name, int port, String threadName, int writeQueueSize, int timeout, int sendBufferSize,
+                                               AsyncQueueType queueType, boolean spanDirectEncode, boolean spanStreamCompress, String socketType, int spoolSize) {
+        final List<CollectorAvailability> collectorAvailabilities = getCollectorAvailabilities(collectorServers);
+        final List<DataSender> dataSenders = new ArrayList<DataSender>(collectorServers.size());
+        for (int i = 0; i < collectorServers.size(); i++) {
+            final CollectorAvailability collectorAvailability = collectorAvailabilities.get(i);
+            PacketSpool packetSpool = createPacketSpool(name + "-" + i + ".spool", spoolSize, collectorAvailability);
+            UdpDataSenderFactory factory = new UdpDataSenderFactory(collectorServers.get(i), port, threadName + "-" + i, writeQueueSize, timeout, sendBufferSize,
+                    queueType, spanDirectEncode, packetSpool, spanStreamCompress);
+            dataSenders.add(factory.create(socketType));
+        }
+        final ConsistentHashRing ring = new ConsistentHashRing(collectorServers);
+        logger.info("{} collectors:{}, {}", name, collectorServers, ring);
+        return new RoutingDataSender(ring, dataSenders, collectorAvailabilities);
+    }
+
+    /**
+     * The main tcp connection goes to the first collector, the others get a ping only connection of their own.
+     */
+    private List<CollectorAvailability> getCollectorAvailabilities(List<String> collectorServers) {
+        if (this.collectorAvailabilities != null) {
+            return this.collectorAvailabilities;
+        }
+        final List<CollectorAvailability> collectorAvailabilities = new ArrayList<CollectorAvailability>(collectorServers.size());
+        collectorAvailabilities.add(new PinpointClientAvailability(this.client));
+        for (int i = 1; i < collectorServers.size(); i++) {
+            if (this.healthCheckClientFactory == null) {
+                this.healthCheckClientFactory = createHealthCheckClientFactory();
+            }
+            PinpointClient healthCheckClient = this.healthCheckClientFactory.scheduledConnect(collectorServers.get(i), this.profilerConfig.getCollectorTcpServerPort());
+            this.healthCheckClients.add(healthCheckClient);
+            collectorAvailabilities.add(new PinpointClientAvailability(healthCheckClient));
+        }
+        this.collectorAvailabilities = collectorAvailabilities;
+        return collectorAvailabilities;
+    }
+
+    private PinpointClientFactory createHealthCheckClientFactory() {
+        PinpointClientFactory pinpointClientFactory = new PinpointClientFactory();
+        pinpointClientFactory.setTimeoutMillis(1000 * 5);
+
+        Map<String, Object> properties = this.agentInformation.toMap();
+        // commands are accepted through the main connection only
+        properties.put(AgentHandshakePropertyType.SUPPORT_SERVER.getName(), false);
+
+        pinpointClientFactory.setProperties(properties);
+        return pinpointClientFactory;
+    }
+
+    private PacketSpool createPacketSpool(String fileName, int size, CollectorAvailability collectorAvailability) {
+        if (!profilerConfig.isSpoolEnable()) {
+            return null;
+        }
+        String spoolDir = profilerConfig.getSpoolDir();
+        if (spoolDir == null || spoolDir.isEmpty()) {
+            spoolDir = System.getProperty("java.io.tmpdir") + File.separator + "pinpoint-spool";
+        }
+        final File spoolFile = new File(new File(spoolDir, agentInformation.getAgentId()), fileName);
+        try {
+            FileSpool fileSpool = new FileSpool(spoolFile, size);
+            return new PacketSpool(fileSpool, collectorAvailability, profilerConfig.getSpoolDrainRate());
+        } catch (IOException e) {
+            logger.warn("Failed to create spool. file:{}, Caused:{}", spoolFile, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static class PinpointClientAvailability implements CollectorAvailability {
+
+        private final PinpointClient client;
+
+        private PinpointClientAvailability(PinpointClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            // udp gives no delivery signal, so the pinged tcp connection to the collector stands for the span and stat ports
+            return client != null && client.isConnected();
+        }
+    }
+
     protected EnhancedDataSender getTcpDataSender() {
         return tcpDataSender;
     }
@@ -448,6 +627,9 @@ public class DefaultAgent implements Agent {
         this.statDataSender.stop();
 
         closeTcpDataSender();
+        if (this.transformCacheService != null) {
+            this.transformCacheService.close();
+        }
         // for testcase
         if (staticResourceCleanup) {
             PLoggerFactory.unregister(this.binder);
@@ -465,6 +647,12 @@ public class DefaultAgent implements Agent {
         if (this.clientFactory != null) {
             this.clientFactory.release();
         }
+        for (PinpointClient healthCheckClient : this.healthCheckClients) {
+            healthCheckClient.close();
+        }
+        if (this.healthCheckClientFactory != null) {
+            this.healthCheckClientFactory.release();
+        }
     }
 
 }
@@ -18,30 +18,54 @@ package com.navercorp.pinpoint.profiler.context;
 
 import com.navercorp.pinpoint.bootstrap.context.Trace;
 
+import java.lang.ref.WeakReference;
+
 /**
+ * Refers to its trace weakly, so that a trace leaked without being detached can still be collected.
+ *
  * @author HyunGil Jeong
  */
-public class ActiveTrace {
-    
-    private final Trace trace;
-    
+public class ActiveTrace extends WeakReference<Trace> {
+
+    private final long id;
+
     public ActiveTrace(Trace trace) {
+        super(checkTrace(trace));
+        this.id = trace.getId();
+    }
+
+    private static Trace checkTrace(Trace trace) {
         if (trace == null) {
             throw new NullPointerException("trace must not be null");
         }
-        this.trace = trace;
+        return trace;
     }
 
     public long getId() {
-        return this.trace.getId();
+        return this.id;
     }
 
     public long getStartTime() {
-        return this.trace.getStartTime();
+        final Trace trace = get();
+        if (trace == null) {
+            return 0;
+        }
+        return trace.getStartTime();
     }
 
     public Thread getBindThread() {
-        return this.trace.getBindThread();
+        final Trace trace = get();
+        if (trace == null) {
+            return null;
+        }
+        return trace.getBindThread();
+    }
+
+    /**
+     * @return true if the trace has been garbage collected without being detached
+     */
+    public boolean isCollected() {
+        return get() == null;
     }
 
 }
@@ -16,6 +16,8 @@
 
 package com.navercorp.pinpoint.profiler.context;
 
+import com.navercorp.pinpoint.profiler.util.Recycler;
+
 import java.util.Arrays;
 
 /**
@@ -23,19 +25,28 @@ import java.util.Arrays;
  * @author emeroad
  * @author jaehong.kim
  */
-public class CallStack {
+public class CallStack implements Recyclable {
     private static final int STACK_SIZE = 8;
     private static final int DEFAULT_INDEX = 0;
 
+    private static final Recycler<CallStack> RECYCLER = new Recycler<CallStack>(32) {
+        @Override
+        protected CallStack newObject(Handle<CallStack> handle) {
+            return new CallStack(handle);
+        }
+    };
+
     private SpanEvent[] stack = new SpanEvent[STACK_SIZE];
 
-    private final Span span;
-    private final int maxDepth;
+    private Span span;
+    private int maxDepth;
     private int index = DEFAULT_INDEX;
     private int overflowIndex = 0;
     private short sequence;
     private int latestStackIndex = 0;
 
+    private final Recycler.Handle<CallStack> handle;
+
     public CallStack(Span span) {
         this(span, -1);
     }
@@ -43,6 +54,40 @@ public class CallStack {
     public CallStack(Span span, int maxDepth) {
         this.span = span;
         this.maxDepth = maxDepth;
+        this.handle = null;
+    }
+
+    private CallStack(Recycler.Handle<CallStack> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * CallStack taken from the pool of the current thread. It goes back to the pool with {@link #recycle()}.
+     */
+    public static CallStack newRecyclableInstance(Span span, int maxDepth) {
+        final CallStack callStack = RECYCLER.get();
+        callStack.span = span;
+        callStack.maxDepth = maxDepth;
+        return callStack;
+    }
+
+    /**
+     * must be called by the owner thread after the trace is closed.
+     */
+    @Override
+    public void recycle() {
+        if (handle == null || span == null) {
+            return;
+        }
+        // grown stack is kept
+        Arrays.fill(stack, 0, Math.min(index, stack.length), null);
+        this.span = null;
+        this.index = DEFAULT_INDEX;
+        this.overflowIndex = 0;
+        this.sequence = 0;
+        this.latestStackIndex = 0;
+
+        handle.recycle(this);
     }
     
     public Span getSpan() {
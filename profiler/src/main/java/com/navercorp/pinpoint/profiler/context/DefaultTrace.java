@@ -41,7 +41,7 @@ public final class DefaultTrace implements Trace {
     private final long id;
     private final TraceId traceId;
 
-    private final CallStack callStack;
+    private CallStack callStack;
 
     private Storage storage;
 
@@ -49,6 +49,10 @@ public final class DefaultTrace implements Trace {
     private final WrappedSpanEventRecorder spanEventRecorder;
     private final DefaultSpanRecorder spanRecorder;
     private boolean closed = false;
+    // SpanEvent and CallStack are taken from the per thread pool and given back after serialization
+    private final boolean recycle;
+    // wrapped instead of a SpanEvent that may go back to the pool, so late records do not reach the SpanEvent of another trace
+    private SpanEvent discardSpanEvent;
 
     private Thread bindThread;
     private final DefaultTraceScopePool scopePool = new DefaultTraceScopePool();
@@ -62,6 +66,8 @@ public final class DefaultTrace implements Trace {
         this.id = this.traceId.getTransactionSequence();
         this.sampling = sampling;
 
+        this.recycle = isRecycleEnable(traceContext.getProfilerConfig());
+
         final Span span = createSpan();
         this.spanRecorder = new DefaultSpanRecorder(traceContext, span, traceId, sampling);
         this.spanRecorder.recordTraceId(traceId);
@@ -82,6 +88,8 @@ public final class DefaultTrace implements Trace {
         this.id = transactionId;
         this.sampling = sampling;
 
+        this.recycle = isRecycleEnable(traceContext.getProfilerConfig());
+
         final Span span = createSpan();
         this.spanRecorder = new DefaultSpanRecorder(traceContext, span, traceId, sampling);
         this.spanRecorder.recordTraceId(traceId);
@@ -90,9 +98,16 @@ public final class DefaultTrace implements Trace {
         setCurrentThread();
     }
 
+    private boolean isRecycleEnable(ProfilerConfig profilerConfig) {
+        return profilerConfig != null && profilerConfig.isIoBufferingEnable() && profilerConfig.isIoBufferingRecycleEnable();
+    }
+
     private CallStack createCallStack(ProfilerConfig profilerConfig, Span span) {
         if (profilerConfig != null) {
             final int maxCallStackDepth = profilerConfig.getCallStackMaxDepth();
+            if (recycle) {
+                return CallStack.newRecyclableInstance(span, maxCallStackDepth);
+            }
             return new CallStack(span, maxCallStackDepth);
         } else {
             return new CallStack(span);
@@ -110,6 +125,14 @@ public final class DefaultTrace implements Trace {
         return span;
     }
 
+    private SpanEvent createSpanEvent() {
+        final Span span = spanRecorder.getSpan();
+        if (recycle) {
+            return SpanEvent.newRecyclableInstance(span);
+        }
+        return new SpanEvent(span);
+    }
+
     private SpanEventRecorder wrappedSpanEventRecorder(SpanEvent spanEvent) {
         final WrappedSpanEventRecorder spanEventRecorder = this.spanEventRecorder;
         spanEventRecorder.setWrapped(spanEvent);
@@ -128,7 +151,7 @@ public final class DefaultTrace implements Trace {
     @Override
     public SpanEventRecorder traceBlockBegin(final int stackId) {
         // Set properties for the case when stackFrame is not used as part of Span.
-        final SpanEvent spanEvent = new SpanEvent(spanRecorder.getSpan());
+        final SpanEvent spanEvent = createSpanEvent();
         spanEvent.markStartTime();
         spanEvent.setStackId(stackId);
 
@@ -180,6 +203,17 @@ public final class DefaultTrace implements Trace {
             spanEvent.markAfterTime();
         }
         logSpan(spanEvent);
+        if (recycle) {
+            // the stored SpanEvent is recycled once the sender has serialized it
+            spanEventRecorder.setWrapped(getDiscardSpanEvent());
+        }
+    }
+
+    private SpanEvent getDiscardSpanEvent() {
+        if (discardSpanEvent == null) {
+            discardSpanEvent = new SpanEvent(spanRecorder.getSpan());
+        }
+        return discardSpanEvent;
     }
 
     @Override
@@ -208,6 +242,16 @@ public final class DefaultTrace implements Trace {
             this.storage.close();
             this.storage = null;
         }
+
+        if (recycle) {
+            spanEventRecorder.setWrapped(getDiscardSpanEvent());
+            // the trace is detached from its storage, a null CallStack fences the accesses after close
+            final CallStack callStack = this.callStack;
+            if (callStack.empty()) {
+                this.callStack = null;
+                callStack.recycle();
+            }
+        }
     }
 
     /**
@@ -283,6 +327,11 @@ public final class DefaultTrace implements Trace {
 
     @Override
     public boolean isRootStack() {
+        final CallStack callStack = this.callStack;
+        if (callStack == null) {
+            // recycled by close()
+            return true;
+        }
         return callStack.empty();
     }
 
@@ -298,6 +347,14 @@ public final class DefaultTrace implements Trace {
 
     @Override
     public SpanEventRecorder currentSpanEventRecorder() {
+        final CallStack callStack = this.callStack;
+        if (callStack == null) {
+            if (isWarn) {
+                PinpointException exception = new PinpointException("already closed trace.");
+                logger.warn("[DefaultTrace] Corrupted call stack found.", exception);
+            }
+            return wrappedSpanEventRecorder(getDiscardSpanEvent());
+        }
         SpanEvent spanEvent = callStack.peek();
         if (spanEvent == null) {
             if (isWarn) {
@@ -313,6 +370,10 @@ public final class DefaultTrace implements Trace {
 
     @Override
     public int getCallStackFrameId() {
+        final CallStack callStack = this.callStack;
+        if (callStack == null) {
+            return ROOT_STACKID;
+        }
         final SpanEvent spanEvent = callStack.peek();
         if(spanEvent == null) {
             return ROOT_STACKID;
@@ -38,6 +38,7 @@ import com.navercorp.pinpoint.profiler.context.storage.StorageFactory;
 import com.navercorp.pinpoint.profiler.metadata.LRUCache;
 import com.navercorp.pinpoint.profiler.metadata.Result;
 import com.navercorp.pinpoint.profiler.metadata.SimpleCache;
+import com.navercorp.pinpoint.profiler.sampler.TailSampler;
 import com.navercorp.pinpoint.profiler.sampler.TrueSampler;
 import com.navercorp.pinpoint.profiler.sender.EnhancedDataSender;
 import com.navercorp.pinpoint.profiler.util.RuntimeMXBeanUtils;
@@ -59,6 +60,8 @@ public class DefaultTraceContext implements TraceContext {
 
     private final TraceFactory traceFactory;
 
+    private final Sampler sampler;
+
     private AgentInformation agentInformation;
 
     private EnhancedDataSender priorityDataSender;
@@ -84,6 +87,13 @@ public class DefaultTraceContext implements TraceContext {
     }
 
     public DefaultTraceContext(final int sqlCacheSize, final AgentInformation agentInformation, StorageFactory storageFactory, Sampler sampler, ServerMetaDataHolder serverMetaDataHolder, final boolean traceActiveThread) {
+        this(sqlCacheSize, agentInformation, storageFactory, sampler, null, serverMetaDataHolder, traceActiveThread);
+    }
+
+    /**
+     * @param tailSampler keeps the slow or failed transactions among the ones the sampler did not sample. may be null
+     */
+    public DefaultTraceContext(final int sqlCacheSize, final AgentInformation agentInformation, StorageFactory storageFactory, Sampler sampler, TailSampler tailSampler, ServerMetaDataHolder serverMetaDataHolder, final boolean traceActiveThread) {
         if (agentInformation == null) {
             throw new NullPointerException("agentInformation must not be null");
         }
@@ -94,17 +104,18 @@ public class DefaultTraceContext implements TraceContext {
             throw new NullPointerException("sampler must not be null");
         }
         this.agentInformation = agentInformation;
+        this.sampler = sampler;
 
         this.cachingSqlNormalizer = new DefaultCachingSqlNormalizer(sqlCacheSize);
 
-        this.traceFactory = createTraceFactory(storageFactory, sampler, traceActiveThread);
+        this.traceFactory = createTraceFactory(storageFactory, sampler, tailSampler, traceActiveThread);
 
         this.serverMetaDataHolder = serverMetaDataHolder;
     }
 
-    private TraceFactory createTraceFactory(StorageFactory storageFactory, Sampler sampler, boolean recordActiveThread) {
+    private TraceFactory createTraceFactory(StorageFactory storageFactory, Sampler sampler, TailSampler tailSampler, boolean recordActiveThread) {
         // TODO extract chain TraceFactory??
-        final TraceFactory threadLocalTraceFactory = new ThreadLocalTraceFactory(this, storageFactory, sampler, this.idGenerator);
+        final TraceFactory threadLocalTraceFactory = new ThreadLocalTraceFactory(this, storageFactory, sampler, tailSampler, this.idGenerator);
         if (recordActiveThread) {
             ActiveTraceFactory activeTraceFactory = (ActiveTraceFactory) ActiveTraceFactory.wrap(threadLocalTraceFactory);
             return activeTraceFactory;
@@ -318,4 +329,8 @@ public class DefaultTraceContext implements TraceContext {
         return this.transactionCounter;
     }
 
+    public Sampler getSampler() {
+        return this.sampler;
+    }
+
 }
@@ -35,11 +35,12 @@ public class DefaultTransactionCounter implements TransactionCounter {
         // overflow improbable
         switch (samplingType) {
         case SAMPLED_NEW:
-            return idGenerator.currentTransactionId() - IdGenerator.INITIAL_TRANSACTION_ID;
+            return idGenerator.currentTransactionId() - IdGenerator.INITIAL_TRANSACTION_ID - idGenerator.currentTailSamplingCandidateCount();
         case SAMPLED_CONTINUATION:
             return Math.abs(idGenerator.currentContinuedTransactionId() - IdGenerator.INITIAL_CONTINUED_TRANSACTION_ID) / IdGenerator.DECREMENT_CYCLE;
         case UNSAMPLED_NEW:
-            return Math.abs(idGenerator.currentDisabledId() - IdGenerator.INITIAL_DISABLED_ID) / IdGenerator.DECREMENT_CYCLE;
+            // tail sampling candidates were not sampled, even if some of them are sent afterwards
+            return Math.abs(idGenerator.currentDisabledId() - IdGenerator.INITIAL_DISABLED_ID) / IdGenerator.DECREMENT_CYCLE + idGenerator.currentTailSamplingCandidateCount();
         case UNSAMPLED_CONTINUATION:
             return Math.abs(idGenerator.currentContinuedDisabledId() - IdGenerator.INITIAL_CONTINUED_DISABLED_ID) / IdGenerator.DECREMENT_CYCLE;
         default:
@@ -51,11 +51,20 @@ public class IdGenerator {
     private final AtomicLong disabledId = new AtomicLong(INITIAL_DISABLED_ID);
     // id generator for unsampled continued traces
     private final AtomicLong continuedDisabledId = new AtomicLong(INITIAL_CONTINUED_DISABLED_ID);
+    // unsampled new traces kept by tail sampling, they take their id from transactionId
+    private final AtomicLong tailSamplingCandidateCount = new AtomicLong();
 
     public long nextTransactionId() {
         return this.transactionId.getAndIncrement();
     }
 
+    public long nextTailSamplingCandidateId() {
+        // transactionId first, so that the sampled new count never goes negative
+        final long transactionId = this.transactionId.getAndIncrement();
+        this.tailSamplingCandidateCount.incrementAndGet();
+        return transactionId;
+    }
+
     public long nextContinuedTransactionId() {
         return this.continuedTransactionId.getAndAdd(NEGATIVE_DECREMENT_CYCLE);
     }
@@ -72,6 +81,10 @@ public class IdGenerator {
         return this.transactionId.get();
     }
 
+    public long currentTailSamplingCandidateCount() {
+        return this.tailSamplingCandidateCount.get();
+    }
+
     public long currentContinuedTransactionId() {
         return this.continuedTransactionId.get();
     }
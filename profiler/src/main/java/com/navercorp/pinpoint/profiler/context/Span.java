@@ -22,6 +22,9 @@ import com.navercorp.pinpoint.bootstrap.context.TraceId;
 import com.navercorp.pinpoint.common.util.TransactionIdUtils;
 import com.navercorp.pinpoint.thrift.dto.TIntStringValue;
 import com.navercorp.pinpoint.thrift.dto.TSpan;
+import com.navercorp.pinpoint.thrift.dto.TSpanEvent;
+
+import java.util.List;
 
 /**
  * Span represent RPC
@@ -29,7 +32,7 @@ import com.navercorp.pinpoint.thrift.dto.TSpan;
  * @author netspider
  * @author emeroad
  */
-public class Span extends TSpan implements FrameAttachment {
+public class Span extends TSpan implements FrameAttachment, Recyclable {
     private boolean timeRecording = true;
     private Object frameObject;
     
@@ -110,6 +113,18 @@ public class Span extends TSpan implements FrameAttachment {
         this.timeRecording = timeRecording;
     }
 
+    /**
+     * recycle the SpanEvents of this span. The span itself is still referenced by its trace.
+     */
+    @Override
+    public void recycle() {
+        final List<TSpanEvent> spanEventList = getSpanEventList();
+        if (spanEventList instanceof Recyclable) {
+            unsetSpanEventList();
+            ((Recyclable) spanEventList).recycle();
+        }
+    }
+
     @Override
     public Object attachFrameObject(Object attachObject) {
         final Object before = this.frameObject;
@@ -17,27 +17,87 @@
 package com.navercorp.pinpoint.profiler.context;
 
 import com.navercorp.pinpoint.bootstrap.context.FrameAttachment;
+import com.navercorp.pinpoint.profiler.util.Recycler;
+import com.navercorp.pinpoint.thrift.dto.TAnnotation;
 import com.navercorp.pinpoint.thrift.dto.TIntStringValue;
 import com.navercorp.pinpoint.thrift.dto.TSpanEvent;
 
+import java.util.List;
+
 /**
  * Span represent RPC
  *
  * @author netspider
  * @author emeroad
  */
-public class SpanEvent extends TSpanEvent implements FrameAttachment {
+public class SpanEvent extends TSpanEvent implements FrameAttachment, Recyclable {
+
+    private static final Recycler<SpanEvent> RECYCLER = new Recycler<SpanEvent>() {
+        @Override
+        protected SpanEvent newObject(Handle<SpanEvent> handle) {
+            return new SpanEvent(handle);
+        }
+    };
 
-    private final Span span;
+    private Span span;
     private int stackId;
     private boolean timeRecording = true;
     private Object frameObject;
 
+    private final Recycler.Handle<SpanEvent> handle;
+    private boolean recycled;
+    // annotation list of the previous use, attached again on the first addAnnotation()
+    private List<TAnnotation> recycledAnnotations;
+
     public SpanEvent(Span span) {
         if (span == null) {
             throw new NullPointerException("span must not be null");
         }
         this.span = span;
+        this.handle = null;
+    }
+
+    private SpanEvent(Recycler.Handle<SpanEvent> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * SpanEvent taken from the pool of the current thread. It goes back to the pool with {@link #recycle()}.
+     */
+    public static SpanEvent newRecyclableInstance(Span span) {
+        if (span == null) {
+            throw new NullPointerException("span must not be null");
+        }
+        final SpanEvent spanEvent = RECYCLER.get();
+        spanEvent.span = span;
+        spanEvent.recycled = false;
+        return spanEvent;
+    }
+
+    // for test
+    public static void clearRecyclableInstances() {
+        RECYCLER.clear();
+    }
+
+    @Override
+    public void recycle() {
+        if (handle == null || recycled) {
+            return;
+        }
+        this.recycled = true;
+
+        final List<TAnnotation> annotations = getAnnotations();
+        clear();
+        if (annotations != null) {
+            annotations.clear();
+            this.recycledAnnotations = annotations;
+        }
+        this.span = null;
+        this.stackId = 0;
+        this.timeRecording = true;
+        this.frameObject = null;
+
+        handle.recycle(this);
     }
 
     public Span getSpan() {
@@ -45,6 +105,12 @@ public class SpanEvent extends TSpanEvent implements FrameAttachment {
     }
 
     public void addAnnotation(Annotation annotation) {
+        if (recycledAnnotations != null) {
+            if (!isSetAnnotations()) {
+                setAnnotations(recycledAnnotations);
+            }
+            this.recycledAnnotations = null;
+        }
         this.addToAnnotations(annotation);
     }
 
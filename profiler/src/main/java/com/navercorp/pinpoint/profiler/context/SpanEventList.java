@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.context;
+
+import com.navercorp.pinpoint.profiler.util.Recycler;
+
+import java.util.ArrayList;
+
+/**
+ * Recyclable span event buffer of {@link com.navercorp.pinpoint.profiler.context.storage.BufferedStorage}.
+ */
+public class SpanEventList extends ArrayList<SpanEvent> implements Recyclable {
+
+    private static final int DEFAULT_CAPACITY = 20;
+
+    private static final Recycler<SpanEventList> RECYCLER = new Recycler<SpanEventList>() {
+        @Override
+        protected SpanEventList newObject(Handle<SpanEventList> handle) {
+            return new SpanEventList(handle);
+        }
+    };
+
+    private final Recycler.Handle<SpanEventList> handle;
+
+    private SpanEventList(Recycler.Handle<SpanEventList> handle) {
+        super(DEFAULT_CAPACITY);
+        this.handle = handle;
+    }
+
+    public static SpanEventList newInstance() {
+        return RECYCLER.get();
+    }
+
+    /**
+     * recycle the SpanEvents and the list itself.
+     */
+    @Override
+    public void recycle() {
+        final int size = size();
+        for (int i = 0; i < size; i++) {
+            get(i).recycle();
+        }
+        clear();
+        handle.recycle(this);
+    }
+}
@@ -17,6 +17,7 @@
 package com.navercorp.pinpoint.profiler.context;
 
 import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
+import com.navercorp.pinpoint.bootstrap.context.SpanId;
 import com.navercorp.pinpoint.bootstrap.context.Trace;
 import com.navercorp.pinpoint.bootstrap.context.TraceContext;
 import com.navercorp.pinpoint.bootstrap.context.TraceId;
@@ -25,6 +26,8 @@ import com.navercorp.pinpoint.exception.PinpointException;
 import com.navercorp.pinpoint.profiler.context.storage.AsyncStorage;
 import com.navercorp.pinpoint.profiler.context.storage.Storage;
 import com.navercorp.pinpoint.profiler.context.storage.StorageFactory;
+import com.navercorp.pinpoint.profiler.context.storage.TailSamplingStorage;
+import com.navercorp.pinpoint.profiler.sampler.TailSampler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,10 +47,16 @@ public class ThreadLocalTraceFactory implements TraceFactory {
 
     private final StorageFactory storageFactory;
     private final Sampler sampler;
+    // null if unsampled transactions are not traced
+    private final TailSampler tailSampler;
 
     private final IdGenerator idGenerator;
 
     public ThreadLocalTraceFactory(TraceContext traceContext, StorageFactory storageFactory, Sampler sampler, IdGenerator idGenerator) {
+        this(traceContext, storageFactory, sampler, null, idGenerator);
+    }
+
+    public ThreadLocalTraceFactory(TraceContext traceContext, StorageFactory storageFactory, Sampler sampler, TailSampler tailSampler, IdGenerator idGenerator) {
         if (traceContext == null) {
             throw new NullPointerException("traceContext must not be null");
         }
@@ -63,6 +72,7 @@ public class ThreadLocalTraceFactory implements TraceFactory {
         this.traceContext = traceContext;
         this.storageFactory = storageFactory;
         this.sampler = sampler;
+        this.tailSampler = tailSampler;
         this.idGenerator = idGenerator;
     }
 
@@ -113,6 +123,10 @@ public class ThreadLocalTraceFactory implements TraceFactory {
     // continue to trace the request that has been determined to be sampled on previous nodes
     @Override
     public Trace continueTraceObject(final TraceId traceId) {
+        if (TailSampler.isTailSamplingCandidate(traceId)) {
+            // not sampled by the caller, it only decides whether to send its own trace
+            return disableSampling();
+        }
         checkBeforeTraceObject();
 
         // TODO need to modify how to bind a datasender
@@ -158,6 +172,15 @@ public class ThreadLocalTraceFactory implements TraceFactory {
             trace.setStorage(storage);
             bind(trace);
             return trace;
+        } else if (tailSampler != null) {
+            // recorded like a sampled trace, the storage decides whether it is sent when the trace is closed
+            final long transactionId = idGenerator.nextTailSamplingCandidateId();
+            final TraceId traceId = new DefaultTraceId(traceContext.getAgentId(), traceContext.getAgentStartTime(), transactionId, SpanId.NULL, SpanId.newSpanId(), TailSampler.TAIL_SAMPLING_FLAG);
+            final DefaultTrace trace = new DefaultTrace(traceContext, traceId, transactionId, true);
+            final Storage storage = new TailSamplingStorage(storageFactory.createStorage(), tailSampler);
+            trace.setStorage(storage);
+            bind(trace);
+            return trace;
         } else {
             final DisableTrace disableTrace = new DisableTrace(this.idGenerator.nextDisabledId());
             bind(disableTrace);
@@ -195,6 +218,12 @@ public class ThreadLocalTraceFactory implements TraceFactory {
         checkBeforeTraceObject();
         
         final TraceId parentTraceId = traceId.getParentTraceId();
+        if (TailSampler.isTailSamplingCandidate(parentTraceId)) {
+            // the parent may be dropped once it ends
+            final DisableTrace disableTrace = new DisableTrace(IdGenerator.UNTRACKED_ID);
+            bind(disableTrace);
+            return disableTrace;
+        }
         final boolean sampling = true;
         final DefaultTrace trace = new DefaultTrace(traceContext, parentTraceId, IdGenerator.UNTRACKED_ID, sampling);
         final Storage storage = storageFactory.createStorage();
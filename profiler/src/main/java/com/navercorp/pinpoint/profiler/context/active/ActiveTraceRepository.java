@@ -16,8 +16,6 @@
 
 package com.navercorp.pinpoint.profiler.context.active;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.navercorp.pinpoint.profiler.context.ActiveTrace;
 
 import org.slf4j.Logger;
@@ -25,11 +23,21 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * Open addressing slot array keyed by the primitive trace id.
+ * put and remove are a CAS on the slot the id hashes to (linear probing on collision), so the request path
+ * neither locks nor allocates, and {@link #collect()} is a lock-free walk over the slots.
+ * A trace whose probe window is full goes to a bounded overflow map.
+ * {@link ActiveTrace} refers to its trace weakly, {@link #collect()} releases the traces collected or bound to a dead thread.
+ *
  * @author Taejin Koo
  */
 public class ActiveTraceRepository implements ActiveTraceLocator {
@@ -38,40 +46,94 @@ public class ActiveTraceRepository implements ActiveTraceLocator {
 
     // memory leak defense threshold
     private static final int DEFAULT_MAX_ACTIVE_TRACE_SIZE = 1024 * 10;
-    // oom safe cache
-    private final ConcurrentMap<Long, ActiveTrace> activeTraceInfoMap;
+    // slots probed from the home slot before giving up
+    private static final int MAX_PROBE = 64;
+
+    private final AtomicReferenceArray<ActiveTrace> slots;
+    private final int mask;
+    private final int maxProbe;
+
+    private final ConcurrentMap<Long, ActiveTrace> overflow = new ConcurrentHashMap<Long, ActiveTrace>();
+    private final AtomicInteger overflowSize = new AtomicInteger();
+    private final int maxOverflowSize;
+    private final AtomicLong dropCount = new AtomicLong();
 
     public ActiveTraceRepository() {
         this(DEFAULT_MAX_ACTIVE_TRACE_SIZE);
     }
+
     public ActiveTraceRepository(int maxActiveTraceSize) {
-        this.activeTraceInfoMap = createCache(maxActiveTraceSize);
+        if (maxActiveTraceSize <= 0) {
+            throw new IllegalArgumentException("maxActiveTraceSize must be greater than 0");
+        }
+        final int capacity = tableSizeFor(maxActiveTraceSize);
+        this.slots = new AtomicReferenceArray<ActiveTrace>(capacity);
+        this.mask = capacity - 1;
+        this.maxProbe = Math.min(MAX_PROBE, capacity);
+        this.maxOverflowSize = maxActiveTraceSize;
     }
 
-    private ConcurrentMap<Long, ActiveTrace> createCache(int maxActiveTraceSize) {
-        final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
-        cacheBuilder.concurrencyLevel(64);
-        cacheBuilder.initialCapacity(maxActiveTraceSize);
-        cacheBuilder.maximumSize(maxActiveTraceSize);
-        // OOM defense
-        cacheBuilder.weakValues();
+    private static int tableSizeFor(int size) {
+        final int highestOneBit = Integer.highestOneBit(size);
+        if (highestOneBit == size) {
+            return size;
+        }
+        return highestOneBit << 1;
+    }
 
-        final Cache<Long, ActiveTrace> localCache = cacheBuilder.build();
-        return localCache.asMap();
+    private int homeSlot(long id) {
+        // ids are handed out sequentially, so the low bits already spread them over the slots
+        return (int) (id ^ (id >>> 32)) & mask;
     }
 
     public void put(ActiveTrace activeTrace) {
-        this.activeTraceInfoMap.put(activeTrace.getId(), activeTrace);
+        if (activeTrace == null) {
+            throw new NullPointerException("activeTrace must not be null");
+        }
+        final int homeSlot = homeSlot(activeTrace.getId());
+        for (int i = 0; i < maxProbe; i++) {
+            final int slot = (homeSlot + i) & mask;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, activeTrace)) {
+                return;
+            }
+        }
+        putOverflow(activeTrace);
     }
 
-    private ActiveTrace get(Long key) {
-        return this.activeTraceInfoMap.get(key);
+    private void putOverflow(ActiveTrace activeTrace) {
+        // OOM defense
+        if (overflowSize.incrementAndGet() > maxOverflowSize) {
+            overflowSize.decrementAndGet();
+            final long dropCount = this.dropCount.incrementAndGet();
+            if (dropCount == 1 || (dropCount % 100) == 0) {
+                logger.warn("active trace slots are full, trace is not tracked. id:{}, dropCount:{}", activeTrace.getId(), dropCount);
+            }
+            return;
+        }
+        final ActiveTrace old = overflow.put(activeTrace.getId(), activeTrace);
+        if (old != null) {
+            overflowSize.decrementAndGet();
+        }
+    }
+
+    private ActiveTrace get(long id) {
+        final int homeSlot = homeSlot(id);
+        for (int i = 0; i < maxProbe; i++) {
+            final ActiveTrace activeTrace = slots.get((homeSlot + i) & mask);
+            if (activeTrace != null && activeTrace.getId() == id) {
+                return activeTrace;
+            }
+        }
+        if (overflowSize.get() == 0) {
+            return null;
+        }
+        return overflow.get(id);
     }
 
 
     // @ThreadSafe
-    public Object getStackTrace(Long key) {
-        final ActiveTrace trace = get(key);
+    public Object getStackTrace(long id) {
+        final ActiveTrace trace = get(id);
         if (trace == null) {
             return null;
         }
@@ -89,24 +151,78 @@ public class ActiveTraceRepository implements ActiveTraceLocator {
         return null;
     }
 
-    public ActiveTrace remove(Long key) {
-        return this.activeTraceInfoMap.remove(key);
+    public ActiveTrace remove(long id) {
+        final int homeSlot = homeSlot(id);
+        for (int i = 0; i < maxProbe; i++) {
+            final int slot = (homeSlot + i) & mask;
+            final ActiveTrace activeTrace = slots.get(slot);
+            if (activeTrace != null && activeTrace.getId() == id && slots.compareAndSet(slot, activeTrace, null)) {
+                return activeTrace;
+            }
+        }
+        if (overflowSize.get() == 0) {
+            return null;
+        }
+        final ActiveTrace activeTrace = overflow.remove(id);
+        if (activeTrace != null) {
+            overflowSize.decrementAndGet();
+        }
+        return activeTrace;
+    }
+
+    // for test
+    long getDropCount() {
+        return dropCount.get();
     }
 
     // @ThreadSafe
     @Override
     public List<ActiveTraceInfo> collect() {
         List<ActiveTraceInfo> collectData = new ArrayList<ActiveTraceInfo>();
-        final Collection<ActiveTrace> copied = this.activeTraceInfoMap.values();
-        for (ActiveTrace trace : copied) {
-            final long startTime = trace.getStartTime();
-            // not started
-            if (startTime > 0) {
-                // clear Trace reference
-                ActiveTraceInfo activeTraceInfo = new ActiveTraceInfo(trace.getId(), startTime, trace.getBindThread());
-                collectData.add(activeTraceInfo);
+        final AtomicReferenceArray<ActiveTrace> slots = this.slots;
+        final int length = slots.length();
+        for (int slot = 0; slot < length; slot++) {
+            final ActiveTrace trace = slots.get(slot);
+            if (trace == null) {
+                continue;
+            }
+            if (isLeaked(trace)) {
+                slots.compareAndSet(slot, trace, null);
+                continue;
+            }
+            addActiveTraceInfo(collectData, trace);
+        }
+        if (overflowSize.get() > 0) {
+            for (Map.Entry<Long, ActiveTrace> entry : overflow.entrySet()) {
+                final ActiveTrace trace = entry.getValue();
+                if (isLeaked(trace)) {
+                    if (overflow.remove(entry.getKey(), trace)) {
+                        overflowSize.decrementAndGet();
+                    }
+                    continue;
+                }
+                addActiveTraceInfo(collectData, trace);
             }
         }
         return collectData;
     }
+
+    private boolean isLeaked(ActiveTrace trace) {
+        // OOM defense : the trace was not removed and has been collected, or its thread died
+        if (trace.isCollected()) {
+            return true;
+        }
+        final Thread bindThread = trace.getBindThread();
+        return bindThread != null && !bindThread.isAlive();
+    }
+
+    private void addActiveTraceInfo(List<ActiveTraceInfo> collectData, ActiveTrace trace) {
+        final long startTime = trace.getStartTime();
+        // not started
+        if (startTime > 0) {
+            // clear Trace reference
+            ActiveTraceInfo activeTraceInfo = new ActiveTraceInfo(trace.getId(), startTime, trace.getBindThread());
+            collectData.add(activeTraceInfo);
+        }
+    }
 }
@@ -36,6 +36,7 @@ public class BufferedStorage implements Storage {
     private static final int DEFAULT_BUFFER_SIZE = 20;
 
     private final int bufferSize;
+    private final boolean recycle;
 
     private List<SpanEvent> storage;
     private final DataSender dataSender;
@@ -46,6 +47,10 @@ public class BufferedStorage implements Storage {
     }
 
     public BufferedStorage(DataSender dataSender, SpanChunkFactory spanChunkFactory, int bufferSize) {
+        this(dataSender, spanChunkFactory, bufferSize, false);
+    }
+
+    public BufferedStorage(DataSender dataSender, SpanChunkFactory spanChunkFactory, int bufferSize, boolean recycle) {
         if (dataSender == null) {
             throw new NullPointerException("dataSender must not be null");
         }
@@ -55,17 +60,28 @@ public class BufferedStorage implements Storage {
         this.dataSender = dataSender;
         this.spanChunkFactory = spanChunkFactory;
         this.bufferSize = bufferSize;
-        this.storage = new ArrayList<SpanEvent>(bufferSize);
+        this.recycle = recycle;
+    }
+
+    private List<SpanEvent> newStorage() {
+        if (recycle) {
+            // given back by the sender after serialization
+            return SpanEventList.newInstance();
+        }
+        return new ArrayList<SpanEvent>(bufferSize);
     }
 
     @Override
     public void store(SpanEvent spanEvent) {
         List<SpanEvent> flushData = null;
+        if (storage == null) {
+            storage = newStorage();
+        }
         storage.add(spanEvent);
         if (storage.size() >= bufferSize) {
             // data copy
             flushData = storage;
-            storage = new ArrayList<SpanEvent>(bufferSize);
+            storage = null;
         }
 
         if (flushData != null) {
@@ -81,7 +97,7 @@ public class BufferedStorage implements Storage {
     public void store(Span span) {
         List<SpanEvent> spanEventList;
         spanEventList = storage;
-        this.storage = new ArrayList<SpanEvent>(bufferSize);
+        this.storage = null;
 
         if (spanEventList != null && !spanEventList.isEmpty()) {
             span.setSpanEventList((List) spanEventList);
@@ -96,7 +112,7 @@ public class BufferedStorage implements Storage {
     public void flush() {
         List<SpanEvent> spanEventList;
         spanEventList = storage;
-        this.storage = new ArrayList<SpanEvent>(bufferSize);
+        this.storage = null;
 
         if (spanEventList != null && !spanEventList.isEmpty()) {
             final SpanChunk spanChunk = spanChunkFactory.create(spanEventList);
@@ -28,6 +28,7 @@ public class BufferedStorageFactory implements StorageFactory {
 
     private final DataSender dataSender;
     private final int bufferSize;
+    private final boolean recycle;
     private final SpanChunkFactory spanChunkFactory;
 
     public BufferedStorageFactory(DataSender dataSender, ProfilerConfig config, AgentInformation agentInformation) {
@@ -40,6 +41,7 @@ public class BufferedStorageFactory implements StorageFactory {
         this.dataSender = dataSender;
 
         this.bufferSize = config.getIoBufferingBufferSize();
+        this.recycle = config.isIoBufferingRecycleEnable();
 
         this.spanChunkFactory = new SpanChunkFactory(agentInformation);
     }
@@ -47,7 +49,7 @@ public class BufferedStorageFactory implements StorageFactory {
 
     @Override
     public Storage createStorage() {
-        BufferedStorage bufferedStorage = new BufferedStorage(this.dataSender, spanChunkFactory, this.bufferSize);
+        BufferedStorage bufferedStorage = new BufferedStorage(this.dataSender, spanChunkFactory, this.bufferSize, this.recycle);
         return bufferedStorage;
     }
 
@@ -55,6 +57,7 @@ public class BufferedStorageFactory implements StorageFactory {
     public String toString() {
         return "BufferedStorageFactory{" +
                 "bufferSize=" + bufferSize +
+                ", recycle=" + recycle +
                 ", dataSender=" + dataSender +
                 '}';
     }
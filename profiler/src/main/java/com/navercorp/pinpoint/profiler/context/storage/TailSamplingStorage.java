@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.context.storage;
+
+import com.navercorp.pinpoint.profiler.context.Span;
+import com.navercorp.pinpoint.profiler.context.SpanEvent;
+import com.navercorp.pinpoint.profiler.sampler.TailSampler;
+import com.navercorp.pinpoint.thrift.dto.TAnnotation;
+import com.navercorp.pinpoint.thrift.dto.TAnnotationValue;
+import com.navercorp.pinpoint.thrift.dto.TIntStringStringValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the span events of a trace the sampler did not sample until its span is stored,
+ * then hands everything to the wrapped storage if the {@link TailSampler} promotes the trace, or discards it.
+ * Like the other storages, it is used by the thread of its trace only.
+ * <p>
+ * Buffered events are accounted by an estimate of their heap size, dominated by the strings and binaries they hold.
+ */
+public class TailSamplingStorage implements Storage {
+
+    private static final Logger logger = LoggerFactory.getLogger(TailSamplingStorage.class);
+    private static final boolean isDebug = logger.isDebugEnabled();
+
+    // object headers and fixed size fields of a span event and of an annotation
+    private static final int SPAN_EVENT_SIZE = 128;
+    private static final int ANNOTATION_SIZE = 48;
+
+    private final Storage storage;
+    private final TailSampler tailSampler;
+
+    private List<SpanEvent> buffer;
+    private int bufferedBytes;
+    private boolean exceptionRecorded;
+    private boolean truncated;
+    private boolean spanStored;
+
+    public TailSamplingStorage(Storage storage, TailSampler tailSampler) {
+        if (storage == null) {
+            throw new NullPointerException("storage must not be null");
+        }
+        if (tailSampler == null) {
+            throw new NullPointerException("tailSampler must not be null");
+        }
+        this.storage = storage;
+        this.tailSampler = tailSampler;
+    }
+
+    @Override
+    public void store(SpanEvent spanEvent) {
+        if (spanEvent.isSetExceptionInfo()) {
+            exceptionRecorded = true;
+        }
+        if (buffer == null) {
+            buffer = new ArrayList<SpanEvent>();
+        }
+        if (buffer.size() >= tailSampler.getMaxSpanEventCount()) {
+            discard(spanEvent);
+            return;
+        }
+        final int size = estimateSize(spanEvent);
+        if (!tailSampler.tryAcquire(size)) {
+            discard(spanEvent);
+            return;
+        }
+        bufferedBytes += size;
+        buffer.add(spanEvent);
+    }
+
+    private void discard(SpanEvent spanEvent) {
+        truncated = true;
+        spanEvent.recycle();
+    }
+
+    static int estimateSize(SpanEvent spanEvent) {
+        int size = SPAN_EVENT_SIZE;
+        size += sizeOf(spanEvent.getRpc());
+        size += sizeOf(spanEvent.getEndPoint());
+        size += sizeOf(spanEvent.getDestinationId());
+        if (spanEvent.isSetExceptionInfo()) {
+            size += sizeOf(spanEvent.getExceptionInfo().getStringValue());
+        }
+        final List<TAnnotation> annotationList = spanEvent.getAnnotations();
+        if (annotationList != null) {
+            for (TAnnotation annotation : annotationList) {
+                size += ANNOTATION_SIZE;
+                if (annotation.isSetValue()) {
+                    size += sizeOf(annotation.getValue());
+                }
+            }
+        }
+        return size;
+    }
+
+    private static int sizeOf(TAnnotationValue value) {
+        if (value.isSetStringValue()) {
+            return sizeOf(value.getStringValue());
+        }
+        if (value.isSetBinaryValue()) {
+            return value.getBinaryValue().length;
+        }
+        if (value.isSetIntStringValue()) {
+            return sizeOf(value.getIntStringValue().getStringValue());
+        }
+        if (value.isSetIntStringStringValue()) {
+            final TIntStringStringValue intStringStringValue = value.getIntStringStringValue();
+            return sizeOf(intStringStringValue.getStringValue1()) + sizeOf(intStringStringValue.getStringValue2());
+        }
+        return 0;
+    }
+
+    private static int sizeOf(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return value.length() * 2;
+    }
+
+    @Override
+    public void store(Span span) {
+        this.spanStored = true;
+        final List<SpanEvent> spanEventList = this.buffer;
+        this.buffer = null;
+        final int bufferedBytes = this.bufferedBytes;
+        this.bufferedBytes = 0;
+
+        try {
+            if (tailSampler.isPromoted(span, exceptionRecorded)) {
+                if (isDebug) {
+                    logger.debug("[TailSamplingStorage] Promote span {}", span);
+                }
+                if (spanEventList != null) {
+                    for (SpanEvent spanEvent : spanEventList) {
+                        storage.store(spanEvent);
+                    }
+                }
+                storage.store(span);
+                tailSampler.promoted();
+                if (truncated) {
+                    tailSampler.truncated();
+                }
+            } else {
+                recycle(spanEventList);
+                tailSampler.dropped();
+            }
+        } finally {
+            tailSampler.release(bufferedBytes);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // nothing can be sent before the span decides the fate of the trace
+    }
+
+    @Override
+    public void close() {
+        if (!spanStored) {
+            // the call stack of the trace was corrupted
+            final List<SpanEvent> spanEventList = this.buffer;
+            this.buffer = null;
+            recycle(spanEventList);
+            tailSampler.release(this.bufferedBytes);
+            this.bufferedBytes = 0;
+            tailSampler.dropped();
+        }
+        storage.close();
+    }
+
+    private void recycle(List<SpanEvent> spanEventList) {
+        if (spanEventList == null) {
+            return;
+        }
+        for (SpanEvent spanEvent : spanEventList) {
+            spanEvent.recycle();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TailSamplingStorage{" + "storage=" + storage + ", tailSampler=" + tailSampler + '}';
+    }
+}
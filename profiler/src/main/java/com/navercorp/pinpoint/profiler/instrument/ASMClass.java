@@ -0,0 +1,832 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument;
+
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.instrument.ClassFilter;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClass;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentContext;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentException;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentMethod;
+import com.navercorp.pinpoint.bootstrap.instrument.MethodFilter;
+import com.navercorp.pinpoint.bootstrap.instrument.MethodFilters;
+import com.navercorp.pinpoint.bootstrap.instrument.NotFoundInstrumentException;
+import com.navercorp.pinpoint.bootstrap.interceptor.Interceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.annotation.TargetConstructor;
+import com.navercorp.pinpoint.bootstrap.interceptor.annotation.TargetConstructors;
+import com.navercorp.pinpoint.bootstrap.interceptor.annotation.TargetFilter;
+import com.navercorp.pinpoint.bootstrap.interceptor.annotation.TargetMethod;
+import com.navercorp.pinpoint.bootstrap.interceptor.annotation.TargetMethods;
+import com.navercorp.pinpoint.bootstrap.interceptor.registry.InterceptorRegistry;
+import com.navercorp.pinpoint.bootstrap.interceptor.scope.ExecutionPolicy;
+import com.navercorp.pinpoint.bootstrap.interceptor.scope.InterceptorScope;
+import com.navercorp.pinpoint.bootstrap.plugin.ObjectFactory;
+import com.navercorp.pinpoint.common.util.Asserts;
+import com.navercorp.pinpoint.exception.PinpointException;
+import com.navercorp.pinpoint.profiler.instrument.AccessorAnalyzer.AccessorDetails;
+import com.navercorp.pinpoint.profiler.instrument.GetterAnalyzer.GetterDetails;
+import com.navercorp.pinpoint.profiler.instrument.SetterAnalyzer.SetterDetails;
+import com.navercorp.pinpoint.profiler.instrument.aspect.ASMAspectWeaver;
+import com.navercorp.pinpoint.profiler.instrument.cache.TransformSession;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorDefinition;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorField;
+import com.navercorp.pinpoint.profiler.interceptor.registry.InterceptorRegistryBinder;
+import com.navercorp.pinpoint.profiler.objectfactory.AutoBindingObjectFactory;
+import com.navercorp.pinpoint.profiler.objectfactory.InterceptorArgumentProvider;
+import com.navercorp.pinpoint.profiler.util.JavaAssistUtils;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link InstrumentClass} of the ASM engine, editing the {@link ClassNode} of the class file given to the transformer.
+ */
+public class ASMClass implements InstrumentClass {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final InstrumentContext pluginContext;
+    private final InterceptorRegistryBinder interceptorRegistryBinder;
+    private final ASMClassPool classPool;
+    private final ClassLoader classLoader;
+    private final ClassNode classNode;
+
+    private static final String FIELD_PREFIX = "_$PINPOINT$_";
+
+    public ASMClass(InstrumentContext pluginContext, InterceptorRegistryBinder interceptorRegistryBinder, ASMClassPool classPool, ClassLoader classLoader, ClassNode classNode) {
+        this.pluginContext = pluginContext;
+        this.interceptorRegistryBinder = interceptorRegistryBinder;
+        this.classPool = classPool;
+        this.classLoader = classLoader;
+        this.classNode = classNode;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    @Override
+    public boolean isInterceptable() {
+        return !isInterface() && (classNode.access & Opcodes.ACC_ANNOTATION) == 0;
+    }
+
+    @Override
+    public boolean isInterface() {
+        return (classNode.access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    @Override
+    public String getName() {
+        return JavaAssistUtils.jvmNameToJavaName(classNode.name);
+    }
+
+    @Override
+    public String getSuperClass() {
+        if (classNode.superName == null) {
+            return null;
+        }
+        return JavaAssistUtils.jvmNameToJavaName(classNode.superName);
+    }
+
+    @Override
+    public String[] getInterfaces() {
+        final String[] interfaces = new String[classNode.interfaces.size()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = JavaAssistUtils.jvmNameToJavaName(classNode.interfaces.get(i));
+        }
+        return interfaces;
+    }
+
+    private static MethodNode getMethodNode0(ClassNode classNode, String methodName, String[] parameterTypes) {
+        final String jvmSignature = JavaAssistUtils.javaTypeToJvmSignature(parameterTypes);
+        for (MethodNode methodNode : classNode.methods) {
+            if (methodNode.name.equals(methodName) && methodNode.desc.startsWith(jvmSignature)) {
+                return methodNode;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isConstructorOrClassInitializer(MethodNode methodNode) {
+        return methodNode.name.charAt(0) == '<';
+    }
+
+    @Override
+    public InstrumentMethod getDeclaredMethod(String name, String... parameterTypes) {
+        final MethodNode methodNode = getMethodNode0(classNode, name, parameterTypes);
+        return methodNode == null ? null : new ASMMethod(pluginContext, interceptorRegistryBinder, this, methodNode);
+    }
+
+    @Override
+    public List<InstrumentMethod> getDeclaredMethods() {
+        return getDeclaredMethods(MethodFilters.ACCEPT_ALL);
+    }
+
+    @Override
+    public List<InstrumentMethod> getDeclaredMethods(MethodFilter methodFilter) {
+        if (methodFilter == null) {
+            throw new NullPointerException("methodFilter must not be null");
+        }
+        final List<InstrumentMethod> candidateList = new ArrayList<InstrumentMethod>(classNode.methods.size());
+        for (MethodNode methodNode : classNode.methods) {
+            if (isConstructorOrClassInitializer(methodNode)) {
+                continue;
+            }
+            final InstrumentMethod method = new ASMMethod(pluginContext, interceptorRegistryBinder, this, methodNode);
+            if (methodFilter.accept(method)) {
+                candidateList.add(method);
+            }
+        }
+        return candidateList;
+    }
+
+    @Override
+    public InstrumentMethod getConstructor(String... parameterTypes) {
+        final MethodNode methodNode = getMethodNode0(classNode, "<init>", parameterTypes);
+        return methodNode == null ? null : new ASMMethod(pluginContext, interceptorRegistryBinder, this, methodNode);
+    }
+
+    @Override
+    public boolean hasDeclaredMethod(String methodName, String... args) {
+        return getMethodNode0(classNode, methodName, args) != null;
+    }
+
+    @Override
+    public boolean hasMethod(String methodName, String... parameterTypes) {
+        // declared or inherited non private methods, as CtClass.getMethods()
+        final String jvmSignature = JavaAssistUtils.javaTypeToJvmSignature(parameterTypes);
+        return hasMethod0(classNode, methodName, jvmSignature);
+    }
+
+    private boolean hasMethod0(ClassNode classNode, String methodName, String jvmSignature) {
+        for (MethodNode methodNode : classNode.methods) {
+            if ((methodNode.access & Opcodes.ACC_PRIVATE) == 0 && methodNode.name.equals(methodName) && methodNode.desc.startsWith(jvmSignature)) {
+                return true;
+            }
+        }
+        for (String interfaceName : classNode.interfaces) {
+            final ClassNode interfaceNode = classPool.readClassHeader(classLoader, interfaceName);
+            if (interfaceNode != null && hasMethod0(interfaceNode, methodName, jvmSignature)) {
+                return true;
+            }
+        }
+        if (classNode.superName != null) {
+            final ClassNode superClassNode = classPool.readClassHeader(classLoader, classNode.superName);
+            if (superClassNode != null && hasMethod0(superClassNode, methodName, jvmSignature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasEnclosingMethod(String methodName, String... parameterTypes) {
+        if (classNode.outerMethod == null || !classNode.outerMethod.equals(methodName)) {
+            return false;
+        }
+        final String jvmSignature = JavaAssistUtils.javaTypeToJvmSignature(parameterTypes);
+        return classNode.outerMethodDesc.startsWith(jvmSignature);
+    }
+
+    @Override
+    public boolean hasConstructor(String... parameterTypeArray) {
+        final String signature = JavaAssistUtils.javaTypeToJvmSignature(parameterTypeArray, "void");
+        for (MethodNode methodNode : classNode.methods) {
+            if (methodNode.name.equals("<init>") && methodNode.desc.equals(signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasField(String name, String type) {
+        final String desc = type == null ? null : JavaAssistUtils.toJvmSignature(type);
+        return findField(classNode, name, desc) != null;
+    }
+
+    @Override
+    public boolean hasField(String name) {
+        return hasField(name, null);
+    }
+
+    /**
+     * Searches this class, its interfaces then its super class, as CtClass.getField().
+     */
+    private DeclaredField findField(ClassNode classNode, String name, String desc) {
+        for (FieldNode fieldNode : classNode.fields) {
+            if (fieldNode.name.equals(name) && (desc == null || fieldNode.desc.equals(desc))) {
+                return new DeclaredField(classNode, fieldNode);
+            }
+        }
+        for (String interfaceName : classNode.interfaces) {
+            final ClassNode interfaceNode = classPool.readClassHeader(classLoader, interfaceName);
+            if (interfaceNode != null) {
+                final DeclaredField field = findField(interfaceNode, name, desc);
+                if (field != null) {
+                    return field;
+                }
+            }
+        }
+        if (classNode.superName != null) {
+            final ClassNode superClassNode = classPool.readClassHeader(classLoader, classNode.superName);
+            if (superClassNode != null) {
+                return findField(superClassNode, name, desc);
+            }
+        }
+        return null;
+    }
+
+    private DeclaredField getField(String name) throws NotFoundInstrumentException {
+        final DeclaredField field = findField(classNode, name, null);
+        if (field == null) {
+            throw new NotFoundInstrumentException(name + " field is not found in " + getName());
+        }
+        return field;
+    }
+
+    private static class DeclaredField {
+        private final ClassNode declaringClass;
+        private final FieldNode fieldNode;
+
+        private DeclaredField(ClassNode declaringClass, FieldNode fieldNode) {
+            this.declaringClass = declaringClass;
+            this.fieldNode = fieldNode;
+        }
+    }
+
+    /**
+     * Adds the static final field holding an interceptor, initialized at the beginning of the static initializer.
+     * @return null if the interceptor has to be looked up in the registry
+     */
+    InterceptorField addInterceptorField(InterceptorDefinition interceptorDefinition, int interceptorId, InstrumentMethod targetMethod) {
+        if (!InterceptorField.isEnabled(pluginContext.getTraceContext()) || InterceptorField.isRedefining()) {
+            return null;
+        }
+        // fields of an interface are public
+        if (isInterface() || changesSerialVersionUID()) {
+            return null;
+        }
+
+        final InterceptorField interceptorField = InterceptorField.create(interceptorId, interceptorDefinition, targetMethod, classLoader);
+        if (getDeclaredField(interceptorField.getName()) == null) {
+            final String fieldDesc = Type.getDescriptor(interceptorField.getType());
+            final int access = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC;
+            classNode.fields.add(new FieldNode(access, interceptorField.getName(), fieldDesc, null, null));
+
+            final InsnList initializer = new InsnList();
+            initializer.add(new LdcInsnNode(interceptorId));
+            initializer.add(new MethodInsnNode(Opcodes.INVOKESTATIC, Type.getInternalName(InterceptorRegistry.class), "getInterceptor",
+                    Type.getMethodDescriptor(Type.getType(Interceptor.class), Type.INT_TYPE), false));
+            initializer.add(new TypeInsnNode(Opcodes.CHECKCAST, Type.getInternalName(interceptorField.getType())));
+            initializer.add(new FieldInsnNode(Opcodes.PUTSTATIC, classNode.name, interceptorField.getName(), fieldDesc));
+            getClassInitializer().instructions.insert(initializer);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("addInterceptorField class:{} field:{}", getName(), interceptorField);
+        }
+        return interceptorField;
+    }
+
+    private FieldNode getDeclaredField(String name) {
+        for (FieldNode fieldNode : classNode.fields) {
+            if (fieldNode.name.equals(name)) {
+                return fieldNode;
+            }
+        }
+        return null;
+    }
+
+    private MethodNode getClassInitializer() {
+        for (MethodNode methodNode : classNode.methods) {
+            if (methodNode.name.equals("<clinit>")) {
+                return methodNode;
+            }
+        }
+        final MethodNode classInitializer = new MethodNode(Opcodes.ASM5, Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        classInitializer.instructions.add(new InsnNode(Opcodes.RETURN));
+        classNode.methods.add(classInitializer);
+        return classInitializer;
+    }
+
+    private boolean changesSerialVersionUID() {
+        // the default serialVersionUID depends on whether there is a static initializer
+        for (MethodNode methodNode : classNode.methods) {
+            if (methodNode.name.equals("<clinit>")) {
+                return false;
+            }
+        }
+        if (getDeclaredField("serialVersionUID") != null) {
+            return false;
+        }
+        return isSubtypeOf(classNode, "java/io/Serializable");
+    }
+
+    /**
+     * @return true if the class or one of its super types is the given type, or cannot be read
+     */
+    private boolean isSubtypeOf(ClassNode classNode, String internalName) {
+        if (classNode.name.equals(internalName)) {
+            return true;
+        }
+        for (String interfaceName : classNode.interfaces) {
+            if (interfaceName.equals(internalName)) {
+                return true;
+            }
+            final ClassNode interfaceNode = classPool.readClassHeader(classLoader, interfaceName);
+            if (interfaceNode == null || isSubtypeOf(interfaceNode, internalName)) {
+                return true;
+            }
+        }
+        if (classNode.superName != null) {
+            final ClassNode superClassNode = classPool.readClassHeader(classLoader, classNode.superName);
+            return superClassNode == null || isSubtypeOf(superClassNode, internalName);
+        }
+        return false;
+    }
+
+    @Override
+    public void weave(String adviceClassName) throws InstrumentException {
+        pluginContext.injectClass(classLoader, adviceClassName);
+
+        final byte[] adviceClassFile = classPool.getClassFile(classLoader, JavaAssistUtils.javaNameToJvmName(adviceClassName));
+        if (adviceClassFile == null) {
+            throw new NotFoundInstrumentException(adviceClassName + " not found.");
+        }
+        final ClassNode adviceClass = classPool.readClass(adviceClassFile);
+        try {
+            new ASMAspectWeaver().weaving(classNode, adviceClass);
+        } catch (InstrumentException e) {
+            throw new InstrumentException("weaving fail. sourceClassName:" + getName() + " adviceClassName:" + adviceClassName + " Caused:" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InstrumentMethod addDelegatorMethod(String methodName, String... paramTypes) throws InstrumentException {
+        if (getMethodNode0(classNode, methodName, paramTypes) != null) {
+            throw new InstrumentException(getName() + "already have method(" + methodName + ").");
+        }
+        final ClassNode superClassNode = classNode.superName == null ? null : classPool.readClassHeader(classLoader, classNode.superName);
+        if (superClassNode == null) {
+            throw new InstrumentException(getName() + "don't have super class(" + getSuperClass() + ").");
+        }
+        final MethodNode superMethod = getMethodNode0(superClassNode, methodName, paramTypes);
+        if (superMethod == null) {
+            throw new NotFoundInstrumentException(methodName + Arrays.toString(paramTypes) + " is not found in " + getSuperClass());
+        }
+
+        final boolean staticMethod = (superMethod.access & Opcodes.ACC_STATIC) != 0;
+        final int access = superMethod.access & ~(Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE);
+        final String[] exceptions = superMethod.exceptions.toArray(new String[superMethod.exceptions.size()]);
+        final MethodNode delegatorMethod = new MethodNode(Opcodes.ASM5, access, superMethod.name, superMethod.desc, superMethod.signature, exceptions);
+
+        final InsnList instructions = delegatorMethod.instructions;
+        int slot = 0;
+        if (!staticMethod) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, slot++));
+        }
+        for (Type argumentType : Type.getArgumentTypes(superMethod.desc)) {
+            instructions.add(new VarInsnNode(argumentType.getOpcode(Opcodes.ILOAD), slot));
+            slot += argumentType.getSize();
+        }
+        final int opcode = staticMethod ? Opcodes.INVOKESTATIC : Opcodes.INVOKESPECIAL;
+        instructions.add(new MethodInsnNode(opcode, superClassNode.name, superMethod.name, superMethod.desc, false));
+        final Type returnType = Type.getReturnType(superMethod.desc);
+        instructions.add(new InsnNode(returnType.getOpcode(Opcodes.IRETURN)));
+        delegatorMethod.maxLocals = slot;
+        delegatorMethod.maxStack = Math.max(slot, returnType.getSize());
+
+        classNode.methods.add(delegatorMethod);
+        return new ASMMethod(pluginContext, interceptorRegistryBinder, this, delegatorMethod);
+    }
+
+    @Override
+    public byte[] toBytecode() {
+        final byte[] replayBytecode = TransformSession.getReplayBytecode();
+        if (replayBytecode != null) {
+            return replayBytecode;
+        }
+        try {
+            // frames are only required since java 6
+            final int flags = (classNode.version & 0xFFFF) >= Opcodes.V1_6 ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS;
+            final ClassWriter classWriter = new ASMClassWriter(classPool, classLoader, classNode, flags);
+            classNode.accept(classWriter);
+            return classWriter.toByteArray();
+        } catch (RuntimeException e) {
+            logger.info("Failed to write class:{} Caused:{}", getName(), e.getMessage(), e);
+        }
+        return null;
+    }
+
+    @Override
+    public void addField(String accessorTypeName) throws InstrumentException {
+        try {
+            Class<?> accessorType = pluginContext.injectClass(classLoader, accessorTypeName);
+            final AccessorAnalyzer accessorAnalyzer = new AccessorAnalyzer();
+            final AccessorDetails accessorDetails = accessorAnalyzer.analyze(accessorType);
+
+            final String fieldName = FIELD_PREFIX + accessorTypeName.replace('.', '_').replace('$', '_');
+            final FieldNode newField = new FieldNode(Opcodes.ACC_PRIVATE, fieldName, Type.getDescriptor(accessorDetails.getFieldType()), null, null);
+            classNode.fields.add(newField);
+
+            addInterface(accessorTypeName);
+            classNode.methods.add(createGetter(accessorDetails.getGetter().getName(), classNode.name, newField));
+            classNode.methods.add(createSetter(accessorDetails.getSetter().getName(), classNode.name, newField));
+        } catch (Exception e) {
+            throw new InstrumentException("Failed to add field with accessor [" + accessorTypeName + "]. Cause:" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void addGetter(String getterTypeName, String fieldName) throws InstrumentException {
+        try {
+            Class<?> getterType = pluginContext.injectClass(classLoader, getterTypeName);
+
+            GetterDetails getterDetails = new GetterAnalyzer().analyze(getterType);
+
+            final DeclaredField field = getField(fieldName);
+            final String fieldDesc = field.fieldNode.desc;
+
+            if (!fieldDesc.equals(Type.getDescriptor(getterDetails.getFieldType()))) {
+                throw new IllegalArgumentException("Return type of the getter is different with the field type. getterMethod: " + getterDetails.getGetter() + ", fieldType: " + Type.getType(fieldDesc).getClassName());
+            }
+
+            classNode.methods.add(createGetter(getterDetails.getGetter().getName(), field.declaringClass.name, field.fieldNode));
+            addInterface(getterTypeName);
+        } catch (Exception e) {
+            throw new InstrumentException("Failed to add getter: " + getterTypeName, e);
+        }
+    }
+
+    @Override
+    public void addSetter(String setterTypeName, String fieldName) throws InstrumentException {
+        this.addSetter(setterTypeName, fieldName, false);
+    }
+
+    @Override
+    public void addSetter(String setterTypeName, String fieldName, boolean removeFinalFlag) throws InstrumentException {
+        try {
+            Class<?> setterType = pluginContext.injectClass(classLoader, setterTypeName);
+
+            SetterDetails setterDetails = new SetterAnalyzer().analyze(setterType);
+
+            final DeclaredField field = getField(fieldName);
+            final String fieldDesc = field.fieldNode.desc;
+
+            if (!fieldDesc.equals(Type.getDescriptor(setterDetails.getFieldType()))) {
+                throw new IllegalArgumentException("Argument type of the setter is different with the field type. setterMethod: " + setterDetails.getSetter() + ", fieldType: " + Type.getType(fieldDesc).getClassName());
+            }
+
+            final int originalAccess = field.fieldNode.access;
+            if ((originalAccess & Opcodes.ACC_STATIC) != 0) {
+                throw new IllegalArgumentException("Cannot add setter to static fields. setterMethod: " + setterDetails.getSetter().getName() + ", fieldName: " + fieldName);
+            }
+
+            if ((originalAccess & Opcodes.ACC_FINAL) != 0) {
+                if (!removeFinalFlag) {
+                    throw new IllegalArgumentException("Cannot add setter to final field. setterMethod: " + setterDetails.getSetter().getName() + ", fieldName: " + fieldName);
+                }
+                if (field.declaringClass != classNode) {
+                    // the class file of the super class is not transformed here
+                    throw new IllegalArgumentException("Cannot remove final flag of inherited field. setterMethod: " + setterDetails.getSetter().getName() + ", fieldName: " + fieldName);
+                }
+                field.fieldNode.access = originalAccess & ~Opcodes.ACC_FINAL;
+            }
+
+            classNode.methods.add(createSetter(setterDetails.getSetter().getName(), field.declaringClass.name, field.fieldNode));
+            addInterface(setterTypeName);
+        } catch (Exception e) {
+            throw new InstrumentException("Failed to add setter: " + setterTypeName, e);
+        }
+    }
+
+    private void addInterface(String interfaceName) {
+        final String internalName = JavaAssistUtils.javaNameToJvmName(interfaceName);
+        if (!classNode.interfaces.contains(internalName)) {
+            classNode.interfaces.add(internalName);
+        }
+    }
+
+    private static MethodNode createGetter(String methodName, String owner, FieldNode field) {
+        final Type fieldType = Type.getType(field.desc);
+        final MethodNode getter = new MethodNode(Opcodes.ASM5, Opcodes.ACC_PUBLIC, methodName, "()" + field.desc, null, null);
+        if ((field.access & Opcodes.ACC_STATIC) != 0) {
+            getter.instructions.add(new FieldInsnNode(Opcodes.GETSTATIC, owner, field.name, field.desc));
+        } else {
+            getter.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            getter.instructions.add(new FieldInsnNode(Opcodes.GETFIELD, owner, field.name, field.desc));
+        }
+        getter.instructions.add(new InsnNode(fieldType.getOpcode(Opcodes.IRETURN)));
+        getter.maxLocals = 1;
+        getter.maxStack = fieldType.getSize();
+        return getter;
+    }
+
+    private static MethodNode createSetter(String methodName, String owner, FieldNode field) {
+        final Type fieldType = Type.getType(field.desc);
+        final MethodNode setter = new MethodNode(Opcodes.ASM5, Opcodes.ACC_PUBLIC, methodName, "(" + field.desc + ")V", null, null);
+        setter.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        setter.instructions.add(new VarInsnNode(fieldType.getOpcode(Opcodes.ILOAD), 1));
+        setter.instructions.add(new FieldInsnNode(Opcodes.PUTFIELD, owner, field.name, field.desc));
+        setter.instructions.add(new InsnNode(Opcodes.RETURN));
+        setter.maxLocals = 1 + fieldType.getSize();
+        setter.maxStack = 1 + fieldType.getSize();
+        return setter;
+    }
+    @Override
+    public int addInterceptor(String interceptorClassName) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        return addInterceptor0(interceptorClassName, null, null, null);
+    }
+    @Override
+    public int addInterceptor(String interceptorClassName, Object[] constructorArgs) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        return addInterceptor0(interceptorClassName, constructorArgs, null, null);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, String scopeName) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scopeName, "scopeName");
+        final InterceptorScope interceptorScope = pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, null, interceptorScope, ExecutionPolicy.BOUNDARY);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, InterceptorScope scope) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scope, "scope");
+        return addInterceptor0(interceptorClassName, null, scope, ExecutionPolicy.BOUNDARY);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, String scopeName) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scopeName, "scopeName");
+        final InterceptorScope interceptorScope = pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, constructorArgs, interceptorScope, ExecutionPolicy.BOUNDARY);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, InterceptorScope scope) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scope, "scope");
+        return addInterceptor0(interceptorClassName, constructorArgs, scope, ExecutionPolicy.BOUNDARY);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, String scopeName, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scopeName, "scopeName");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        final InterceptorScope interceptorScope = pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, null, interceptorScope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scope, "scope");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        return addInterceptor0(interceptorClassName, null, scope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, String scopeName, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scopeName, "scopeName");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        final InterceptorScope interceptorScope = pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, constructorArgs, interceptorScope, executionPolicy);
+    }
+
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scope, "scope");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        return addInterceptor0(interceptorClassName, constructorArgs, scope, executionPolicy);
+    }
+
+    private int addInterceptor0(String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+
+        int interceptorId = -1;
+        final Class<?> interceptorType = pluginContext.injectClass(classLoader, interceptorClassName);
+
+
+        final TargetMethods targetMethods = interceptorType.getAnnotation(TargetMethods.class);
+        if (targetMethods != null) {
+            for (TargetMethod m : targetMethods.value()) {
+                interceptorId = addInterceptor0(m, interceptorClassName, constructorArgs, scope, executionPolicy);
+            }
+        }
+
+        final TargetMethod targetMethod = interceptorType.getAnnotation(TargetMethod.class);
+        if (targetMethod != null) {
+            interceptorId = addInterceptor0(targetMethod, interceptorClassName, constructorArgs, scope, executionPolicy);
+        }
+
+        final TargetConstructors targetConstructors = interceptorType.getAnnotation(TargetConstructors.class);
+        if (targetConstructors != null) {
+            for (TargetConstructor c : targetConstructors.value()) {
+                interceptorId = addInterceptor0(c, interceptorClassName, scope, executionPolicy, constructorArgs);
+            }
+        }
+
+        final TargetConstructor targetConstructor = interceptorType.getAnnotation(TargetConstructor.class);
+        if (targetConstructor != null) {
+            interceptorId = addInterceptor0(targetConstructor, interceptorClassName, scope, executionPolicy, constructorArgs);
+        }
+
+        final TargetFilter targetFilter = interceptorType.getAnnotation(TargetFilter.class);
+        if (targetFilter != null) {
+            interceptorId = addInterceptor0(targetFilter, interceptorClassName, scope, executionPolicy, constructorArgs);
+        }
+
+        if (interceptorId == -1) {
+            throw new PinpointException("No target is specified. At least one of @Targets, @TargetMethod, @TargetConstructor, @TargetFilter must present. interceptor: " + interceptorClassName);
+        }
+
+        return interceptorId;
+    }
+
+    private int addInterceptor0(TargetConstructor c, String interceptorClassName, InterceptorScope scope, ExecutionPolicy executionPolicy, Object... constructorArgs) throws InstrumentException {
+        final InstrumentMethod constructor = getConstructor(c.value());
+
+        if (constructor == null) {
+            throw new NotFoundInstrumentException("Cannot find constructor with parameter types: " + Arrays.toString(c.value()));
+        }
+        return ((ASMMethod)constructor).addInterceptorInternal(interceptorClassName, constructorArgs, scope, executionPolicy);
+    }
+
+    private int addInterceptor0(TargetMethod m, String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        InstrumentMethod method = getDeclaredMethod(m.name(), m.paramTypes());
+
+        if (method == null) {
+            throw new NotFoundInstrumentException("Cannot find method " + m.name() + " with parameter types: " + Arrays.toString(m.paramTypes()));
+        }
+        return ((ASMMethod)method).addInterceptorInternal(interceptorClassName, constructorArgs, scope, executionPolicy);
+    }
+
+    private int addInterceptor0(TargetFilter annotation, String interceptorClassName, InterceptorScope scope, ExecutionPolicy executionPolicy, Object[] constructorArgs) throws InstrumentException {
+        String filterTypeName = annotation.type();
+        Asserts.notNull(filterTypeName, "type of @TargetFilter");
+
+        final TraceContext traceContext = pluginContext.getTraceContext();
+        final InterceptorArgumentProvider interceptorArgumentProvider = new InterceptorArgumentProvider(traceContext, this);
+        AutoBindingObjectFactory filterFactory = new AutoBindingObjectFactory(pluginContext, classLoader, interceptorArgumentProvider);
+        final ObjectFactory objectFactory = ObjectFactory.byConstructor(filterTypeName, (Object[]) annotation.constructorArguments());
+        MethodFilter filter = (MethodFilter) filterFactory.createInstance(objectFactory);
+
+        boolean singleton = annotation.singleton();
+        int interceptorId = -1;
+
+        for (InstrumentMethod m : getDeclaredMethods(filter)) {
+            if (singleton && interceptorId != -1) {
+                m.addInterceptor(interceptorId);
+            } else {
+                interceptorId = ((ASMMethod)m).addInterceptorInternal(interceptorClassName, constructorArgs, scope, executionPolicy);
+            }
+        }
+
+        if (interceptorId == -1) {
+            logger.warn("No methods are intercepted. target: {}, interceptor: {}, methodFilter: {}", getName(), interceptorClassName, filterTypeName);
+        }
+
+        return interceptorId;
+    }
+
+    @Override
+    public int addInterceptor(MethodFilter filter, String interceptorClassName) throws InstrumentException {
+        Asserts.notNull(filter, "filter");
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        return addScopedInterceptor0(filter, interceptorClassName, null, null, null);
+    }
+
+    @Override
+    public int addInterceptor(MethodFilter filter, String interceptorClassName, Object[] constructorArgs) throws InstrumentException {
+        Asserts.notNull(filter, "filter");
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        return addScopedInterceptor0(filter, interceptorClassName, constructorArgs, null, null);
+    }
+
+    @Override
+    public int addScopedInterceptor(MethodFilter filter, String interceptorClassName, String scopeName, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(filter, "filter");
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scopeName, "scopeName");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        final InterceptorScope interceptorScope = pluginContext.getInterceptorScope(scopeName);
+        return addScopedInterceptor0(filter, interceptorClassName, null, interceptorScope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(MethodFilter filter, String interceptorClassName, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(filter, "filter");
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scope, "scope");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        return addScopedInterceptor0(filter, interceptorClassName, null, scope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(MethodFilter filter, String interceptorClassName, Object[] constructorArgs, String scopeName, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(filter, "filter");
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scopeName, "scopeName");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        final InterceptorScope interceptorScope = pluginContext.getInterceptorScope(scopeName);
+        return addScopedInterceptor0(filter, interceptorClassName, constructorArgs, interceptorScope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(MethodFilter filter, String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(filter, "filter");
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scope, "scope");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        return addScopedInterceptor0(filter, interceptorClassName, constructorArgs, scope, executionPolicy);
+    }
+
+    private int addScopedInterceptor0(MethodFilter filter, String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        int interceptorId = -1;
+
+        for (InstrumentMethod m : getDeclaredMethods(filter)) {
+            if (interceptorId != -1) {
+                m.addInterceptor(interceptorId);
+            } else {
+                interceptorId = ((ASMMethod)m).addInterceptorInternal(interceptorClassName, constructorArgs, scope, executionPolicy);
+            }
+        }
+
+        if (interceptorId == -1) {
+            logger.warn("No methods are intercepted. target: {}, interceptor: {}, methodFilter: {}", getName(), interceptorClassName, filter.getClass().getName());
+        }
+
+        return interceptorId;
+    }
+
+    @Override
+    public List<InstrumentClass> getNestedClasses(ClassFilter filter) {
+        final List<InstrumentClass> list = new ArrayList<InstrumentClass>();
+        final String nestedClassPrefix = classNode.name + "$";
+        for (InnerClassNode innerClass : classNode.innerClasses) {
+            // direct nested classes only
+            final String name = innerClass.name;
+            if (!name.startsWith(nestedClassPrefix) || name.lastIndexOf('$') >= nestedClassPrefix.length()) {
+                continue;
+            }
+            final byte[] classFile = classPool.getClassFile(classLoader, name);
+            if (classFile == null) {
+                continue;
+            }
+            final InstrumentClass clazz = new ASMClass(pluginContext, interceptorRegistryBinder, classPool, classLoader, classPool.readClass(classFile));
+            if (filter.accept(clazz)) {
+                list.add(clazz);
+            }
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument;
+
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClass;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClassPool;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentContext;
+import com.navercorp.pinpoint.bootstrap.instrument.NotFoundInstrumentException;
+import com.navercorp.pinpoint.exception.PinpointException;
+import com.navercorp.pinpoint.profiler.interceptor.registry.InterceptorRegistryBinder;
+import com.navercorp.pinpoint.profiler.util.JavaAssistUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.JSRInlinerAdapter;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * {@link InstrumentClassPool} of the ASM engine.
+ * Unlike {@link JavassistClassPool}, nothing is kept per class loader : class files are read from the class loader
+ * when a class is instrumented or its hierarchy is needed, and dropped with the {@link ASMClass}.
+ */
+public class ASMClassPool implements InstrumentClassPool {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final InterceptorRegistryBinder interceptorRegistryBinder;
+
+    // appended to the boot class path, so not visible as resources of the system class loader
+    private final List<JarFile> bootstrapJarFiles = new CopyOnWriteArrayList<JarFile>();
+    // advice and accessor classes of plugins are read from the plugin jars
+    private final ClassLoader pluginResourceLoader;
+
+    public ASMClassPool(InterceptorRegistryBinder interceptorRegistryBinder, String bootStrapJar, URL[] pluginJars) {
+        if (interceptorRegistryBinder == null) {
+            throw new NullPointerException("interceptorRegistryBinder must not be null");
+        }
+        this.interceptorRegistryBinder = interceptorRegistryBinder;
+        if (bootStrapJar != null) {
+            appendToBootstrapClassPath(bootStrapJar);
+        }
+        if (pluginJars != null && pluginJars.length > 0) {
+            this.pluginResourceLoader = new URLClassLoader(pluginJars, null);
+        } else {
+            this.pluginResourceLoader = null;
+        }
+    }
+
+    @Override
+    public InstrumentClass getClass(InstrumentContext instrumentContext, ClassLoader classLoader, String className, byte[] classFileBuffer) throws NotFoundInstrumentException {
+        if (className == null) {
+            throw new NullPointerException("className must not be null");
+        }
+        final String internalName = JavaAssistUtils.javaNameToJvmName(className);
+        if (classFileBuffer == null) {
+            classFileBuffer = getClassFile(classLoader, internalName);
+            if (classFileBuffer == null) {
+                throw new NotFoundInstrumentException(className + " class not found.");
+            }
+        }
+        final ClassNode classNode = readClass(classFileBuffer);
+        return new ASMClass(instrumentContext, interceptorRegistryBinder, this, classLoader, classNode);
+    }
+
+    ClassNode readClass(byte[] classFileBuffer) {
+        final ClassNode classNode = new ClassNode(Opcodes.ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                // frames are computed again by ASMClassWriter, and cannot be computed for jsr/ret
+                final MethodNode methodNode = new JSRInlinerAdapter(null, access, name, desc, signature, exceptions);
+                methods.add(methodNode);
+                return methodNode;
+            }
+        };
+        new ClassReader(classFileBuffer).accept(classNode, ClassReader.SKIP_FRAMES);
+        return classNode;
+    }
+
+    /**
+     * @return class without method bodies, null if not found
+     */
+    ClassNode readClassHeader(ClassLoader classLoader, String internalName) {
+        final byte[] classFile = getClassFile(classLoader, internalName);
+        if (classFile == null) {
+            return null;
+        }
+        final ClassNode classNode = new ClassNode(Opcodes.ASM5);
+        new ClassReader(classFile).accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return classNode;
+    }
+
+    /**
+     * @return null if not found
+     */
+    byte[] getClassFile(ClassLoader classLoader, String internalName) {
+        final String path = internalName + ".class";
+        try {
+            InputStream in = classLoader == null ? ClassLoader.getSystemResourceAsStream(path) : classLoader.getResourceAsStream(path);
+            if (in == null) {
+                in = getBootstrapResource(path);
+            }
+            if (in == null && pluginResourceLoader != null) {
+                in = pluginResourceLoader.getResourceAsStream(path);
+            }
+            if (in == null) {
+                return null;
+            }
+            return readFully(in);
+        } catch (IOException e) {
+            logger.info("Failed to read {}. Caused:{}", path, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private InputStream getBootstrapResource(String path) throws IOException {
+        for (JarFile jarFile : bootstrapJarFiles) {
+            final JarEntry entry = jarFile.getJarEntry(path);
+            if (entry != null) {
+                return jarFile.getInputStream(entry);
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public boolean hasClass(ClassLoader classLoader, String classBinaryName) {
+        final String path = JavaAssistUtils.javaNameToJvmName(classBinaryName) + ".class";
+        final URL url = classLoader == null ? ClassLoader.getSystemResource(path) : classLoader.getResource(path);
+        if (url != null) {
+            return true;
+        }
+        for (JarFile jarFile : bootstrapJarFiles) {
+            if (jarFile.getJarEntry(path) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void appendToBootstrapClassPath(String jar) {
+        try {
+            bootstrapJarFiles.add(new JarFile(jar));
+        } catch (IOException e) {
+            throw new PinpointException("bootstrap jar not found. jar:" + jar + " Caused by:" + e.getMessage(), e);
+        }
+    }
+}
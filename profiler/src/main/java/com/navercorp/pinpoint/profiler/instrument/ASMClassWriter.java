@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes frames without loading classes : the common super class of two types is found by reading
+ * their class files through the {@link ASMClassPool}, from the class loader of the instrumented class.
+ */
+class ASMClassWriter extends ClassWriter {
+
+    private static final String OBJECT_CLASS_INTERNAL_NAME = "java/lang/Object";
+
+    private final ASMClassPool classPool;
+    private final ClassLoader classLoader;
+    // a class is merged with the same types many times
+    private final Map<String, ClassNode> classHeaders = new HashMap<String, ClassNode>();
+
+    /**
+     * @param classNode class being written, which may not be readable from the class loader
+     */
+    ASMClassWriter(ASMClassPool classPool, ClassLoader classLoader, ClassNode classNode, int flags) {
+        super(flags);
+        this.classPool = classPool;
+        this.classLoader = classLoader;
+        this.classHeaders.put(classNode.name, classNode);
+    }
+
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        if (OBJECT_CLASS_INTERNAL_NAME.equals(type1) || OBJECT_CLASS_INTERNAL_NAME.equals(type2)) {
+            return OBJECT_CLASS_INTERNAL_NAME;
+        }
+        final ClassNode class1 = getClassHeader(type1);
+        final ClassNode class2 = getClassHeader(type2);
+        if (class1 == null || class2 == null || isInterface(class1) || isInterface(class2)) {
+            // the verifier treats interfaces as Object
+            return OBJECT_CLASS_INTERNAL_NAME;
+        }
+
+        // walk up the hierarchy of type1 and return the first class that type2 extends
+        String superClass = type1;
+        ClassNode superClassNode = class1;
+        while (superClassNode != null && superClassNode.superName != null) {
+            if (isSubClassOf(type2, class2, superClass)) {
+                return superClass;
+            }
+            superClass = superClassNode.superName;
+            superClassNode = getClassHeader(superClass);
+        }
+        return OBJECT_CLASS_INTERNAL_NAME;
+    }
+
+    private boolean isSubClassOf(String type, ClassNode classNode, String superClass) {
+        String name = type;
+        ClassNode node = classNode;
+        while (true) {
+            if (name.equals(superClass)) {
+                return true;
+            }
+            if (node == null || node.superName == null) {
+                return false;
+            }
+            name = node.superName;
+            node = getClassHeader(name);
+        }
+    }
+
+    private ClassNode getClassHeader(String internalName) {
+        if (classHeaders.containsKey(internalName)) {
+            return classHeaders.get(internalName);
+        }
+        final ClassNode classNode = classPool.readClassHeader(classLoader, internalName);
+        classHeaders.put(internalName, classNode);
+        return classNode;
+    }
+
+    private static boolean isInterface(ClassNode classNode) {
+        return (classNode.access & Opcodes.ACC_INTERFACE) != 0;
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.Interceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.InterceptorInvokerHelper;
+import com.navercorp.pinpoint.bootstrap.interceptor.registry.InterceptorRegistry;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.CaptureType;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorDefinition;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorField;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorType;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Weaves the calls of one interceptor into a method, as the code generated from source by {@link JavassistMethod} :
+ * <pre>
+ * Interceptor interceptor = null;
+ * try {
+ *     interceptor = InterceptorRegistry.getInterceptor(interceptorId);
+ *     ((InterceptorBase) interceptor).before(...);
+ * } catch (Throwable t) {
+ *     InterceptorInvokerHelper.handleException(t);
+ * }
+ * try {
+ *     // original code, the after method is called before each return
+ * } catch (Throwable e) {
+ *     ((InterceptorBase) interceptor).after(..., null, e);
+ *     throw e;
+ * }
+ * </pre>
+ * The code after the call to the super constructor is woven in constructors.
+ * With an {@link InterceptorField}, the interceptor is read from the static field instead of the registry.
+ */
+class ASMInterceptorWeaver extends AdviceAdapter {
+
+    private static final Type INTERCEPTOR_TYPE = Type.getType(Interceptor.class);
+    private static final Type INTERCEPTOR_REGISTRY_TYPE = Type.getType(InterceptorRegistry.class);
+    private static final Type INTERCEPTOR_INVOKER_HELPER_TYPE = Type.getType(InterceptorInvokerHelper.class);
+    private static final Type THROWABLE_TYPE = Type.getType(Throwable.class);
+
+    private static final Method GET_INTERCEPTOR = new Method("getInterceptor", INTERCEPTOR_TYPE, new Type[] {Type.INT_TYPE});
+    private static final Method HANDLE_EXCEPTION = new Method("handleException", Type.VOID_TYPE, new Type[] {THROWABLE_TYPE});
+
+    private static final int THIS_RETURN_EXCEPTION_SIZE = 3;
+
+    private final int interceptorId;
+    private final InterceptorDefinition interceptorDefinition;
+    private final Type interceptorBaseType;
+    private final InterceptorField interceptorField;
+    private final Type interceptorFieldType;
+    private final Type ownerType;
+    private final java.lang.reflect.Method beforeMethod;
+    private final java.lang.reflect.Method afterMethod;
+
+    private final String className;
+    private final String methodName;
+    private final String parameterDescription;
+    private final int apiId;
+
+    private final boolean staticMethod;
+    private final boolean constructor;
+    private final Type[] argumentTypes;
+    private final Type returnType;
+
+    private int interceptorVar = -1;
+    private int returnValueVar = -1;
+
+    // start and end labels of the original code, split at each return
+    private final List<Label> ranges = new ArrayList<Label>();
+    private Label rangeStart;
+
+    /**
+     * @param className name of the declaring class given to static interceptors
+     * @param methodName name given to static interceptors, the simple class name for constructors
+     * @param apiId api id given to api id aware interceptors
+     * @param interceptorField static field holding the interceptor, null to look it up in the registry
+     */
+    ASMInterceptorWeaver(MethodVisitor mv, int access, String name, String desc, int interceptorId, InterceptorDefinition interceptorDefinition,
+                         String className, String methodName, String parameterDescription, int apiId, InterceptorField interceptorField) {
+        super(Opcodes.ASM5, mv, access, name, desc);
+        this.interceptorId = interceptorId;
+        this.interceptorDefinition = interceptorDefinition;
+        this.interceptorBaseType = Type.getType(interceptorDefinition.getInterceptorBaseClass());
+        this.interceptorField = interceptorField;
+        this.interceptorFieldType = interceptorField == null ? null : Type.getType(interceptorField.getType());
+        this.ownerType = Type.getObjectType(className.replace('.', '/'));
+
+        final CaptureType captureType = interceptorDefinition.getCaptureType();
+        final boolean before = captureType == CaptureType.BEFORE || captureType == CaptureType.AROUND;
+        final boolean after = captureType == CaptureType.AFTER || captureType == CaptureType.AROUND;
+        if (interceptorField == null) {
+            this.beforeMethod = before ? interceptorDefinition.getBeforeMethod() : null;
+            this.afterMethod = after ? interceptorDefinition.getAfterMethod() : null;
+        } else {
+            this.beforeMethod = before ? interceptorField.getBeforeMethod() : null;
+            this.afterMethod = after ? interceptorField.getAfterMethod() : null;
+        }
+
+        this.className = className;
+        this.methodName = methodName;
+        this.parameterDescription = parameterDescription;
+        this.apiId = apiId;
+
+        this.staticMethod = (access & Opcodes.ACC_STATIC) != 0;
+        this.constructor = "<init>".equals(name);
+        this.argumentTypes = Type.getArgumentTypes(desc);
+        this.returnType = Type.getReturnType(desc);
+    }
+
+    @Override
+    protected void onMethodEnter() {
+        if (interceptorField != null) {
+            if (beforeMethod != null) {
+                final Label tryStart = mark();
+                final Label tryEnd = new Label();
+                final Label done = new Label();
+                loadInterceptor();
+                pushBeforeArguments();
+                invokeInterceptor(beforeMethod);
+                mark(tryEnd);
+                goTo(done);
+                catchException(tryStart, tryEnd, THROWABLE_TYPE);
+                invokeStatic(INTERCEPTOR_INVOKER_HELPER_TYPE, HANDLE_EXCEPTION);
+                mark(done);
+            }
+            if (afterMethod != null) {
+                this.rangeStart = mark();
+            }
+            return;
+        }
+
+        this.interceptorVar = newLocal(INTERCEPTOR_TYPE);
+        mv.visitInsn(ACONST_NULL);
+        storeLocal(interceptorVar);
+
+        final Label tryStart = new Label();
+        final Label tryEnd = new Label();
+        final Label done = new Label();
+        mark(tryStart);
+        push(interceptorId);
+        invokeStatic(INTERCEPTOR_REGISTRY_TYPE, GET_INTERCEPTOR);
+        storeLocal(interceptorVar);
+        if (beforeMethod != null) {
+            loadInterceptor();
+            pushBeforeArguments();
+            invokeInterceptor(beforeMethod);
+        }
+        mark(tryEnd);
+        goTo(done);
+        catchException(tryStart, tryEnd, THROWABLE_TYPE);
+        invokeStatic(INTERCEPTOR_INVOKER_HELPER_TYPE, HANDLE_EXCEPTION);
+        mark(done);
+
+        if (afterMethod != null) {
+            this.rangeStart = mark();
+        }
+    }
+
+    @Override
+    protected void onMethodExit(int opcode) {
+        if (afterMethod == null || opcode == ATHROW) {
+            // thrown exceptions are handled by the catch block added in visitMaxs
+            return;
+        }
+        ranges.add(rangeStart);
+        ranges.add(mark());
+
+        final boolean hasReturnValue = !constructor && returnType.getSort() != Type.VOID;
+        if (hasReturnValue) {
+            if (returnValueVar == -1) {
+                this.returnValueVar = newLocal(returnType);
+            }
+            storeLocal(returnValueVar);
+        }
+        final Label tryStart = mark();
+        final Label tryEnd = new Label();
+        final Label done = new Label();
+        loadInterceptor();
+        pushAfterArguments(hasReturnValue ? returnValueVar : -1, -1);
+        invokeInterceptor(afterMethod);
+        mark(tryEnd);
+        goTo(done);
+        catchException(tryStart, tryEnd, THROWABLE_TYPE);
+        invokeStatic(INTERCEPTOR_INVOKER_HELPER_TYPE, HANDLE_EXCEPTION);
+        mark(done);
+        if (hasReturnValue) {
+            loadLocal(returnValueVar);
+        }
+
+        this.rangeStart = mark();
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        if (afterMethod != null && rangeStart != null) {
+            ranges.add(rangeStart);
+            ranges.add(mark());
+
+            final Label handler = mark();
+            for (int i = 0; i < ranges.size(); i += 2) {
+                mv.visitTryCatchBlock(ranges.get(i), ranges.get(i + 1), handler, THROWABLE_TYPE.getInternalName());
+            }
+            final int throwableVar = newLocal(THROWABLE_TYPE);
+            storeLocal(throwableVar);
+
+            final Label tryStart = mark();
+            final Label tryEnd = new Label();
+            final Label done = new Label();
+            loadInterceptor();
+            pushAfterArguments(-1, throwableVar);
+            invokeInterceptor(afterMethod);
+            mark(tryEnd);
+            goTo(done);
+            catchException(tryStart, tryEnd, THROWABLE_TYPE);
+            invokeStatic(INTERCEPTOR_INVOKER_HELPER_TYPE, HANDLE_EXCEPTION);
+            mark(done);
+
+            loadLocal(throwableVar);
+            throwException();
+        }
+        super.visitMaxs(maxStack, maxLocals);
+    }
+
+    private void loadInterceptor() {
+        if (interceptorField == null) {
+            loadLocal(interceptorVar);
+            checkCast(interceptorBaseType);
+        } else {
+            getStatic(ownerType, interceptorField.getName(), interceptorFieldType);
+        }
+    }
+
+    private void invokeInterceptor(java.lang.reflect.Method interceptorMethod) {
+        if (interceptorField == null) {
+            invokeInterface(interceptorBaseType, Method.getMethod(interceptorMethod));
+        } else if (interceptorField.getType().isInterface()) {
+            invokeInterface(interceptorFieldType, Method.getMethod(interceptorMethod));
+        } else {
+            invokeVirtual(interceptorFieldType, Method.getMethod(interceptorMethod));
+        }
+    }
+
+    private void pushBeforeArguments() {
+        switch (interceptorDefinition.getInterceptorType()) {
+            case ARRAY_ARGS:
+                pushTarget();
+                pushArguments();
+                break;
+            case STATIC:
+                pushTarget();
+                push(className);
+                push(methodName);
+                push(parameterDescription);
+                pushArguments();
+                break;
+            case API_ID_AWARE:
+                pushTarget();
+                push(apiId);
+                pushArguments();
+                break;
+            case BASIC:
+                final int interceptorParameterSize = beforeMethod.getParameterTypes().length;
+                if (interceptorParameterSize == 0) {
+                    return;
+                }
+                pushTarget();
+                if (isUnboxedBefore()) {
+                    pushUnboxedArguments(interceptorParameterSize - 1);
+                } else {
+                    pushBoxedArguments(interceptorParameterSize - 1);
+                }
+                break;
+        }
+    }
+
+    private void pushAfterArguments(int returnValueVar, int throwableVar) {
+        switch (interceptorDefinition.getInterceptorType()) {
+            case ARRAY_ARGS:
+                pushTarget();
+                pushArguments();
+                break;
+            case STATIC:
+                pushTarget();
+                push(className);
+                push(methodName);
+                push(parameterDescription);
+                pushArguments();
+                break;
+            case API_ID_AWARE:
+                pushTarget();
+                push(apiId);
+                pushArguments();
+                break;
+            case BASIC:
+                final int interceptorParameterSize = afterMethod.getParameterTypes().length;
+                if (interceptorParameterSize == 0) {
+                    return;
+                }
+                if (interceptorParameterSize < THIS_RETURN_EXCEPTION_SIZE) {
+                    throw new IllegalStateException("interceptor arguments not matched. interceptorSize:" + interceptorParameterSize);
+                }
+                pushTarget();
+                if (isUnboxedAfter()) {
+                    pushUnboxedArguments(interceptorParameterSize - THIS_RETURN_EXCEPTION_SIZE);
+                    pushUnboxedResult(returnValueVar, throwableVar);
+                    return;
+                }
+                pushBoxedArguments(interceptorParameterSize - THIS_RETURN_EXCEPTION_SIZE);
+                break;
+        }
+        if (returnValueVar == -1) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            loadLocal(returnValueVar);
+            box(returnType);
+        }
+        if (throwableVar == -1) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            loadLocal(throwableVar);
+        }
+    }
+
+    private void pushTarget() {
+        if (staticMethod) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            loadThis();
+        }
+    }
+
+    private void pushArguments() {
+        if (argumentTypes.length == 0) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            loadArgArray();
+        }
+    }
+
+    private void pushBoxedArguments(int interceptorArgumentSize) {
+        final int matchSize = Math.min(argumentTypes.length, interceptorArgumentSize);
+        int i = 0;
+        for (; i < matchSize; i++) {
+            loadArg(i);
+            box(argumentTypes[i]);
+        }
+        for (; i < interceptorArgumentSize; i++) {
+            mv.visitInsn(ACONST_NULL);
+        }
+    }
+
+    private void pushUnboxedArguments(int interceptorArgumentSize) {
+        // the interceptor field is only given unboxed methods taking the first arguments of the method
+        for (int i = 0; i < interceptorArgumentSize; i++) {
+            loadArg(i);
+        }
+    }
+
+    private void pushUnboxedResult(int returnValueVar, int throwableVar) {
+        if (constructor || returnType.getSort() == Type.VOID) {
+            mv.visitInsn(ACONST_NULL);
+        } else if (returnValueVar != -1) {
+            loadLocal(returnValueVar);
+        } else {
+            pushDefaultValue(returnType);
+        }
+        if (throwableVar == -1) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            loadLocal(throwableVar);
+        }
+    }
+
+    private void pushDefaultValue(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+                push(0);
+                break;
+            case Type.LONG:
+                push(0L);
+                break;
+            case Type.FLOAT:
+                push(0.0F);
+                break;
+            case Type.DOUBLE:
+                push(0.0D);
+                break;
+            default:
+                mv.visitInsn(ACONST_NULL);
+                break;
+        }
+    }
+
+    private boolean isUnboxedBefore() {
+        return interceptorField != null && interceptorField.isUnboxedBefore();
+    }
+
+    private boolean isUnboxedAfter() {
+        return interceptorField != null && interceptorField.isUnboxedAfter();
+    }
+}
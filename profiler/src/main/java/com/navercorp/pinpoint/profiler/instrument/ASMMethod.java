@@ -0,0 +1,359 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument;
+
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentContext;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentException;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentMethod;
+import com.navercorp.pinpoint.bootstrap.interceptor.Interceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.annotation.Scope;
+import com.navercorp.pinpoint.bootstrap.interceptor.registry.InterceptorRegistry;
+import com.navercorp.pinpoint.bootstrap.interceptor.scope.ExecutionPolicy;
+import com.navercorp.pinpoint.bootstrap.interceptor.scope.InterceptorScope;
+import com.navercorp.pinpoint.common.util.Asserts;
+import com.navercorp.pinpoint.profiler.context.DefaultMethodDescriptor;
+import com.navercorp.pinpoint.profiler.instrument.cache.TransformSession;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorDefinition;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorDefinitionFactory;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorField;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorType;
+import com.navercorp.pinpoint.profiler.interceptor.factory.AnnotatedInterceptorFactory;
+import com.navercorp.pinpoint.profiler.interceptor.registry.InterceptorRegistryBinder;
+import com.navercorp.pinpoint.profiler.util.JavaAssistUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link InstrumentMethod} of the ASM engine. Interceptor calls are woven by {@link ASMInterceptorWeaver}.
+ */
+public class ASMMethod implements InstrumentMethod {
+
+    private final InstrumentContext pluginContext;
+    private final InterceptorRegistryBinder interceptorRegistryBinder;
+
+    private final ASMClass declaringClass;
+    private final MethodNode methodNode;
+    private final MethodDescriptor descriptor;
+
+    // TODO fix inject InterceptorDefinitionFactory
+    private static final InterceptorDefinitionFactory interceptorDefinitionFactory = new InterceptorDefinitionFactory();
+
+    public ASMMethod(InstrumentContext pluginContext, InterceptorRegistryBinder interceptorRegistryBinder, ASMClass declaringClass, MethodNode methodNode) {
+        this.pluginContext = pluginContext;
+        this.interceptorRegistryBinder = interceptorRegistryBinder;
+        this.declaringClass = declaringClass;
+        this.methodNode = methodNode;
+
+        final String[] parameterTypes = getParameterTypes();
+        final DefaultMethodDescriptor descriptor = new DefaultMethodDescriptor(declaringClass.getName(), getName(), parameterTypes, getParameterVariableNames(parameterTypes));
+        descriptor.setLineNumber(getLineNumber());
+        this.descriptor = descriptor;
+    }
+
+    private String[] getParameterVariableNames(String[] parameterTypes) {
+        final String[] variableNames = new String[parameterTypes.length];
+        final Type[] argumentTypes = Type.getArgumentTypes(methodNode.desc);
+        int slot = isStatic() ? 0 : 1;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            final String variableName = getLocalVariableName(slot);
+            if (variableName == null) {
+                // not compiled with debug option
+                return getDefaultVariableNames(parameterTypes);
+            }
+            variableNames[i] = variableName;
+            slot += argumentTypes[i].getSize();
+        }
+        return variableNames;
+    }
+
+    private String getLocalVariableName(int slot) {
+        final List<LocalVariableNode> localVariables = methodNode.localVariables;
+        if (localVariables == null) {
+            return null;
+        }
+        for (LocalVariableNode localVariable : localVariables) {
+            if (localVariable.index == slot) {
+                return localVariable.name;
+            }
+        }
+        return null;
+    }
+
+    private static String[] getDefaultVariableNames(String[] parameterTypes) {
+        final String[] variableNames = new String[parameterTypes.length];
+        for (int i = 0; i < variableNames.length; i++) {
+            final String parameterType = parameterTypes[i];
+            variableNames[i] = parameterType.substring(parameterType.lastIndexOf('.') + 1).toLowerCase();
+        }
+        return variableNames;
+    }
+
+    private int getLineNumber() {
+        for (AbstractInsnNode insn = methodNode.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof LineNumberNode) {
+                return ((LineNumberNode) insn).line;
+            }
+        }
+        return -1;
+    }
+
+    MethodNode getMethodNode() {
+        return methodNode;
+    }
+
+    @Override
+    public String getName() {
+        if (isConstructor()) {
+            // same as javassist, the simple name of the declaring class
+            final String className = declaringClass.getName();
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+        return methodNode.name;
+    }
+
+    @Override
+    public String[] getParameterTypes() {
+        return JavaAssistUtils.parseParameterSignature(methodNode.desc);
+    }
+
+    @Override
+    public String getReturnType() {
+        if (isConstructor()) {
+            return null;
+        }
+        return Type.getReturnType(methodNode.desc).getClassName();
+    }
+
+    @Override
+    public int getModifiers() {
+        // drop the ASM specific flags such as ACC_DEPRECATED
+        return methodNode.access & 0xFFFF;
+    }
+
+    private boolean isStatic() {
+        return (methodNode.access & Opcodes.ACC_STATIC) != 0;
+    }
+
+    @Override
+    public boolean isConstructor() {
+        return "<init>".equals(methodNode.name);
+    }
+
+    @Override
+    public MethodDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    @Override
+    public int addInterceptor(String interceptorClassName) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        return addInterceptor0(interceptorClassName, null, null, null);
+    }
+
+    @Override
+    public int addInterceptor(String interceptorClassName, Object[] constructorArgs) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        return addInterceptor0(interceptorClassName, constructorArgs, null, null);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, String scopeName) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scopeName, "scopeName");
+        final InterceptorScope interceptorScope = this.pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, null, interceptorScope, null);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, InterceptorScope scope) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scope, "scope");
+        return addInterceptor0(interceptorClassName, null, scope, null);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, String scopeName, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scopeName, "scopeName");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        final InterceptorScope interceptorScope = this.pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, null, interceptorScope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(scope, "scope");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        return addInterceptor0(interceptorClassName, null, scope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, String scopeName) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scopeName, "scopeName");
+        final InterceptorScope interceptorScope = this.pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, constructorArgs, interceptorScope, null);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, InterceptorScope scope) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scope, "scope");
+        return addInterceptor0(interceptorClassName, constructorArgs, scope, null);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, String scopeName, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scopeName, "scopeName");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        final InterceptorScope interceptorScope = this.pluginContext.getInterceptorScope(scopeName);
+        return addInterceptor0(interceptorClassName, constructorArgs, interceptorScope, executionPolicy);
+    }
+
+    @Override
+    public int addScopedInterceptor(String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        Asserts.notNull(interceptorClassName, "interceptorClassName");
+        Asserts.notNull(constructorArgs, "constructorArgs");
+        Asserts.notNull(scope, "scope");
+        Asserts.notNull(executionPolicy, "executionPolicy");
+        return addInterceptor0(interceptorClassName, constructorArgs, scope, executionPolicy);
+    }
+
+    @Override
+    public void addInterceptor(int interceptorId) throws InstrumentException {
+        Interceptor interceptor = InterceptorRegistry.getInterceptor(interceptorId);
+        TransformSession.reuseInterceptor(interceptorId);
+
+        try {
+            addInterceptor0(interceptor, interceptorId);
+        } catch (RuntimeException e) {
+            throw new InstrumentException("Failed to add interceptor " + interceptor.getClass().getName() + " to " + getLongName(), e);
+        }
+    }
+
+    // for internal api
+    int addInterceptorInternal(String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        if (interceptorClassName == null) {
+            throw new NullPointerException("interceptorClassName must not be null");
+        }
+        return addInterceptor0(interceptorClassName, constructorArgs, scope, executionPolicy);
+    }
+
+    private int addInterceptor0(String interceptorClassName, Object[] constructorArgs, InterceptorScope scope, ExecutionPolicy executionPolicy) throws InstrumentException {
+        final Class<? extends Interceptor> interceptorType = pluginContext.injectClass(declaringClass.getClassLoader(), interceptorClassName);
+
+        if (scope == null) {
+            final Scope interceptorScope = interceptorType.getAnnotation(Scope.class);
+            if (interceptorScope != null) {
+                scope = pluginContext.getInterceptorScope(interceptorScope.value());
+                executionPolicy = interceptorScope.executionPolicy();
+            }
+        }
+        if (scope == null) {
+            executionPolicy = null;
+        } else if (executionPolicy == null) {
+            executionPolicy = ExecutionPolicy.BOUNDARY;
+        }
+
+        final AnnotatedInterceptorFactory factory = new AnnotatedInterceptorFactory(pluginContext);
+        final Interceptor interceptor = factory.getInterceptor(declaringClass.getClassLoader(), interceptorClassName, constructorArgs, scope, executionPolicy, declaringClass, this);
+        final int interceptorId = TransformSession.addInterceptor(interceptorRegistryBinder.getInterceptorRegistryAdaptor(), interceptor);
+
+        try {
+            addInterceptor0(interceptor, interceptorId);
+        } catch (RuntimeException e) {
+            throw new InstrumentException("Failed to add interceptor " + interceptorClassName + " to " + getLongName(), e);
+        }
+        return interceptorId;
+    }
+
+    private void addInterceptor0(Interceptor interceptor, int interceptorId) throws InstrumentException {
+        if (interceptor == null) {
+            throw new NullPointerException("interceptor must not be null");
+        }
+        if (TransformSession.isReplaying()) {
+            // woven bytecode comes from the transform cache
+            return;
+        }
+        if ((methodNode.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+            throw new InstrumentException(getLongName() + " has no method body.");
+        }
+
+        final InterceptorDefinition interceptorDefinition = interceptorDefinitionFactory.createInterceptorDefinition(interceptor.getClass());
+        int apiId = 0;
+        if (interceptorDefinition.getInterceptorType() == InterceptorType.API_ID_AWARE) {
+            apiId = pluginContext.getTraceContext().cacheApi(descriptor);
+        }
+        final String parameterDescription = JavaAssistUtils.getParameterDescription(getParameterTypes());
+        final InterceptorField interceptorField = declaringClass.addInterceptorField(interceptorDefinition, interceptorId, this);
+
+        final String[] exceptions = methodNode.exceptions.toArray(new String[methodNode.exceptions.size()]);
+        final MethodNode woven = new MethodNode(Opcodes.ASM5, methodNode.access, methodNode.name, methodNode.desc, methodNode.signature, exceptions);
+        final ASMInterceptorWeaver weaver = new ASMInterceptorWeaver(woven, methodNode.access, methodNode.name, methodNode.desc,
+                interceptorId, interceptorDefinition, declaringClass.getName(), getName(), parameterDescription, apiId, interceptorField);
+        methodNode.accept(weaver);
+        removeEmptyTryCatchBlocks(woven);
+
+        // replace the code in place, other ASMMethod of the same method see the woven code
+        methodNode.instructions = woven.instructions;
+        methodNode.tryCatchBlocks = woven.tryCatchBlocks;
+        methodNode.localVariables = woven.localVariables;
+        methodNode.visibleLocalVariableAnnotations = woven.visibleLocalVariableAnnotations;
+        methodNode.invisibleLocalVariableAnnotations = woven.invisibleLocalVariableAnnotations;
+        methodNode.maxStack = woven.maxStack;
+        methodNode.maxLocals = woven.maxLocals;
+    }
+
+    private static void removeEmptyTryCatchBlocks(MethodNode methodNode) {
+        // the range after the last return is usually empty, which is invalid in a class file
+        final Iterator<TryCatchBlockNode> iterator = methodNode.tryCatchBlocks.iterator();
+        while (iterator.hasNext()) {
+            final TryCatchBlockNode tryCatchBlock = iterator.next();
+            if (isEmptyRange(tryCatchBlock.start, tryCatchBlock.end)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isEmptyRange(AbstractInsnNode start, AbstractInsnNode end) {
+        for (AbstractInsnNode insn = start; insn != null && insn != end; insn = insn.getNext()) {
+            if (insn.getOpcode() != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getLongName() {
+        return declaringClass.getName() + "." + getName() + JavaAssistUtils.getParameterDescription(getParameterTypes());
+    }
+}
@@ -51,6 +51,7 @@ import com.navercorp.pinpoint.profiler.instrument.AccessorAnalyzer.AccessorDetai
 import com.navercorp.pinpoint.profiler.instrument.GetterAnalyzer.GetterDetails;
 import com.navercorp.pinpoint.profiler.instrument.SetterAnalyzer.SetterDetails;
 import com.navercorp.pinpoint.profiler.instrument.aspect.AspectWeaverClass;
+import com.navercorp.pinpoint.profiler.instrument.cache.TransformSession;
 import com.navercorp.pinpoint.profiler.interceptor.registry.InterceptorRegistryBinder;
 import com.navercorp.pinpoint.profiler.objectfactory.AutoBindingObjectFactory;
 import com.navercorp.pinpoint.profiler.objectfactory.InterceptorArgumentProvider;
@@ -319,6 +320,11 @@ public class JavassistClass implements InstrumentClass {
 
     @Override
     public byte[] toBytecode() {
+        final byte[] replayBytecode = TransformSession.getReplayBytecode();
+        if (replayBytecode != null) {
+            ctClass.detach();
+            return replayBytecode;
+        }
         try {
             byte[] bytes = ctClass.toBytecode();
             ctClass.detach();
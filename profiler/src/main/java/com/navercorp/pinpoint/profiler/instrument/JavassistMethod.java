@@ -23,12 +23,15 @@ import com.navercorp.pinpoint.bootstrap.interceptor.annotation.Scope;
 import com.navercorp.pinpoint.bootstrap.interceptor.scope.InterceptorScope;
 import com.navercorp.pinpoint.profiler.instrument.interceptor.*;
 import javassist.CannotCompileException;
+import javassist.ClassPool;
 import javassist.CtBehavior;
 import javassist.CtClass;
 import javassist.CtConstructor;
+import javassist.CtField;
 import javassist.CtMethod;
 import javassist.Modifier;
 import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
 import javassist.bytecode.BadBytecode;
 import javassist.bytecode.Bytecode;
 import javassist.bytecode.CodeAttribute;
@@ -47,6 +50,7 @@ import com.navercorp.pinpoint.bootstrap.interceptor.scope.ExecutionPolicy;
 import com.navercorp.pinpoint.bootstrap.interceptor.registry.InterceptorRegistry;
 import com.navercorp.pinpoint.common.util.Asserts;
 import com.navercorp.pinpoint.profiler.context.DefaultMethodDescriptor;
+import com.navercorp.pinpoint.profiler.instrument.cache.TransformSession;
 import com.navercorp.pinpoint.profiler.interceptor.factory.AnnotatedInterceptorFactory;
 import com.navercorp.pinpoint.profiler.interceptor.registry.InterceptorRegistryBinder;
 import com.navercorp.pinpoint.profiler.util.JavaAssistUtils;
@@ -203,6 +207,7 @@ public class JavassistMethod implements InstrumentMethod {
     @Override
     public void addInterceptor(int interceptorId) throws InstrumentException {
         Interceptor interceptor = InterceptorRegistry.getInterceptor(interceptorId);
+        TransformSession.reuseInterceptor(interceptorId);
 
         try {
             addInterceptor0(interceptor, interceptorId);
@@ -263,7 +268,7 @@ public class JavassistMethod implements InstrumentMethod {
         try {
             ScopeInfo scopeInfo = resolveScopeInfo(interceptorClassName, scope, executionPolicy);
             Interceptor interceptor = createInterceptor(interceptorClassName, scopeInfo, constructorArgs);
-            int interceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(interceptor);
+            int interceptorId = TransformSession.addInterceptor(interceptorRegistryBinder.getInterceptorRegistryAdaptor(), interceptor);
 
             addInterceptor0(interceptor, interceptorId);
             return interceptorId;
@@ -287,21 +292,104 @@ public class JavassistMethod implements InstrumentMethod {
         if (interceptor == null) {
             throw new NullPointerException("interceptor must not be null");
         }
+        if (TransformSession.isReplaying()) {
+            // woven bytecode comes from the transform cache
+            return;
+        }
 
         final InterceptorDefinition interceptorDefinition = interceptorDefinitionFactory.createInterceptorDefinition(interceptor.getClass());
 
-        final String localVariableName = initializeLocalVariable(interceptorId);
-        int originalCodeOffset = insertBefore(-1, localVariableName);
+        final InterceptorField interceptorField = addInterceptorField(interceptorDefinition, interceptorId);
+        int originalCodeOffset;
+        if (interceptorField == null) {
+            final String localVariableName = initializeLocalVariable(interceptorId);
+            originalCodeOffset = insertBefore(-1, localVariableName);
+        } else {
+            originalCodeOffset = getOriginalCodeOffset();
+        }
 
         boolean localVarsInitialized = false;
         
-        final int offset = addBeforeInterceptor(interceptorDefinition, interceptorId, originalCodeOffset);
+        final int offset = addBeforeInterceptor(interceptorDefinition, interceptorId, originalCodeOffset, interceptorField);
         if (offset != -1) {
             localVarsInitialized = true;
             originalCodeOffset = offset;
         }
 
-        addAfterInterceptor(interceptorDefinition, interceptorId, localVarsInitialized, originalCodeOffset);
+        addAfterInterceptor(interceptorDefinition, interceptorId, localVarsInitialized, originalCodeOffset, interceptorField);
+    }
+
+    /**
+     * @return null if the interceptor is looked up in the registry
+     */
+    private InterceptorField addInterceptorField(InterceptorDefinition interceptorDefinition, int interceptorId) throws CannotCompileException, NotFoundException {
+        if (!InterceptorField.isEnabled(pluginContext.getTraceContext()) || InterceptorField.isRedefining()) {
+            return null;
+        }
+        final CtClass ctClass = behavior.getDeclaringClass();
+        // fields of an interface are public
+        if (ctClass.isInterface() || changesSerialVersionUID(ctClass)) {
+            return null;
+        }
+
+        final ClassPool classPool = ctClass.getClassPool();
+        InterceptorField interceptorField = InterceptorField.create(interceptorId, interceptorDefinition, this, declaringClass.getClassLoader());
+        CtClass fieldType;
+        try {
+            fieldType = classPool.get(interceptorField.getType().getName());
+        } catch (NotFoundException e) {
+            interceptorField = InterceptorField.createBaseTypeField(interceptorId, interceptorDefinition);
+            fieldType = classPool.get(interceptorField.getType().getName());
+        }
+
+        if (!hasDeclaredField(ctClass, interceptorField.getName())) {
+            final CtField field = new CtField(fieldType, interceptorField.getName(), ctClass);
+            field.getFieldInfo2().setAccessFlags(AccessFlag.PRIVATE | AccessFlag.STATIC | AccessFlag.FINAL | AccessFlag.SYNTHETIC);
+            final String initializer = "(" + fieldType.getName() + ") " + InterceptorRegistry.class.getName() + ".getInterceptor(" + interceptorId + ")";
+            ctClass.addField(field, CtField.Initializer.byExpr(initializer));
+        }
+        if (isDebug) {
+            logger.debug("addInterceptorField behavior:{} field:{}", behavior.getLongName(), interceptorField);
+        }
+        return interceptorField;
+    }
+
+    private boolean changesSerialVersionUID(CtClass ctClass) {
+        // the default serialVersionUID depends on whether there is a static initializer
+        if (ctClass.getClassInitializer() != null || hasDeclaredField(ctClass, "serialVersionUID")) {
+            return false;
+        }
+        try {
+            return ctClass.subtypeOf(ctClass.getClassPool().get("java.io.Serializable"));
+        } catch (NotFoundException e) {
+            return true;
+        }
+    }
+
+    private static boolean hasDeclaredField(CtClass ctClass, String name) {
+        for (CtField field : ctClass.getDeclaredFields()) {
+            if (field.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getOriginalCodeOffset() throws CannotCompileException {
+        final CodeAttribute ca = behavior.getMethodInfo().getCodeAttribute();
+        if (ca == null) {
+            throw new CannotCompileException("no method body");
+        }
+        final CodeIterator iterator = ca.iterator();
+        if (isConstructor()) {
+            // code is inserted after the call to super() or this()
+            try {
+                iterator.skipConstructor();
+            } catch (BadBytecode e) {
+                throw new CannotCompileException(e);
+            }
+        }
+        return iterator.lookAhead();
     }
 
     private String initializeLocalVariable(int interceptorId) throws CannotCompileException, NotFoundException {
@@ -315,7 +403,7 @@ public class JavassistMethod implements InstrumentMethod {
         return initVars.toString();
     }
 
-    private void addAfterInterceptor(InterceptorDefinition interceptorDefinition, int interceptorId, boolean localVarsInitialized, int originalCodeOffset) throws NotFoundException, CannotCompileException {
+    private void addAfterInterceptor(InterceptorDefinition interceptorDefinition, int interceptorId, boolean localVarsInitialized, int originalCodeOffset, InterceptorField interceptorField) throws NotFoundException, CannotCompileException {
 
         final Class<?> interceptorClass = interceptorDefinition.getInterceptorClass();
         final CaptureType captureType = interceptorDefinition.getCaptureType();
@@ -331,7 +419,7 @@ public class JavassistMethod implements InstrumentMethod {
             return;
         }
 
-        InvokeAfterCodeGenerator catchGenerator = new InvokeAfterCodeGenerator(interceptorId, interceptorDefinition, declaringClass, this, pluginContext.getTraceContext(), localVarsInitialized, true);
+        InvokeAfterCodeGenerator catchGenerator = new InvokeAfterCodeGenerator(interceptorId, interceptorDefinition, declaringClass, this, pluginContext.getTraceContext(), localVarsInitialized, true, interceptorField);
         String catchCode = catchGenerator.generate();
         
         if (isDebug) {
@@ -342,7 +430,7 @@ public class JavassistMethod implements InstrumentMethod {
         insertCatch(originalCodeOffset, catchCode, throwable, "$e");
 
         
-        InvokeAfterCodeGenerator afterGenerator = new InvokeAfterCodeGenerator(interceptorId, interceptorDefinition, declaringClass, this, pluginContext.getTraceContext(), localVarsInitialized, false);
+        InvokeAfterCodeGenerator afterGenerator = new InvokeAfterCodeGenerator(interceptorId, interceptorDefinition, declaringClass, this, pluginContext.getTraceContext(), localVarsInitialized, false, interceptorField);
         final String afterCode = afterGenerator.generate();
 
         if (isDebug) {
@@ -356,7 +444,7 @@ public class JavassistMethod implements InstrumentMethod {
         return CaptureType.AFTER == captureType || CaptureType.AROUND == captureType;
     }
 
-    private int addBeforeInterceptor(InterceptorDefinition interceptorDefinition, int interceptorId, int pos) throws CannotCompileException, NotFoundException {
+    private int addBeforeInterceptor(InterceptorDefinition interceptorDefinition, int interceptorId, int pos, InterceptorField interceptorField) throws CannotCompileException, NotFoundException {
         final Class<?> interceptorClass = interceptorDefinition.getInterceptorClass();
         final CaptureType captureType = interceptorDefinition.getCaptureType();
         if (!isBeforeInterceptor(captureType)) {
@@ -371,7 +459,7 @@ public class JavassistMethod implements InstrumentMethod {
             return -1;
         }
 
-        final InvokeBeforeCodeGenerator generator = new InvokeBeforeCodeGenerator(interceptorId, interceptorDefinition, declaringClass, this, pluginContext.getTraceContext());
+        final InvokeBeforeCodeGenerator generator = new InvokeBeforeCodeGenerator(interceptorId, interceptorDefinition, declaringClass, this, pluginContext.getTraceContext(), interceptorField);
         final String beforeCode = generator.generate();
 
         if (isDebug) {
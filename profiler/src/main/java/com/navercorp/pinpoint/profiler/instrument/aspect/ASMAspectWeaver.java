@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.aspect;
+
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentException;
+import com.navercorp.pinpoint.bootstrap.instrument.aspect.Aspect;
+import com.navercorp.pinpoint.bootstrap.instrument.aspect.JointPoint;
+import com.navercorp.pinpoint.bootstrap.instrument.aspect.PointCut;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link AspectWeaverClass} of the ASM engine.
+ * The code of the advice methods is copied as is, references to the advice class are replaced with the source class.
+ */
+public class ASMAspectWeaver {
+
+    private static final String ASPECT_DESC = Type.getDescriptor(Aspect.class);
+    private static final String POINT_CUT_DESC = Type.getDescriptor(PointCut.class);
+    private static final String JOINT_POINT_DESC = Type.getDescriptor(JointPoint.class);
+
+    private static final String OBJECT_CLASS_INTERNAL_NAME = "java/lang/Object";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final AspectWeaverClass.MethodNameReplacer methodNameReplacer = new AspectWeaverClass.DefaultMethodNameReplacer();
+
+    public void weaving(ClassNode sourceClass, ClassNode adviceClass) throws InstrumentException {
+        if (logger.isInfoEnabled()) {
+            logger.info("weaving sourceClass:{} advice:{}", sourceClass.name, adviceClass.name);
+        }
+        if (!hasAnnotation(adviceClass.visibleAnnotations, adviceClass.invisibleAnnotations, ASPECT_DESC)) {
+            throw new InstrumentException("@Aspect not found. adviceClass:" + adviceClass.name);
+        }
+        // advice class hierarchy check,
+        final boolean isSubClass = sourceClass.name.equals(adviceClass.superName);
+        if (!isSubClass && !OBJECT_CLASS_INTERNAL_NAME.equals(adviceClass.superName)) {
+            throw new InstrumentException("invalid class hierarchy. " + sourceClass.name + " adviceSuperClass:" + adviceClass.superName);
+        }
+
+        final List<MethodNode> pointCutMethodList = new ArrayList<MethodNode>();
+        final List<MethodNode> jointPointList = new ArrayList<MethodNode>();
+        final List<MethodNode> utilMethodList = new ArrayList<MethodNode>();
+        for (MethodNode method : adviceClass.methods) {
+            if ("<init>".equals(method.name) || "<clinit>".equals(method.name)) {
+                continue;
+            }
+            if (hasAnnotation(method.visibleAnnotations, method.invisibleAnnotations, POINT_CUT_DESC)) {
+                pointCutMethodList.add(method);
+            } else if (hasAnnotation(method.visibleAnnotations, method.invisibleAnnotations, JOINT_POINT_DESC)) {
+                jointPointList.add(method);
+            } else if ((method.access & Opcodes.ACC_PRIVATE) == 0) {
+                throw new InstrumentException("non private UtilMethod unsupported. method:" + adviceClass.name + "." + method.name + method.desc);
+            } else {
+                utilMethodList.add(method);
+            }
+        }
+
+        for (MethodNode method : utilMethodList) {
+            final MethodNode copyMethod = copyMethod(method, method.name);
+            replaceAdviceClass(copyMethod, sourceClass.name, adviceClass.name);
+            sourceClass.methods.add(copyMethod);
+        }
+
+        for (MethodNode adviceMethod : pointCutMethodList) {
+            final MethodNode sourceMethod = findMethod(sourceClass, adviceMethod.name, adviceMethod.desc);
+            if (sourceMethod == null) {
+                throw new InstrumentException(adviceMethod.name + adviceMethod.desc + " not found in " + sourceClass.name);
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("weaving method:{}{}", sourceMethod.name, sourceMethod.desc);
+            }
+            weavingMethod(sourceClass, sourceMethod, adviceClass, adviceMethod, jointPointList);
+        }
+    }
+
+    private void weavingMethod(ClassNode sourceClass, MethodNode sourceMethod, ClassNode adviceClass, MethodNode adviceMethod, List<MethodNode> jointPointList) throws InstrumentException {
+        // the original code is kept in a private copy called from the joint points
+        final MethodNode replaceMethod = copyMethod(sourceMethod, methodNameReplacer.replaceMethodName(sourceMethod.name));
+        replaceMethod.access = (replaceMethod.access & ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) | Opcodes.ACC_PRIVATE;
+        sourceClass.methods.add(replaceMethod);
+
+        final MethodNode adviceCode = copyMethod(adviceMethod, sourceMethod.name);
+        replaceAdviceClass(adviceCode, sourceClass.name, adviceClass.name);
+        replaceJointPoint(adviceCode, sourceClass.name, adviceClass.name, replaceMethod, jointPointList);
+
+        sourceMethod.instructions = adviceCode.instructions;
+        sourceMethod.tryCatchBlocks = adviceCode.tryCatchBlocks;
+        sourceMethod.localVariables = adviceCode.localVariables;
+        sourceMethod.visibleLocalVariableAnnotations = adviceCode.visibleLocalVariableAnnotations;
+        sourceMethod.invisibleLocalVariableAnnotations = adviceCode.invisibleLocalVariableAnnotations;
+        sourceMethod.maxStack = adviceCode.maxStack;
+        sourceMethod.maxLocals = adviceCode.maxLocals;
+    }
+
+    private void replaceJointPoint(MethodNode method, String sourceClassName, String adviceClassName, MethodNode replaceMethod, List<MethodNode> jointPointList) throws InstrumentException {
+        final boolean staticReplaceMethod = (replaceMethod.access & Opcodes.ACC_STATIC) != 0;
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (!(insn instanceof MethodInsnNode)) {
+                continue;
+            }
+            final MethodInsnNode methodInsn = (MethodInsnNode) insn;
+            if (!isJointPointMethod(jointPointList, methodInsn.name, methodInsn.desc)) {
+                continue;
+            }
+            if (!sourceClassName.equals(methodInsn.owner) && !adviceClassName.equals(methodInsn.owner)) {
+                continue;
+            }
+            if (!methodInsn.desc.equals(replaceMethod.desc) || staticReplaceMethod != (methodInsn.getOpcode() == Opcodes.INVOKESTATIC)) {
+                throw new InstrumentException("Signature miss match. method:" + method.name + " source:" + replaceMethod.desc + " jointPoint:" + methodInsn.desc);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("JointPoint method {}{} -> invokeOriginal:{}", methodInsn.name, methodInsn.desc, replaceMethod.name);
+            }
+            methodInsn.setOpcode(staticReplaceMethod ? Opcodes.INVOKESTATIC : Opcodes.INVOKESPECIAL);
+            methodInsn.owner = sourceClassName;
+            methodInsn.name = replaceMethod.name;
+            methodInsn.itf = false;
+        }
+    }
+
+    private boolean isJointPointMethod(List<MethodNode> jointPointList, String methodName, String desc) {
+        for (MethodNode method : jointPointList) {
+            if (method.name.equals(methodName) && method.desc.equals(desc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void replaceAdviceClass(MethodNode method, String sourceClassName, String adviceClassName) {
+        final String adviceClassDesc = "L" + adviceClassName + ";";
+        final String sourceClassDesc = "L" + sourceClassName + ";";
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof MethodInsnNode) {
+                final MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (adviceClassName.equals(methodInsn.owner)) {
+                    methodInsn.owner = sourceClassName;
+                }
+            } else if (insn instanceof FieldInsnNode) {
+                final FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                if (adviceClassName.equals(fieldInsn.owner)) {
+                    fieldInsn.owner = sourceClassName;
+                }
+            } else if (insn instanceof TypeInsnNode) {
+                final TypeInsnNode typeInsn = (TypeInsnNode) insn;
+                if (adviceClassName.equals(typeInsn.desc)) {
+                    typeInsn.desc = sourceClassName;
+                }
+            } else if (insn instanceof LdcInsnNode) {
+                final LdcInsnNode ldcInsn = (LdcInsnNode) insn;
+                if (ldcInsn.cst instanceof Type && adviceClassName.equals(((Type) ldcInsn.cst).getInternalName())) {
+                    ldcInsn.cst = Type.getObjectType(sourceClassName);
+                }
+            }
+        }
+        if (method.localVariables != null) {
+            for (LocalVariableNode localVariable : method.localVariables) {
+                if (adviceClassDesc.equals(localVariable.desc)) {
+                    localVariable.desc = sourceClassDesc;
+                }
+            }
+        }
+    }
+
+    private static MethodNode copyMethod(MethodNode method, String name) {
+        final String[] exceptions = method.exceptions.toArray(new String[method.exceptions.size()]);
+        final MethodNode copy = new MethodNode(Opcodes.ASM5, method.access, name, method.desc, method.signature, exceptions);
+        method.accept(copy);
+        return copy;
+    }
+
+    private static MethodNode findMethod(ClassNode classNode, String name, String desc) {
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals(name) && method.desc.equals(desc)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnnotation(List<AnnotationNode> visibleAnnotations, List<AnnotationNode> invisibleAnnotations, String annotationDesc) {
+        return containsAnnotation(visibleAnnotations, annotationDesc) || containsAnnotation(invisibleAnnotations, annotationDesc);
+    }
+
+    private static boolean containsAnnotation(List<AnnotationNode> annotations, String annotationDesc) {
+        if (annotations == null) {
+            return false;
+        }
+        for (AnnotationNode annotation : annotations) {
+            if (annotation.desc.equals(annotationDesc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
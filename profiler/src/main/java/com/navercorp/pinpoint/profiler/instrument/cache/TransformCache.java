@@ -0,0 +1,321 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Directory of transformed classes, one file per (class name, class file) key.
+ * <p>
+ * Interceptor ids woven into cached classes are allocated from a range of the interceptor registry of their own,
+ * and the next free id is kept in the directory, so that the ids of a cached class stay valid across restarts.
+ * Ids are not reclaimed one by one, once the range is used up the entries are dropped and ids are handed out
+ * from the start of the range again, skipping the ones bound in this run.
+ * The directory is locked while the cache is open, a second agent pointing at it gets an IOException.
+ */
+public class TransformCache {
+
+    private static final int MAGIC = 0x50544331;
+
+    private static final String LOCK_FILE_NAME = "lock";
+    private static final String INTERCEPTOR_ID_FILE_NAME = "interceptor.id";
+    private static final String ENTRY_SUFFIX = ".class.cache";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File directory;
+    private final int interceptorIdStart;
+    private final int interceptorIdEnd;
+
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+
+    // ids below were handed out by previous runs, and can be reused in a new generation
+    private final int openInterceptorId;
+    private int nextInterceptorId;
+    private boolean renewed;
+    private boolean closed;
+
+    /**
+     * @param interceptorIdStart first interceptor id of cached classes
+     * @param interceptorIdEnd interceptor id after the last one of cached classes
+     */
+    public TransformCache(File directory, int interceptorIdStart, int interceptorIdEnd) throws IOException {
+        if (directory == null) {
+            throw new NullPointerException("directory must not be null");
+        }
+        if (interceptorIdStart < 0 || interceptorIdStart > interceptorIdEnd) {
+            throw new IllegalArgumentException("Invalid interceptor id range " + interceptorIdStart + "~" + interceptorIdEnd);
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory);
+        }
+        this.directory = directory;
+        this.interceptorIdStart = interceptorIdStart;
+        this.interceptorIdEnd = interceptorIdEnd;
+
+        this.lockFile = new RandomAccessFile(new File(directory, LOCK_FILE_NAME), "rw");
+        try {
+            this.lock = lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            lockFile.close();
+            throw new IOException("Transform cache already opened. directory:" + directory);
+        }
+        if (lock == null) {
+            lockFile.close();
+            throw new IOException("Transform cache locked by another process. directory:" + directory);
+        }
+        this.nextInterceptorId = Math.max(interceptorIdStart, readNextInterceptorId());
+        this.openInterceptorId = nextInterceptorId;
+        logger.info("TransformCache opened. directory:{}, nextInterceptorId:{}", directory, nextInterceptorId);
+    }
+
+    private int readNextInterceptorId() {
+        final File file = new File(directory, INTERCEPTOR_ID_FILE_NAME);
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return in.readInt();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read {}. Caused:{}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * SHA-1 of the class name and class file, in hex.
+     */
+    public String createKey(String className, byte[] classFileBuffer) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+        for (int i = 0; i < className.length(); i++) {
+            final char c = className.charAt(i);
+            digest.update((byte) (c >>> 8));
+            digest.update((byte) c);
+        }
+        digest.update(classFileBuffer);
+        return toHex(digest.digest());
+    }
+
+    static String toHex(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >>> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return null if there is no entry or it cannot be read
+     */
+    public synchronized TransformCacheEntry get(String key) {
+        if (closed) {
+            return null;
+        }
+        final File file = getEntryFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("invalid magic");
+                }
+                final long transformTimeNanos = in.readLong();
+                final int[] interceptorIds = new int[in.readInt()];
+                for (int i = 0; i < interceptorIds.length; i++) {
+                    interceptorIds[i] = in.readInt();
+                }
+                final byte[] bytecode = new byte[in.readInt()];
+                in.readFully(bytecode);
+                return new TransformCacheEntry(bytecode, interceptorIds, transformTimeNanos);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to read transform cache entry {}. Caused:{}", file, e.getMessage());
+            if (!file.delete()) {
+                logger.debug("Failed to delete {}", file);
+            }
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, TransformCacheEntry entry) {
+        if (closed) {
+            return;
+        }
+        for (int interceptorId : entry.getInterceptorIds()) {
+            if (interceptorId >= nextInterceptorId) {
+                // handed out before a new generation started, the id file would not protect it
+                return;
+            }
+        }
+        final File file = getEntryFile(key);
+        final File tempFile = new File(directory, key + ".tmp");
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeLong(entry.getTransformTimeNanos());
+                final int[] interceptorIds = entry.getInterceptorIds();
+                out.writeInt(interceptorIds.length);
+                for (int interceptorId : interceptorIds) {
+                    out.writeInt(interceptorId);
+                }
+                out.writeInt(entry.getBytecode().length);
+                out.write(entry.getBytecode());
+            } finally {
+                out.close();
+            }
+            // ids of the entry must never be handed out again, even if this process dies
+            writeNextInterceptorId();
+            replace(tempFile, file);
+        } catch (IOException e) {
+            logger.warn("Failed to write transform cache entry {}. Caused:{}", file, e.getMessage());
+            if (!tempFile.delete()) {
+                logger.debug("Failed to delete {}", tempFile);
+            }
+        }
+    }
+
+    private void writeNextInterceptorId() throws IOException {
+        final File tempFile = new File(directory, INTERCEPTOR_ID_FILE_NAME + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+        try {
+            out.writeInt(nextInterceptorId);
+        } finally {
+            out.close();
+        }
+        replace(tempFile, new File(directory, INTERCEPTOR_ID_FILE_NAME));
+    }
+
+    private static void replace(File tempFile, File file) throws IOException {
+        if (tempFile.renameTo(file)) {
+            return;
+        }
+        // renameTo does not replace an existing file on some platforms
+        if (!file.delete() || !tempFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tempFile + " to " + file);
+        }
+    }
+
+    /**
+     * The returned id may already be bound in this run after a new generation is started, the caller skips those.
+     * @return -1 if the interceptor id range of cached classes is used up
+     */
+    public synchronized int nextInterceptorId() {
+        if (nextInterceptorId >= interceptorIdEnd) {
+            if (!renew()) {
+                return -1;
+            }
+        }
+        return nextInterceptorId++;
+    }
+
+    /**
+     * Starts a new generation once per run, if previous runs have handed out ids that may not be bound in this one.
+     */
+    private boolean renew() {
+        if (closed || renewed || openInterceptorId == interceptorIdStart) {
+            return false;
+        }
+        this.renewed = true;
+        // entries first, so that the id file never gets behind an entry left in the directory
+        final File[] entryFiles = directory.listFiles();
+        if (entryFiles != null) {
+            for (File entryFile : entryFiles) {
+                if (entryFile.getName().endsWith(ENTRY_SUFFIX) && !entryFile.delete()) {
+                    logger.warn("Failed to delete {}, transform cache not renewed", entryFile);
+                    return false;
+                }
+            }
+        }
+        final File interceptorIdFile = new File(directory, INTERCEPTOR_ID_FILE_NAME);
+        if (interceptorIdFile.exists() && !interceptorIdFile.delete()) {
+            logger.warn("Failed to delete {}, transform cache not renewed", interceptorIdFile);
+            return false;
+        }
+        this.nextInterceptorId = interceptorIdStart;
+        logger.info("TransformCache interceptor ids used up, new generation started. directory:{}", directory);
+        return true;
+    }
+
+    private File getEntryFile(String key) {
+        return new File(directory, key + ENTRY_SUFFIX);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            lock.release();
+        } catch (IOException e) {
+            logger.debug("Failed to release transform cache lock. Caused:{}", e.getMessage());
+        }
+        try {
+            lockFile.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close transform cache lock file. Caused:{}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TransformCache{" +
+                "directory=" + directory +
+                ", nextInterceptorId=" + nextInterceptorId +
+                ", interceptorIdStart=" + interceptorIdStart +
+                ", interceptorIdEnd=" + interceptorIdEnd +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.cache;
+
+import java.util.Arrays;
+
+/**
+ * Bytecode a plugin produced for a class, and the interceptor ids woven into it in the order they were allocated.
+ */
+public class TransformCacheEntry {
+
+    private final byte[] bytecode;
+    private final int[] interceptorIds;
+    private final long transformTimeNanos;
+
+    public TransformCacheEntry(byte[] bytecode, int[] interceptorIds, long transformTimeNanos) {
+        if (bytecode == null) {
+            throw new NullPointerException("bytecode must not be null");
+        }
+        if (interceptorIds == null) {
+            throw new NullPointerException("interceptorIds must not be null");
+        }
+        this.bytecode = bytecode;
+        this.interceptorIds = interceptorIds;
+        this.transformTimeNanos = transformTimeNanos;
+    }
+
+    public byte[] getBytecode() {
+        return bytecode;
+    }
+
+    public int[] getInterceptorIds() {
+        return interceptorIds;
+    }
+
+    /**
+     * time the transform took when the entry was recorded
+     */
+    public long getTransformTimeNanos() {
+        return transformTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "TransformCacheEntry{" +
+                "bytecodeLength=" + bytecode.length +
+                ", interceptorIds=" + Arrays.toString(interceptorIds) +
+                ", transformTimeNanos=" + transformTimeNanos +
+                '}';
+    }
+}
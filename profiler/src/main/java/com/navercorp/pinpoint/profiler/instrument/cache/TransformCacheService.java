@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.cache;
+
+import com.navercorp.pinpoint.bootstrap.config.ProfilerConfig;
+import com.navercorp.pinpoint.common.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs plugin transformers through the {@link TransformCache}.
+ * <p>
+ * On a miss the transformer runs as usual in a recording {@link TransformSession}, and its result is stored.
+ * On a hit the transformer runs again in a replaying session to create its interceptors and inject its classes,
+ * but without weaving nor writing a class file, and the cached bytecode is returned.
+ * If the replay does not allocate the recorded interceptor ids, the ids it has bound are released
+ * and the class is transformed again without the cache.
+ * <p>
+ * Entries live under a directory named after the agent version, the plugin jars and the profiler configuration,
+ * so that any change of them starts a new cache.
+ */
+public class TransformCacheService {
+
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final TransformCache cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    private final AtomicLong lastReportTime = new AtomicLong(System.currentTimeMillis());
+
+    public TransformCacheService(TransformCache cache) {
+        if (cache == null) {
+            throw new NullPointerException("cache must not be null");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * @return null if the cache is disabled or cannot be opened
+     */
+    public static TransformCacheService create(ProfilerConfig profilerConfig, URL[] pluginJars) {
+        if (profilerConfig == null) {
+            throw new NullPointerException("profilerConfig must not be null");
+        }
+        if (!profilerConfig.isTransformCacheEnable()) {
+            return null;
+        }
+        final Logger logger = LoggerFactory.getLogger(TransformCacheService.class);
+
+        String cacheDir = profilerConfig.getTransformCacheDir();
+        if (cacheDir == null || cacheDir.isEmpty()) {
+            cacheDir = System.getProperty("java.io.tmpdir") + File.separator + "pinpoint-transform-cache";
+        }
+        final String namespace = createNamespace(profilerConfig, pluginJars);
+        final File directory = new File(cacheDir, namespace);
+
+        // interceptors of classes that are not cached are numbered from 0, keep the upper half for cached classes
+        final int registrySize = profilerConfig.getInterceptorRegistrySize();
+        try {
+            final TransformCache cache = new TransformCache(directory, registrySize / 2, registrySize);
+            return new TransformCacheService(cache);
+        } catch (IOException e) {
+            logger.warn("Transform cache disabled. Caused:{}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    static String createNamespace(ProfilerConfig profilerConfig, URL[] pluginJars) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+        update(digest, Version.VERSION);
+        if (pluginJars != null) {
+            for (URL pluginJar : pluginJars) {
+                update(digest, pluginJar.toString());
+                final File file = new File(pluginJar.getFile());
+                update(digest, file.length() + ":" + file.lastModified());
+            }
+        }
+        final Map<String, String> properties = new TreeMap<String, String>(profilerConfig.readPattern(".*"));
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue());
+        }
+        update(digest, String.valueOf(profilerConfig.getInterceptorRegistrySize()));
+        // shorter directory name, collisions are still unlikely
+        return TransformCache.toHex(Arrays.copyOf(digest.digest(), 8));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        try {
+            digest.update(value.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported", e);
+        }
+        digest.update((byte) 0);
+    }
+
+    public byte[] transform(ClassFileTransformer transformer, ClassLoader classLoader, String className, ProtectionDomain protectionDomain, byte[] classFileBuffer) throws IllegalClassFormatException {
+        final String key = cache.createKey(className, classFileBuffer);
+        final TransformCacheEntry entry = cache.get(key);
+        try {
+            if (entry != null) {
+                final byte[] replayed = replay(transformer, entry, classLoader, className, protectionDomain, classFileBuffer);
+                if (replayed != null) {
+                    return replayed;
+                }
+                fallbackCount.incrementAndGet();
+                return transformer.transform(classLoader, className, null, protectionDomain, classFileBuffer);
+            }
+            missCount.incrementAndGet();
+            return record(transformer, key, classLoader, className, protectionDomain, classFileBuffer);
+        } finally {
+            reportIfDue();
+        }
+    }
+
+    private byte[] replay(ClassFileTransformer transformer, TransformCacheEntry entry, ClassLoader classLoader, String className, ProtectionDomain protectionDomain, byte[] classFileBuffer) {
+        final long startTime = System.nanoTime();
+        final TransformSession session = TransformSession.replay(entry);
+        final TransformSession previous = TransformSession.begin(session);
+        try {
+            transformer.transform(classLoader, className, null, protectionDomain, classFileBuffer);
+        } catch (Throwable th) {
+            logger.info("Failed to replay cached transform of {}. Caused:{}", className, th.getMessage(), th);
+            session.release();
+            return null;
+        } finally {
+            TransformSession.end(previous);
+        }
+        if (!session.isConsistent()) {
+            logger.info("Interceptor ids of {} differ from the cached ones, transforming again", className);
+            session.release();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        savedNanos.addAndGet(entry.getTransformTimeNanos() - (System.nanoTime() - startTime));
+        return entry.getBytecode();
+    }
+
+    private byte[] record(ClassFileTransformer transformer, String key, ClassLoader classLoader, String className, ProtectionDomain protectionDomain, byte[] classFileBuffer) throws IllegalClassFormatException {
+        final long startTime = System.nanoTime();
+        final TransformSession session = TransformSession.record(cache);
+        final TransformSession previous = TransformSession.begin(session);
+        final byte[] transformed;
+        try {
+            transformed = transformer.transform(classLoader, className, null, protectionDomain, classFileBuffer);
+        } finally {
+            TransformSession.end(previous);
+        }
+        final long transformTimeNanos = System.nanoTime() - startTime;
+        if (transformed != null && session.isConsistent()) {
+            cache.put(key, new TransformCacheEntry(transformed, session.getInterceptorIds(), transformTimeNanos));
+            storeCount.incrementAndGet();
+        }
+        return transformed;
+    }
+
+    private void reportIfDue() {
+        final long now = System.currentTimeMillis();
+        final long last = lastReportTime.get();
+        if (now - last >= REPORT_INTERVAL && lastReportTime.compareAndSet(last, now)) {
+            report();
+        }
+    }
+
+    public void report() {
+        final long hit = hitCount.get();
+        final long lookup = hit + missCount.get() + fallbackCount.get();
+        if (lookup == 0) {
+            return;
+        }
+        logger.info("TransformCache hit:{}/{} ({}%), stored:{}, fallback:{}, saved:{}ms", hit, lookup, hit * 100 / lookup,
+                storeCount.get(), fallbackCount.get(), TimeUnit.NANOSECONDS.toMillis(savedNanos.get()));
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getStoreCount() {
+        return storeCount.get();
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    public long getSavedNanos() {
+        return savedNanos.get();
+    }
+
+    public void close() {
+        report();
+        cache.close();
+    }
+
+    @Override
+    public String toString() {
+        return "TransformCacheService{" +
+                "cache=" + cache +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", storeCount=" + storeCount +
+                ", fallbackCount=" + fallbackCount +
+                '}';
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.cache;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.Interceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.registry.InterceptorRegistryAdaptor;
+
+import java.util.Arrays;
+
+/**
+ * Transform of one class going through the {@link TransformCache}, bound to the transforming thread.
+ * <p>
+ * While recording, interceptors get ids from the cache range so that the transformed bytecode can be stored.
+ * While replaying, the plugin runs again to create its interceptors, which are bound to the ids recorded with the bytecode,
+ * and the instrument classes skip weaving since the cached bytecode is returned instead.
+ * A session that cannot reproduce its ids is marked inconsistent and its result is not used,
+ * and a replay that is not used releases the ids it has bound.
+ */
+public final class TransformSession {
+
+    private static final ThreadLocal<TransformSession> CURRENT = new ThreadLocal<TransformSession>();
+
+    private final TransformCache cache;
+    private final TransformCacheEntry entry;
+
+    private int[] interceptorIds = new int[4];
+    private int interceptorIdCount;
+
+    // interceptors bound to the recorded ids while replaying, to be released if the replay is not used
+    private InterceptorRegistryAdaptor[] boundRegistryAdaptors;
+    private Interceptor[] boundInterceptors;
+
+    private boolean consistent = true;
+
+    private TransformSession(TransformCache cache, TransformCacheEntry entry) {
+        this.cache = cache;
+        this.entry = entry;
+    }
+
+    static TransformSession record(TransformCache cache) {
+        if (cache == null) {
+            throw new NullPointerException("cache must not be null");
+        }
+        return new TransformSession(cache, null);
+    }
+
+    static TransformSession replay(TransformCacheEntry entry) {
+        if (entry == null) {
+            throw new NullPointerException("entry must not be null");
+        }
+        final TransformSession session = new TransformSession(null, entry);
+        final int recordedIdCount = entry.getInterceptorIds().length;
+        session.boundRegistryAdaptors = new InterceptorRegistryAdaptor[recordedIdCount];
+        session.boundInterceptors = new Interceptor[recordedIdCount];
+        return session;
+    }
+
+    /**
+     * Makes the session current on this thread. A class loaded while transforming another one is transformed in a nested session.
+     * @return session to restore with {@link #end(TransformSession)}
+     */
+    public static TransformSession begin(TransformSession session) {
+        final TransformSession previous = CURRENT.get();
+        CURRENT.set(session);
+        return previous;
+    }
+
+    public static void end(TransformSession previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Registers a new interceptor, with the id of the current session if there is one.
+     */
+    public static int addInterceptor(InterceptorRegistryAdaptor registryAdaptor, Interceptor interceptor) {
+        final TransformSession session = CURRENT.get();
+        if (session == null) {
+            return registryAdaptor.addInterceptor(interceptor);
+        }
+        return session.addInterceptor0(registryAdaptor, interceptor);
+    }
+
+    /**
+     * Called when bytecode is woven for an interceptor registered before, possibly by the transform of another class.
+     */
+    public static void reuseInterceptor(int interceptorId) {
+        final TransformSession session = CURRENT.get();
+        if (session != null && !session.isReplay() && !session.hasInterceptorId(interceptorId)) {
+            // the id of another class cannot be reproduced on the next start
+            session.consistent = false;
+        }
+    }
+
+    /**
+     * @return true if weaving must be skipped as the bytecode comes from the cache
+     */
+    public static boolean isReplaying() {
+        final TransformSession session = CURRENT.get();
+        return session != null && session.isReplay();
+    }
+
+    /**
+     * @return cached bytecode of the replayed class, null if not replaying
+     */
+    public static byte[] getReplayBytecode() {
+        final TransformSession session = CURRENT.get();
+        if (session == null || !session.isReplay()) {
+            return null;
+        }
+        return session.entry.getBytecode();
+    }
+
+    private int addInterceptor0(InterceptorRegistryAdaptor registryAdaptor, Interceptor interceptor) {
+        if (isReplay()) {
+            final int[] recordedIds = entry.getInterceptorIds();
+            if (interceptorIdCount < recordedIds.length) {
+                final int interceptorId = recordedIds[interceptorIdCount];
+                if (registryAdaptor.addInterceptor(interceptorId, interceptor)) {
+                    boundRegistryAdaptors[interceptorIdCount] = registryAdaptor;
+                    boundInterceptors[interceptorIdCount] = interceptor;
+                    addInterceptorId(interceptorId);
+                    return interceptorId;
+                }
+            }
+            this.consistent = false;
+            return registryAdaptor.addInterceptor(interceptor);
+        }
+
+        if (consistent) {
+            int interceptorId;
+            while ((interceptorId = cache.nextInterceptorId()) != -1) {
+                if (registryAdaptor.addInterceptor(interceptorId, interceptor)) {
+                    addInterceptorId(interceptorId);
+                    return interceptorId;
+                }
+                // taken by an interceptor of a class that is not cached
+            }
+            this.consistent = false;
+        }
+        return registryAdaptor.addInterceptor(interceptor);
+    }
+
+    /**
+     * Unbinds the interceptors bound to the recorded ids by a replay whose result is not used,
+     * so that the ids stay free for the classes that are cached in this run.
+     */
+    void release() {
+        if (!isReplay()) {
+            return;
+        }
+        for (int i = 0; i < interceptorIdCount; i++) {
+            boundRegistryAdaptors[i].removeInterceptor(interceptorIds[i], boundInterceptors[i]);
+            boundRegistryAdaptors[i] = null;
+            boundInterceptors[i] = null;
+        }
+        interceptorIdCount = 0;
+        consistent = false;
+    }
+
+    private void addInterceptorId(int interceptorId) {
+        if (interceptorIdCount == interceptorIds.length) {
+            interceptorIds = Arrays.copyOf(interceptorIds, interceptorIds.length * 2);
+        }
+        interceptorIds[interceptorIdCount++] = interceptorId;
+    }
+
+    private boolean hasInterceptorId(int interceptorId) {
+        for (int i = 0; i < interceptorIdCount; i++) {
+            if (interceptorIds[i] == interceptorId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isReplay() {
+        return entry != null;
+    }
+
+    /**
+     * @return false if the ids of the session do not match the recorded ones, or cannot be reproduced on the next start
+     */
+    boolean isConsistent() {
+        if (isReplay()) {
+            return consistent && interceptorIdCount == entry.getInterceptorIds().length;
+        }
+        return consistent;
+    }
+
+    int[] getInterceptorIds() {
+        return Arrays.copyOf(interceptorIds, interceptorIdCount);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.config.ProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentMethod;
+import com.navercorp.pinpoint.bootstrap.interceptor.registry.InterceptorRegistry;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Static final field of an instrumented class holding one of its interceptors, read instead of calling
+ * {@link InterceptorRegistry#getInterceptor(int)} each time the method is called.
+ * <p>
+ * The field has the type of the interceptor class when the instrumented class can access it, so calls need no cast.
+ * A {@link InterceptorType#BASIC} interceptor can then declare before/after overloads taking the parameter types of the
+ * intercepted method, which are called without boxing the arguments :
+ * <pre>
+ * public void before(Object target, int arg0, long arg1)
+ * public void after(Object target, int arg0, long arg1, String result, Throwable throwable)
+ * </pre>
+ * The result has the return type of the method, Object for constructors and void methods.
+ * It is null, or 0 for primitive types, when the method throws.
+ */
+public class InterceptorField {
+
+    private static final String FIELD_NAME_PREFIX = "_$PINPOINT$_interceptorField";
+
+    private static final String OBJECT_TYPE_NAME = Object.class.getName();
+
+    // fields cannot be added to a class being redefined
+    private static final ThreadLocal<Boolean> REDEFINING = new ThreadLocal<Boolean>();
+
+    private final String name;
+    private final Class<?> type;
+    private final Method beforeMethod;
+    private final boolean unboxedBefore;
+    private final Method afterMethod;
+    private final boolean unboxedAfter;
+
+    private InterceptorField(String name, Class<?> type, Method beforeMethod, boolean unboxedBefore, Method afterMethod, boolean unboxedAfter) {
+        this.name = name;
+        this.type = type;
+        this.beforeMethod = beforeMethod;
+        this.unboxedBefore = unboxedBefore;
+        this.afterMethod = afterMethod;
+        this.unboxedAfter = unboxedAfter;
+    }
+
+    public static boolean isEnabled(TraceContext traceContext) {
+        if (traceContext == null) {
+            return false;
+        }
+        final ProfilerConfig profilerConfig = traceContext.getProfilerConfig();
+        return profilerConfig != null && DefaultProfilerConfig.INTERCEPTOR_DISPATCH_FIELD.equalsIgnoreCase(profilerConfig.getInterceptorDispatch());
+    }
+
+    /**
+     * Marks the classes transformed on this thread as being redefined, they keep the registry lookup.
+     * @return previous value to restore
+     */
+    public static boolean setRedefining(boolean redefining) {
+        final boolean previous = isRedefining();
+        if (redefining) {
+            REDEFINING.set(Boolean.TRUE);
+        } else {
+            REDEFINING.remove();
+        }
+        return previous;
+    }
+
+    public static boolean isRedefining() {
+        return REDEFINING.get() != null;
+    }
+
+    public static String getFieldName(int interceptorId) {
+        return FIELD_NAME_PREFIX + interceptorId;
+    }
+
+    /**
+     * @param classLoader class loader of the instrumented class
+     */
+    public static InterceptorField create(int interceptorId, InterceptorDefinition interceptorDefinition, InstrumentMethod targetMethod, ClassLoader classLoader) {
+        if (interceptorDefinition == null) {
+            throw new NullPointerException("interceptorDefinition must not be null");
+        }
+        if (targetMethod == null) {
+            throw new NullPointerException("targetMethod must not be null");
+        }
+        final Class<?> interceptorClass = interceptorDefinition.getInterceptorClass();
+        if (!isAccessible(interceptorClass, classLoader)) {
+            return createBaseTypeField(interceptorId, interceptorDefinition);
+        }
+
+        Method beforeMethod = interceptorDefinition.getBeforeMethod();
+        boolean unboxedBefore = false;
+        Method afterMethod = interceptorDefinition.getAfterMethod();
+        boolean unboxedAfter = false;
+        if (interceptorDefinition.getInterceptorType() == InterceptorType.BASIC) {
+            final String[] parameterTypes = targetMethod.getParameterTypes();
+            if (beforeMethod != null) {
+                final Method unboxedMethod = findUnboxedBeforeMethod(interceptorClass, beforeMethod, parameterTypes);
+                if (unboxedMethod != null) {
+                    beforeMethod = unboxedMethod;
+                    unboxedBefore = true;
+                }
+            }
+            if (afterMethod != null) {
+                final Method unboxedMethod = findUnboxedAfterMethod(interceptorClass, afterMethod, parameterTypes, getResultTypeName(targetMethod));
+                if (unboxedMethod != null) {
+                    afterMethod = unboxedMethod;
+                    unboxedAfter = true;
+                }
+            }
+        }
+        return new InterceptorField(getFieldName(interceptorId), interceptorClass, beforeMethod, unboxedBefore, afterMethod, unboxedAfter);
+    }
+
+    /**
+     * Field typed with the interceptor base class, for instrument engines which cannot resolve the interceptor class.
+     */
+    public static InterceptorField createBaseTypeField(int interceptorId, InterceptorDefinition interceptorDefinition) {
+        if (interceptorDefinition == null) {
+            throw new NullPointerException("interceptorDefinition must not be null");
+        }
+        return new InterceptorField(getFieldName(interceptorId), interceptorDefinition.getInterceptorBaseClass(),
+                interceptorDefinition.getBeforeMethod(), false, interceptorDefinition.getAfterMethod(), false);
+    }
+
+    private static boolean isAccessible(Class<?> interceptorClass, ClassLoader classLoader) {
+        if (!Modifier.isPublic(interceptorClass.getModifiers())) {
+            return false;
+        }
+        final ClassLoader interceptorClassLoader = interceptorClass.getClassLoader();
+        if (interceptorClassLoader == null) {
+            return true;
+        }
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader == interceptorClassLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getResultTypeName(InstrumentMethod targetMethod) {
+        final String returnType = targetMethod.getReturnType();
+        if (targetMethod.isConstructor() || returnType == null || "void".equals(returnType)) {
+            return OBJECT_TYPE_NAME;
+        }
+        return returnType;
+    }
+
+    private static Method findUnboxedBeforeMethod(Class<?> interceptorClass, Method beforeMethod, String[] parameterTypes) {
+        // before(Object target, arg0, ..., argN)
+        final int argumentSize = beforeMethod.getParameterTypes().length - 1;
+        if (argumentSize < 1 || parameterTypes.length < argumentSize) {
+            return null;
+        }
+        final String[] unboxedParameterTypes = new String[argumentSize + 1];
+        unboxedParameterTypes[0] = OBJECT_TYPE_NAME;
+        System.arraycopy(parameterTypes, 0, unboxedParameterTypes, 1, argumentSize);
+        return findMethod(interceptorClass, beforeMethod.getName(), unboxedParameterTypes);
+    }
+
+    private static Method findUnboxedAfterMethod(Class<?> interceptorClass, Method afterMethod, String[] parameterTypes, String resultType) {
+        // after(Object target, arg0, ..., argN, result, Throwable throwable)
+        final int argumentSize = afterMethod.getParameterTypes().length - 3;
+        if (argumentSize < 0 || parameterTypes.length < argumentSize) {
+            return null;
+        }
+        final String[] unboxedParameterTypes = new String[argumentSize + 3];
+        unboxedParameterTypes[0] = OBJECT_TYPE_NAME;
+        System.arraycopy(parameterTypes, 0, unboxedParameterTypes, 1, argumentSize);
+        unboxedParameterTypes[argumentSize + 1] = resultType;
+        unboxedParameterTypes[argumentSize + 2] = Throwable.class.getName();
+        return findMethod(interceptorClass, afterMethod.getName(), unboxedParameterTypes);
+    }
+
+    private static Method findMethod(Class<?> interceptorClass, String methodName, String[] parameterTypes) {
+        for (Method method : interceptorClass.getMethods()) {
+            if (!method.getName().equals(methodName) || method.isBridge() || method.getReturnType() != void.class) {
+                continue;
+            }
+            // methods of an interface the instrumented class may not see
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                continue;
+            }
+            if (isParameterTypesMatched(method.getParameterTypes(), parameterTypes)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isParameterTypesMatched(Class<?>[] methodParameterTypes, String[] parameterTypes) {
+        if (methodParameterTypes.length != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (!getTypeName(methodParameterTypes[i]).equals(parameterTypes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getTypeName(Class<?> type) {
+        if (type.isArray()) {
+            return getTypeName(type.getComponentType()) + "[]";
+        }
+        return type.getName();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public Method getBeforeMethod() {
+        return beforeMethod;
+    }
+
+    /**
+     * @return true if the before method takes the arguments of the intercepted method unboxed
+     */
+    public boolean isUnboxedBefore() {
+        return unboxedBefore;
+    }
+
+    public Method getAfterMethod() {
+        return afterMethod;
+    }
+
+    /**
+     * @return true if the after method takes the arguments and the result of the intercepted method unboxed
+     */
+    public boolean isUnboxedAfter() {
+        return unboxedAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "InterceptorField{" +
+                "name='" + name + '\'' +
+                ", type=" + type.getName() +
+                ", unboxedBefore=" + unboxedBefore +
+                ", unboxedAfter=" + unboxedAfter +
+                '}';
+    }
+}
@@ -35,7 +35,11 @@ public class InvokeAfterCodeGenerator extends InvokeCodeGenerator {
     private final boolean catchClause;
 
     public InvokeAfterCodeGenerator(int interceptorId, InterceptorDefinition interceptorDefinition, InstrumentClass targetClass, InstrumentMethod targetMethod, TraceContext traceContext, boolean localVarsInitialized, boolean catchClause) {
-        super(interceptorId, interceptorDefinition, targetMethod, traceContext);
+        this(interceptorId, interceptorDefinition, targetClass, targetMethod, traceContext, localVarsInitialized, catchClause, null);
+    }
+
+    public InvokeAfterCodeGenerator(int interceptorId, InterceptorDefinition interceptorDefinition, InstrumentClass targetClass, InstrumentMethod targetMethod, TraceContext traceContext, boolean localVarsInitialized, boolean catchClause, InterceptorField interceptorField) {
+        super(interceptorId, interceptorDefinition, targetMethod, traceContext, interceptorField);
         this.interceptorDefinition = interceptorDefinition;
         this.interceptorId = interceptorId;
         this.targetClass = targetClass;
@@ -58,12 +62,12 @@ public class InvokeAfterCodeGenerator extends InvokeCodeGenerator {
 
         builder.append("try { ");
 
-        if (!localVarsInitialized) {
+        if (!localVarsInitialized && interceptorField == null) {
             builder.format("%1$s = %2$s.getInterceptor(%3$d); ", getInterceptorVar(), getInterceptorRegistryClassName(), interceptorId);
         }
         final Method afterMethod = interceptorDefinition.getAfterMethod();
         if (afterMethod != null) {
-            builder.format("((%1$s)%2$s).after(", getInterceptorType(), getInterceptorVar());
+            builder.format("%1$s.after(", getInterceptorInstance());
             appendArguments(builder);
             builder.format(");");
         }
@@ -93,6 +97,38 @@ public class InvokeAfterCodeGenerator extends InvokeCodeGenerator {
 
         return "($w)$_";
     }
+
+    private String getUnboxedReturnValue() {
+        if (targetMethod.isConstructor() || "void".equals(targetMethod.getReturnType())) {
+            return "null";
+        }
+        if (!catchClause) {
+            return "$_";
+        }
+        return getDefaultValue(targetMethod.getReturnType());
+    }
+
+    private static String getDefaultValue(String type) {
+        if ("boolean".equals(type)) {
+            return "false";
+        }
+        if ("long".equals(type)) {
+            return "0L";
+        }
+        if ("float".equals(type)) {
+            return "0.0F";
+        }
+        if ("double".equals(type)) {
+            return "0.0D";
+        }
+        if ("int".equals(type)) {
+            return "0";
+        }
+        if ("byte".equals(type) || "char".equals(type) || "short".equals(type)) {
+            return "(" + type + ")0";
+        }
+        return "null";
+    }
         
     private String getException() {
         if (catchClause) {
@@ -149,7 +185,7 @@ public class InvokeAfterCodeGenerator extends InvokeCodeGenerator {
         }
 //        if (interceptorParamTypes.length >= 2) {
         builder.append(", ");
-        builder.append(getReturnValue());
+        builder.append(isUnboxedAfter() ? getUnboxedReturnValue() : getReturnValue());
 //        }
 
 //        if (interceptorParamTypes.length >= 3) {
@@ -167,8 +203,9 @@ public class InvokeAfterCodeGenerator extends InvokeCodeGenerator {
         final int matchNum = Math.min(methodArgNum, interceptorArgNum);
 
         int parameterIndex = 0;
+        final String box = isUnboxedAfter() ? "" : "($w)";
         for (; parameterIndex < matchNum; parameterIndex++) {
-            builder.append(", ($w)$" + (parameterIndex + 1));
+            builder.append(", " + box + "$" + (parameterIndex + 1));
         }
 
         for (; parameterIndex < interceptorArgNum; parameterIndex++) {
@@ -176,4 +213,8 @@ public class InvokeAfterCodeGenerator extends InvokeCodeGenerator {
         }
         return parameterIndex;
     }
+
+    private boolean isUnboxedAfter() {
+        return interceptorField != null && interceptorField.isUnboxedAfter();
+    }
 }
@@ -29,7 +29,11 @@ public class InvokeBeforeCodeGenerator extends InvokeCodeGenerator {
     private final InstrumentClass targetClass;
     
     public InvokeBeforeCodeGenerator(int interceptorId, InterceptorDefinition interceptorDefinition, InstrumentClass targetClass, InstrumentMethod targetMethod, TraceContext traceContext) {
-        super(interceptorId, interceptorDefinition, targetMethod, traceContext);
+        this(interceptorId, interceptorDefinition, targetClass, targetMethod, traceContext, null);
+    }
+
+    public InvokeBeforeCodeGenerator(int interceptorId, InterceptorDefinition interceptorDefinition, InstrumentClass targetClass, InstrumentMethod targetMethod, TraceContext traceContext, InterceptorField interceptorField) {
+        super(interceptorId, interceptorDefinition, targetMethod, traceContext, interceptorField);
         
         this.interceptorId = interceptorId;
         this.targetClass = targetClass;
@@ -47,12 +51,21 @@ public class InvokeBeforeCodeGenerator extends InvokeCodeGenerator {
         //     InterceptorInvokerHelper.handleException(t);
         // }
         
+        // with an interceptor field :
+        // try {
+        //     _$PINPOINT$_interceptorField13.before($ARGUMENTS);
+        // } catch (Throwable t) {
+        //     InterceptorInvokerHelper.handleException(t);
+        // }
+
         builder.append("try { ");
-        builder.format("%1$s = %2$s.getInterceptor(%3$d); ", getInterceptorVar(), getInterceptorRegistryClassName(), interceptorId);
+        if (interceptorField == null) {
+            builder.format("%1$s = %2$s.getInterceptor(%3$d); ", getInterceptorVar(), getInterceptorRegistryClassName(), interceptorId);
+        }
 
         final Method beforeMethod = interceptorDefinition.getBeforeMethod();
         if (beforeMethod != null) {
-            builder.format("((%1$s)%2$s).before(", getInterceptorType(), getInterceptorVar());
+            builder.format("%1$s.before(", getInterceptorInstance());
             appendArguments(builder);
             builder.format(");");
         }
@@ -109,12 +122,17 @@ public class InvokeBeforeCodeGenerator extends InvokeCodeGenerator {
         int interceptorArgNum = paramTypes.length - 1;
         int matchNum = Math.min(argNum, interceptorArgNum);
         
+        final String box = isUnboxedBefore() ? "" : "($w)";
         for (; i < matchNum; i++) {
-            builder.append(", ($w)$" + (i + 1));
+            builder.append(", " + box + "$" + (i + 1));
         }
         
         for (; i < interceptorArgNum; i++) {
             builder.append(", null");
         }
     }
+
+    private boolean isUnboxedBefore() {
+        return interceptorField != null && interceptorField.isUnboxedBefore();
+    }
 }
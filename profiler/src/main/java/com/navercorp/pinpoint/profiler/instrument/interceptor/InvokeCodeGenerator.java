@@ -32,8 +32,16 @@ public class InvokeCodeGenerator {
     protected final InterceptorDefinition interceptorDefinition;
     protected final InstrumentMethod targetMethod;
     protected final int interceptorId;
+    protected final InterceptorField interceptorField;
 
     public InvokeCodeGenerator(int interceptorId, InterceptorDefinition interceptorDefinition, InstrumentMethod targetMethod, TraceContext traceContext) {
+        this(interceptorId, interceptorDefinition, targetMethod, traceContext, null);
+    }
+
+    /**
+     * @param interceptorField field holding the interceptor, null to look it up in the {@link InterceptorRegistry}
+     */
+    public InvokeCodeGenerator(int interceptorId, InterceptorDefinition interceptorDefinition, InstrumentMethod targetMethod, TraceContext traceContext, InterceptorField interceptorField) {
         if (interceptorDefinition == null) {
             throw new NullPointerException("interceptorDefinition must not be null");
         }
@@ -48,7 +56,7 @@ public class InvokeCodeGenerator {
         this.targetMethod = targetMethod;
         this.interceptorId = interceptorId;
         this.traceContext = traceContext;
-
+        this.interceptorField = interceptorField;
     }
 
     protected String getInterceptorType() {
@@ -90,6 +98,16 @@ public class InvokeCodeGenerator {
     protected String getInterceptorVar() {
         return getInterceptorVar(interceptorId);
     }
+
+    /**
+     * @return expression of the interceptor the before/after methods are called on
+     */
+    protected String getInterceptorInstance() {
+        if (interceptorField != null) {
+            return interceptorField.getName();
+        }
+        return "((" + getInterceptorType() + ")" + getInterceptorVar() + ")";
+    }
     
     public static String getInterceptorVar(int interceptorId) {
         return "_$PINPOINT$_interceptor" + interceptorId;
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.transformer;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the super class, interfaces and class annotations of a class file without building a class model.
+ * The super class and interfaces come from the class header, and the annotations are collected by a visitor
+ * that skips code, debug info and frames, so a class that matches nothing costs one pass over its bytes.
+ * Names are in jvm form, e.g. java/lang/Object.
+ */
+final class ClassFileHeader {
+
+    private final String superClassName;
+    private final List<String> interfaceNames;
+    private List<String> annotationNames = Collections.emptyList();
+
+    private ClassFileHeader(ClassReader classReader) {
+        this.superClassName = classReader.getSuperName();
+        final String[] interfaces = classReader.getInterfaces();
+        if (interfaces.length == 0) {
+            this.interfaceNames = Collections.emptyList();
+        } else {
+            this.interfaceNames = Arrays.asList(interfaces);
+        }
+    }
+
+    /**
+     * @param readAnnotations whether to visit the class to read its annotations
+     * @throws IllegalArgumentException if the bytes are not a well formed class file
+     */
+    static ClassFileHeader read(byte[] classFile, boolean readAnnotations) {
+        if (classFile == null) {
+            throw new NullPointerException("classFile must not be null");
+        }
+        try {
+            final ClassReader classReader = new ClassReader(classFile);
+            final ClassFileHeader header = new ClassFileHeader(classReader);
+            if (readAnnotations) {
+                header.readAnnotations(classReader);
+            }
+            return header;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // ClassReader does not validate its input, a truncated class file shows up as an index out of bounds
+            throw new IllegalArgumentException("malformed class file", e);
+        }
+    }
+
+    private void readAnnotations(ClassReader classReader) {
+        final List<String> annotationNames = new ArrayList<String>();
+        final ClassVisitor annotationCollector = new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                annotationNames.add(Type.getType(desc).getInternalName());
+                return null;
+            }
+        };
+        classReader.accept(annotationCollector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        if (!annotationNames.isEmpty()) {
+            this.annotationNames = annotationNames;
+        }
+    }
+
+    /**
+     * @return null for java/lang/Object and module-info
+     */
+    String getSuperClassName() {
+        return superClassName;
+    }
+
+    List<String> getInterfaceNames() {
+        return interfaceNames;
+    }
+
+    /**
+     * empty unless read with readAnnotations
+     */
+    List<String> getAnnotationNames() {
+        return annotationNames;
+    }
+}
@@ -21,12 +21,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.navercorp.pinpoint.bootstrap.instrument.matcher.AnnotationMatcher;
 import com.navercorp.pinpoint.bootstrap.instrument.matcher.ClassNameMatcher;
 import com.navercorp.pinpoint.bootstrap.instrument.matcher.Matcher;
 import com.navercorp.pinpoint.bootstrap.instrument.matcher.MultiClassNameMatcher;
+import com.navercorp.pinpoint.bootstrap.instrument.matcher.PackageNameMatcher;
+import com.navercorp.pinpoint.bootstrap.instrument.matcher.SuperClassNameMatcher;
 import com.navercorp.pinpoint.profiler.util.JavaAssistUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Looks up the transformer of a class by, in order, its exact name, the longest registered package containing it,
+ * its direct super class or interfaces, then its annotations.
+ * The class file is read only if super class or annotation matchers are registered,
+ * so a class that matches nothing costs a hash lookup and a walk of its name otherwise.
+ *
  * @author emeroad
  * @author netspider
  * @author hyungil.jeong
@@ -35,35 +45,107 @@ import com.navercorp.pinpoint.profiler.util.JavaAssistUtils;
  */
 public class DefaultTransformerRegistry implements TransformerRegistry {
 
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
     // No concurrent issue because only one thread put entries to the map and get operations are started AFTER the map is completely build.
     // Set the map size big intentionally to keep hash collision low.
     private final Map<String, ClassFileTransformer> registry = new HashMap<String, ClassFileTransformer>(512);
 
+    private final PackageNameTrie packageRegistry = new PackageNameTrie();
+    private final Map<String, ClassFileTransformer> superClassRegistry = new HashMap<String, ClassFileTransformer>();
+    private final Map<String, ClassFileTransformer> annotationRegistry = new HashMap<String, ClassFileTransformer>();
+
+    /**
+     * Returns the transformer of the first category that matches: exact class name, then package name,
+     * then super class or interface name, then annotation name.
+     * Registrations in different categories may overlap, e.g. a package matcher and an annotation matcher
+     * can both cover a class, and only the transformer of the earlier category is applied to it.
+     */
     @Override
-    public ClassFileTransformer findTransformer(String className) {
-        return registry.get(className);
+    public ClassFileTransformer findTransformer(String className, byte[] classFileBuffer) {
+        final ClassFileTransformer transformer = registry.get(className);
+        if (transformer != null) {
+            return transformer;
+        }
+        if (!packageRegistry.isEmpty()) {
+            final ClassFileTransformer packageTransformer = packageRegistry.find(className);
+            if (packageTransformer != null) {
+                return packageTransformer;
+            }
+        }
+        if (classFileBuffer == null || (superClassRegistry.isEmpty() && annotationRegistry.isEmpty())) {
+            return null;
+        }
+        return findHierarchyTransformer(className, classFileBuffer);
+    }
+
+    private ClassFileTransformer findHierarchyTransformer(String className, byte[] classFileBuffer) {
+        final ClassFileHeader header;
+        try {
+            header = ClassFileHeader.read(classFileBuffer, !annotationRegistry.isEmpty());
+        } catch (IllegalArgumentException e) {
+            logger.debug("Failed to read class file of {}. Caused:{}", className, e.getMessage());
+            return null;
+        }
+
+        if (!superClassRegistry.isEmpty()) {
+            final String superClassName = header.getSuperClassName();
+            if (superClassName != null) {
+                final ClassFileTransformer transformer = superClassRegistry.get(superClassName);
+                if (transformer != null) {
+                    return transformer;
+                }
+            }
+            final ClassFileTransformer transformer = findFirst(superClassRegistry, header.getInterfaceNames());
+            if (transformer != null) {
+                return transformer;
+            }
+        }
+        return findFirst(annotationRegistry, header.getAnnotationNames());
+    }
+
+    private ClassFileTransformer findFirst(Map<String, ClassFileTransformer> transformerMap, List<String> names) {
+        for (String name : names) {
+            final ClassFileTransformer transformer = transformerMap.get(name);
+            if (transformer != null) {
+                return transformer;
+            }
+        }
+        return null;
     }
-    
+
     public void addTransformer(Matcher matcher, ClassFileTransformer transformer) {
-        // TODO extract matcher process
         if (matcher instanceof ClassNameMatcher) {
             final ClassNameMatcher classNameMatcher = (ClassNameMatcher)matcher;
             String className = classNameMatcher.getClassName();
-            addModifier0(transformer, className);
+            addModifier0(registry, transformer, className);
         } else if (matcher instanceof MultiClassNameMatcher) {
             final MultiClassNameMatcher classNameMatcher = (MultiClassNameMatcher)matcher;
             List<String> classNameList = classNameMatcher.getClassNames();
             for (String className : classNameList) {
-                addModifier0(transformer, className);
+                addModifier0(registry, transformer, className);
+            }
+        } else if (matcher instanceof PackageNameMatcher) {
+            final PackageNameMatcher packageNameMatcher = (PackageNameMatcher)matcher;
+            final String jvmPackageName = JavaAssistUtils.javaNameToJvmName(packageNameMatcher.getPackageName());
+            ClassFileTransformer old = packageRegistry.put(jvmPackageName, transformer);
+            if (old != null) {
+                throw new IllegalStateException("Transformer already exist. packageName:" + jvmPackageName + " new:" + transformer.getClass() + " old:" + old.getClass());
             }
+        } else if (matcher instanceof SuperClassNameMatcher) {
+            final SuperClassNameMatcher superClassNameMatcher = (SuperClassNameMatcher)matcher;
+            addModifier0(superClassRegistry, transformer, superClassNameMatcher.getSuperClassName());
+        } else if (matcher instanceof AnnotationMatcher) {
+            final AnnotationMatcher annotationMatcher = (AnnotationMatcher)matcher;
+            addModifier0(annotationRegistry, transformer, annotationMatcher.getAnnotationName());
         } else {
             throw new IllegalArgumentException("unsupported matcher :" + matcher);
         }
     }
 
-    private void addModifier0(ClassFileTransformer transformer, String className) {
+    private void addModifier0(Map<String, ClassFileTransformer> transformerMap, ClassFileTransformer transformer, String className) {
         final String jvmClassName = JavaAssistUtils.javaNameToJvmName(className);
-        ClassFileTransformer old = registry.put(jvmClassName, transformer);
+        ClassFileTransformer old = transformerMap.put(jvmClassName, transformer);
         
         if (old != null) {
             throw new IllegalStateException("Transformer already exist. className:" + jvmClassName + " new:" + transformer.getClass() + " old:" + old.getClass());
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.transformer;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.util.Arrays;
+
+/**
+ * Character trie of jvm package names, e.g. com/foo/, looked up with the jvm name of a class.
+ * A lookup walks the class name once and returns the value of the longest package containing the class,
+ * so that a class outside every registered package costs at most a few character comparisons.
+ * Not thread safe for writes, like {@link DefaultTransformerRegistry}.
+ */
+final class PackageNameTrie {
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * @param jvmPackageName package name in jvm form, without the trailing '/'
+     * @return the previous value of the package
+     */
+    ClassFileTransformer put(String jvmPackageName, ClassFileTransformer transformer) {
+        if (jvmPackageName == null) {
+            throw new NullPointerException("jvmPackageName must not be null");
+        }
+        if (transformer == null) {
+            throw new NullPointerException("transformer must not be null");
+        }
+        Node node = root;
+        for (int i = 0; i < jvmPackageName.length(); i++) {
+            node = node.getOrCreateChild(jvmPackageName.charAt(i));
+        }
+        // only whole package names match, com/foo must not match com/foobar/Baz
+        node = node.getOrCreateChild('/');
+        final ClassFileTransformer old = node.value;
+        node.value = transformer;
+        if (old == null) {
+            size++;
+        }
+        return old;
+    }
+
+    ClassFileTransformer find(String jvmClassName) {
+        ClassFileTransformer found = null;
+        Node node = root;
+        for (int i = 0; i < jvmClassName.length(); i++) {
+            node = node.getChild(jvmClassName.charAt(i));
+            if (node == null) {
+                return found;
+            }
+            if (node.value != null) {
+                found = node.value;
+            }
+        }
+        return found;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static final class Node {
+        private static final char[] EMPTY_KEYS = new char[0];
+        private static final Node[] EMPTY_CHILDREN = new Node[0];
+
+        // package names share few characters per level, a linear scan beats hashing here
+        private char[] keys = EMPTY_KEYS;
+        private Node[] children = EMPTY_CHILDREN;
+        private ClassFileTransformer value;
+
+        private Node getChild(char key) {
+            final char[] keys = this.keys;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node getOrCreateChild(char key) {
+            final Node child = getChild(key);
+            if (child != null) {
+                return child;
+            }
+            final Node newChild = new Node();
+            final int length = keys.length;
+            this.keys = Arrays.copyOf(keys, length + 1);
+            this.keys[length] = key;
+            this.children = Arrays.copyOf(children, length + 1);
+            this.children[length] = newChild;
+            return newChild;
+        }
+    }
+}
@@ -23,6 +23,10 @@ import java.lang.instrument.ClassFileTransformer;
  */
 public interface TransformerRegistry {
 
-    ClassFileTransformer findTransformer(String className);
+    /**
+     * @param className jvm name of the class
+     * @param classFileBuffer class file of the class, read only by super class and annotation matchers
+     */
+    ClassFileTransformer findTransformer(String className, byte[] classFileBuffer);
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.receiver.service;
+
+import com.navercorp.pinpoint.profiler.receiver.ProfilerRequestCommandService;
+import com.navercorp.pinpoint.profiler.sampler.AdaptiveSampler;
+import com.navercorp.pinpoint.thrift.dto.TResult;
+import com.navercorp.pinpoint.thrift.dto.command.TCmdSamplingRate;
+import org.apache.thrift.TBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retunes the {@link AdaptiveSampler} of the agent.
+ * A request without tracesPerSecond only reads the current target.
+ */
+public class SamplingRateService implements ProfilerRequestCommandService {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final AdaptiveSampler sampler;
+
+    public SamplingRateService(AdaptiveSampler sampler) {
+        if (sampler == null) {
+            throw new NullPointerException("sampler must not be null");
+        }
+        this.sampler = sampler;
+    }
+
+    @Override
+    public TBase<?, ?> requestCommandService(TBase tbase) {
+        logger.info("{} execute {}.", this, tbase);
+
+        final TCmdSamplingRate request = (TCmdSamplingRate) tbase;
+        if (request.isSetTracesPerSecond()) {
+            final int tracesPerSecond = request.getTracesPerSecond();
+            if (tracesPerSecond <= 0) {
+                final TResult result = new TResult(false);
+                result.setMessage("Invalid tracesPerSecond " + tracesPerSecond);
+                return result;
+            }
+            logger.info("change tracesPerSecond {} -> {}", sampler.getTracesPerSecond(), tracesPerSecond);
+            sampler.setTracesPerSecond(tracesPerSecond);
+        }
+
+        final TCmdSamplingRate response = new TCmdSamplingRate();
+        response.setTracesPerSecond(sampler.getTracesPerSecond());
+        return response;
+    }
+
+    @Override
+    public Class<? extends TBase> getCommandClazz() {
+        return TCmdSamplingRate.class;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sampler;
+
+import com.navercorp.pinpoint.bootstrap.sampler.Sampler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples up to tracesPerSecond new transactions per second, whatever the traffic of the agent is.
+ * A token bucket holding one second of tokens, kept as the theoretical arrival time of the next token (GCRA)
+ * so that a single compare-and-set decides each transaction.
+ * Idle time refills the bucket, so a burst after an idle period is sampled up to tracesPerSecond transactions.
+ *
+ * @see com.navercorp.pinpoint.profiler.receiver.service.SamplingRateService
+ */
+public class AdaptiveSampler implements Sampler {
+
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong theoreticalArrivalTime;
+
+    private volatile int tracesPerSecond;
+    private volatile long intervalNanos;
+
+    public AdaptiveSampler(int tracesPerSecond) {
+        setTracesPerSecond(tracesPerSecond);
+        this.theoreticalArrivalTime = new AtomicLong(nanoTime());
+    }
+
+    @Override
+    public boolean isSampling() {
+        final long interval = this.intervalNanos;
+        final long now = nanoTime();
+        while (true) {
+            final long arrivalTime = theoreticalArrivalTime.get();
+            // compare by difference, nanoTime may overflow
+            final long start = (arrivalTime - now < 0) ? now : arrivalTime;
+            final long nextArrivalTime = start + interval;
+            if (nextArrivalTime - now > BURST_NANOS) {
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(arrivalTime, nextArrivalTime)) {
+                return true;
+            }
+        }
+    }
+
+    public int getTracesPerSecond() {
+        return tracesPerSecond;
+    }
+
+    /**
+     * Changes the target at runtime. Tokens already spent are kept, so the new rate applies from the next token.
+     */
+    public void setTracesPerSecond(int tracesPerSecond) {
+        if (tracesPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid tracesPerSecond " + tracesPerSecond);
+        }
+        this.intervalNanos = BURST_NANOS / tracesPerSecond;
+        this.tracesPerSecond = tracesPerSecond;
+    }
+
+    // for test
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveSampler{" +
+                "tracesPerSecond=" + tracesPerSecond +
+                '}';
+    }
+}
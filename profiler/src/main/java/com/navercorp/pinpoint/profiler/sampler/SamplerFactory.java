@@ -22,6 +22,19 @@ import com.navercorp.pinpoint.bootstrap.sampler.Sampler;
  * @author emeroad
  */
 public class SamplerFactory {
+
+    public static final String ADAPTIVE_SAMPLING_TYPE = "ADAPTIVE";
+
+    public Sampler createSampler(boolean sampling, String samplingType, int samplingRate, int tracesPerSecond) {
+        if (ADAPTIVE_SAMPLING_TYPE.equalsIgnoreCase(samplingType)) {
+            if (!sampling || tracesPerSecond <= 0) {
+                return new FalseSampler();
+            }
+            return new AdaptiveSampler(tracesPerSecond);
+        }
+        return createSampler(sampling, samplingRate);
+    }
+
     public Sampler createSampler(boolean sampling, int samplingRate) {
         if (!sampling || samplingRate <= 0) {
             return new FalseSampler();
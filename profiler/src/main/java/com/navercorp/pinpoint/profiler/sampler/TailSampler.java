@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sampler;
+
+import com.navercorp.pinpoint.bootstrap.context.TraceId;
+import com.navercorp.pinpoint.profiler.context.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Second chance for transactions the {@link com.navercorp.pinpoint.bootstrap.sampler.Sampler} did not sample.
+ * They are recorded into a {@link com.navercorp.pinpoint.profiler.context.storage.TailSamplingStorage},
+ * and sent only if they turn out to be slow or failed when the trace is closed.
+ * <p>
+ * Memory is bounded twice : each trace buffers at most maxSpanEventCount span events,
+ * and all pending traces of the agent share bufferSize bytes of span events. Events over either limit are discarded,
+ * a promoted trace then keeps its span and the events recorded first.
+ * <p>
+ * The decision is local : the trace id of a candidate carries {@link #TAIL_SAMPLING_FLAG},
+ * and the agents receiving it, as well as its async continuations, do not record it.
+ * <p>
+ * The promoted, dropped and truncated counts are logged every {@link #REPORT_INTERVAL} ms while decisions are made.
+ */
+public class TailSampler {
+
+    public static final short TAIL_SAMPLING_FLAG = 0x01;
+
+    public static final long REPORT_INTERVAL = 1000 * 60;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final long latencyThreshold;
+    private final int maxSpanEventCount;
+    private final int bufferSize;
+
+    private final AtomicInteger bufferedBytes = new AtomicInteger();
+
+    private final AtomicLong promotedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong truncatedCount = new AtomicLong();
+
+    private final AtomicLong lastReportTime = new AtomicLong(System.currentTimeMillis());
+
+    public static boolean isTailSamplingCandidate(TraceId traceId) {
+        return (traceId.getFlags() & TAIL_SAMPLING_FLAG) != 0;
+    }
+
+    public TailSampler(long latencyThreshold, int maxSpanEventCount, int bufferSize) {
+        if (latencyThreshold < 0) {
+            throw new IllegalArgumentException("Invalid latencyThreshold " + latencyThreshold);
+        }
+        if (maxSpanEventCount < 0) {
+            throw new IllegalArgumentException("Invalid maxSpanEventCount " + maxSpanEventCount);
+        }
+        if (bufferSize < 0) {
+            throw new IllegalArgumentException("Invalid bufferSize " + bufferSize);
+        }
+        this.latencyThreshold = latencyThreshold;
+        this.maxSpanEventCount = maxSpanEventCount;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param exceptionRecorded whether any span event of the trace recorded an exception
+     */
+    public boolean isPromoted(Span span, boolean exceptionRecorded) {
+        if (exceptionRecorded) {
+            return true;
+        }
+        if (span.isSetErrCode() && span.getErrCode() != 0) {
+            return true;
+        }
+        if (span.isSetExceptionInfo()) {
+            return true;
+        }
+        return span.getElapsed() >= latencyThreshold;
+    }
+
+    public int getMaxSpanEventCount() {
+        return maxSpanEventCount;
+    }
+
+    /**
+     * Reserves room for a span event of the given estimated size in the buffer shared by all pending traces.
+     */
+    public boolean tryAcquire(int bytes) {
+        while (true) {
+            final int current = bufferedBytes.get();
+            if (bytes > bufferSize - current) {
+                return false;
+            }
+            if (bufferedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(int bytes) {
+        if (bytes > 0) {
+            bufferedBytes.addAndGet(-bytes);
+        }
+    }
+
+    public void promoted() {
+        promotedCount.incrementAndGet();
+        report();
+    }
+
+    public void dropped() {
+        droppedCount.incrementAndGet();
+        report();
+    }
+
+    private void report() {
+        final long currentTime = System.currentTimeMillis();
+        final long lastTime = lastReportTime.get();
+        if (currentTime - lastTime < REPORT_INTERVAL) {
+            return;
+        }
+        // one of the threads closing a trace at the same time reports
+        if (lastReportTime.compareAndSet(lastTime, currentTime)) {
+            logger.info("TailSampler promoted:{}, dropped:{}, truncated:{}, bufferedBytes:{}",
+                    getPromotedCount(), getDroppedCount(), getTruncatedCount(), getBufferedBytes());
+        }
+    }
+
+    public void truncated() {
+        truncatedCount.incrementAndGet();
+    }
+
+    public int getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public long getPromotedCount() {
+        return promotedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getTruncatedCount() {
+        return truncatedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TailSampler{" +
+                "latencyThreshold=" + latencyThreshold +
+                ", maxSpanEventCount=" + maxSpanEventCount +
+                ", bufferSize=" + bufferSize +
+                ", bufferedBytes=" + bufferedBytes +
+                ", promotedCount=" + promotedCount +
+                ", droppedCount=" + droppedCount +
+                ", truncatedCount=" + truncatedCount +
+                '}';
+    }
+}
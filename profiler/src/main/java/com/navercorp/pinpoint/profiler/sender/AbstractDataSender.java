@@ -22,6 +22,7 @@ import org.apache.thrift.TBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.navercorp.pinpoint.profiler.context.Recyclable;
 import com.navercorp.pinpoint.rpc.FutureListener;
 import com.navercorp.pinpoint.rpc.ResponseMessage;
 import com.navercorp.pinpoint.thrift.io.HeaderTBaseDeserializer;
@@ -49,6 +50,7 @@ public abstract class AbstractDataSender implements DataSender {
         for (int i = 0; i < size; i++) {
             try {
                 sendPacket(dataList[i]);
+                recycle(dataList[i]);
             } catch (Throwable th) {
                 logger.warn("Unexpected Error. Cause:{}", th.getMessage(), th);
             }
@@ -56,7 +58,11 @@ public abstract class AbstractDataSender implements DataSender {
     }
 
     protected AsyncQueueingExecutor<Object> createAsyncQueueingExecutor(int queueSize, String executorName) {
-        final AsyncQueueingExecutor<Object> executor = new AsyncQueueingExecutor<Object>(queueSize, executorName);
+        return createAsyncQueueingExecutor(queueSize, executorName, AsyncQueueType.LINKED);
+    }
+
+    protected AsyncQueueingExecutor<Object> createAsyncQueueingExecutor(int queueSize, String executorName, AsyncQueueType queueType) {
+        final AsyncQueueingExecutor<Object> executor = new AsyncQueueingExecutor<Object>(queueSize, executorName, queueType);
         executor.setListener(new AsyncQueueingExecutorListener<Object>() {
             @Override
             public void execute(Collection<Object> messageList) {
@@ -66,11 +72,19 @@ public abstract class AbstractDataSender implements DataSender {
             @Override
             public void execute(Object message) {
                 sendPacket(message);
+                recycle(message);
             }
         });
         return executor;
     }
 
+    // serialized message is no longer referenced by the sender
+    private void recycle(Object message) {
+        if (message instanceof Recyclable) {
+            ((Recyclable) message).recycle();
+        }
+    }
+
     protected byte[] serialize(HeaderTBaseSerializer serializer, TBase tBase) {
         return SerializationUtils.serialize(tBase, serializer, null);
     }
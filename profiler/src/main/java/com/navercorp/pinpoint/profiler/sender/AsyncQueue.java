@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi producer, single consumer queue of {@link AsyncQueueingExecutor}.
+ * {@link #poll(long, TimeUnit)} and {@link #drainTo(Collection, int)} are only called by the executor thread.
+ */
+public interface AsyncQueue<T> {
+
+    boolean offer(T data);
+
+    T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    int drainTo(Collection<? super T> drain, int maxDrainSize);
+
+    boolean isEmpty();
+
+    int size();
+}
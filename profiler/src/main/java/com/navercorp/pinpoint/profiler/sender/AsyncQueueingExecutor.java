@@ -17,7 +17,6 @@
 package com.navercorp.pinpoint.profiler.sender;
 
 import java.util.Collection;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -37,7 +36,7 @@ public class AsyncQueueingExecutor<T> implements Runnable {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final boolean isWarn = logger.isWarnEnabled();
 
-    private final LinkedBlockingQueue<T> queue;
+    private final AsyncQueue<T> queue;
     private final AtomicBoolean isRun = new AtomicBoolean(true);
     private final Thread executeThread;
     private final String executorName;
@@ -54,13 +53,20 @@ public class AsyncQueueingExecutor<T> implements Runnable {
     }
 
     public AsyncQueueingExecutor(int queueSize, String executorName) {
+        this(queueSize, executorName, AsyncQueueType.LINKED);
+    }
+
+    public AsyncQueueingExecutor(int queueSize, String executorName, AsyncQueueType queueType) {
         if (executorName == null) {
             throw new NullPointerException("executorName must not be null");
         }
+        if (queueType == null) {
+            throw new NullPointerException("queueType must not be null");
+        }
         // BEFORE executeThread start
         this.maxDrainSize = 10;
         this.drain = new UnsafeArrayCollection<T>(maxDrainSize);
-        this.queue = new LinkedBlockingQueue<T>(queueSize);
+        this.queue = queueType.createQueue(queueSize);
 
         this.executeThread = this.createExecuteThread(executorName);
         this.executorName = executeThread.getName();
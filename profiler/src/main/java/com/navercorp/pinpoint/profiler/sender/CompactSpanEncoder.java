@@ -0,0 +1,518 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import com.navercorp.pinpoint.thrift.dto.TAnnotation;
+import com.navercorp.pinpoint.thrift.dto.TAnnotationValue;
+import com.navercorp.pinpoint.thrift.dto.TIntStringStringValue;
+import com.navercorp.pinpoint.thrift.dto.TIntStringValue;
+import com.navercorp.pinpoint.thrift.dto.TSpan;
+import com.navercorp.pinpoint.thrift.dto.TSpanChunk;
+import com.navercorp.pinpoint.thrift.dto.TSpanEvent;
+import com.navercorp.pinpoint.thrift.io.Header;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Writes {@link TSpan} and {@link TSpanChunk} straight into a {@link ByteBuffer}.
+ * <p>
+ * The output is byte for byte what {@code HeaderTBaseSerializer} produces with {@code TCompactProtocol},
+ * so the collector reads it with the usual {@code HeaderTBaseDeserializer}.
+ * Unlike the generated thrift schemes, no scheme, field descriptor or string byte array is allocated per struct.
+ * <p>
+ * Not thread safe. A {@link java.nio.BufferOverflowException} is thrown when the message does not fit the buffer.
+ */
+public class CompactSpanEncoder {
+
+    // DefaultTBaseLocator
+    private static final short SPAN = 40;
+    private static final short SPANCHUNK = 70;
+    private static final byte HEADER_VERSION = new Header().getVersion();
+
+    // TCompactProtocol.Types
+    private static final byte TYPE_BOOLEAN_TRUE = 0x01;
+    private static final byte TYPE_BOOLEAN_FALSE = 0x02;
+    private static final byte TYPE_BYTE = 0x03;
+    private static final byte TYPE_I16 = 0x04;
+    private static final byte TYPE_I32 = 0x05;
+    private static final byte TYPE_I64 = 0x06;
+    private static final byte TYPE_DOUBLE = 0x07;
+    private static final byte TYPE_BINARY = 0x08;
+    private static final byte TYPE_LIST = 0x09;
+    private static final byte TYPE_STRUCT = 0x0C;
+    private static final byte TYPE_STOP = 0x00;
+
+    /**
+     * @return false if the message is neither a {@link TSpan} nor a {@link TSpanChunk}
+     */
+    public boolean isSupported(Object message) {
+        return message instanceof TSpan || message instanceof TSpanChunk;
+    }
+
+    /**
+     * Clears the buffer, writes the message with its header and flips the buffer.
+     */
+    public void encode(Object message, ByteBuffer buffer) {
+        if (message == null) {
+            throw new NullPointerException("message must not be null");
+        }
+        if (buffer == null) {
+            throw new NullPointerException("buffer must not be null");
+        }
+        buffer.clear();
+        if (message instanceof TSpan) {
+            writeHeader(buffer, SPAN);
+            writeSpan(buffer, (TSpan) message);
+        } else if (message instanceof TSpanChunk) {
+            writeHeader(buffer, SPANCHUNK);
+            writeSpanChunk(buffer, (TSpanChunk) message);
+        } else {
+            throw new IllegalArgumentException("unsupported message type:" + message.getClass());
+        }
+        buffer.flip();
+    }
+
+    private void writeHeader(ByteBuffer buffer, short type) {
+        buffer.put(Header.SIGNATURE);
+        buffer.put(HEADER_VERSION);
+        // fixed size regardless protocol
+        buffer.put((byte) (type >> 8));
+        buffer.put((byte) type);
+    }
+
+    private void writeSpan(ByteBuffer buffer, TSpan span) {
+        int lastFieldId = 0;
+        if (span.getAgentId() != null) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 1, lastFieldId);
+            writeString(buffer, span.getAgentId());
+        }
+        if (span.getApplicationName() != null) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 2, lastFieldId);
+            writeString(buffer, span.getApplicationName());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I64, 3, lastFieldId);
+        writeI64(buffer, span.getAgentStartTime());
+        if (span.isSetTransactionId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 4, lastFieldId);
+            writeBinary(buffer, span.bufferForTransactionId());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I64, 7, lastFieldId);
+        writeI64(buffer, span.getSpanId());
+        if (span.isSetParentSpanId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I64, 8, lastFieldId);
+            writeI64(buffer, span.getParentSpanId());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I64, 9, lastFieldId);
+        writeI64(buffer, span.getStartTime());
+        if (span.isSetElapsed()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 10, lastFieldId);
+            writeI32(buffer, span.getElapsed());
+        }
+        if (span.isSetRpc()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 11, lastFieldId);
+            writeString(buffer, span.getRpc());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I16, 12, lastFieldId);
+        writeI32(buffer, span.getServiceType());
+        if (span.isSetEndPoint()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 13, lastFieldId);
+            writeString(buffer, span.getEndPoint());
+        }
+        if (span.isSetRemoteAddr()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 14, lastFieldId);
+            writeString(buffer, span.getRemoteAddr());
+        }
+        if (span.isSetAnnotations()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_LIST, 15, lastFieldId);
+            writeAnnotationList(buffer, span.getAnnotations());
+        }
+        if (span.isSetFlag()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I16, 16, lastFieldId);
+            writeI32(buffer, span.getFlag());
+        }
+        if (span.isSetErr()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 17, lastFieldId);
+            writeI32(buffer, span.getErr());
+        }
+        if (span.isSetSpanEventList()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_LIST, 18, lastFieldId);
+            writeSpanEventList(buffer, span.getSpanEventList());
+        }
+        if (span.isSetParentApplicationName()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 19, lastFieldId);
+            writeString(buffer, span.getParentApplicationName());
+        }
+        if (span.isSetParentApplicationType()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I16, 20, lastFieldId);
+            writeI32(buffer, span.getParentApplicationType());
+        }
+        if (span.isSetAcceptorHost()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 21, lastFieldId);
+            writeString(buffer, span.getAcceptorHost());
+        }
+        if (span.isSetApiId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 25, lastFieldId);
+            writeI32(buffer, span.getApiId());
+        }
+        if (span.isSetExceptionInfo()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_STRUCT, 26, lastFieldId);
+            writeIntStringValue(buffer, span.getExceptionInfo());
+        }
+        if (span.isSetApplicationServiceType()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I16, 30, lastFieldId);
+            writeI32(buffer, span.getApplicationServiceType());
+        }
+        if (span.isSetLoggingTransactionInfo()) {
+            writeFieldBegin(buffer, TYPE_BYTE, 31, lastFieldId);
+            buffer.put(span.getLoggingTransactionInfo());
+        }
+        buffer.put(TYPE_STOP);
+    }
+
+    private void writeSpanChunk(ByteBuffer buffer, TSpanChunk spanChunk) {
+        int lastFieldId = 0;
+        if (spanChunk.getAgentId() != null) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 1, lastFieldId);
+            writeString(buffer, spanChunk.getAgentId());
+        }
+        if (spanChunk.getApplicationName() != null) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 2, lastFieldId);
+            writeString(buffer, spanChunk.getApplicationName());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I64, 3, lastFieldId);
+        writeI64(buffer, spanChunk.getAgentStartTime());
+        lastFieldId = writeFieldBegin(buffer, TYPE_I16, 4, lastFieldId);
+        writeI32(buffer, spanChunk.getServiceType());
+        if (spanChunk.isSetTransactionId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 5, lastFieldId);
+            writeBinary(buffer, spanChunk.bufferForTransactionId());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I64, 8, lastFieldId);
+        writeI64(buffer, spanChunk.getSpanId());
+        if (spanChunk.isSetEndPoint()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 9, lastFieldId);
+            writeString(buffer, spanChunk.getEndPoint());
+        }
+        if (spanChunk.getSpanEventList() != null) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_LIST, 10, lastFieldId);
+            writeSpanEventList(buffer, spanChunk.getSpanEventList());
+        }
+        if (spanChunk.isSetApplicationServiceType()) {
+            writeFieldBegin(buffer, TYPE_I16, 11, lastFieldId);
+            writeI32(buffer, spanChunk.getApplicationServiceType());
+        }
+        buffer.put(TYPE_STOP);
+    }
+
+    private void writeSpanEventList(ByteBuffer buffer, List<TSpanEvent> spanEventList) {
+        final int size = spanEventList.size();
+        writeListBegin(buffer, TYPE_STRUCT, size);
+        for (int i = 0; i < size; i++) {
+            writeSpanEvent(buffer, spanEventList.get(i));
+        }
+    }
+
+    private void writeSpanEvent(ByteBuffer buffer, TSpanEvent spanEvent) {
+        int lastFieldId = 0;
+        if (spanEvent.isSetSpanId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I64, 7, lastFieldId);
+            writeI64(buffer, spanEvent.getSpanId());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I16, 8, lastFieldId);
+        writeI32(buffer, spanEvent.getSequence());
+        lastFieldId = writeFieldBegin(buffer, TYPE_I32, 9, lastFieldId);
+        writeI32(buffer, spanEvent.getStartElapsed());
+        if (spanEvent.isSetEndElapsed()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 10, lastFieldId);
+            writeI32(buffer, spanEvent.getEndElapsed());
+        }
+        if (spanEvent.isSetRpc()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 11, lastFieldId);
+            writeString(buffer, spanEvent.getRpc());
+        }
+        lastFieldId = writeFieldBegin(buffer, TYPE_I16, 12, lastFieldId);
+        writeI32(buffer, spanEvent.getServiceType());
+        if (spanEvent.isSetEndPoint()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 13, lastFieldId);
+            writeString(buffer, spanEvent.getEndPoint());
+        }
+        if (spanEvent.isSetAnnotations()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_LIST, 14, lastFieldId);
+            writeAnnotationList(buffer, spanEvent.getAnnotations());
+        }
+        if (spanEvent.isSetDepth()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 15, lastFieldId);
+            writeI32(buffer, spanEvent.getDepth());
+        }
+        if (spanEvent.isSetNextSpanId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I64, 16, lastFieldId);
+            writeI64(buffer, spanEvent.getNextSpanId());
+        }
+        if (spanEvent.isSetDestinationId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 20, lastFieldId);
+            writeString(buffer, spanEvent.getDestinationId());
+        }
+        if (spanEvent.isSetApiId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 25, lastFieldId);
+            writeI32(buffer, spanEvent.getApiId());
+        }
+        if (spanEvent.isSetExceptionInfo()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_STRUCT, 26, lastFieldId);
+            writeIntStringValue(buffer, spanEvent.getExceptionInfo());
+        }
+        if (spanEvent.isSetAsyncId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 30, lastFieldId);
+            writeI32(buffer, spanEvent.getAsyncId());
+        }
+        if (spanEvent.isSetNextAsyncId()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_I32, 31, lastFieldId);
+            writeI32(buffer, spanEvent.getNextAsyncId());
+        }
+        if (spanEvent.isSetAsyncSequence()) {
+            writeFieldBegin(buffer, TYPE_I16, 32, lastFieldId);
+            writeI32(buffer, spanEvent.getAsyncSequence());
+        }
+        buffer.put(TYPE_STOP);
+    }
+
+    private void writeAnnotationList(ByteBuffer buffer, List<TAnnotation> annotationList) {
+        final int size = annotationList.size();
+        writeListBegin(buffer, TYPE_STRUCT, size);
+        for (int i = 0; i < size; i++) {
+            writeAnnotation(buffer, annotationList.get(i));
+        }
+    }
+
+    private void writeAnnotation(ByteBuffer buffer, TAnnotation annotation) {
+        int lastFieldId = writeFieldBegin(buffer, TYPE_I32, 1, 0);
+        writeI32(buffer, annotation.getKey());
+        if (annotation.isSetValue()) {
+            writeFieldBegin(buffer, TYPE_STRUCT, 2, lastFieldId);
+            writeAnnotationValue(buffer, annotation.getValue());
+        }
+        buffer.put(TYPE_STOP);
+    }
+
+    private void writeAnnotationValue(ByteBuffer buffer, TAnnotationValue value) {
+        final TAnnotationValue._Fields setField = value.getSetField();
+        if (setField == null) {
+            throw new IllegalStateException("Cannot write a TUnion with no set value!");
+        }
+        final Object fieldValue = value.getFieldValue();
+        switch (setField) {
+            case STRING_VALUE:
+                writeFieldBegin(buffer, TYPE_BINARY, 1, 0);
+                writeString(buffer, (String) fieldValue);
+                break;
+            case BOOL_VALUE:
+                // compact protocol folds the boolean into the field header
+                writeFieldBegin(buffer, (Boolean) fieldValue ? TYPE_BOOLEAN_TRUE : TYPE_BOOLEAN_FALSE, 2, 0);
+                break;
+            case INT_VALUE:
+                writeFieldBegin(buffer, TYPE_I32, 3, 0);
+                writeI32(buffer, (Integer) fieldValue);
+                break;
+            case LONG_VALUE:
+                writeFieldBegin(buffer, TYPE_I64, 4, 0);
+                writeI64(buffer, (Long) fieldValue);
+                break;
+            case SHORT_VALUE:
+                writeFieldBegin(buffer, TYPE_I16, 5, 0);
+                writeI32(buffer, (Short) fieldValue);
+                break;
+            case DOUBLE_VALUE:
+                writeFieldBegin(buffer, TYPE_DOUBLE, 6, 0);
+                writeDouble(buffer, (Double) fieldValue);
+                break;
+            case BINARY_VALUE:
+                writeFieldBegin(buffer, TYPE_BINARY, 7, 0);
+                writeBinary(buffer, (ByteBuffer) fieldValue);
+                break;
+            case BYTE_VALUE:
+                writeFieldBegin(buffer, TYPE_BYTE, 8, 0);
+                buffer.put((Byte) fieldValue);
+                break;
+            case INT_STRING_VALUE:
+                writeFieldBegin(buffer, TYPE_STRUCT, 9, 0);
+                writeIntStringValue(buffer, (TIntStringValue) fieldValue);
+                break;
+            case INT_STRING_STRING_VALUE:
+                writeFieldBegin(buffer, TYPE_STRUCT, 10, 0);
+                writeIntStringStringValue(buffer, (TIntStringStringValue) fieldValue);
+                break;
+            default:
+                throw new IllegalStateException("Cannot write union with unknown field " + setField);
+        }
+        buffer.put(TYPE_STOP);
+    }
+
+    private void writeIntStringValue(ByteBuffer buffer, TIntStringValue value) {
+        final int lastFieldId = writeFieldBegin(buffer, TYPE_I32, 1, 0);
+        writeI32(buffer, value.getIntValue());
+        if (value.isSetStringValue()) {
+            writeFieldBegin(buffer, TYPE_BINARY, 2, lastFieldId);
+            writeString(buffer, value.getStringValue());
+        }
+        buffer.put(TYPE_STOP);
+    }
+
+    private void writeIntStringStringValue(ByteBuffer buffer, TIntStringStringValue value) {
+        int lastFieldId = writeFieldBegin(buffer, TYPE_I32, 1, 0);
+        writeI32(buffer, value.getIntValue());
+        if (value.isSetStringValue1()) {
+            lastFieldId = writeFieldBegin(buffer, TYPE_BINARY, 2, lastFieldId);
+            writeString(buffer, value.getStringValue1());
+        }
+        if (value.isSetStringValue2()) {
+            writeFieldBegin(buffer, TYPE_BINARY, 3, lastFieldId);
+            writeString(buffer, value.getStringValue2());
+        }
+        buffer.put(TYPE_STOP);
+    }
+
+    /**
+     * @return field id to pass as lastFieldId of the next field of the same struct
+     */
+    static int writeFieldBegin(ByteBuffer buffer, byte type, int fieldId, int lastFieldId) {
+        final int delta = fieldId - lastFieldId;
+        if (delta > 0 && delta <= 15) {
+            buffer.put((byte) (delta << 4 | type));
+        } else {
+            buffer.put(type);
+            writeI32(buffer, fieldId);
+        }
+        return fieldId;
+    }
+
+    static void writeListBegin(ByteBuffer buffer, byte elementType, int size) {
+        if (size <= 14) {
+            buffer.put((byte) (size << 4 | elementType));
+        } else {
+            buffer.put((byte) (0xf0 | elementType));
+            writeVarint32(buffer, size);
+        }
+    }
+
+    /**
+     * i16 and i32 share the same zigzag varint encoding.
+     */
+    static void writeI32(ByteBuffer buffer, int value) {
+        writeVarint32(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    static void writeI64(ByteBuffer buffer, long value) {
+        writeVarint64(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeDouble(ByteBuffer buffer, double value) {
+        final long bits = Double.doubleToLongBits(value);
+        // little endian
+        for (int shift = 0; shift < 64; shift += 8) {
+            buffer.put((byte) (bits >>> shift));
+        }
+    }
+
+    static void writeVarint32(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static void writeVarint64(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static void writeBinary(ByteBuffer buffer, ByteBuffer binary) {
+        final int position = binary.position();
+        final int length = binary.limit() - position;
+        writeVarint32(buffer, length);
+        if (binary.hasArray()) {
+            buffer.put(binary.array(), binary.arrayOffset() + position, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                buffer.put(binary.get(position + i));
+            }
+        }
+    }
+
+    /**
+     * Same bytes as {@code String.getBytes("UTF-8")}, which replaces unpaired surrogates with '?'.
+     */
+    static void writeString(ByteBuffer buffer, String value) {
+        final int length = value.length();
+        writeVarint32(buffer, utf8Length(value));
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                if (isSurrogatePair(value, i)) {
+                    final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    buffer.put((byte) '?');
+                }
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static int utf8Length(String value) {
+        final int length = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length += 1;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                if (isSurrogatePair(value, i)) {
+                    utf8Length += 4;
+                    i++;
+                } else {
+                    utf8Length += 1;
+                }
+            } else {
+                utf8Length += 3;
+            }
+        }
+        return utf8Length;
+    }
+
+    private static boolean isSurrogatePair(String value, int index) {
+        return Character.isHighSurrogate(value.charAt(index))
+                && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+}
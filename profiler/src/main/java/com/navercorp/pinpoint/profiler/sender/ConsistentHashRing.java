@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps keys to nodes with consistent hashing, so that adding, removing or skipping a node
+ * moves only the keys of that node. Each node is placed on the ring virtualNodeCount times.
+ */
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODE_COUNT = 160;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public interface NodeFilter {
+        boolean accept(int nodeIndex);
+    }
+
+    private final int nodeCount;
+    // sorted
+    private final int[] ringHashes;
+    private final int[] ringNodeIndexes;
+
+    public ConsistentHashRing(List<String> nodeNames) {
+        this(nodeNames, DEFAULT_VIRTUAL_NODE_COUNT);
+    }
+
+    public ConsistentHashRing(List<String> nodeNames, int virtualNodeCount) {
+        if (nodeNames == null) {
+            throw new NullPointerException("nodeNames must not be null");
+        }
+        if (nodeNames.isEmpty()) {
+            throw new IllegalArgumentException("nodeNames is empty");
+        }
+        if (virtualNodeCount <= 0) {
+            throw new IllegalArgumentException("Invalid virtualNodeCount " + virtualNodeCount);
+        }
+        this.nodeCount = nodeNames.size();
+
+        // 4 points per md5 digest
+        final int digestCount = (virtualNodeCount + 3) / 4;
+        final long[] points = new long[nodeCount * digestCount * 4];
+        final MessageDigest md5 = getMd5();
+        int pointIndex = 0;
+        for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
+            final String nodeName = nodeNames.get(nodeIndex);
+            for (int i = 0; i < digestCount; i++) {
+                final byte[] digest = md5.digest((nodeName + "-" + i).getBytes(UTF_8));
+                for (int j = 0; j < 4; j++) {
+                    final int hash = (digest[j * 4] & 0xff) << 24 | (digest[j * 4 + 1] & 0xff) << 16 | (digest[j * 4 + 2] & 0xff) << 8 | (digest[j * 4 + 3] & 0xff);
+                    // sort by hash, then by node index
+                    points[pointIndex++] = ((long) hash << 32) | nodeIndex;
+                }
+            }
+        }
+        Arrays.sort(points);
+
+        this.ringHashes = new int[points.length];
+        this.ringNodeIndexes = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            ringHashes[i] = (int) (points[i] >> 32);
+            ringNodeIndexes[i] = (int) points[i];
+        }
+    }
+
+    private static MessageDigest getMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported", e);
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the index of the first node accepted by the filter clockwise from the key,
+     * or the owner of the key if the filter accepts none
+     */
+    public int select(int key, NodeFilter filter) {
+        final int hash = mix(key);
+        int position = Arrays.binarySearch(ringHashes, hash);
+        if (position < 0) {
+            position = -(position + 1);
+        }
+        if (position == ringHashes.length) {
+            position = 0;
+        }
+        final int owner = ringNodeIndexes[position];
+        if (filter == null) {
+            return owner;
+        }
+        for (int i = 0; i < ringHashes.length; i++) {
+            final int nodeIndex = ringNodeIndexes[(position + i) % ringHashes.length];
+            if (filter.accept(nodeIndex)) {
+                return nodeIndex;
+            }
+        }
+        return owner;
+    }
+
+    // murmur3 finalizer, spreads keys such as Arrays.hashCode() over the ring
+    private static int mix(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashRing{" +
+                "nodeCount=" + nodeCount +
+                ", pointCount=" + ringHashes.length +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free multi producer, single consumer ring buffer.
+ * <p>
+ * Slots are preallocated, so offer() neither allocates a node nor takes a lock.
+ * Producers claim a sequence with CAS and publish the element into its slot; the single consumer
+ * releases the slot by clearing it and advancing the consumer sequence.
+ */
+public class MpscArrayAsyncQueue<T> implements AsyncQueue<T> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> buffer;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    // consumer thread parked in poll(timeout, unit)
+    private volatile Thread waiter;
+
+    public MpscArrayAsyncQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0. capacity:" + capacity);
+        }
+        final int bufferSize = nextPowerOfTwo(capacity);
+        this.capacity = capacity;
+        this.mask = bufferSize - 1;
+        this.buffer = new AtomicReferenceArray<T>(bufferSize);
+    }
+
+    static int nextPowerOfTwo(int value) {
+        if (value > (1 << 30)) {
+            throw new IllegalArgumentException("value is too large. value:" + value);
+        }
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    @Override
+    public boolean offer(T data) {
+        if (data == null) {
+            throw new NullPointerException("data must not be null");
+        }
+        long sequence;
+        do {
+            sequence = producerIndex.get();
+            if (sequence - consumerIndex.get() >= capacity) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(sequence, sequence + 1));
+
+        // volatile store. waiter must not be read before the element is visible to the consumer.
+        buffer.set(index(sequence), data);
+
+        final Thread waiter = this.waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        return true;
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    // consumer thread only
+    private T poll() {
+        final long sequence = consumerIndex.get();
+        final int index = index(sequence);
+        T data = buffer.get(index);
+        if (data == null) {
+            if (sequence == producerIndex.get()) {
+                return null;
+            }
+            // slot is claimed but not published yet
+            do {
+                Thread.yield();
+                data = buffer.get(index);
+            } while (data == null);
+        }
+        buffer.lazySet(index, null);
+        consumerIndex.lazySet(sequence + 1);
+        return data;
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        T data = poll();
+        if (data != null) {
+            return data;
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.waiter = Thread.currentThread();
+        try {
+            while (true) {
+                data = poll();
+                if (data != null) {
+                    return data;
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            this.waiter = null;
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> drain, int maxDrainSize) {
+        int drainSize = 0;
+        while (drainSize < maxDrainSize) {
+            final T data = poll();
+            if (data == null) {
+                break;
+            }
+            drain.add(data);
+            drainSize++;
+        }
+        return drainSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        final long size = producerIndex.get() - consumerIndex.get();
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, capacity);
+    }
+}
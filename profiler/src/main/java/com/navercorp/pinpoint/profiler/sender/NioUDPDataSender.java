@@ -1,5 +1,7 @@
 package com.navercorp.pinpoint.profiler.sender;
 
+import com.navercorp.pinpoint.profiler.sender.spool.PacketSpool;
+import com.navercorp.pinpoint.profiler.sender.spool.PacketWriter;
 import com.navercorp.pinpoint.rpc.PinpointSocketException;
 import com.navercorp.pinpoint.rpc.buffer.ByteBufferFactory;
 import com.navercorp.pinpoint.rpc.buffer.ByteBufferFactoryLocator;
@@ -15,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 
@@ -33,6 +36,11 @@ public class NioUDPDataSender extends AbstractDataSender implements DataSender {
     private final DatagramChannel datagramChannel;
     private final HeaderTBaseSerializer2 serializer;
     private final ByteBufferOutputStream byteBufferOutputStream;
+    private final ByteBuffer sendBuffer;
+    // null if span direct encoding is disabled
+    private final CompactSpanEncoder spanEncoder;
+    // null if spooling is disabled
+    private final PacketSpool packetSpool;
 
     private final AsyncQueueingExecutor<Object> executor;
 
@@ -43,6 +51,18 @@ public class NioUDPDataSender extends AbstractDataSender implements DataSender {
     }
 
     public NioUDPDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, AsyncQueueType.LINKED);
+    }
+
+    public NioUDPDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, false);
+    }
+
+    public NioUDPDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType, boolean spanDirectEncode) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, spanDirectEncode, null);
+    }
+
+    public NioUDPDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType, boolean spanDirectEncode, PacketSpool packetSpool) {
         if (host == null ) {
             throw new NullPointerException("host must not be null");
         }
@@ -67,10 +87,21 @@ public class NioUDPDataSender extends AbstractDataSender implements DataSender {
         this.serializer = serializerFactory.createSerializer();
 
         ByteBufferFactory bufferFactory = ByteBufferFactoryLocator.getFactory(ByteBufferType.DIRECT);
-        ByteBuffer byteBuffer = bufferFactory.getBuffer(UDP_MAX_PACKET_LENGTH);
-        this.byteBufferOutputStream = new ByteBufferOutputStream(byteBuffer);
+        this.sendBuffer = bufferFactory.getBuffer(UDP_MAX_PACKET_LENGTH);
+        this.byteBufferOutputStream = new ByteBufferOutputStream(sendBuffer);
+        this.spanEncoder = spanDirectEncode ? new CompactSpanEncoder() : null;
+
+        this.packetSpool = packetSpool;
+        if (packetSpool != null) {
+            packetSpool.start(new PacketWriter() {
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    datagramChannel.write(ByteBuffer.wrap(buffer, offset, length));
+                }
+            }, threadName);
+        }
 
-        this.executor = createAsyncQueueingExecutor(queueSize, threadName);
+        this.executor = createAsyncQueueingExecutor(queueSize, threadName, queueType);
     }
 
     private DatagramChannel createChannel(String host, int port, int timeout, int sendBufferSize) {
@@ -119,6 +150,9 @@ public class NioUDPDataSender extends AbstractDataSender implements DataSender {
         try {
             closed = true;
             executor.stop();
+            if (packetSpool != null) {
+                packetSpool.stop();
+            }
         } finally {
             try {
                 byteBufferOutputStream.close();
@@ -134,21 +168,19 @@ public class NioUDPDataSender extends AbstractDataSender implements DataSender {
         }
 
         if (message instanceof TBase) {
-            byteBufferOutputStream.clear();
-
             final TBase dto = (TBase) message;
-            // do not copy bytes because it's single threaded
-
-            try {
-                serializer.serialize(dto,  byteBufferOutputStream);
-            } catch (TException e) {
-                throw new PinpointSocketException("Serialize " + dto + " failed. Error:" +  e.getMessage(), e);
-            }
-            ByteBuffer byteBuffer = byteBufferOutputStream.getByteBuffer();
+            final ByteBuffer byteBuffer = encode(dto);
             int bufferSize = byteBuffer.remaining();
+            if (packetSpool != null && packetSpool.isSpooling()) {
+                packetSpool.offer(byteBuffer);
+                return;
+            }
             try {
                 datagramChannel.write(byteBuffer);
             } catch (IOException e) {
+                if (packetSpool != null) {
+                    packetSpool.offer(byteBuffer);
+                }
                 final Thread currentThread = Thread.currentThread();
                 if (currentThread.isInterrupted()) {
                     logger.warn("{} thread interrupted.", currentThread.getName());
@@ -163,4 +195,24 @@ public class NioUDPDataSender extends AbstractDataSender implements DataSender {
         }
     }
 
+    private ByteBuffer encode(TBase dto) {
+        // do not copy bytes because it's single threaded
+        if (spanEncoder != null && spanEncoder.isSupported(dto)) {
+            try {
+                spanEncoder.encode(dto, sendBuffer);
+            } catch (BufferOverflowException e) {
+                throw new PinpointSocketException("Encode " + dto + " failed. too large message.", e);
+            }
+            return sendBuffer;
+        }
+
+        byteBufferOutputStream.clear();
+        try {
+            serializer.serialize(dto,  byteBufferOutputStream);
+        } catch (TException e) {
+            throw new PinpointSocketException("Serialize " + dto + " failed. Error:" +  e.getMessage(), e);
+        }
+        return byteBufferOutputStream.getByteBuffer();
+    }
+
 }
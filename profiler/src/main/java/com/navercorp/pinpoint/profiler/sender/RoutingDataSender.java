@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import com.navercorp.pinpoint.common.util.TransactionId;
+import com.navercorp.pinpoint.common.util.TransactionIdUtils;
+import com.navercorp.pinpoint.thrift.dto.TSpan;
+import com.navercorp.pinpoint.thrift.dto.TSpanChunk;
+import org.apache.thrift.TBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads data over several collectors, one {@link DataSender} each.
+ * Spans and span chunks are routed by transaction id on a {@link ConsistentHashRing}, so that a trace stays on one collector,
+ * even across agents : the root agent encodes its transaction id without its own agent id, which is put back before hashing.
+ * and anything else goes to the collector owning key 0.
+ * Unavailable collectors are skipped, which moves their keys to the next collectors on the ring until they are back.
+ */
+public class RoutingDataSender implements DataSender, ConsistentHashRing.NodeFilter {
+
+    private static final int DEFAULT_ROUTING_KEY = 0;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ConsistentHashRing ring;
+    private final List<DataSender> dataSenders;
+    private final List<CollectorAvailability> collectorAvailabilities;
+
+    public RoutingDataSender(ConsistentHashRing ring, List<DataSender> dataSenders, List<CollectorAvailability> collectorAvailabilities) {
+        if (ring == null) {
+            throw new NullPointerException("ring must not be null");
+        }
+        if (dataSenders == null) {
+            throw new NullPointerException("dataSenders must not be null");
+        }
+        if (collectorAvailabilities == null) {
+            throw new NullPointerException("collectorAvailabilities must not be null");
+        }
+        if (dataSenders.size() != ring.getNodeCount() || collectorAvailabilities.size() != ring.getNodeCount()) {
+            throw new IllegalArgumentException("node count mismatch. ring:" + ring.getNodeCount() + ", dataSenders:" + dataSenders.size()
+                    + ", collectorAvailabilities:" + collectorAvailabilities.size());
+        }
+        this.ring = ring;
+        this.dataSenders = new ArrayList<DataSender>(dataSenders);
+        this.collectorAvailabilities = new ArrayList<CollectorAvailability>(collectorAvailabilities);
+    }
+
+    @Override
+    public boolean send(TBase<?, ?> data) {
+        final int nodeIndex = ring.select(getRoutingKey(data), this);
+        return dataSenders.get(nodeIndex).send(data);
+    }
+
+    int getRoutingKey(TBase<?, ?> data) {
+        if (data instanceof TSpan) {
+            final TSpan span = (TSpan) data;
+            return getRoutingKey(span.getTransactionId(), span.getAgentId());
+        }
+        if (data instanceof TSpanChunk) {
+            final TSpanChunk spanChunk = (TSpanChunk) data;
+            return getRoutingKey(spanChunk.getTransactionId(), spanChunk.getAgentId());
+        }
+        return DEFAULT_ROUTING_KEY;
+    }
+
+    private int getRoutingKey(byte[] transactionIdBytes, String agentId) {
+        if (transactionIdBytes == null) {
+            return DEFAULT_ROUTING_KEY;
+        }
+        final TransactionId transactionId = TransactionIdUtils.parseTransactionId(transactionIdBytes);
+        String transactionAgentId = transactionId.getAgentId();
+        if (transactionAgentId == null) {
+            transactionAgentId = agentId;
+        }
+        if (transactionAgentId == null) {
+            return DEFAULT_ROUTING_KEY;
+        }
+        return new TransactionId(transactionAgentId, transactionId.getAgentStartTime(), transactionId.getTransactionSequence()).hashCode();
+    }
+
+    @Override
+    public boolean accept(int nodeIndex) {
+        return collectorAvailabilities.get(nodeIndex).isAvailable();
+    }
+
+    @Override
+    public void stop() {
+        for (DataSender dataSender : dataSenders) {
+            try {
+                dataSender.stop();
+            } catch (Exception e) {
+                logger.warn("Failed to stop {}", dataSender, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingDataSender{" +
+                "ring=" + ring +
+                ", dataSenders=" + dataSenders +
+                '}';
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import com.navercorp.pinpoint.profiler.util.ByteBufferUtils;
+import com.navercorp.pinpoint.thrift.io.SpanStreamConstants;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Deflates the chunks of a span stream packet, keeping the start buffer readable
+ * so that the collector can tell compressed packets by their version.
+ * A packet that does not get smaller is sent as is.
+ */
+public class SpanStreamCompressor {
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final AtomicLong packetCount = new AtomicLong();
+    private final AtomicLong compressedPacketCount = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong compressTimeNanos = new AtomicLong();
+
+    /**
+     * @param sendBuffers start buffer, chunks and end buffer of {@link SpanStreamSendData#getSendBuffers()}
+     */
+    public synchronized ByteBuffer[] compress(ByteBuffer[] sendBuffers) {
+        final long startTime = System.nanoTime();
+
+        final ByteBuffer startBuffer = sendBuffers[0];
+        final int length = ByteBufferUtils.getRemaining(sendBuffers) - startBuffer.remaining();
+        final byte[] input = new byte[length];
+        int offset = 0;
+        for (int i = 1; i < sendBuffers.length; i++) {
+            final ByteBuffer buffer = sendBuffers[i].duplicate();
+            final int remaining = buffer.remaining();
+            buffer.get(input, offset, remaining);
+            offset += remaining;
+        }
+
+        final byte[] output = new byte[length];
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished() && compressedLength < output.length) {
+            compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+        }
+
+        packetCount.incrementAndGet();
+        rawBytes.addAndGet(length);
+        if (!deflater.finished() || compressedLength >= length) {
+            sentBytes.addAndGet(length);
+            compressTimeNanos.addAndGet(System.nanoTime() - startTime);
+            return sendBuffers;
+        }
+        compressedPacketCount.incrementAndGet();
+        sentBytes.addAndGet(compressedLength);
+
+        final ByteBuffer compressedStartBuffer = ByteBuffer.allocate(SpanStreamConstants.START_PROTOCOL_BUFFER_SIZE);
+        compressedStartBuffer.put(startBuffer.get(startBuffer.position()));
+        compressedStartBuffer.put(SpanStreamConstants.Protocol.SPAN_STREAM_COMPRESSED_VERSION);
+        compressedStartBuffer.put(startBuffer.get(startBuffer.position() + 2));
+        compressedStartBuffer.flip();
+
+        final ByteBuffer[] compressed = new ByteBuffer[] {compressedStartBuffer, ByteBuffer.wrap(Arrays.copyOf(output, compressedLength))};
+        compressTimeNanos.addAndGet(System.nanoTime() - startTime);
+        return compressed;
+    }
+
+    public synchronized void close() {
+        deflater.end();
+    }
+
+    public long getPacketCount() {
+        return packetCount.get();
+    }
+
+    public long getCompressedPacketCount() {
+        return compressedPacketCount.get();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public long getCompressTimeNanos() {
+        return compressTimeNanos.get();
+    }
+
+    /**
+     * sent bytes / raw bytes of the chunks, 1.0 when nothing was sent
+     */
+    public double getCompressionRatio() {
+        final long raw = rawBytes.get();
+        if (raw == 0) {
+            return 1.0;
+        }
+        return (double) sentBytes.get() / raw;
+    }
+
+    @Override
+    public String toString() {
+        return "SpanStreamCompressor{" +
+                "packetCount=" + packetCount +
+                ", compressedPacketCount=" + compressedPacketCount +
+                ", rawBytes=" + rawBytes +
+                ", sentBytes=" + sentBytes +
+                ", compressionRatio=" + getCompressionRatio() +
+                ", compressTimeNanos=" + compressTimeNanos +
+                '}';
+    }
+}
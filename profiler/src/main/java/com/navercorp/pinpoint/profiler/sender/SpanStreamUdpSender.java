@@ -46,6 +46,8 @@ public class SpanStreamUdpSender extends AbstractDataSender {
     public static final int DEFAULT_BUFFER_SIZE = 1024 * 16;
     
     public static final int UDP_MAX_PACKET_LENGTH = 65507;
+
+    public static final long COMPRESSION_REPORT_INTERVAL = 1000 * 60;
     
 
     private final SpanStreamSendDataFactory spanStreamSendDataFactory;
@@ -59,6 +61,11 @@ public class SpanStreamUdpSender extends AbstractDataSender {
 
     private final StandbySpanStreamDataSendWorker standbySpanStreamDataSendWorker;
 
+    // null if packets are sent uncompressed
+    private final SpanStreamCompressor compressor;
+    // sender thread only
+    private long lastCompressionReportTime = System.currentTimeMillis();
+
     public SpanStreamUdpSender(String host, int port, String threadName, int queueSize) {
         this(host, port, threadName, queueSize, SOCKET_TIMEOUT, SEND_BUFFER_SIZE);
     }
@@ -68,6 +75,10 @@ public class SpanStreamUdpSender extends AbstractDataSender {
     }
 
     public SpanStreamUdpSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, int dataBufferSize) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, dataBufferSize, false);
+    }
+
+    public SpanStreamUdpSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, int dataBufferSize, boolean compress) {
         if (host == null) {
             throw new NullPointerException("host must not be null");
         }
@@ -95,6 +106,8 @@ public class SpanStreamUdpSender extends AbstractDataSender {
 
         this.spanStreamSendDataFactory = new SpanStreamSendDataFactory(dataBufferSize, 16, serializerPool);
 
+        this.compressor = compress ? new SpanStreamCompressor() : null;
+
         this.standbySpanStreamDataSendWorker = new StandbySpanStreamDataSendWorker(new FlushHandler(), new StandbySpanStreamDataStorage());
         this.standbySpanStreamDataSendWorker.start();
 
@@ -157,6 +170,15 @@ public class SpanStreamUdpSender extends AbstractDataSender {
         }
 
         executor.stop();
+
+        if (compressor != null) {
+            logger.info("span stream compression {}", compressor);
+            compressor.close();
+        }
+    }
+
+    public SpanStreamCompressor getCompressor() {
+        return compressor;
     }
 
     @Override
@@ -172,6 +194,19 @@ public class SpanStreamUdpSender extends AbstractDataSender {
         } else {
             logger.info("sendPacket fail. invalid type:{}", messageToString(message));
         }
+
+        if (compressor != null) {
+            reportCompression();
+        }
+    }
+
+    private void reportCompression() {
+        final long currentTime = System.currentTimeMillis();
+        if (currentTime - lastCompressionReportTime < COMPRESSION_REPORT_INTERVAL) {
+            return;
+        }
+        lastCompressionReportTime = currentTime;
+        logger.info("span stream compression {}", compressor);
     }
 
     private String messageToString(Object message) {
@@ -252,7 +287,7 @@ public class SpanStreamUdpSender extends AbstractDataSender {
             return;
         }
         
-        ByteBuffer[] byteBuffers = spanStreamSendData.getSendBuffers();
+        ByteBuffer[] byteBuffers = getSendBuffers(spanStreamSendData);
         int remainingLength = ByteBufferUtils.getRemaining(byteBuffers);
 
         try {
@@ -269,6 +304,14 @@ public class SpanStreamUdpSender extends AbstractDataSender {
         }
     }
 
+    private ByteBuffer[] getSendBuffers(SpanStreamSendData spanStreamSendData) {
+        final ByteBuffer[] byteBuffers = spanStreamSendData.getSendBuffers();
+        if (compressor == null) {
+            return byteBuffers;
+        }
+        return compressor.compress(byteBuffers);
+    }
+
     class FlushHandler implements StandbySpanStreamDataFlushHandler {
 
         @Override
@@ -278,7 +321,7 @@ public class SpanStreamUdpSender extends AbstractDataSender {
             }
 
             try {
-                ByteBuffer[] byteBuffers = spanStreamSendData.getSendBuffers();
+                ByteBuffer[] byteBuffers = getSendBuffers(spanStreamSendData);
                 int remainingLength = ByteBufferUtils.getRemaining(byteBuffers);
 
                 if (remainingLength != 0) {
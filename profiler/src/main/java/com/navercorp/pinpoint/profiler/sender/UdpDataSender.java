@@ -16,6 +16,8 @@
 
 package com.navercorp.pinpoint.profiler.sender;
 
+import com.navercorp.pinpoint.profiler.sender.spool.PacketSpool;
+import com.navercorp.pinpoint.profiler.sender.spool.PacketWriter;
 import com.navercorp.pinpoint.thrift.io.HeaderTBaseSerializer;
 import com.navercorp.pinpoint.thrift.io.HeaderTBaseSerializerFactory;
 import org.apache.thrift.TBase;
@@ -27,6 +29,8 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * @author netspider
@@ -50,6 +54,13 @@ public class UdpDataSender extends AbstractDataSender implements DataSender {
     // Caution. not thread safe
     private final HeaderTBaseSerializer serializer = new HeaderTBaseSerializerFactory(false, UDP_MAX_PACKET_LENGTH, false).createSerializer();
 
+    // null if span direct encoding is disabled
+    private final CompactSpanEncoder spanEncoder;
+    private final ByteBuffer spanBuffer;
+
+    // null if spooling is disabled
+    private final PacketSpool packetSpool;
+
     private final AsyncQueueingExecutor<Object> executor;
 
     public UdpDataSender(String host, int port, String threadName, int queueSize) {
@@ -57,6 +68,18 @@ public class UdpDataSender extends AbstractDataSender implements DataSender {
     }
 
     public UdpDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, AsyncQueueType.LINKED);
+    }
+
+    public UdpDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, false);
+    }
+
+    public UdpDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType, boolean spanDirectEncode) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, spanDirectEncode, null);
+    }
+
+    public UdpDataSender(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType, boolean spanDirectEncode, PacketSpool packetSpool) {
         if (host == null ) {
             throw new NullPointerException("host must not be null");
         }
@@ -77,7 +100,25 @@ public class UdpDataSender extends AbstractDataSender implements DataSender {
         logger.info("UdpDataSender initialized. host={}, port={}", host, port);
         this.udpSocket = createSocket(host, port, timeout, sendBufferSize);
 
-        this.executor = createAsyncQueueingExecutor(queueSize, threadName);
+        if (spanDirectEncode) {
+            this.spanEncoder = new CompactSpanEncoder();
+            this.spanBuffer = ByteBuffer.allocate(UDP_MAX_PACKET_LENGTH);
+        } else {
+            this.spanEncoder = null;
+            this.spanBuffer = null;
+        }
+
+        this.packetSpool = packetSpool;
+        if (packetSpool != null) {
+            packetSpool.start(new PacketWriter() {
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    udpSocket.send(new DatagramPacket(buffer, offset, length));
+                }
+            }, threadName);
+        }
+
+        this.executor = createAsyncQueueingExecutor(queueSize, threadName, queueType);
     }
 
     @Override
@@ -88,6 +129,9 @@ public class UdpDataSender extends AbstractDataSender implements DataSender {
     @Override
     public void stop() {
         executor.stop();
+        if (packetSpool != null) {
+            packetSpool.stop();
+        }
     }
 
     private DatagramSocket createSocket(String host, int port, int timeout, int sendBufferSize) {
@@ -112,6 +156,10 @@ public class UdpDataSender extends AbstractDataSender implements DataSender {
     }
 
     protected void sendPacket(Object message) {
+        if (spanEncoder != null && spanEncoder.isSupported(message)) {
+            sendSpan(message);
+            return;
+        }
         if (message instanceof TBase) {
             final TBase dto = (TBase) message;
             // do not copy bytes because it's single threaded
@@ -127,23 +175,47 @@ public class UdpDataSender extends AbstractDataSender implements DataSender {
                 logger.warn("discard packet. Caused:too large message. size:{}, {}", internalBufferSize, dto);
                 return;
             }
-            // it's safe to reuse because it's single threaded
-            reusePacket.setData(internalBufferData, 0, internalBufferSize);
-
-            try {
-                udpSocket.send(reusePacket);
-                if (isDebug) {
-                    logger.debug("Data sent. size:{}, {}", internalBufferSize, dto);
-                }
-            } catch (IOException e) {
-                logger.info("packet send error. size:{}, {}", internalBufferSize, dto, e);
-            }
+            send(internalBufferData, internalBufferSize, dto);
         } else {
             logger.warn("sendPacket fail. invalid type:{}", message != null ? message.getClass() : null);
             return;
         }
     }
 
+    private void sendSpan(Object message) {
+        try {
+            spanEncoder.encode(message, spanBuffer);
+        } catch (BufferOverflowException e) {
+            logger.warn("discard packet. Caused:too large message. {}", message);
+            return;
+        }
+        send(spanBuffer.array(), spanBuffer.limit(), message);
+    }
+
+    private void send(byte[] buffer, int size, Object message) {
+        if (packetSpool != null && packetSpool.isSpooling()) {
+            packetSpool.offer(buffer, 0, size);
+            if (isDebug) {
+                logger.debug("Data spooled. size:{}, {}", size, message);
+            }
+            return;
+        }
+        // it's safe to reuse because it's single threaded
+        reusePacket.setData(buffer, 0, size);
+
+        try {
+            udpSocket.send(reusePacket);
+            if (isDebug) {
+                logger.debug("Data sent. size:{}, {}", size, message);
+            }
+        } catch (IOException e) {
+            logger.info("packet send error. size:{}, {}", size, message, e);
+            if (packetSpool != null) {
+                packetSpool.offer(buffer, 0, size);
+            }
+        }
+    }
+
     // for test
     protected boolean isLimit(int interBufferSize) {
         if (interBufferSize > UDP_MAX_PACKET_LENGTH) {
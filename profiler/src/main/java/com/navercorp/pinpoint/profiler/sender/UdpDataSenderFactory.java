@@ -1,5 +1,7 @@
 package com.navercorp.pinpoint.profiler.sender;
 
+import com.navercorp.pinpoint.profiler.sender.spool.PacketSpool;
+
 /**
  * @Author Taejin Koo
  */
@@ -13,14 +15,43 @@ public final class UdpDataSenderFactory {
     private final int queueSize;
     private final int timeout;
     private final int sendBufferSize;
+    private final AsyncQueueType queueType;
+    private final boolean spanDirectEncode;
+    // null if spooling is disabled
+    private final PacketSpool packetSpool;
+    private final boolean spanStreamCompress;
 
     public UdpDataSenderFactory(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, AsyncQueueType.LINKED);
+    }
+
+    public UdpDataSenderFactory(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, false);
+    }
+
+    public UdpDataSenderFactory(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType, boolean spanDirectEncode) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, spanDirectEncode, null);
+    }
+
+    public UdpDataSenderFactory(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType, boolean spanDirectEncode, PacketSpool packetSpool) {
+        this(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, spanDirectEncode, packetSpool, false);
+    }
+
+    public UdpDataSenderFactory(String host, int port, String threadName, int queueSize, int timeout, int sendBufferSize, AsyncQueueType queueType, boolean spanDirectEncode, PacketSpool packetSpool,
+                                boolean spanStreamCompress) {
+        if (queueType == null) {
+            throw new NullPointerException("queueType must not be null");
+        }
         this.host = host;
         this.port = port;
         this.threadName = threadName;
         this.queueSize = queueSize;
         this.timeout = timeout;
         this.sendBufferSize = sendBufferSize;
+        this.queueType = queueType;
+        this.spanDirectEncode = spanDirectEncode;
+        this.packetSpool = packetSpool;
+        this.spanStreamCompress = spanStreamCompress;
     }
 
     public DataSender create(String typeName) {
@@ -29,9 +60,11 @@ public final class UdpDataSenderFactory {
 
     public DataSender create(UdpDataSenderType type) {
         if (type == UdpDataSenderType.NIO) {
-            return new NioUDPDataSender(host, port, threadName, queueSize, timeout, sendBufferSize);
+            return new NioUDPDataSender(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, spanDirectEncode, packetSpool);
         } else if (type == UdpDataSenderType.OIO) {
-            return new UdpDataSender(host, port, threadName, queueSize, timeout, sendBufferSize);
+            return new UdpDataSender(host, port, threadName, queueSize, timeout, sendBufferSize, queueType, spanDirectEncode, packetSpool);
+        } else if (type == UdpDataSenderType.STREAM) {
+            return new SpanStreamUdpSender(host, port, threadName, queueSize, timeout, sendBufferSize, SpanStreamUdpSender.DEFAULT_BUFFER_SIZE, spanStreamCompress);
         } else {
             throw new IllegalArgumentException("Unknown type.");
         }
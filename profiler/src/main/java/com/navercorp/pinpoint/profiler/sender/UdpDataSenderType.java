@@ -6,6 +6,8 @@ package com.navercorp.pinpoint.profiler.sender;
 public enum UdpDataSenderType {
 
     OIO,
-    NIO;
+    NIO,
+    // coalesces spans and span chunks into span stream packets, span data only
+    STREAM;
 
 }
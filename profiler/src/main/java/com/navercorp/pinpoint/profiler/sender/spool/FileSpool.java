@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Bounded FIFO of packets kept in a memory-mapped file, so that spooled packets survive an agent restart.
+ * The file is a ring of [length][bytes] records after a fixed header,
+ * and the oldest records are evicted when a new one does not fit.
+ */
+public class FileSpool {
+
+    private static final int MAGIC = 0x50535031;
+
+    // magic, capacity, readPosition, writePosition, usedBytes, count
+    private static final int HEADER_SIZE = 4 * 6;
+    private static final int RECORD_HEADER_SIZE = 4;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer mappedBuffer;
+    private final ByteBuffer data;
+    private final int capacity;
+
+    private final byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+
+    private int readPosition;
+    private int writePosition;
+    private int usedBytes;
+    private int count;
+
+    private long spooledCount;
+    private long evictedCount;
+    private long rejectedCount;
+
+    private boolean closed;
+
+    public FileSpool(File file, int capacity) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("file must not be null");
+        }
+        if (capacity <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            final long fileSize = HEADER_SIZE + (long) capacity;
+            randomAccessFile.setLength(fileSize);
+            this.fileChannel = randomAccessFile.getChannel();
+            this.mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        this.mappedBuffer.position(HEADER_SIZE);
+        this.data = mappedBuffer.slice();
+
+        if (!readHeader()) {
+            reset();
+        }
+        logger.info("FileSpool opened. file:{}, count:{}, usedBytes:{}", file, count, usedBytes);
+    }
+
+    private boolean readHeader() {
+        if (mappedBuffer.getInt(0) != MAGIC || mappedBuffer.getInt(4) != capacity) {
+            return false;
+        }
+        final int readPosition = mappedBuffer.getInt(8);
+        final int writePosition = mappedBuffer.getInt(12);
+        final int usedBytes = mappedBuffer.getInt(16);
+        final int count = mappedBuffer.getInt(20);
+        if (readPosition < 0 || readPosition >= capacity || writePosition < 0 || writePosition >= capacity) {
+            return false;
+        }
+        if (usedBytes < 0 || usedBytes > capacity || count < 0 || (readPosition + usedBytes) % capacity != writePosition) {
+            return false;
+        }
+        this.readPosition = readPosition;
+        this.writePosition = writePosition;
+        this.usedBytes = usedBytes;
+        this.count = count;
+        return true;
+    }
+
+    private void reset() {
+        this.readPosition = 0;
+        this.writePosition = 0;
+        this.usedBytes = 0;
+        this.count = 0;
+        mappedBuffer.putInt(0, MAGIC);
+        mappedBuffer.putInt(4, capacity);
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        mappedBuffer.putInt(8, readPosition);
+        mappedBuffer.putInt(12, writePosition);
+        mappedBuffer.putInt(16, usedBytes);
+        mappedBuffer.putInt(20, count);
+    }
+
+    public boolean offer(ByteBuffer buffer) {
+        final byte[] packet = new byte[buffer.remaining()];
+        buffer.duplicate().get(packet);
+        return offer(packet, 0, packet.length);
+    }
+
+    /**
+     * Evicts the oldest packets until the packet fits.
+     * @return false if the packet is larger than the spool or the spool is closed
+     */
+    public synchronized boolean offer(byte[] buffer, int offset, int length) {
+        if (closed) {
+            return false;
+        }
+        final int recordSize = RECORD_HEADER_SIZE + length;
+        if (length <= 0 || recordSize > capacity) {
+            rejectedCount++;
+            return false;
+        }
+        while (capacity - usedBytes < recordSize) {
+            evictOldest();
+        }
+
+        toBytes(length, recordHeader);
+        int position = put(writePosition, recordHeader, 0, RECORD_HEADER_SIZE);
+        position = put(position, buffer, offset, length);
+
+        this.writePosition = position;
+        this.usedBytes += recordSize;
+        this.count++;
+        this.spooledCount++;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * Removes the oldest packet and copies it into the buffer.
+     * @param buffer must be large enough for any packet given to {@link #offer(byte[], int, int)}
+     * @return length of the packet, -1 if the spool is empty
+     */
+    public synchronized int poll(byte[] buffer) {
+        if (closed || count == 0) {
+            return -1;
+        }
+        get(readPosition, recordHeader, 0, RECORD_HEADER_SIZE);
+        final int length = toInt(recordHeader);
+        if (length <= 0 || length > usedBytes - RECORD_HEADER_SIZE || length > buffer.length) {
+            logger.warn("Corrupted spool record. length:{}, file:{}", length, file);
+            reset();
+            return -1;
+        }
+        get((readPosition + RECORD_HEADER_SIZE) % capacity, buffer, 0, length);
+        remove(RECORD_HEADER_SIZE + length);
+        writeHeader();
+        return length;
+    }
+
+    private void evictOldest() {
+        get(readPosition, recordHeader, 0, RECORD_HEADER_SIZE);
+        final int length = toInt(recordHeader);
+        if (length <= 0 || length > usedBytes - RECORD_HEADER_SIZE) {
+            logger.warn("Corrupted spool record. length:{}, file:{}", length, file);
+            reset();
+            return;
+        }
+        remove(RECORD_HEADER_SIZE + length);
+        evictedCount++;
+    }
+
+    private void remove(int recordSize) {
+        this.readPosition = (readPosition + recordSize) % capacity;
+        this.usedBytes -= recordSize;
+        this.count--;
+    }
+
+    private int put(int position, byte[] src, int offset, int length) {
+        final ByteBuffer buffer = data.duplicate();
+        final int first = Math.min(length, capacity - position);
+        buffer.position(position);
+        buffer.put(src, offset, first);
+        if (first < length) {
+            buffer.position(0);
+            buffer.put(src, offset + first, length - first);
+        }
+        return (position + length) % capacity;
+    }
+
+    private void get(int position, byte[] dst, int offset, int length) {
+        final ByteBuffer buffer = data.duplicate();
+        final int first = Math.min(length, capacity - position);
+        buffer.position(position);
+        buffer.get(dst, offset, first);
+        if (first < length) {
+            buffer.position(0);
+            buffer.get(dst, offset + first, length - first);
+        }
+    }
+
+    private static void toBytes(int value, byte[] bytes) {
+        bytes[0] = (byte) (value >>> 24);
+        bytes[1] = (byte) (value >>> 16);
+        bytes[2] = (byte) (value >>> 8);
+        bytes[3] = (byte) value;
+    }
+
+    private static int toInt(byte[] bytes) {
+        return ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized int getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getSpooledCount() {
+        return spooledCount;
+    }
+
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            mappedBuffer.force();
+        } finally {
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close spool channel. file:{}", file, e);
+            }
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close spool file. file:{}", file, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FileSpool{" +
+                "file=" + file +
+                ", capacity=" + capacity +
+                ", count=" + count +
+                ", usedBytes=" + usedBytes +
+                ", spooledCount=" + spooledCount +
+                ", evictedCount=" + evictedCount +
+                ", rejectedCount=" + rejectedCount +
+                '}';
+    }
+}
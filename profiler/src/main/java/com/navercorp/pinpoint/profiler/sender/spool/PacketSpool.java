@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender.spool;
+
+import com.navercorp.pinpoint.common.util.PinpointThreadFactory;
+import com.navercorp.pinpoint.profiler.sender.CollectorAvailability;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the packets of a UDP sender in a {@link FileSpool} while the collector is unavailable,
+ * and sends them back at most drainRate packets per second once it is available again,
+ * so that a recovering collector is not flooded by every agent at once.
+ */
+public class PacketSpool {
+
+    private static final long DRAIN_INTERVAL = 100;
+    private static final int MAX_PACKET_LENGTH = 65507;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final FileSpool fileSpool;
+    private final CollectorAvailability collectorAvailability;
+    private final int drainCountPerInterval;
+
+    private Thread drainThread;
+    private volatile boolean running;
+    private volatile long drainedCount;
+
+    public PacketSpool(FileSpool fileSpool, CollectorAvailability collectorAvailability, int drainRate) {
+        if (fileSpool == null) {
+            throw new NullPointerException("fileSpool must not be null");
+        }
+        if (collectorAvailability == null) {
+            throw new NullPointerException("collectorAvailability must not be null");
+        }
+        if (drainRate <= 0) {
+            throw new IllegalArgumentException("Invalid drainRate " + drainRate);
+        }
+        this.fileSpool = fileSpool;
+        this.collectorAvailability = collectorAvailability;
+        this.drainCountPerInterval = Math.max(1, (int) (drainRate * DRAIN_INTERVAL / 1000));
+    }
+
+    public boolean isSpooling() {
+        return !collectorAvailability.isAvailable();
+    }
+
+    public boolean offer(byte[] buffer, int offset, int length) {
+        return fileSpool.offer(buffer, offset, length);
+    }
+
+    public boolean offer(ByteBuffer buffer) {
+        return fileSpool.offer(buffer);
+    }
+
+    public synchronized void start(PacketWriter packetWriter, String threadName) {
+        if (packetWriter == null) {
+            throw new NullPointerException("packetWriter must not be null");
+        }
+        if (threadName == null) {
+            throw new NullPointerException("threadName must not be null");
+        }
+        if (drainThread != null) {
+            throw new IllegalStateException("already started");
+        }
+        this.running = true;
+        final ThreadFactory threadFactory = new PinpointThreadFactory(threadName + "-Spool", true);
+        this.drainThread = threadFactory.newThread(new DrainTask(packetWriter));
+        this.drainThread.start();
+    }
+
+    public void stop() {
+        final Thread drainThread;
+        synchronized (this) {
+            drainThread = this.drainThread;
+            this.running = false;
+        }
+        if (drainThread != null) {
+            drainThread.interrupt();
+            try {
+                drainThread.join(DRAIN_INTERVAL * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("PacketSpool stopped. drainedCount:{}, {}", drainedCount, fileSpool);
+        fileSpool.close();
+    }
+
+    public FileSpool getFileSpool() {
+        return fileSpool;
+    }
+
+    public long getDrainedCount() {
+        return drainedCount;
+    }
+
+    private class DrainTask implements Runnable {
+
+        private final PacketWriter packetWriter;
+        private final byte[] buffer = new byte[MAX_PACKET_LENGTH];
+        // length of a packet left in the buffer by a failed send, -1 if none
+        private int pendingLength = -1;
+
+        private DrainTask(PacketWriter packetWriter) {
+            this.packetWriter = packetWriter;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    Thread.sleep(DRAIN_INTERVAL);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (collectorAvailability.isAvailable()) {
+                    drain();
+                }
+            }
+            if (pendingLength >= 0) {
+                // the oldest packet goes to the tail, but it is kept for the next start
+                fileSpool.offer(buffer, 0, pendingLength);
+                pendingLength = -1;
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < drainCountPerInterval && running; i++) {
+                final int length = pendingLength >= 0 ? pendingLength : fileSpool.poll(buffer);
+                if (length < 0) {
+                    return;
+                }
+                try {
+                    packetWriter.write(buffer, 0, length);
+                    pendingLength = -1;
+                    drainedCount++;
+                } catch (IOException e) {
+                    logger.info("spooled packet send error. size:{}", length, e);
+                    // keep it in order and retry at the next interval
+                    pendingLength = length;
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PacketSpool{" +
+                "fileSpool=" + fileSpool +
+                ", drainCountPerInterval=" + drainCountPerInterval +
+                ", drainedCount=" + drainedCount +
+                '}';
+    }
+}
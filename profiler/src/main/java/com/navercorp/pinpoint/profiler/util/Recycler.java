@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.util;
+
+import com.navercorp.pinpoint.profiler.sender.MpscArrayAsyncQueue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * Per thread object pool.
+ * <p>
+ * Objects are taken by the thread that records the trace and are usually given back by the sender thread
+ * after serialization. Objects recycled by another thread go through a preallocated lock-free queue and are
+ * moved to the owner thread's free list when it runs empty, so neither path allocates or locks.
+ */
+public abstract class Recycler<T> {
+
+    private static final int DEFAULT_MAX_CAPACITY_PER_THREAD = 256;
+
+    private final int maxCapacityPerThread;
+
+    private final ThreadLocal<Stack<T>> threadLocal = new NamedThreadLocal<Stack<T>>("Recycler") {
+        @Override
+        protected Stack<T> initialValue() {
+            return new Stack<T>(Thread.currentThread(), maxCapacityPerThread);
+        }
+    };
+
+    public Recycler() {
+        this(DEFAULT_MAX_CAPACITY_PER_THREAD);
+    }
+
+    public Recycler(int maxCapacityPerThread) {
+        if (maxCapacityPerThread <= 0) {
+            throw new IllegalArgumentException("maxCapacityPerThread must be greater than 0. maxCapacityPerThread:" + maxCapacityPerThread);
+        }
+        this.maxCapacityPerThread = maxCapacityPerThread;
+    }
+
+    public final T get() {
+        final Stack<T> stack = threadLocal.get();
+        final T object = stack.pop();
+        if (object != null) {
+            return object;
+        }
+        return newObject(stack);
+    }
+
+    /**
+     * Drops the objects pooled by the current thread.
+     */
+    public final void clear() {
+        threadLocal.remove();
+    }
+
+    /**
+     * @param handle must be kept by the object to give itself back with {@link Handle#recycle(Object)}
+     */
+    protected abstract T newObject(Handle<T> handle);
+
+    // for test
+    int threadLocalSize() {
+        return threadLocal.get().size();
+    }
+
+    public interface Handle<T> {
+        /**
+         * @return false if the pool of the owner thread is full
+         */
+        boolean recycle(T object);
+    }
+
+    private static final class Stack<T> implements Handle<T> {
+
+        // weak so that pooled objects, which keep their Stack as Handle, do not keep a dead owner thread reachable
+        private final WeakReference<Thread> owner;
+        private final int maxCapacity;
+        // owner thread only
+        private final ArrayList<T> freeList;
+        private final MpscArrayAsyncQueue<T> returnQueue;
+
+        private Stack(Thread owner, int maxCapacity) {
+            this.owner = new WeakReference<Thread>(owner);
+            this.maxCapacity = maxCapacity;
+            this.freeList = new ArrayList<T>(maxCapacity);
+            this.returnQueue = new MpscArrayAsyncQueue<T>(maxCapacity);
+        }
+
+        private T pop() {
+            final ArrayList<T> freeList = this.freeList;
+            if (freeList.isEmpty()) {
+                returnQueue.drainTo(freeList, maxCapacity);
+                if (freeList.isEmpty()) {
+                    return null;
+                }
+            }
+            return freeList.remove(freeList.size() - 1);
+        }
+
+        private int size() {
+            return freeList.size() + returnQueue.size();
+        }
+
+        @Override
+        public boolean recycle(T object) {
+            if (object == null) {
+                throw new NullPointerException("object must not be null");
+            }
+            final Thread ownerThread = owner.get();
+            if (ownerThread == null) {
+                // owner is gone, nobody will take it again
+                return false;
+            }
+            if (Thread.currentThread() == ownerThread) {
+                if (freeList.size() >= maxCapacity) {
+                    return false;
+                }
+                freeList.add(object);
+                return true;
+            }
+            return returnQueue.offer(object);
+        }
+    }
+}
@@ -16,15 +16,23 @@
 
 package com.navercorp.pinpoint.profiler.context;
 
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
 import com.navercorp.pinpoint.profiler.context.DefaultTrace;
 import com.navercorp.pinpoint.profiler.context.DefaultTraceContext;
 import com.navercorp.pinpoint.profiler.context.storage.SpanStorage;
+import com.navercorp.pinpoint.profiler.context.storage.Storage;
 import com.navercorp.pinpoint.profiler.logging.Slf4jLoggerBinderInitializer;
 import com.navercorp.pinpoint.profiler.sender.LoggingDataSender;
 import com.navercorp.pinpoint.test.TestAgentInformation;
 
 import org.junit.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
 /**
  * @author emeroad
  */
@@ -54,4 +62,51 @@ public class DefaultTraceTest {
         trace.traceBlockEnd();
         trace.close();
     }
+
+    @Test
+    public void testClose_recycle() {
+        DefaultTraceContext defaultTraceContext = new DefaultTraceContext(new TestAgentInformation());
+        Properties properties = new Properties();
+        properties.setProperty("profiler.io.buffering.recycle.enable", "true");
+        defaultTraceContext.setProfilerConfig(new DefaultProfilerConfig(properties));
+        DefaultTrace trace = new DefaultTrace(defaultTraceContext, 1, true);
+        RecordingStorage storage = new RecordingStorage();
+        trace.setStorage(storage);
+
+        SpanEventRecorder recorder = trace.traceBlockBegin();
+        trace.traceBlockEnd();
+        // stored SpanEvent may go back to the pool
+        recorder.recordDestinationId("afterEnd");
+        trace.close();
+
+        Assert.assertEquals(1, storage.spanEvents.size());
+        SpanEvent spanEvent = storage.spanEvents.get(0);
+        Assert.assertNull(spanEvent.getDestinationId());
+
+        Assert.assertTrue(trace.isRootStack());
+        Assert.assertEquals(Trace.ROOT_STACKID, trace.getCallStackFrameId());
+        trace.currentSpanEventRecorder().recordDestinationId("afterClose");
+        Assert.assertNull(spanEvent.getDestinationId());
+    }
+
+    private static class RecordingStorage implements Storage {
+        private final List<SpanEvent> spanEvents = new ArrayList<SpanEvent>();
+
+        @Override
+        public void store(SpanEvent spanEvent) {
+            spanEvents.add(spanEvent);
+        }
+
+        @Override
+        public void store(Span span) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -121,6 +121,21 @@ public class DefaultTransactionCounterTest {
         assertEquals(expectedTransactionCount, actualCount);
     }
 
+    @Test
+    public void testTailSamplingCandidate_UNSAMPLED_NEW() {
+        // Given
+        this.idGenerator.nextTransactionId();
+        this.idGenerator.nextDisabledId();
+        // When
+        this.idGenerator.nextTailSamplingCandidateId();
+        this.idGenerator.nextTailSamplingCandidateId();
+        final long actualSampledNewCount = this.transactionCounter.getTransactionCount(SamplingType.SAMPLED_NEW);
+        final long actualUnsampledNewCount = this.transactionCounter.getTransactionCount(SamplingType.UNSAMPLED_NEW);
+        // Then
+        assertEquals(1L, actualSampledNewCount);
+        assertEquals(3L, actualUnsampledNewCount);
+    }
+
     @Test
     public void testMultipleTransaction_SAMPLED_NEW() {
         // Given
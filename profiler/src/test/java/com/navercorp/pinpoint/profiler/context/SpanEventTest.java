@@ -67,4 +67,27 @@ public class SpanEventTest {
     public void testGetEndTime() throws Exception {
 
     }
+
+    @Test
+    public void testRecycle() throws Exception {
+        Span span = new Span();
+        SpanEvent spanEvent = SpanEvent.newRecyclableInstance(span);
+        spanEvent.setApiId(10);
+        spanEvent.setDepth(2);
+        spanEvent.addAnnotation(new Annotation(1, "value"));
+        final Object annotations = spanEvent.getAnnotations();
+
+        spanEvent.recycle();
+
+        SpanEvent reused = SpanEvent.newRecyclableInstance(span);
+        Assert.assertSame(spanEvent, reused);
+        Assert.assertSame(span, reused.getSpan());
+        Assert.assertFalse(reused.isSetApiId());
+        Assert.assertEquals(-1, reused.getDepth());
+        Assert.assertFalse(reused.isSetAnnotations());
+
+        reused.addAnnotation(new Annotation(2, "value"));
+        Assert.assertSame(annotations, reused.getAnnotations());
+        Assert.assertEquals(1, reused.getAnnotationsSize());
+    }
 }
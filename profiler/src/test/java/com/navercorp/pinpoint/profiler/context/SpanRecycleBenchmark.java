@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.context;
+
+import com.navercorp.pinpoint.common.Version;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.profiler.AgentInformation;
+import com.navercorp.pinpoint.profiler.context.storage.BufferedStorage;
+import com.navercorp.pinpoint.profiler.sender.DataSender;
+import org.apache.thrift.TBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated per traced request (gc.alloc.rate.norm) with and without profiler.io.buffering.recycle.enable.
+ * The sender recycles synchronously, the way the UDP senders do once the span is serialized.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.navercorp.pinpoint.profiler.context.SpanRecycleBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SpanRecycleBenchmark {
+
+    private static final int SPAN_EVENT_COUNT = 30;
+    private static final int MAX_CALL_STACK_DEPTH = 64;
+    private static final Annotation ANNOTATION = new Annotation(12, "value");
+
+    @State(Scope.Thread)
+    public static class RecordingState {
+        @Param({"false", "true"})
+        boolean recycle;
+
+        BufferedStorage storage;
+
+        @Setup
+        public void setup() {
+            AgentInformation agentInformation = new AgentInformation("agentId", "applicationName", 0, 1, "hostName", "127.0.0.1",
+                    ServiceType.STAND_ALONE, "1.6", Version.VERSION);
+            storage = new BufferedStorage(new RecycleDataSender(), new SpanChunkFactory(agentInformation), 20, recycle);
+        }
+    }
+
+    @Benchmark
+    public Span tracedRequest(RecordingState state) {
+        final boolean recycle = state.recycle;
+        final Span span = new Span();
+        final CallStack callStack = recycle ? CallStack.newRecyclableInstance(span, MAX_CALL_STACK_DEPTH) : new CallStack(span, MAX_CALL_STACK_DEPTH);
+        for (int i = 0; i < SPAN_EVENT_COUNT; i++) {
+            final SpanEvent spanEvent = recycle ? SpanEvent.newRecyclableInstance(span) : new SpanEvent(span);
+            callStack.push(spanEvent);
+            spanEvent.setApiId(i);
+            spanEvent.addAnnotation(ANNOTATION);
+            state.storage.store(callStack.pop());
+        }
+        state.storage.store(span);
+        if (recycle) {
+            callStack.recycle();
+        }
+        return span;
+    }
+
+    private static class RecycleDataSender implements DataSender {
+        @Override
+        public boolean send(TBase<?, ?> data) {
+            if (data instanceof Recyclable) {
+                ((Recyclable) data).recycle();
+            }
+            return true;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(SpanRecycleBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
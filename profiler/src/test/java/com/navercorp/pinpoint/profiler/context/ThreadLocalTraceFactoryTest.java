@@ -18,8 +18,11 @@ package com.navercorp.pinpoint.profiler.context;
 
 import java.util.Collections;
 
+import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
 import com.navercorp.pinpoint.bootstrap.context.ServerMetaDataHolder;
 import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceId;
+import com.navercorp.pinpoint.bootstrap.sampler.Sampler;
 import com.navercorp.pinpoint.common.Version;
 import com.navercorp.pinpoint.common.trace.ServiceType;
 import com.navercorp.pinpoint.common.util.JvmUtils;
@@ -29,6 +32,8 @@ import com.navercorp.pinpoint.profiler.context.DefaultServerMetaDataHolder;
 import com.navercorp.pinpoint.profiler.context.DefaultTraceContext;
 import com.navercorp.pinpoint.profiler.context.ThreadLocalTraceFactory;
 import com.navercorp.pinpoint.profiler.context.storage.LogStorageFactory;
+import com.navercorp.pinpoint.profiler.sampler.FalseSampler;
+import com.navercorp.pinpoint.profiler.sampler.TailSampler;
 import com.navercorp.pinpoint.profiler.sampler.TrueSampler;
 
 import org.junit.Assert;
@@ -36,15 +41,19 @@ import org.junit.Test;
 
 public class ThreadLocalTraceFactoryTest {
 
+    private final IdGenerator idGenerator = new IdGenerator();
+
     private ThreadLocalTraceFactory getTraceFactory() {
-        IdGenerator idGenerator = new IdGenerator();
+        return getTraceFactory(new TrueSampler(), null);
+    }
+
+    private ThreadLocalTraceFactory getTraceFactory(Sampler sampler, TailSampler tailSampler) {
         LogStorageFactory logStorageFactory = new LogStorageFactory();
-        TrueSampler trueSampler = new TrueSampler();
         ServerMetaDataHolder serverMetaDataHolder = new DefaultServerMetaDataHolder(Collections.<String>emptyList());
         AgentInformation agentInformation = new AgentInformation("agentId", "applicationName", System.currentTimeMillis(), 10, "test", "127.0.0.1", ServiceType.STAND_ALONE,
                 JvmUtils.getSystemProperty(SystemPropertyKey.JAVA_VERSION), Version.VERSION);
-        DefaultTraceContext traceContext = new DefaultTraceContext(100, agentInformation, logStorageFactory, trueSampler, serverMetaDataHolder, false);
-        return new ThreadLocalTraceFactory(traceContext, logStorageFactory, trueSampler, idGenerator);
+        DefaultTraceContext traceContext = new DefaultTraceContext(100, agentInformation, logStorageFactory, sampler, serverMetaDataHolder, false);
+        return new ThreadLocalTraceFactory(traceContext, logStorageFactory, sampler, tailSampler, idGenerator);
     }
 
     @Test
@@ -96,4 +105,33 @@ public class ThreadLocalTraceFactoryTest {
     public void testDetachTraceObject() throws Exception {
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void tailSamplingCandidate() {
+        ThreadLocalTraceFactory traceFactory = getTraceFactory(new FalseSampler(), new TailSampler(1000, 10, 10000));
+
+        Trace trace = traceFactory.newTraceObject();
+        traceFactory.removeTraceObject();
+
+        Assert.assertTrue(trace.canSampled());
+        Assert.assertTrue(TailSampler.isTailSamplingCandidate(trace.getTraceId()));
+        Assert.assertEquals(1, idGenerator.currentTailSamplingCandidateCount());
+    }
+
+    @Test
+    public void tailSamplingCandidateIsNotContinued() {
+        ThreadLocalTraceFactory traceFactory = getTraceFactory(new FalseSampler(), new TailSampler(1000, 10, 10000));
+        Trace candidate = traceFactory.newTraceObject();
+        final TraceId nextTraceId = candidate.getTraceId().getNextTraceId();
+        final AsyncTraceId asyncTraceId = candidate.getAsyncTraceId();
+        traceFactory.removeTraceObject();
+
+        Trace continued = traceFactory.continueTraceObject(nextTraceId);
+        traceFactory.removeTraceObject();
+        Assert.assertFalse(continued.canSampled());
+
+        Trace async = traceFactory.continueAsyncTraceObject(asyncTraceId, asyncTraceId.getAsyncId(), asyncTraceId.getSpanStartTime());
+        traceFactory.removeTraceObject();
+        Assert.assertFalse(async.canSampled());
+    }
+}
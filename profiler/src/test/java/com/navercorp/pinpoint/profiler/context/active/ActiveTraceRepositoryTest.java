@@ -17,6 +17,8 @@
 package com.navercorp.pinpoint.profiler.context.active;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,6 +37,7 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.navercorp.pinpoint.bootstrap.context.Trace;
 import com.navercorp.pinpoint.bootstrap.sampler.Sampler;
+import com.navercorp.pinpoint.profiler.context.ActiveTrace;
 import com.navercorp.pinpoint.profiler.context.DefaultServerMetaDataHolder;
 import com.navercorp.pinpoint.profiler.context.DefaultTraceContext;
 import com.navercorp.pinpoint.profiler.context.DefaultTraceId;
@@ -56,6 +59,8 @@ public class ActiveTraceRepositoryTest {
     private DefaultTraceContext traceContext;
     private TransactionCounter transactionCounter;
     private ActiveTraceLocator activeTraceRepository;
+    // ActiveTrace refers to its trace weakly
+    private final List<Trace> traces = new ArrayList<Trace>();
 
     @Before
     public void setUp() {
@@ -112,6 +117,101 @@ public class ActiveTraceRepositoryTest {
         }
     }
 
+    @Test
+    public void putAndRemove() {
+        ActiveTraceRepository repository = new ActiveTraceRepository(4);
+        for (long id = 1; id <= 4; id++) {
+            repository.put(createActiveTrace(id, Thread.currentThread()));
+        }
+        assertEquals(4, repository.collect().size());
+
+        assertEquals(2, repository.remove(2).getId());
+        assertNull(repository.remove(2));
+        assertEquals(3, repository.collect().size());
+
+        // collides with id 1, takes the slot released by id 2
+        repository.put(createActiveTrace(5, Thread.currentThread()));
+        assertEquals(4, repository.collect().size());
+        assertEquals(5, repository.remove(5).getId());
+        assertEquals(1, repository.remove(1).getId());
+    }
+
+    @Test
+    public void put_full() {
+        ActiveTraceRepository repository = new ActiveTraceRepository(4);
+        for (long id = 1; id <= 5; id++) {
+            repository.put(createActiveTrace(id, Thread.currentThread()));
+        }
+        // the probe window of id 5 is full, it goes to the overflow map
+        assertEquals(5, repository.collect().size());
+        assertEquals(5, repository.remove(5).getId());
+        assertEquals(4, repository.collect().size());
+    }
+
+    @Test
+    public void put_overflowFull() {
+        ActiveTraceRepository repository = new ActiveTraceRepository(4);
+        for (long id = 1; id <= 9; id++) {
+            repository.put(createActiveTrace(id, Thread.currentThread()));
+        }
+        assertEquals(8, repository.collect().size());
+        assertEquals(1, repository.getDropCount());
+        assertNull(repository.remove(9));
+    }
+
+    @Test
+    public void negativeId() {
+        ActiveTraceRepository repository = new ActiveTraceRepository();
+        repository.put(createActiveTrace(-1002, Thread.currentThread()));
+        repository.put(createActiveTrace(-1005, Thread.currentThread()));
+
+        assertEquals(-1005, repository.remove(-1005).getId());
+        assertEquals(-1002, repository.remove(-1002).getId());
+        assertTrue(repository.collect().isEmpty());
+    }
+
+    @Test
+    public void collect_deadThread() throws InterruptedException {
+        Thread deadThread = new Thread();
+        deadThread.start();
+        deadThread.join();
+
+        ActiveTraceRepository repository = new ActiveTraceRepository();
+        repository.put(createActiveTrace(1, deadThread));
+        repository.put(createActiveTrace(2, Thread.currentThread()));
+
+        List<ActiveTraceInfo> activeTraceInfos = repository.collect();
+        assertEquals(1, activeTraceInfos.size());
+        assertEquals(2, activeTraceInfos.get(0).getId());
+        assertNull(repository.remove(1));
+    }
+
+    @Test
+    public void collect_collectedTrace() {
+        ActiveTraceRepository repository = new ActiveTraceRepository(1);
+        ActiveTrace leaked = createActiveTrace(1, Thread.currentThread());
+        ActiveTrace overflowLeaked = createActiveTrace(2, Thread.currentThread());
+        repository.put(leaked);
+        repository.put(overflowLeaked);
+        assertEquals(2, repository.collect().size());
+
+        // as if the traces were garbage collected without being removed
+        leaked.clear();
+        overflowLeaked.clear();
+        assertTrue(repository.collect().isEmpty());
+        assertNull(repository.remove(1));
+        assertNull(repository.remove(2));
+    }
+
+    private ActiveTrace createActiveTrace(long id, Thread bindThread) {
+        Trace trace = mock(Trace.class);
+        when(trace.getId()).thenReturn(id);
+        when(trace.getStartTime()).thenReturn(System.currentTimeMillis());
+        when(trace.getBindThread()).thenReturn(bindThread);
+        traces.add(trace);
+        return new ActiveTrace(trace);
+    }
+
     private ListenableFuture<List<TraceThreadTuple>> executeTransactions(CountDownLatch awaitLatch, CountDownLatch executeLatch, int newTransactionCount, int sampledContinuationCount, int unsampledContinuationCount) {
         final int totalTransactionCount = newTransactionCount + sampledContinuationCount + unsampledContinuationCount;
         final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(totalTransactionCount));
@@ -21,11 +21,15 @@ import com.navercorp.pinpoint.common.trace.ServiceType;
 import com.navercorp.pinpoint.common.util.JvmUtils;
 import com.navercorp.pinpoint.common.util.SystemPropertyKey;
 import com.navercorp.pinpoint.profiler.AgentInformation;
+import com.navercorp.pinpoint.profiler.context.Recyclable;
 import com.navercorp.pinpoint.profiler.context.Span;
 import com.navercorp.pinpoint.profiler.context.SpanChunkFactory;
 import com.navercorp.pinpoint.profiler.context.SpanEvent;
 import com.navercorp.pinpoint.profiler.context.storage.BufferedStorage;
 import com.navercorp.pinpoint.profiler.sender.CountingDataSender;
+import com.navercorp.pinpoint.profiler.sender.DataSender;
+
+import org.apache.thrift.TBase;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -41,6 +45,7 @@ public class BufferedStorageTest {
     @Before
     public void before() {
         countingDataSender.stop();
+        SpanEvent.clearRecyclableInstances();
     }
 
     @Test
@@ -104,4 +109,31 @@ public class BufferedStorageTest {
         Assert.assertEquals(0, countingDataSender.getSpanCounter(), 1);
         Assert.assertEquals(0, countingDataSender.getSpanChunkCounter(), 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStore_recycle() throws Exception {
+        BufferedStorage bufferedStorage = new BufferedStorage(new RecycleDataSender(), spanChunkFactory, 2, true);
+
+        Span span = new Span();
+        SpanEvent first = SpanEvent.newRecyclableInstance(span);
+        SpanEvent second = SpanEvent.newRecyclableInstance(span);
+        bufferedStorage.store(first);
+        bufferedStorage.store(second);
+
+        // flushed span chunk is recycled by the sender
+        Assert.assertSame(second, SpanEvent.newRecyclableInstance(span));
+        Assert.assertSame(first, SpanEvent.newRecyclableInstance(span));
+    }
+
+    private static class RecycleDataSender implements DataSender {
+        @Override
+        public boolean send(TBase<?, ?> data) {
+            ((Recyclable) data).recycle();
+            return true;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+}
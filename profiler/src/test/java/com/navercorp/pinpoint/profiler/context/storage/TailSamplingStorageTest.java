@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.context.storage;
+
+import com.navercorp.pinpoint.common.Version;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.common.util.JvmUtils;
+import com.navercorp.pinpoint.common.util.SystemPropertyKey;
+import com.navercorp.pinpoint.profiler.AgentInformation;
+import com.navercorp.pinpoint.profiler.context.Span;
+import com.navercorp.pinpoint.profiler.context.SpanChunkFactory;
+import com.navercorp.pinpoint.profiler.context.SpanEvent;
+import com.navercorp.pinpoint.profiler.sampler.TailSampler;
+import com.navercorp.pinpoint.profiler.sender.CountingDataSender;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TailSamplingStorageTest {
+
+    private AgentInformation agentInformation = new AgentInformation("agentId", "applicationName", 0, 1, "hostName", "127.0.0.1", ServiceType.STAND_ALONE,
+            JvmUtils.getSystemProperty(SystemPropertyKey.JAVA_VERSION), Version.VERSION);
+    private SpanChunkFactory spanChunkFactory = new SpanChunkFactory(agentInformation);
+    private CountingDataSender countingDataSender = new CountingDataSender();
+
+    @Before
+    public void before() {
+        countingDataSender.stop();
+    }
+
+    @Test
+    public void fastTransactionIsDropped() {
+        TailSampler tailSampler = new TailSampler(1000, 10, 10000);
+        Storage storage = newStorage(tailSampler);
+
+        Span span = newSpan(10);
+        storage.store(new SpanEvent(span));
+        storage.store(new SpanEvent(span));
+        storage.store(span);
+        storage.close();
+
+        Assert.assertEquals(0, countingDataSender.getTotalCount());
+        Assert.assertEquals(1, tailSampler.getDroppedCount());
+        Assert.assertEquals(0, tailSampler.getPromotedCount());
+        Assert.assertEquals(0, tailSampler.getBufferedBytes());
+    }
+
+    @Test
+    public void slowTransactionIsPromoted() {
+        TailSampler tailSampler = new TailSampler(1000, 10, 10000);
+        Storage storage = newStorage(tailSampler);
+
+        Span span = newSpan(1000);
+        SpanEvent spanEvent = new SpanEvent(span);
+        storage.store(spanEvent);
+        storage.store(new SpanEvent(span));
+        Assert.assertEquals(2 * TailSamplingStorage.estimateSize(spanEvent), tailSampler.getBufferedBytes());
+
+        storage.store(span);
+        storage.close();
+
+        Assert.assertEquals(1, countingDataSender.getSpanCounter());
+        Assert.assertEquals(2, span.getSpanEventList().size());
+        Assert.assertEquals(1, tailSampler.getPromotedCount());
+        Assert.assertEquals(0, tailSampler.getBufferedBytes());
+    }
+
+    @Test
+    public void failedTransactionIsPromoted() {
+        TailSampler tailSampler = new TailSampler(1000, 10, 10000);
+        Storage storage = newStorage(tailSampler);
+
+        Span span = newSpan(10);
+        SpanEvent spanEvent = new SpanEvent(span);
+        spanEvent.setExceptionInfo(1, "test");
+        storage.store(spanEvent);
+        storage.store(span);
+
+        Assert.assertEquals(1, countingDataSender.getSpanCounter());
+        Assert.assertEquals(1, tailSampler.getPromotedCount());
+    }
+
+    @Test
+    public void spanEventsOverLimitAreDiscarded() {
+        final int spanEventSize = TailSamplingStorage.estimateSize(new SpanEvent(newSpan(1000)));
+        TailSampler tailSampler = new TailSampler(1000, 2, 3 * spanEventSize);
+        Storage storage1 = newStorage(tailSampler);
+        Storage storage2 = newStorage(tailSampler);
+
+        Span span1 = newSpan(1000);
+        storage1.store(new SpanEvent(span1));
+        storage1.store(new SpanEvent(span1));
+        // per trace limit
+        storage1.store(new SpanEvent(span1));
+
+        Span span2 = newSpan(1000);
+        storage2.store(new SpanEvent(span2));
+        // agent wide limit
+        storage2.store(new SpanEvent(span2));
+        Assert.assertEquals(3 * spanEventSize, tailSampler.getBufferedBytes());
+
+        storage1.store(span1);
+        storage2.store(span2);
+
+        Assert.assertEquals(2, span1.getSpanEventList().size());
+        Assert.assertEquals(1, span2.getSpanEventList().size());
+        Assert.assertEquals(2, tailSampler.getPromotedCount());
+        Assert.assertEquals(2, tailSampler.getTruncatedCount());
+        Assert.assertEquals(0, tailSampler.getBufferedBytes());
+    }
+
+    @Test
+    public void largeSpanEventIsDiscarded() {
+        TailSampler tailSampler = new TailSampler(1000, 10, 1000);
+        Storage storage = newStorage(tailSampler);
+
+        Span span = newSpan(1000);
+        SpanEvent spanEvent = new SpanEvent(span);
+        spanEvent.setRpc(new String(new char[1000]));
+        storage.store(spanEvent);
+        storage.store(new SpanEvent(span));
+        storage.store(span);
+
+        Assert.assertEquals(1, span.getSpanEventList().size());
+        Assert.assertEquals(1, tailSampler.getTruncatedCount());
+        Assert.assertEquals(0, tailSampler.getBufferedBytes());
+    }
+
+    @Test
+    public void closeWithoutSpan() {
+        TailSampler tailSampler = new TailSampler(1000, 10, 10000);
+        Storage storage = newStorage(tailSampler);
+
+        storage.store(new SpanEvent(newSpan(1000)));
+        storage.close();
+
+        Assert.assertEquals(0, countingDataSender.getTotalCount());
+        Assert.assertEquals(1, tailSampler.getDroppedCount());
+        Assert.assertEquals(0, tailSampler.getBufferedBytes());
+    }
+
+    private Storage newStorage(TailSampler tailSampler) {
+        BufferedStorage bufferedStorage = new BufferedStorage(countingDataSender, spanChunkFactory, 10);
+        return new TailSamplingStorage(bufferedStorage, tailSampler);
+    }
+
+    private Span newSpan(int elapsed) {
+        Span span = new Span();
+        span.setElapsed(elapsed);
+        return span;
+    }
+}
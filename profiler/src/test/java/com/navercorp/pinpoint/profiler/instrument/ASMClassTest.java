@@ -0,0 +1,544 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.instrument.ClassFilters;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClass;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentContext;
+import com.navercorp.pinpoint.bootstrap.instrument.InstrumentMethod;
+import com.navercorp.pinpoint.bootstrap.instrument.aspect.Aspect;
+import com.navercorp.pinpoint.bootstrap.instrument.aspect.JointPoint;
+import com.navercorp.pinpoint.bootstrap.instrument.aspect.PointCut;
+import com.navercorp.pinpoint.bootstrap.interceptor.ApiIdAwareAroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor1;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor2;
+import com.navercorp.pinpoint.bootstrap.interceptor.StaticAroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.scope.InterceptorScope;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorDefinitionFactory;
+import com.navercorp.pinpoint.profiler.instrument.interceptor.InterceptorField;
+import com.navercorp.pinpoint.profiler.interceptor.bci.ClassHierarchyTestMock;
+import com.navercorp.pinpoint.profiler.interceptor.bci.TestObject;
+import com.navercorp.pinpoint.profiler.interceptor.bci.TestObjectNestedClass;
+import com.navercorp.pinpoint.profiler.interceptor.registry.DefaultInterceptorRegistryBinder;
+import com.navercorp.pinpoint.profiler.interceptor.scope.DefaultInterceptorScope;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class ASMClassTest {
+
+    private static final List<String> events = new ArrayList<String>();
+
+    private DefaultInterceptorRegistryBinder interceptorRegistryBinder;
+    private ASMClassPool classPool;
+    private InstrumentContext instrumentContext;
+    private int interceptorId;
+
+    @Before
+    public void setUp() {
+        events.clear();
+        interceptorRegistryBinder = new DefaultInterceptorRegistryBinder();
+        interceptorRegistryBinder.bind();
+        interceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(new RecordingInterceptor());
+        classPool = new ASMClassPool(interceptorRegistryBinder, null, null);
+        instrumentContext = mock(InstrumentContext.class);
+    }
+
+    @After
+    public void tearDown() {
+        interceptorRegistryBinder.unbind();
+    }
+
+    @Test
+    public void interceptEveryReturn() throws Exception {
+        InstrumentClass target = getTarget();
+        target.getDeclaredMethod("hello", "java.lang.String", "int").addInterceptor(interceptorId);
+        target.getConstructor("java.lang.String").addInterceptor(interceptorId);
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        Method hello = targetClass.getMethod("hello", String.class, int.class);
+        Assert.assertEquals("a:b1", hello.invoke(instance, "b", 1));
+        Assert.assertEquals("caught", hello.invoke(instance, "b", 0));
+        Assert.assertEquals("negative", hello.invoke(instance, "b", -1));
+
+        Assert.assertEquals(Arrays.asList(
+                "before [a]", "after [a] null null",
+                "before [b, 1]", "after [b, 1] a:b1 null",
+                "before [b, 0]", "after [b, 0] caught null",
+                "before [b, -1]", "after [b, -1] negative null"), events);
+    }
+
+    @Test
+    public void interceptThrow() throws Exception {
+        InstrumentClass target = getTarget();
+        target.getDeclaredMethod("fail").addInterceptor(interceptorId);
+        target.getDeclaredMethod("twice", "long").addInterceptor(interceptorId);
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Assert.assertEquals(8L, targetClass.getMethod("twice", long.class).invoke(null, 4L));
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        try {
+            targetClass.getMethod("fail").invoke(instance);
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertEquals("fail", e.getCause().getMessage());
+        }
+
+        Assert.assertEquals(Arrays.asList(
+                "before [4]", "after [4] 8 null",
+                "before null", "after null null java.lang.IllegalStateException: fail"), events);
+    }
+
+    @Test
+    public void interceptorField() throws Exception {
+        enableInterceptorField();
+        int unboxedInterceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(new UnboxedInterceptor());
+        InstrumentClass target = getTarget();
+        target.getDeclaredMethod("length", "java.lang.String").addInterceptor(unboxedInterceptorId);
+        target.getDeclaredMethod("twice", "long").addInterceptor(interceptorId);
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Field field = targetClass.getDeclaredField(InterceptorField.getFieldName(interceptorId));
+        Assert.assertSame(RecordingInterceptor.class, field.getType());
+        Assert.assertTrue(field.isSynthetic());
+        Assert.assertTrue(Modifier.isStatic(field.getModifiers()) && Modifier.isFinal(field.getModifiers()));
+
+        Assert.assertEquals(8L, targetClass.getMethod("twice", long.class).invoke(null, 4L));
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        Method length = targetClass.getMethod("length", String.class);
+        Assert.assertEquals(2, length.invoke(instance, "ab"));
+        try {
+            length.invoke(instance, new Object[] {null});
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertEquals("null", e.getCause().getMessage());
+        }
+
+        Assert.assertEquals(Arrays.asList(
+                "before [4]", "after [4] 8 null",
+                "unboxed before ab", "unboxed after ab 2 null",
+                "unboxed before null", "unboxed after null 0 java.lang.IllegalArgumentException: null"), events);
+    }
+
+    @Test
+    public void interceptorFieldOfInterface() throws Exception {
+        enableInterceptorField();
+        InstrumentClass target = classPool.getClass(instrumentContext, getClass().getClassLoader(), NameGetter.class.getName(), null);
+        Assert.assertNull(((ASMClass) target).addInterceptorField(new InterceptorDefinitionFactory().createInterceptorDefinition(RecordingInterceptor.class),
+                interceptorId, target.getDeclaredMethod("_$PINPOINT$_getName")));
+    }
+
+    private void enableInterceptorField() {
+        Properties properties = new Properties();
+        properties.setProperty("profiler.instrument.interceptor.dispatch", DefaultProfilerConfig.INTERCEPTOR_DISPATCH_FIELD);
+        TraceContext traceContext = mock(TraceContext.class);
+        doReturn(new DefaultProfilerConfig(properties)).when(traceContext).getProfilerConfig();
+        doReturn(traceContext).when(instrumentContext).getTraceContext();
+    }
+
+    @Test
+    public void addGetter() throws Exception {
+        doReturn(NameGetter.class).when(instrumentContext).injectClass(any(ClassLoader.class), eq(NameGetter.class.getName()));
+        InstrumentClass target = getTarget();
+        target.addGetter(NameGetter.class.getName(), "name");
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        Assert.assertEquals("a", ((NameGetter) instance)._$PINPOINT$_getName());
+    }
+
+    @Test
+    public void interceptConstructorAfterSuper() throws Exception {
+        InstrumentClass target = getClass(Child.class);
+        target.getConstructor("java.lang.String").addInterceptor(interceptorId);
+
+        Class<?> childClass = defineClass(Child.class, target.toBytecode());
+        Object instance = childClass.getConstructor(String.class).newInstance(" a ");
+        Assert.assertEquals(1, childClass.getMethod("length", String.class).invoke(instance, "b"));
+
+        Assert.assertEquals(Arrays.asList("before [ a ]", "after [ a ] null null"), events);
+    }
+
+    @Test
+    public void staticInterceptor() throws Exception {
+        int staticInterceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(new StaticRecordingInterceptor());
+        InstrumentClass target = getTarget();
+        target.getDeclaredMethod("twice", "long").addInterceptor(staticInterceptorId);
+        target.getDeclaredMethod("length", "java.lang.String").addInterceptor(staticInterceptorId);
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Assert.assertEquals(8L, targetClass.getMethod("twice", long.class).invoke(null, 4L));
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        Assert.assertEquals(2, targetClass.getMethod("length", String.class).invoke(instance, "ab"));
+
+        Assert.assertEquals(Arrays.asList(
+                "static before twice(long) [4] true", "static after twice(long) [4] 8 null",
+                "static before length(java.lang.String) [ab] false", "static after length(java.lang.String) [ab] 2 null"), events);
+    }
+
+    @Test
+    public void apiIdAwareInterceptor() throws Exception {
+        TraceContext traceContext = mock(TraceContext.class);
+        doReturn(77).when(traceContext).cacheApi(any(MethodDescriptor.class));
+        doReturn(traceContext).when(instrumentContext).getTraceContext();
+        int apiIdInterceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(new ApiIdRecordingInterceptor());
+        InstrumentClass target = getTarget();
+        target.getDeclaredMethod("hello", "java.lang.String", "int").addInterceptor(apiIdInterceptorId);
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        Assert.assertEquals("a:b1", targetClass.getMethod("hello", String.class, int.class).invoke(instance, "b", 1));
+
+        Assert.assertEquals(Arrays.asList("api 77 before [b, 1]", "api 77 after [b, 1] a:b1 null"), events);
+    }
+
+    @Test
+    public void basicInterceptorWithWideArguments() throws Exception {
+        int wideInterceptorId = interceptorRegistryBinder.getInterceptorRegistryAdaptor().addInterceptor(new WideInterceptor());
+        InstrumentClass target = getTarget();
+        target.getDeclaredMethod("sum", "long", "double").addInterceptor(wideInterceptorId);
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Assert.assertEquals(5.5, targetClass.getMethod("sum", long.class, double.class).invoke(null, 2L, 3.5));
+
+        Assert.assertEquals(Arrays.asList("wide before 2 3.5", "wide after 2 3.5 5.5 null"), events);
+    }
+
+    @Test
+    public void scopedInterceptor() throws Exception {
+        doReturn(RecordingInterceptor.class).when(instrumentContext).injectClass(any(ClassLoader.class), eq(RecordingInterceptor.class.getName()));
+        InterceptorScope scope = new DefaultInterceptorScope("test");
+        InstrumentClass target = getTarget();
+        target.getDeclaredMethod("outer").addScopedInterceptor(RecordingInterceptor.class.getName(), scope);
+        target.getDeclaredMethod("inner").addScopedInterceptor(RecordingInterceptor.class.getName(), scope);
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        Assert.assertEquals("a!", targetClass.getMethod("outer").invoke(instance));
+        Assert.assertEquals("a", targetClass.getMethod("inner").invoke(instance));
+
+        // inner is not intercepted within outer of the same scope
+        Assert.assertEquals(Arrays.asList(
+                "before null", "after null a! null",
+                "before null", "after null a null"), events);
+    }
+
+    @Test
+    public void addField() throws Exception {
+        doReturn(TraceValue.class).when(instrumentContext).injectClass(any(ClassLoader.class), eq(TraceValue.class.getName()));
+        InstrumentClass target = getTarget();
+        target.addField(TraceValue.class.getName());
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        TraceValue instance = (TraceValue) targetClass.getConstructor(String.class).newInstance("a");
+        Assert.assertNull(instance._$PINPOINT$_getTraceValue());
+        instance._$PINPOINT$_setTraceValue("b");
+        Assert.assertEquals("b", instance._$PINPOINT$_getTraceValue());
+    }
+
+    @Test
+    public void addSetter() throws Exception {
+        doReturn(CountSetter.class).when(instrumentContext).injectClass(any(ClassLoader.class), eq(CountSetter.class.getName()));
+        InstrumentClass target = getTarget();
+        target.addSetter(CountSetter.class.getName(), "count");
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        ((CountSetter) instance)._$PINPOINT$_setCount(3);
+        Assert.assertEquals(3, targetClass.getMethod("getCount").invoke(instance));
+    }
+
+    @Test
+    public void weave() throws Exception {
+        doReturn(TargetAdvice.class).when(instrumentContext).injectClass(any(ClassLoader.class), eq(TargetAdvice.class.getName()));
+        InstrumentClass target = getTarget();
+        target.weave(TargetAdvice.class.getName());
+
+        Class<?> targetClass = defineClass(target.toBytecode());
+        Object instance = targetClass.getConstructor(String.class).newInstance("a");
+        Assert.assertEquals(102, targetClass.getMethod("length", String.class).invoke(instance, "ab"));
+        Assert.assertEquals(-1, targetClass.getMethod("length", String.class).invoke(instance, ""));
+    }
+
+    @Test
+    public void addDelegatorMethod() throws Exception {
+        InstrumentClass target = getClass(Child.class);
+        Assert.assertNull(target.getDeclaredMethod("length", "java.lang.String"));
+        InstrumentMethod delegator = target.addDelegatorMethod("length", "java.lang.String");
+        delegator.addInterceptor(interceptorId);
+
+        Class<?> childClass = defineClass(Child.class, target.toBytecode());
+        Assert.assertSame(childClass, childClass.getDeclaredMethod("length", String.class).getDeclaringClass());
+        Object instance = childClass.getConstructor(String.class).newInstance("a");
+        Assert.assertEquals(2, childClass.getMethod("length", String.class).invoke(instance, "ab"));
+
+        Assert.assertEquals(Arrays.asList("before [ab]", "after [ab] 2 null"), events);
+    }
+
+    @Test
+    public void classHierarchy() throws Exception {
+        InstrumentClass testObject = getClass(TestObject.class);
+        Assert.assertEquals(TestObject.class.getName(), testObject.getName());
+        Assert.assertEquals("java.lang.Object", testObject.getSuperClass());
+        Assert.assertEquals(0, testObject.getInterfaces().length);
+
+        InstrumentClass hierarchy = getClass(ClassHierarchyTestMock.class);
+        Assert.assertEquals("java.util.HashMap", hierarchy.getSuperClass());
+        Assert.assertArrayEquals(new String[] {"java.lang.Runnable", "java.lang.Comparable"}, hierarchy.getInterfaces());
+    }
+
+    @Test
+    public void declaredMethods() throws Exception {
+        InstrumentClass testObject = getClass(TestObject.class);
+        Assert.assertNotNull(testObject.getDeclaredMethod("callA"));
+
+        int found = 0;
+        for (InstrumentMethod method : testObject.getDeclaredMethods()) {
+            if (method.getName().equals("callA") && method.getParameterTypes().length == 0) {
+                found++;
+            }
+        }
+        Assert.assertEquals(1, found);
+    }
+
+    @Test
+    public void nestedClasses() throws Exception {
+        InstrumentClass testObject = getClass(TestObjectNestedClass.class);
+
+        final String instanceInner = TestObjectNestedClass.class.getName() + "$InstanceInner";
+        List<InstrumentClass> named = testObject.getNestedClasses(ClassFilters.name(instanceInner));
+        Assert.assertEquals(1, named.size());
+        Assert.assertEquals(instanceInner, named.get(0).getName());
+
+        Assert.assertEquals(2, testObject.getNestedClasses(ClassFilters.enclosingMethod("annonymousInnerClass")).size());
+        Assert.assertEquals(2, testObject.getNestedClasses(ClassFilters.interfaze("java.util.concurrent.Callable")).size());
+        Assert.assertEquals(1, testObject.getNestedClasses(ClassFilters.chain(ClassFilters.enclosingMethod("annonymousInnerClass"), ClassFilters.interfaze("java.util.concurrent.Callable"))).size());
+
+        Assert.assertEquals(1, testObject.getNestedClasses(ClassFilters.enclosingMethod("enclosingMethod", "java.lang.String", "int")).size());
+        Assert.assertEquals(0, testObject.getNestedClasses(ClassFilters.enclosingMethod("enclosingMethod", "int")).size());
+    }
+
+    private InstrumentClass getTarget() throws Exception {
+        return getClass(Target.class);
+    }
+
+    private InstrumentClass getClass(Class<?> clazz) throws Exception {
+        return classPool.getClass(instrumentContext, getClass().getClassLoader(), clazz.getName(), null);
+    }
+
+    private Class<?> defineClass(final byte[] classFile) throws ClassNotFoundException {
+        return defineClass(Target.class, classFile);
+    }
+
+    private Class<?> defineClass(final Class<?> clazz, final byte[] classFile) throws ClassNotFoundException {
+        Assert.assertNotNull(classFile);
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (name.equals(clazz.getName())) {
+                    return defineClass(name, classFile, 0, classFile.length);
+                }
+                return super.loadClass(name, resolve);
+            }
+        };
+        return classLoader.loadClass(clazz.getName());
+    }
+
+    public static class Target {
+        private final String name;
+        private int count;
+
+        public Target(String name) {
+            this.name = name;
+        }
+
+        public String hello(String to, int count) {
+            if (count < 0) {
+                return "negative";
+            }
+            try {
+                if (count == 0) {
+                    throw new IllegalArgumentException();
+                }
+                return name + ":" + to + count;
+            } catch (IllegalArgumentException e) {
+                return "caught";
+            }
+        }
+
+        public void fail() {
+            throw new IllegalStateException("fail");
+        }
+
+        public static long twice(long value) {
+            return value * 2;
+        }
+
+        public int length(String value) {
+            if (value == null) {
+                throw new IllegalArgumentException("null");
+            }
+            return value.length();
+        }
+
+        public static double sum(long value1, double value2) {
+            return value1 + value2;
+        }
+
+        public String outer() {
+            return inner() + "!";
+        }
+
+        public String inner() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    public static class Child extends Target {
+        public Child(String name) {
+            super(name.trim());
+        }
+    }
+
+    @Aspect
+    public abstract static class TargetAdvice extends Target {
+        TargetAdvice() {
+            super(null);
+        }
+
+        @PointCut
+        public int length(String value) {
+            if (value.isEmpty()) {
+                return empty();
+            }
+            return __length(value) + 100;
+        }
+
+        @JointPoint
+        abstract int __length(String value);
+
+        private int empty() {
+            return -1;
+        }
+    }
+
+    public interface NameGetter {
+        String _$PINPOINT$_getName();
+    }
+
+    public interface TraceValue {
+        void _$PINPOINT$_setTraceValue(Object value);
+
+        Object _$PINPOINT$_getTraceValue();
+    }
+
+    public interface CountSetter {
+        void _$PINPOINT$_setCount(int count);
+    }
+
+    public static class RecordingInterceptor implements AroundInterceptor {
+        @Override
+        public void before(Object target, Object[] args) {
+            events.add("before " + Arrays.toString(args));
+        }
+
+        @Override
+        public void after(Object target, Object[] args, Object result, Throwable throwable) {
+            events.add("after " + Arrays.toString(args) + " " + result + " " + throwable);
+        }
+    }
+
+    public static class UnboxedInterceptor implements AroundInterceptor1 {
+        @Override
+        public void before(Object target, Object arg0) {
+            events.add("boxed before " + arg0);
+        }
+
+        public void before(Object target, String arg0) {
+            events.add("unboxed before " + arg0);
+        }
+
+        @Override
+        public void after(Object target, Object arg0, Object result, Throwable throwable) {
+            events.add("boxed after " + arg0 + " " + result + " " + throwable);
+        }
+
+        public void after(Object target, String arg0, int result, Throwable throwable) {
+            events.add("unboxed after " + arg0 + " " + result + " " + throwable);
+        }
+    }
+
+    public static class StaticRecordingInterceptor implements StaticAroundInterceptor {
+        @Override
+        public void before(Object target, String className, String methodName, String parameterDescription, Object[] args) {
+            events.add("static before " + methodName + parameterDescription + " " + Arrays.toString(args) + " " + (target == null));
+        }
+
+        @Override
+        public void after(Object target, String className, String methodName, String parameterDescription, Object[] args, Object result, Throwable throwable) {
+            events.add("static after " + methodName + parameterDescription + " " + Arrays.toString(args) + " " + result + " " + throwable);
+        }
+    }
+
+    public static class ApiIdRecordingInterceptor implements ApiIdAwareAroundInterceptor {
+        @Override
+        public void before(Object target, int apiId, Object[] args) {
+            events.add("api " + apiId + " before " + Arrays.toString(args));
+        }
+
+        @Override
+        public void after(Object target, int apiId, Object[] args, Object result, Throwable throwable) {
+            events.add("api " + apiId + " after " + Arrays.toString(args) + " " + result + " " + throwable);
+        }
+    }
+
+    public static class WideInterceptor implements AroundInterceptor2 {
+        @Override
+        public void before(Object target, Object arg0, Object arg1) {
+            events.add("wide before " + arg0 + " " + arg1);
+        }
+
+        @Override
+        public void after(Object target, Object arg0, Object arg1, Object result, Throwable throwable) {
+            events.add("wide after " + arg0 + " " + arg1 + " " + result + " " + throwable);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.cache;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.Interceptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.registry.DefaultInterceptorRegistryAdaptor;
+import com.navercorp.pinpoint.bootstrap.interceptor.registry.InterceptorRegistryAdaptor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+import static org.mockito.Mockito.mock;
+
+public class TransformCacheServiceTest {
+
+    private static final byte[] CLASS_FILE = {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 1};
+    private static final byte[] TRANSFORMED = {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 2};
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("transform-cache", "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void missThenHit() throws Exception {
+        InterceptorRegistryAdaptor registry = new DefaultInterceptorRegistryAdaptor(8);
+        TransformCacheService service = new TransformCacheService(new TransformCache(directory, 4, 8));
+        TestTransformer transformer = new TestTransformer(registry, 2);
+
+        Assert.assertArrayEquals(TRANSFORMED, service.transform(transformer, null, "test.Foo", null, CLASS_FILE));
+        Assert.assertEquals(1, service.getMissCount());
+        Assert.assertEquals(1, service.getStoreCount());
+        Assert.assertEquals(4, transformer.interceptorIds[0]);
+        Assert.assertEquals(5, transformer.interceptorIds[1]);
+        service.close();
+
+        // next start
+        registry = new DefaultInterceptorRegistryAdaptor(8);
+        service = new TransformCacheService(new TransformCache(directory, 4, 8));
+        transformer = new TestTransformer(registry, 2);
+
+        Assert.assertArrayEquals(TRANSFORMED, service.transform(transformer, null, "test.Foo", null, CLASS_FILE));
+        Assert.assertEquals(1, service.getHitCount());
+        Assert.assertTrue(transformer.replayed);
+        Assert.assertSame(transformer.interceptors[0], registry.getInterceptor(4));
+        Assert.assertSame(transformer.interceptors[1], registry.getInterceptor(5));
+
+        // another class gets new ids
+        transformer = new TestTransformer(registry, 1);
+        service.transform(transformer, null, "test.Bar", null, CLASS_FILE);
+        Assert.assertEquals(6, transformer.interceptorIds[0]);
+        service.close();
+    }
+
+    @Test
+    public void replayMismatchFallsBack() throws Exception {
+        TransformCacheService service = new TransformCacheService(new TransformCache(directory, 4, 8));
+        service.transform(new TestTransformer(new DefaultInterceptorRegistryAdaptor(8), 1), null, "test.Foo", null, CLASS_FILE);
+        service.close();
+
+        InterceptorRegistryAdaptor registry = new DefaultInterceptorRegistryAdaptor(8);
+        service = new TransformCacheService(new TransformCache(directory, 4, 8));
+        TestTransformer transformer = new TestTransformer(registry, 2);
+
+        Assert.assertArrayEquals(TRANSFORMED, service.transform(transformer, null, "test.Foo", null, CLASS_FILE));
+        Assert.assertEquals(0, service.getHitCount());
+        Assert.assertEquals(1, service.getFallbackCount());
+        Assert.assertFalse(transformer.replayed);
+        service.close();
+    }
+
+    @Test
+    public void replayMismatchReleasesIds() throws Exception {
+        TransformCacheService service = new TransformCacheService(new TransformCache(directory, 4, 8));
+        service.transform(new TestTransformer(new DefaultInterceptorRegistryAdaptor(8), 2), null, "test.Foo", null, CLASS_FILE);
+        service.close();
+
+        InterceptorRegistryAdaptor registry = new DefaultInterceptorRegistryAdaptor(8);
+        service = new TransformCacheService(new TransformCache(directory, 4, 8));
+        service.transform(new TestTransformer(registry, 3), null, "test.Foo", null, CLASS_FILE);
+        Assert.assertEquals(1, service.getFallbackCount());
+
+        Assert.assertTrue(registry.addInterceptor(4, mock(AroundInterceptor.class)));
+        Assert.assertTrue(registry.addInterceptor(5, mock(AroundInterceptor.class)));
+        service.close();
+    }
+
+    @Test
+    public void newGenerationWhenIdsUsedUp() throws Exception {
+        TransformCacheService service = new TransformCacheService(new TransformCache(directory, 4, 6));
+        service.transform(new TestTransformer(new DefaultInterceptorRegistryAdaptor(8), 2), null, "test.Foo", null, CLASS_FILE);
+        Assert.assertEquals(1, service.getStoreCount());
+        service.close();
+
+        // next start, ids of test.Foo are not bound in this run and are handed out again
+        InterceptorRegistryAdaptor registry = new DefaultInterceptorRegistryAdaptor(8);
+        service = new TransformCacheService(new TransformCache(directory, 4, 6));
+        TestTransformer transformer = new TestTransformer(registry, 1);
+        service.transform(transformer, null, "test.Bar", null, CLASS_FILE);
+        Assert.assertEquals(4, transformer.interceptorIds[0]);
+        Assert.assertEquals(1, service.getStoreCount());
+
+        // entries of the previous generation are dropped
+        transformer = new TestTransformer(registry, 1);
+        service.transform(transformer, null, "test.Foo", null, CLASS_FILE);
+        Assert.assertEquals(0, service.getHitCount());
+        Assert.assertEquals(5, transformer.interceptorIds[0]);
+        Assert.assertEquals(2, service.getStoreCount());
+
+        // used up in this run
+        transformer = new TestTransformer(registry, 1);
+        service.transform(transformer, null, "test.Baz", null, CLASS_FILE);
+        Assert.assertEquals(2, service.getStoreCount());
+        service.close();
+
+        // next start, the new generation is replayed
+        registry = new DefaultInterceptorRegistryAdaptor(8);
+        service = new TransformCacheService(new TransformCache(directory, 4, 6));
+        transformer = new TestTransformer(registry, 1);
+        service.transform(transformer, null, "test.Bar", null, CLASS_FILE);
+        Assert.assertEquals(1, service.getHitCount());
+        Assert.assertEquals(4, transformer.interceptorIds[0]);
+        service.close();
+    }
+
+    @Test
+    public void notCachedWithoutIds() throws Exception {
+        TransformCacheService service = new TransformCacheService(new TransformCache(directory, 4, 5));
+        service.transform(new TestTransformer(new DefaultInterceptorRegistryAdaptor(8), 2), null, "test.Foo", null, CLASS_FILE);
+
+        Assert.assertEquals(1, service.getMissCount());
+        Assert.assertEquals(0, service.getStoreCount());
+        service.close();
+    }
+
+    @Test
+    public void lock() throws Exception {
+        TransformCache cache = new TransformCache(directory, 4, 8);
+        try {
+            new TransformCache(directory, 4, 8);
+            Assert.fail();
+        } catch (IOException ignore) {
+        }
+        cache.close();
+        new TransformCache(directory, 4, 8).close();
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class TestTransformer implements ClassFileTransformer {
+        private final InterceptorRegistryAdaptor registry;
+        private final Interceptor[] interceptors;
+        private final int[] interceptorIds;
+        private boolean replayed;
+
+        private TestTransformer(InterceptorRegistryAdaptor registry, int interceptorCount) {
+            this.registry = registry;
+            this.interceptors = new Interceptor[interceptorCount];
+            this.interceptorIds = new int[interceptorCount];
+        }
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            for (int i = 0; i < interceptors.length; i++) {
+                interceptors[i] = mock(AroundInterceptor.class);
+                interceptorIds[i] = TransformSession.addInterceptor(registry, interceptors[i]);
+            }
+            replayed = TransformSession.isReplaying();
+            if (replayed) {
+                return TransformSession.getReplayBytecode();
+            }
+            return TRANSFORMED;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.instrument.transformer;
+
+import com.navercorp.pinpoint.bootstrap.instrument.matcher.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.AbstractList;
+import java.util.Collections;
+
+public class DefaultTransformerRegistryTest {
+
+    @Test
+    public void findByClassName() throws Exception {
+        DefaultTransformerRegistry registry = new DefaultTransformerRegistry();
+        ClassFileTransformer transformer = new TestTransformer();
+        registry.addTransformer(Matchers.newClassNameMatcher("com.navercorp.test.Foo"), transformer);
+
+        Assert.assertSame(transformer, registry.findTransformer("com/navercorp/test/Foo", null));
+        Assert.assertNull(registry.findTransformer("com/navercorp/test/Bar", null));
+    }
+
+    @Test
+    public void findByPackageName() throws Exception {
+        DefaultTransformerRegistry registry = new DefaultTransformerRegistry();
+        ClassFileTransformer packageTransformer = new TestTransformer();
+        ClassFileTransformer subPackageTransformer = new TestTransformer();
+        ClassFileTransformer classTransformer = new TestTransformer();
+        registry.addTransformer(Matchers.newPackageNameMatcher("com.navercorp.test"), packageTransformer);
+        registry.addTransformer(Matchers.newPackageNameMatcher("com.navercorp.test.sub"), subPackageTransformer);
+        registry.addTransformer(Matchers.newClassNameMatcher("com.navercorp.test.Foo"), classTransformer);
+
+        Assert.assertSame(packageTransformer, registry.findTransformer("com/navercorp/test/Bar", null));
+        Assert.assertSame(packageTransformer, registry.findTransformer("com/navercorp/test/other/Bar", null));
+        Assert.assertSame(subPackageTransformer, registry.findTransformer("com/navercorp/test/sub/Bar", null));
+        // class name takes precedence
+        Assert.assertSame(classTransformer, registry.findTransformer("com/navercorp/test/Foo", null));
+
+        Assert.assertNull(registry.findTransformer("com/navercorp/testing/Bar", null));
+        Assert.assertNull(registry.findTransformer("com/navercorp/Bar", null));
+        Assert.assertNull(registry.findTransformer("com/navercorp/test", null));
+    }
+
+    @Test
+    public void findBySuperClassName() throws Exception {
+        DefaultTransformerRegistry registry = new DefaultTransformerRegistry();
+        ClassFileTransformer superClassTransformer = new TestTransformer();
+        ClassFileTransformer interfaceTransformer = new TestTransformer();
+        registry.addTransformer(Matchers.newSuperClassNameMatcher(AbstractList.class.getName()), superClassTransformer);
+        registry.addTransformer(Matchers.newSuperClassNameMatcher(Runnable.class.getName()), interfaceTransformer);
+
+        Assert.assertSame(superClassTransformer, findTransformer(registry, TestList.class));
+        Assert.assertSame(interfaceTransformer, findTransformer(registry, TestRunnable.class));
+        Assert.assertNull(findTransformer(registry, TestAnnotated.class));
+    }
+
+    @Test
+    public void findByAnnotation() throws Exception {
+        DefaultTransformerRegistry registry = new DefaultTransformerRegistry();
+        ClassFileTransformer transformer = new TestTransformer();
+        registry.addTransformer(Matchers.newAnnotationMatcher(TestAnnotation.class.getName()), transformer);
+
+        Assert.assertSame(transformer, findTransformer(registry, TestAnnotated.class));
+        Assert.assertNull(findTransformer(registry, TestRunnable.class));
+    }
+
+    @Test
+    public void firstMatchingCategory() throws Exception {
+        DefaultTransformerRegistry registry = new DefaultTransformerRegistry();
+        ClassFileTransformer packageTransformer = new TestTransformer();
+        ClassFileTransformer superClassTransformer = new TestTransformer();
+        ClassFileTransformer annotationTransformer = new TestTransformer();
+        registry.addTransformer(Matchers.newPackageNameMatcher(TestAnnotated.class.getPackage().getName()), packageTransformer);
+        registry.addTransformer(Matchers.newSuperClassNameMatcher(Serializable.class.getName()), superClassTransformer);
+        registry.addTransformer(Matchers.newAnnotationMatcher(TestAnnotation.class.getName()), annotationTransformer);
+
+        Assert.assertSame(packageTransformer, findTransformer(registry, TestAnnotated.class));
+        Assert.assertSame(superClassTransformer, registry.findTransformer("com/navercorp/test/Foo", readClassFile(TestAnnotated.class)));
+    }
+
+    @Test
+    public void invalidClassFile() throws Exception {
+        DefaultTransformerRegistry registry = new DefaultTransformerRegistry();
+        registry.addTransformer(Matchers.newSuperClassNameMatcher(Runnable.class.getName()), new TestTransformer());
+
+        Assert.assertNull(registry.findTransformer("com/navercorp/test/Foo", new byte[] {1, 2, 3}));
+        byte[] classFile = readClassFile(TestRunnable.class);
+        byte[] truncated = new byte[classFile.length / 2];
+        System.arraycopy(classFile, 0, truncated, 0, truncated.length);
+        Assert.assertNull(registry.findTransformer("com/navercorp/test/Foo", truncated));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void duplicatedPackageName() throws Exception {
+        DefaultTransformerRegistry registry = new DefaultTransformerRegistry();
+        registry.addTransformer(Matchers.newPackageNameMatcher("com.navercorp.test"), new TestTransformer());
+        registry.addTransformer(Matchers.newPackageNameMatcher("com.navercorp.test"), new TestTransformer());
+    }
+
+    private ClassFileTransformer findTransformer(DefaultTransformerRegistry registry, Class<?> clazz) throws IOException {
+        return registry.findTransformer(clazz.getName().replace('.', '/'), readClassFile(clazz));
+    }
+
+    private byte[] readClassFile(Class<?> clazz) throws IOException {
+        final String resourceName = clazz.getName().replace('.', '/') + ".class";
+        final InputStream inputStream = clazz.getClassLoader().getResourceAsStream(resourceName);
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static class TestTransformer implements ClassFileTransformer {
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            return null;
+        }
+    }
+
+    @Retention(RetentionPolicy.CLASS)
+    private @interface TestAnnotation {
+        String value() default "";
+        int[] numbers() default {};
+    }
+
+    private static class TestList extends AbstractList<String> implements Serializable {
+        private long field = 1L;
+
+        @Override
+        public String get(int index) {
+            return Collections.<String>emptyList().get(index);
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+
+    private static class TestRunnable implements Serializable, Runnable {
+        private static final double CONSTANT = 1.5;
+
+        @Override
+        public void run() {
+        }
+    }
+
+    @Deprecated
+    @TestAnnotation(value = "test", numbers = {1, 2})
+    private static class TestAnnotated implements Serializable {
+        @Deprecated
+        private String field;
+
+        @Deprecated
+        public void method() {
+        }
+    }
+}
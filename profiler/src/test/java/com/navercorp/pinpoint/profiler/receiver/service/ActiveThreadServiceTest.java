@@ -31,6 +31,7 @@ import org.apache.thrift.TBase;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -41,6 +42,8 @@ public class ActiveThreadServiceTest {
 
     private final DefaultTraceContext defaultTraceContext = new DefaultTraceContext(new TestAgentInformation());
     private final AtomicInteger idGenerator = new AtomicInteger(0);
+    // ActiveTrace refers to its trace weakly
+    private final List<DefaultTrace> traces = new ArrayList<DefaultTrace>();
 
     @Test
     public void serviceTest1() throws InterruptedException {
@@ -71,6 +74,7 @@ public class ActiveThreadServiceTest {
 
     private ActiveTrace createActiveTrace() {
         DefaultTrace trace = new DefaultTrace(defaultTraceContext, idGenerator.incrementAndGet(), true);
+        traces.add(trace);
         return new ActiveTrace(trace);
     }
 
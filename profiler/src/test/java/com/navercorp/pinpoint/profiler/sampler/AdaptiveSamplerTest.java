@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sampler;
+
+import com.navercorp.pinpoint.bootstrap.sampler.Sampler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveSamplerTest {
+
+    @Test
+    public void burstIsLimitedToTracesPerSecond() {
+        TestAdaptiveSampler sampler = new TestAdaptiveSampler(10, 0);
+
+        Assert.assertEquals(10, countSampled(sampler, 100));
+    }
+
+    @Test
+    public void tokensRefillOverTime() {
+        TestAdaptiveSampler sampler = new TestAdaptiveSampler(10, 0);
+        countSampled(sampler, 100);
+
+        sampler.now += TimeUnit.MILLISECONDS.toNanos(500);
+        Assert.assertEquals(5, countSampled(sampler, 100));
+
+        // idle time never refills more than one second of tokens
+        sampler.now += TimeUnit.SECONDS.toNanos(60);
+        Assert.assertEquals(10, countSampled(sampler, 100));
+    }
+
+    @Test
+    public void nanoTimeOverflow() {
+        TestAdaptiveSampler sampler = new TestAdaptiveSampler(10, Long.MAX_VALUE - TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertEquals(10, countSampled(sampler, 100));
+
+        sampler.now += TimeUnit.SECONDS.toNanos(1);
+        Assert.assertEquals(10, countSampled(sampler, 100));
+    }
+
+    @Test
+    public void retune() {
+        TestAdaptiveSampler sampler = new TestAdaptiveSampler(10, 0);
+        countSampled(sampler, 100);
+
+        sampler.setTracesPerSecond(100);
+        sampler.now += TimeUnit.SECONDS.toNanos(1);
+        Assert.assertEquals(100, countSampled(sampler, 1000));
+        Assert.assertEquals(100, sampler.getTracesPerSecond());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTracesPerSecond() {
+        new AdaptiveSampler(0);
+    }
+
+    @Test
+    public void samplerFactory() {
+        SamplerFactory samplerFactory = new SamplerFactory();
+
+        Sampler adaptive = samplerFactory.createSampler(true, "ADAPTIVE", 1, 10);
+        Assert.assertTrue(adaptive instanceof AdaptiveSampler);
+
+        Sampler disabled = samplerFactory.createSampler(false, "ADAPTIVE", 1, 10);
+        Assert.assertFalse(disabled.isSampling());
+
+        Sampler counting = samplerFactory.createSampler(true, "COUNTING", 1, 10);
+        Assert.assertTrue(counting instanceof TrueSampler);
+    }
+
+    private int countSampled(Sampler sampler, int transactions) {
+        int sampled = 0;
+        for (int i = 0; i < transactions; i++) {
+            if (sampler.isSampling()) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    private static class TestAdaptiveSampler extends AdaptiveSampler {
+
+        private long now;
+
+        private TestAdaptiveSampler(int tracesPerSecond, long now) {
+            super(tracesPerSecond);
+            this.now = now;
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+    }
+}
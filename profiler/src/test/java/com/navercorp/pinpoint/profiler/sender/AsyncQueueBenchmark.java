@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offer latency of 8 producer threads and drain throughput of the single {@link AsyncQueueingExecutor} thread
+ * for each {@link AsyncQueueType}.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.navercorp.pinpoint.profiler.sender.AsyncQueueBenchmark
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AsyncQueueBenchmark {
+
+    private static final Object DATA = new Object();
+    private static final int MAX_DRAIN_SIZE = 10;
+
+    @State(Scope.Group)
+    public static class QueueState {
+        @Param({"LINKED", "MPSC"})
+        String queueType;
+
+        AsyncQueue<Object> queue;
+
+        @Setup
+        public void setup() {
+            queue = AsyncQueueType.valueOf(queueType).createQueue(1024 * 5);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DrainState {
+        final UnsafeArrayCollection<Object> drain = new UnsafeArrayCollection<Object>(MAX_DRAIN_SIZE);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(8)
+    public boolean offer(QueueState state) {
+        return state.queue.offer(DATA);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public int drain(QueueState state, DrainState drainState) {
+        drainState.drain.clear();
+        return state.queue.drainTo(drainState.drain, MAX_DRAIN_SIZE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(AsyncQueueBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
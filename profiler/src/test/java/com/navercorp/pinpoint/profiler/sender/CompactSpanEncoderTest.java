@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import com.navercorp.pinpoint.thrift.dto.TAgentInfo;
+import com.navercorp.pinpoint.thrift.dto.TAnnotation;
+import com.navercorp.pinpoint.thrift.dto.TAnnotationValue;
+import com.navercorp.pinpoint.thrift.dto.TIntStringStringValue;
+import com.navercorp.pinpoint.thrift.dto.TIntStringValue;
+import com.navercorp.pinpoint.thrift.dto.TSpan;
+import com.navercorp.pinpoint.thrift.dto.TSpanChunk;
+import com.navercorp.pinpoint.thrift.dto.TSpanEvent;
+import com.navercorp.pinpoint.thrift.io.HeaderTBaseDeserializer;
+import com.navercorp.pinpoint.thrift.io.HeaderTBaseDeserializerFactory;
+import com.navercorp.pinpoint.thrift.io.HeaderTBaseSerializer;
+import com.navercorp.pinpoint.thrift.io.HeaderTBaseSerializerFactory;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompactSpanEncoderTest {
+
+    private final CompactSpanEncoder encoder = new CompactSpanEncoder();
+    private final HeaderTBaseSerializer serializer = new HeaderTBaseSerializerFactory(false, 1024 * 64, false).createSerializer();
+    private final HeaderTBaseDeserializer deserializer = new HeaderTBaseDeserializerFactory().createDeserializer();
+
+    @Test
+    public void encodeSpan() throws TException {
+        TSpan span = new TSpan();
+        span.setAgentId("agentId");
+        span.setApplicationName("applicationName");
+        span.setAgentStartTime(System.currentTimeMillis());
+        span.setTransactionId(new byte[] {1, 2, 3, -1});
+        span.setSpanId(-1234567890123L);
+        span.setParentSpanId(Long.MAX_VALUE);
+        span.setStartTime(System.currentTimeMillis());
+        span.setElapsed(300);
+        span.setRpc("/rpc/한글");
+        span.setServiceType((short) 1010);
+        span.setEndPoint("localhost:8080");
+        span.setRemoteAddr("127.0.0.1");
+        span.setAnnotations(createAnnotationList());
+        span.setFlag((short) 1);
+        span.setErr(1);
+        span.setSpanEventList(createSpanEventList(20));
+        span.setParentApplicationName("parent");
+        span.setParentApplicationType((short) 1000);
+        span.setAcceptorHost("acceptor");
+        span.setApiId(Integer.MIN_VALUE);
+        span.setExceptionInfo(new TIntStringValue(10));
+        span.setApplicationServiceType((short) 1010);
+        span.setLoggingTransactionInfo((byte) 1);
+
+        byte[] encoded = assertEncode(span);
+        Assert.assertEquals(span, deserializer.deserialize(encoded));
+    }
+
+    @Test
+    public void encodeEmptySpan() throws TException {
+        assertEncode(new TSpan());
+    }
+
+    @Test
+    public void encodeSpanChunk() throws TException {
+        TSpanChunk spanChunk = new TSpanChunk();
+        spanChunk.setAgentId("agentId");
+        spanChunk.setApplicationName("applicationName");
+        spanChunk.setAgentStartTime(1);
+        spanChunk.setServiceType((short) 1010);
+        spanChunk.setTransactionId(new byte[] {1, 2, 3});
+        spanChunk.setSpanId(10);
+        spanChunk.setEndPoint("endPoint");
+        spanChunk.setSpanEventList(createSpanEventList(3));
+        spanChunk.setApplicationServiceType((short) 1010);
+
+        byte[] encoded = assertEncode(spanChunk);
+        Assert.assertEquals(spanChunk, deserializer.deserialize(encoded));
+    }
+
+    @Test
+    public void encodeSurrogate() throws TException {
+        TSpan span = new TSpan();
+        // supplementary character and unpaired surrogates
+        span.setRpc("😀 \uD83D \uDE00");
+
+        assertEncode(span);
+    }
+
+    @Test
+    public void isSupported() {
+        Assert.assertTrue(encoder.isSupported(new TSpan()));
+        Assert.assertTrue(encoder.isSupported(new TSpanChunk()));
+        Assert.assertFalse(encoder.isSupported(new TAgentInfo()));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void bufferOverflow() {
+        TSpan span = new TSpan();
+        span.setSpanEventList(createSpanEventList(100));
+
+        encoder.encode(span, ByteBuffer.allocate(128));
+    }
+
+    private byte[] assertEncode(TBase<?, ?> tBase) throws TException {
+        final byte[] serialized = serializer.serialize(tBase);
+        final byte[] expected = Arrays.copyOf(serialized, serializer.getInterBufferSize());
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 64);
+        encoder.encode(tBase, buffer);
+        final byte[] encoded = new byte[buffer.remaining()];
+        buffer.get(encoded);
+
+        Assert.assertArrayEquals(expected, encoded);
+        return encoded;
+    }
+
+    private List<TSpanEvent> createSpanEventList(int size) {
+        List<TSpanEvent> spanEventList = new ArrayList<TSpanEvent>(size);
+        for (int i = 0; i < size; i++) {
+            TSpanEvent spanEvent = new TSpanEvent();
+            spanEvent.setSequence((short) i);
+            spanEvent.setStartElapsed(i);
+            spanEvent.setServiceType((short) 5000);
+            if (i % 2 == 0) {
+                spanEvent.setSpanId(i);
+                spanEvent.setEndElapsed(i * 10);
+                spanEvent.setRpc("rpc");
+                spanEvent.setEndPoint("endPoint");
+                spanEvent.setAnnotations(createAnnotationList());
+                spanEvent.setDepth(i);
+                spanEvent.setNextSpanId(-i);
+                spanEvent.setDestinationId("destinationId");
+                spanEvent.setApiId(i);
+                spanEvent.setExceptionInfo(new TIntStringValue(i));
+                spanEvent.getExceptionInfo().setStringValue("exception");
+                spanEvent.setAsyncId(i);
+                spanEvent.setNextAsyncId(i + 1);
+                spanEvent.setAsyncSequence((short) i);
+            }
+            spanEventList.add(spanEvent);
+        }
+        return spanEventList;
+    }
+
+    private List<TAnnotation> createAnnotationList() {
+        List<TAnnotation> annotationList = new ArrayList<TAnnotation>();
+        annotationList.add(new TAnnotation(-1));
+        annotationList.add(newAnnotation(TAnnotationValue.stringValue("string")));
+        annotationList.add(newAnnotation(TAnnotationValue.boolValue(true)));
+        annotationList.add(newAnnotation(TAnnotationValue.boolValue(false)));
+        annotationList.add(newAnnotation(TAnnotationValue.intValue(-100)));
+        annotationList.add(newAnnotation(TAnnotationValue.longValue(Long.MIN_VALUE)));
+        annotationList.add(newAnnotation(TAnnotationValue.shortValue(Short.MAX_VALUE)));
+        annotationList.add(newAnnotation(TAnnotationValue.doubleValue(-1.5)));
+        annotationList.add(newAnnotation(TAnnotationValue.binaryValue(new byte[] {0, 1, 2})));
+        annotationList.add(newAnnotation(TAnnotationValue.byteValue((byte) -1)));
+        annotationList.add(newAnnotation(TAnnotationValue.intStringValue(new TIntStringValue(1))));
+        TIntStringStringValue intStringStringValue = new TIntStringStringValue(2);
+        intStringStringValue.setStringValue2("stringValue2");
+        annotationList.add(newAnnotation(TAnnotationValue.intStringStringValue(intStringStringValue)));
+        return annotationList;
+    }
+
+    private TAnnotation newAnnotation(TAnnotationValue value) {
+        TAnnotation annotation = new TAnnotation(1);
+        annotation.setValue(value);
+        return annotation;
+    }
+}
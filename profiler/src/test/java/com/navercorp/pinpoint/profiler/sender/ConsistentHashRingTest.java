@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEY_COUNT = 10000;
+
+    private final List<String> nodeNames = Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4");
+
+    @Test
+    public void distribution() {
+        ConsistentHashRing ring = new ConsistentHashRing(nodeNames);
+        int[] counts = new int[nodeNames.size()];
+        for (int key = 0; key < KEY_COUNT; key++) {
+            counts[ring.select(key, null)]++;
+        }
+        for (int count : counts) {
+            // 2500 each on a perfect ring
+            Assert.assertTrue(Arrays.toString(counts), count > 1500 && count < 3500);
+        }
+    }
+
+    @Test
+    public void sameKeySameNode() {
+        ConsistentHashRing ring1 = new ConsistentHashRing(nodeNames);
+        ConsistentHashRing ring2 = new ConsistentHashRing(nodeNames);
+        for (int key = 0; key < KEY_COUNT; key++) {
+            Assert.assertEquals(ring1.select(key, null), ring2.select(key, null));
+        }
+    }
+
+    @Test
+    public void skipNodeMovesOnlyItsKeys() {
+        ConsistentHashRing ring = new ConsistentHashRing(nodeNames);
+        final int failedNode = 2;
+        ConsistentHashRing.NodeFilter filter = new ConsistentHashRing.NodeFilter() {
+            @Override
+            public boolean accept(int nodeIndex) {
+                return nodeIndex != failedNode;
+            }
+        };
+        for (int key = 0; key < KEY_COUNT; key++) {
+            int owner = ring.select(key, null);
+            int selected = ring.select(key, filter);
+            Assert.assertTrue(selected != failedNode);
+            if (owner != failedNode) {
+                Assert.assertEquals(owner, selected);
+            }
+        }
+    }
+
+    @Test
+    public void noAvailableNode() {
+        ConsistentHashRing ring = new ConsistentHashRing(nodeNames);
+        ConsistentHashRing.NodeFilter filter = new ConsistentHashRing.NodeFilter() {
+            @Override
+            public boolean accept(int nodeIndex) {
+                return false;
+            }
+        };
+        for (int key = 0; key < 100; key++) {
+            Assert.assertEquals(ring.select(key, null), ring.select(key, filter));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MpscArrayAsyncQueueTest {
+
+    @Test
+    public void offerAndDrain() {
+        MpscArrayAsyncQueue<Integer> queue = new MpscArrayAsyncQueue<Integer>(3);
+        Assert.assertTrue(queue.isEmpty());
+
+        Assert.assertTrue(queue.offer(1));
+        Assert.assertTrue(queue.offer(2));
+        Assert.assertTrue(queue.offer(3));
+        // capacity is not rounded up to the ring size
+        Assert.assertFalse(queue.offer(4));
+        Assert.assertEquals(3, queue.size());
+
+        UnsafeArrayCollection<Integer> drain = new UnsafeArrayCollection<Integer>(2);
+        Assert.assertEquals(2, queue.drainTo(drain, 2));
+        Assert.assertEquals(1, drain.toArray()[0]);
+        Assert.assertEquals(2, drain.toArray()[1]);
+        Assert.assertEquals(1, queue.size());
+
+        Assert.assertTrue(queue.offer(4));
+        drain.clear();
+        Assert.assertEquals(2, queue.drainTo(drain, 2));
+        Assert.assertEquals(3, drain.toArray()[0]);
+        Assert.assertEquals(4, drain.toArray()[1]);
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void pollTimeout() throws InterruptedException {
+        MpscArrayAsyncQueue<Integer> queue = new MpscArrayAsyncQueue<Integer>(16);
+        Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void multiProducer() throws InterruptedException {
+        final int producerCount = 4;
+        final int messageCount = 10000;
+        final MpscArrayAsyncQueue<Integer> queue = new MpscArrayAsyncQueue<Integer>(64);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+
+        List<Thread> producerList = new ArrayList<Thread>();
+        for (int i = 0; i < producerCount; i++) {
+            final int producerId = i;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int sequence = 0; sequence < messageCount; sequence++) {
+                        final Integer message = producerId * messageCount + sequence;
+                        while (!queue.offer(message)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producerList.add(producer);
+        }
+        startLatch.countDown();
+
+        // messages of each producer must arrive in order, exactly once
+        final int[] nextSequence = new int[producerCount];
+        for (int i = 0; i < producerCount * messageCount; i++) {
+            Integer message = queue.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(message);
+            final int producerId = message / messageCount;
+            Assert.assertEquals(nextSequence[producerId], message % messageCount);
+            nextSequence[producerId]++;
+        }
+        Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+        for (Thread producer : producerList) {
+            producer.join();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacity() {
+        new MpscArrayAsyncQueue<Integer>(0);
+    }
+}
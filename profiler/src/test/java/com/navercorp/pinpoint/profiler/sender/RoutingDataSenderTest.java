@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender;
+
+import com.navercorp.pinpoint.common.util.TransactionIdUtils;
+import com.navercorp.pinpoint.profiler.context.Span;
+import com.navercorp.pinpoint.profiler.context.SpanChunk;
+import com.navercorp.pinpoint.profiler.context.SpanEvent;
+import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RoutingDataSenderTest {
+
+    private final List<String> nodeNames = Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3");
+
+    @Test
+    public void routeByTransactionId() {
+        List<CountingDataSender> dataSenders = newDataSenders();
+        RoutingDataSender routingDataSender = new RoutingDataSender(new ConsistentHashRing(nodeNames), new ArrayList<DataSender>(dataSenders), newAvailabilities(true, true, true));
+
+        for (int i = 0; i < 100; i++) {
+            routingDataSender.send(newSpan(1));
+        }
+        Assert.assertEquals(1, countBusy(dataSenders));
+
+        for (int i = 0; i < 100; i++) {
+            routingDataSender.send(newSpan(i));
+        }
+        Assert.assertEquals(3, countBusy(dataSenders));
+    }
+
+    @Test
+    public void routeTraceAcrossAgents() {
+        RoutingDataSender routingDataSender = new RoutingDataSender(new ConsistentHashRing(nodeNames), new ArrayList<DataSender>(newDataSenders()), newAvailabilities(true, true, true));
+
+        for (int i = 0; i < 100; i++) {
+            // the root agent leaves its own agent id out of the transaction id
+            final Span rootSpan = new Span();
+            rootSpan.setAgentId("rootAgent");
+            rootSpan.setTransactionId(TransactionIdUtils.formatBytes(null, 1000, i));
+
+            final Span childSpan = new Span();
+            childSpan.setAgentId("childAgent");
+            childSpan.setTransactionId(TransactionIdUtils.formatBytes("rootAgent", 1000, i));
+
+            final SpanChunk childSpanChunk = new SpanChunk(Arrays.asList(new SpanEvent(childSpan)));
+            childSpanChunk.setAgentId("childAgent");
+            childSpanChunk.setTransactionId(childSpan.getTransactionId());
+
+            final int routingKey = routingDataSender.getRoutingKey(rootSpan);
+            Assert.assertEquals(routingKey, routingDataSender.getRoutingKey(childSpan));
+            Assert.assertEquals(routingKey, routingDataSender.getRoutingKey(childSpanChunk));
+        }
+    }
+
+    @Test
+    public void skipUnavailableCollector() {
+        List<CountingDataSender> dataSenders = newDataSenders();
+        RoutingDataSender routingDataSender = new RoutingDataSender(new ConsistentHashRing(nodeNames), new ArrayList<DataSender>(dataSenders), newAvailabilities(true, false, true));
+
+        for (int i = 0; i < 100; i++) {
+            routingDataSender.send(newSpan(i));
+        }
+        routingDataSender.send(new TAgentStat());
+
+        Assert.assertEquals(0, dataSenders.get(1).getTotalCount());
+        Assert.assertEquals(101, dataSenders.get(0).getTotalCount() + dataSenders.get(2).getTotalCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodeCountMismatch() {
+        new RoutingDataSender(new ConsistentHashRing(nodeNames), new ArrayList<DataSender>(newDataSenders()), newAvailabilities(true, true));
+    }
+
+    private List<CountingDataSender> newDataSenders() {
+        List<CountingDataSender> dataSenders = new ArrayList<CountingDataSender>();
+        for (int i = 0; i < nodeNames.size(); i++) {
+            dataSenders.add(new CountingDataSender());
+        }
+        return dataSenders;
+    }
+
+    private List<CollectorAvailability> newAvailabilities(final boolean... available) {
+        List<CollectorAvailability> availabilities = new ArrayList<CollectorAvailability>();
+        for (final boolean isAvailable : available) {
+            availabilities.add(new CollectorAvailability() {
+                @Override
+                public boolean isAvailable() {
+                    return isAvailable;
+                }
+            });
+        }
+        return availabilities;
+    }
+
+    private int countBusy(List<CountingDataSender> dataSenders) {
+        int count = 0;
+        for (CountingDataSender dataSender : dataSenders) {
+            if (dataSender.getTotalCount() > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Span newSpan(int transactionSequence) {
+        Span span = new Span();
+        span.setAgentId("agentId");
+        span.setTransactionId(TransactionIdUtils.formatBytes(null, 1000, transactionSequence));
+        return span;
+    }
+}
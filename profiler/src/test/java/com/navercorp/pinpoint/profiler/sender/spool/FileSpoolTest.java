@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender.spool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public class FileSpoolTest {
+
+    private File file;
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("pinpoint", ".spool");
+        file.delete();
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    @Test
+    public void offerAndPoll() throws IOException {
+        FileSpool spool = new FileSpool(file, 1024);
+        try {
+            Assert.assertTrue(spool.isEmpty());
+            Assert.assertTrue(spool.offer(packet(10, 1), 0, 10));
+            Assert.assertTrue(spool.offer(packet(20, 2), 0, 20));
+            Assert.assertEquals(2, spool.getCount());
+
+            byte[] buffer = new byte[1024];
+            assertPacket(buffer, spool.poll(buffer), 10, 1);
+            assertPacket(buffer, spool.poll(buffer), 20, 2);
+            Assert.assertEquals(-1, spool.poll(buffer));
+            Assert.assertEquals(0, spool.getUsedBytes());
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void wrapAround() throws IOException {
+        FileSpool spool = new FileSpool(file, 100);
+        try {
+            byte[] buffer = new byte[100];
+            for (int i = 0; i < 20; i++) {
+                Assert.assertTrue(spool.offer(packet(30, i), 0, 30));
+                assertPacket(buffer, spool.poll(buffer), 30, i);
+            }
+            Assert.assertEquals(0, spool.getEvictedCount());
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void evictOldest() throws IOException {
+        FileSpool spool = new FileSpool(file, 100);
+        try {
+            // 3 records of 4 + 26 bytes fill 90 bytes
+            spool.offer(packet(26, 1), 0, 26);
+            spool.offer(packet(26, 2), 0, 26);
+            spool.offer(packet(26, 3), 0, 26);
+            spool.offer(packet(26, 4), 0, 26);
+
+            Assert.assertEquals(3, spool.getCount());
+            Assert.assertEquals(1, spool.getEvictedCount());
+
+            byte[] buffer = new byte[100];
+            assertPacket(buffer, spool.poll(buffer), 26, 2);
+            assertPacket(buffer, spool.poll(buffer), 26, 3);
+            assertPacket(buffer, spool.poll(buffer), 26, 4);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void rejectTooLargePacket() throws IOException {
+        FileSpool spool = new FileSpool(file, 100);
+        try {
+            Assert.assertFalse(spool.offer(packet(97, 1), 0, 97));
+            Assert.assertEquals(1, spool.getRejectedCount());
+            Assert.assertTrue(spool.isEmpty());
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        FileSpool spool = new FileSpool(file, 1024);
+        spool.offer(packet(10, 1), 0, 10);
+        spool.offer(packet(10, 2), 0, 10);
+        byte[] buffer = new byte[1024];
+        spool.poll(buffer);
+        spool.close();
+
+        FileSpool reopened = new FileSpool(file, 1024);
+        try {
+            Assert.assertEquals(1, reopened.getCount());
+            assertPacket(buffer, reopened.poll(buffer), 10, 2);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void resetCorruptedHeader() throws IOException {
+        FileSpool spool = new FileSpool(file, 1024);
+        spool.offer(packet(10, 1), 0, 10);
+        spool.close();
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.writeInt(0);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        FileSpool reopened = new FileSpool(file, 1024);
+        try {
+            Assert.assertTrue(reopened.isEmpty());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private byte[] packet(int length, int value) {
+        byte[] packet = new byte[length];
+        Arrays.fill(packet, (byte) value);
+        return packet;
+    }
+
+    private void assertPacket(byte[] buffer, int length, int expectedLength, int expectedValue) {
+        Assert.assertEquals(expectedLength, length);
+        for (int i = 0; i < length; i++) {
+            Assert.assertEquals(expectedValue, buffer[i]);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.sender.spool;
+
+import com.navercorp.pinpoint.profiler.sender.CollectorAvailability;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PacketSpoolTest {
+
+    private File file;
+    private FileSpool fileSpool;
+    private PacketSpool packetSpool;
+
+    private volatile boolean available;
+    private final CollectorAvailability collectorAvailability = new CollectorAvailability() {
+        @Override
+        public boolean isAvailable() {
+            return available;
+        }
+    };
+
+    private final List<Byte> written = Collections.synchronizedList(new ArrayList<Byte>());
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("pinpoint", ".spool");
+        file.delete();
+        fileSpool = new FileSpool(file, 1024 * 64);
+    }
+
+    @After
+    public void after() {
+        if (packetSpool != null) {
+            packetSpool.stop();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void drainWhenAvailable() throws Exception {
+        packetSpool = new PacketSpool(fileSpool, collectorAvailability, 1000);
+        Assert.assertTrue(packetSpool.isSpooling());
+        offer(5);
+        packetSpool.start(new RecordingPacketWriter(0), "test");
+
+        Thread.sleep(300);
+        Assert.assertTrue(written.isEmpty());
+
+        available = true;
+        Assert.assertFalse(packetSpool.isSpooling());
+        awaitWritten(5);
+        Assert.assertEquals(Arrays.asList((byte) 0, (byte) 1, (byte) 2, (byte) 3, (byte) 4), written);
+        Assert.assertTrue(fileSpool.isEmpty());
+    }
+
+    @Test
+    public void drainRate() throws Exception {
+        available = true;
+        // one packet every 100ms
+        packetSpool = new PacketSpool(fileSpool, collectorAvailability, 10);
+        offer(50);
+        packetSpool.start(new RecordingPacketWriter(0), "test");
+
+        Thread.sleep(500);
+        Assert.assertTrue(written.size() <= 6);
+        Assert.assertEquals(50 - written.size(), fileSpool.getCount());
+    }
+
+    @Test
+    public void failedSendKeepsOrder() throws Exception {
+        available = true;
+        packetSpool = new PacketSpool(fileSpool, collectorAvailability, 1000);
+        offer(3);
+        packetSpool.start(new RecordingPacketWriter(2), "test");
+
+        awaitWritten(3);
+        Assert.assertEquals(Arrays.asList((byte) 0, (byte) 1, (byte) 2), written);
+        Assert.assertEquals(3, packetSpool.getDrainedCount());
+    }
+
+    private void offer(int count) {
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(packetSpool.offer(new byte[] {(byte) i}, 0, 1));
+        }
+    }
+
+    private void awaitWritten(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (written.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private class RecordingPacketWriter implements PacketWriter {
+
+        private final AtomicInteger failCount;
+
+        private RecordingPacketWriter(int failCount) {
+            this.failCount = new AtomicInteger(failCount);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (failCount.getAndDecrement() > 0) {
+                throw new IOException("test");
+            }
+            written.add(buffer[offset]);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.profiler.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RecyclerTest {
+
+    @Test
+    public void recycle() {
+        TestRecycler recycler = new TestRecycler(2);
+        PooledObject object = recycler.get();
+        Assert.assertTrue(object.recycle());
+
+        Assert.assertSame(object, recycler.get());
+        Assert.assertNotSame(object, recycler.get());
+    }
+
+    @Test
+    public void maxCapacity() {
+        TestRecycler recycler = new TestRecycler(1);
+        PooledObject first = recycler.get();
+        PooledObject second = recycler.get();
+
+        Assert.assertTrue(first.recycle());
+        Assert.assertFalse(second.recycle());
+        Assert.assertEquals(1, recycler.threadLocalSize());
+    }
+
+    @Test
+    public void recycleFromOtherThread() throws InterruptedException {
+        TestRecycler recycler = new TestRecycler(4);
+        final PooledObject object = recycler.get();
+
+        final AtomicBoolean recycled = new AtomicBoolean();
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recycled.set(object.recycle());
+            }
+        });
+        sender.start();
+        sender.join();
+
+        Assert.assertTrue(recycled.get());
+        Assert.assertSame(object, recycler.get());
+    }
+
+    @Test
+    public void pooledObjectDoesNotRetainOwnerThread() throws InterruptedException {
+        final TestRecycler recycler = new TestRecycler(4);
+        final AtomicReference<PooledObject> pooled = new AtomicReference<PooledObject>();
+        Thread owner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pooled.set(recycler.get());
+            }
+        });
+        owner.start();
+        owner.join();
+
+        final WeakReference<Thread> ownerReference = new WeakReference<Thread>(owner);
+        owner = null;
+        for (int i = 0; i < 50 && ownerReference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        Assert.assertNull(ownerReference.get());
+        Assert.assertFalse(pooled.get().recycle());
+    }
+
+    private static class TestRecycler extends Recycler<PooledObject> {
+        private TestRecycler(int maxCapacityPerThread) {
+            super(maxCapacityPerThread);
+        }
+
+        @Override
+        protected PooledObject newObject(Handle<PooledObject> handle) {
+            return new PooledObject(handle);
+        }
+    }
+
+    private static class PooledObject {
+        private final Recycler.Handle<PooledObject> handle;
+
+        private PooledObject(Recycler.Handle<PooledObject> handle) {
+            this.handle = handle;
+        }
+
+        private boolean recycle() {
+            return handle.recycle(this);
+        }
+    }
+}
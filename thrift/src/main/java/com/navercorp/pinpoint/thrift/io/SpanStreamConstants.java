@@ -28,6 +28,8 @@ public class SpanStreamConstants {
     public static class Protocol {
         public static final byte SPAN_STREAM_SIGNATURE = (byte) 0xCC;
         public static final byte SPAN_STREAM_VERSION = (byte) 0x10;
+        // chunks and end mark following the start buffer are deflated
+        public static final byte SPAN_STREAM_COMPRESSED_VERSION = (byte) 0x11;
         public static final byte SPAN_STREAM_END = 'z';
     }
 
@@ -88,6 +88,12 @@ public enum TCommandType {
         public TBase newObject() {
             return new TCmdActiveThreadDumpRes();
         }
+    },
+    SAMPLING_RATE((short) 750, TCmdSamplingRate.class) {
+        @Override
+        public TBase newObject() {
+            return new TCmdSamplingRate();
+        }
     };
 
     private final short type;
@@ -67,7 +67,8 @@ public enum TCommandTypeVersion {
 
     V_1_5_3_SNAPSHOT("1.5.3-SNAPSHOT", V_1_5_2),
 
-    V_1_6_0_SNAPSHOT("1.6.0-SNAPSHOT", V_1_5_2),
+    V_1_6_0_SNAPSHOT("1.6.0-SNAPSHOT", V_1_5_2,
+            TCommandType.SAMPLING_RATE),
 
     UNKNOWN("UNKNOWN");
 
@@ -70,6 +70,10 @@ struct TCmdActiveThreadDumpRes {
 	1: list<TActiveThreadDump> threadDumps
 }
 
+struct TCmdSamplingRate {
+	1: optional i32 tracesPerSecond
+}
+
 struct TCommandEcho {
 	1: string	message
 }
@@ -16,6 +16,7 @@
 
 package com.navercorp.pinpoint.web.dao;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.navercorp.pinpoint.web.applicationmap.rawdata.LinkDataMap;
 import com.navercorp.pinpoint.web.vo.Application;
 import com.navercorp.pinpoint.web.vo.Range;
@@ -28,4 +29,9 @@ import com.navercorp.pinpoint.web.vo.Range;
 public interface MapStatisticsCalleeDao {
     LinkDataMap selectCallee(Application calleeApplication, Range range);
 
+    /**
+     * Returns immediately, so that the scans of several applications can run together.
+     */
+    ListenableFuture<LinkDataMap> selectCalleeAsync(Application calleeApplication, Range range);
+
 }
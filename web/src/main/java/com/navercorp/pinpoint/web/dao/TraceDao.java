@@ -34,5 +34,11 @@ public interface TraceDao {
     
     List<List<SpanBo>> selectAllSpans(List<TransactionId> transactionIdList);
 
+    /**
+     * Same spans as {@link #selectAllSpans(List)}, handed to the handler partition by partition as soon as each is fetched.
+     * Partitions are not necessarily handed over in the order of transactionIdList.
+     */
+    void selectAllSpans(List<TransactionId> transactionIdList, SpanListHandler handler);
+
 
 }
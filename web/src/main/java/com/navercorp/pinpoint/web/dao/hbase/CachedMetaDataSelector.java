@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.web.dao.hbase;
+
+import com.navercorp.pinpoint.web.vo.MetaDataKey;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Looks up metadata keys in the shared cache of the single key {@code @Cacheable} lookups,
+ * and fetches the remaining keys with one multi get.
+ * Metadata not found is not cached as the agent may send it after the span.
+ */
+class CachedMetaDataSelector<T> {
+
+    interface MultiGetter<T> {
+        /**
+         * @return metadata of each key, in key order
+         */
+        List<List<T>> get(List<MetaDataKey> keyList);
+    }
+
+    private final String cacheName;
+
+    CachedMetaDataSelector(String cacheName) {
+        if (cacheName == null) {
+            throw new NullPointerException("cacheName must not be null");
+        }
+        this.cacheName = cacheName;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<List<T>> select(CacheManager cacheManager, List<MetaDataKey> keyList, MultiGetter<T> multiGetter) {
+        if (keyList == null) {
+            throw new NullPointerException("keyList must not be null");
+        }
+        if (multiGetter == null) {
+            throw new NullPointerException("multiGetter must not be null");
+        }
+        final Cache cache = cacheManager == null ? null : cacheManager.getCache(cacheName);
+
+        final List<List<T>> result = new ArrayList<>(keyList.size());
+        final List<MetaDataKey> missKeyList = new ArrayList<>();
+        final List<Integer> missIndexList = new ArrayList<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            final MetaDataKey key = keyList.get(i);
+            List<T> cached = null;
+            if (cache != null) {
+                cached = cache.get(key.toCacheKey(), List.class);
+            }
+            result.add(cached);
+            if (cached == null) {
+                missKeyList.add(key);
+                missIndexList.add(i);
+            }
+        }
+        if (missKeyList.isEmpty()) {
+            return result;
+        }
+
+        final List<List<T>> fetchedList = multiGetter.get(missKeyList);
+        for (int i = 0; i < missKeyList.size(); i++) {
+            final List<T> fetched = fetchedList.get(i);
+            result.set(missIndexList.get(i), fetched);
+            if (cache != null && !fetched.isEmpty()) {
+                cache.put(missKeyList.get(i).toCacheKey(), fetched);
+            }
+        }
+        return result;
+    }
+}
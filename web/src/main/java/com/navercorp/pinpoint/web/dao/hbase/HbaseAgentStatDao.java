@@ -21,6 +21,7 @@ import static com.navercorp.pinpoint.common.hbase.HBaseTables.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
@@ -29,12 +30,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import com.navercorp.pinpoint.common.hbase.HBaseTables;
 import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.ResultsExtractor;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
+import com.navercorp.pinpoint.common.server.bo.serializer.stat.AgentStatBlockCodec;
 import com.navercorp.pinpoint.common.util.BytesUtils;
 import com.navercorp.pinpoint.common.server.util.RowKeyUtils;
 import com.navercorp.pinpoint.common.util.TimeUtils;
@@ -52,6 +55,11 @@ import com.sematext.hbase.wd.AbstractRowKeyDistributor;
 public class HbaseAgentStatDao implements AgentStatDao {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    // hourly rollups are read for ranges longer than this if enabled, minute rollups otherwise
+    private static final long HOURLY_ROLLUP_THRESHOLD = TimeUnit.DAYS.toMillis(7);
+
     @Autowired
     private HbaseOperations2 hbaseOperations2;
 
@@ -63,6 +71,10 @@ public class HbaseAgentStatDao implements AgentStatDao {
     @Qualifier("agentStatRowKeyDistributor")
     private AbstractRowKeyDistributor rowKeyDistributor;
 
+    // tables created before the hourly column family was added do not have it
+    @Value("#{pinpointWebProps['web.agentstat.hourlyRollup.enable'] ?: false}")
+    private boolean hourlyRollupEnable;
+
     private int scanCacheSize = 256;
 
     public void setScanCacheSize(int scanCacheSize) {
@@ -86,8 +98,9 @@ public class HbaseAgentStatDao implements AgentStatDao {
     }
     
     private List<AgentStat> getAgentStatListFromRaw(String agentId, Range range) {
-        Scan scan = createScan(agentId, range);
-        scan.addFamily(HBaseTables.AGENT_STAT_CF_STATISTICS);
+        // a delta encoded block is keyed by its first stat, so blocks starting before the range are scanned as well
+        Range scanRange = new Range(range.getFrom() - AgentStatBlockCodec.MAX_BLOCK_SPAN, range.getTo());
+        Scan scan = createScan(agentId, scanRange, HBaseTables.AGENT_STAT_CF_STATISTICS);
 
         List<List<AgentStat>> intermediate = hbaseOperations2.find(HBaseTables.AGENT_STAT, scan, rowKeyDistributor, agentStatMapper);
 
@@ -95,7 +108,11 @@ public class HbaseAgentStatDao implements AgentStatDao {
         List<AgentStat> merged = new ArrayList<>(expectedSize);
 
         for (List<AgentStat> each : intermediate) {
-            merged.addAll(each);
+            for (AgentStat agentStat : each) {
+                if (agentStat.getTimestamp() > range.getFrom() && agentStat.getTimestamp() <= range.getTo()) {
+                    merged.add(agentStat);
+                }
+            }
         }
 
         return merged;
@@ -113,9 +130,18 @@ public class HbaseAgentStatDao implements AgentStatDao {
             logger.debug("scanAgentStat : agentId={}, {}", agentId, range);
         }
 
-        Scan scan = createScan(agentId, range);
-        scan.addFamily(HBaseTables.AGENT_STAT_CF_STATISTICS);
-        
+        if (hourlyRollupEnable && range.getRange() > HOURLY_ROLLUP_THRESHOLD) {
+            return getRollupList(agentId, range, HBaseTables.AGENT_STAT_AGGR_CF_HOURLY, HOUR);
+        }
+        return getRollupList(agentId, range, HBaseTables.AGENT_STAT_CF_STATISTICS, MINUTE);
+    }
+
+    /**
+     * Reads the rollups of the given interval from AgentStatAggr. Ranges without rollups are aggregated from finer data.
+     */
+    private List<AgentStat> getRollupList(String agentId, Range range, byte[] family, long interval) {
+        Scan scan = createScan(agentId, range, family);
+
         List<List<AgentStat>> intermediate = hbaseOperations2.find(HBaseTables.AGENT_STAT_AGGR, scan, rowKeyDistributor, agentStatMapper);
         
         List<AgentStat> merged = new ArrayList<>();
@@ -131,7 +157,7 @@ public class HbaseAgentStatDao implements AgentStatDao {
         long last = range.getFrom();
         
         for (AgentStat stat : merged) {
-            if (last + AgentStat.AGGR_SAMPLE_INTERVAL * 2 < stat.getTimestamp()) {
+            if (last + interval * 2 < stat.getTimestamp()) {
                 Range r = new Range(last, stat.getTimestamp() - stat.getCollectInterval());
                 missingRanges.add(r);
             }
@@ -139,7 +165,7 @@ public class HbaseAgentStatDao implements AgentStatDao {
             last = stat.getTimestamp();
         }
         
-        if (last + AgentStat.AGGR_SAMPLE_INTERVAL * 2 < range.getTo()) {
+        if (last + interval * 2 < range.getTo()) {
             Range r = new Range(last, range.getTo());
             missingRanges.add(r);
         }
@@ -147,19 +173,27 @@ public class HbaseAgentStatDao implements AgentStatDao {
         for (Range r : missingRanges) {
             logger.debug("AgentStatAggr doesn't have range: " + r.prettyToString() + " of " + agentId);
 
-            List<AgentStat> list = getAgentStatListFromRaw(agentId, r);
+            List<AgentStat> list = getFinerAgentStatList(agentId, r, interval);
             
             if (list.isEmpty()) {
                 logger.debug("AgentStat also doesn't have range: " + r.prettyToString() + " of " + agentId);
                 continue;
             }
             
-            List<AgentStat> aggregated = AgentStats.aggregate(list, AgentStat.AGGR_SAMPLE_INTERVAL);
+            List<AgentStat> aggregated = AgentStats.aggregate(list, interval);
             merged.addAll(aggregated);
         }
 
         return merged;
     }
+
+    private List<AgentStat> getFinerAgentStatList(String agentId, Range range, long interval) {
+        if (interval == HOUR) {
+            // e.g. written before the hourly column family was added
+            return getRollupList(agentId, range, HBaseTables.AGENT_STAT_CF_STATISTICS, MINUTE);
+        }
+        return getAgentStatListFromRaw(agentId, range);
+    }
     
     @Override
     public boolean agentStatExists(String agentId, Range range) {
@@ -174,33 +208,40 @@ public class HbaseAgentStatDao implements AgentStatDao {
             logger.debug("checking for stat data existence : agentId={}, {}", agentId, range);
         }
 
-        Scan scan = createScan(agentId, range);
+        // same as getAgentStatListFromRaw, a block starting before the range may hold stats of the range
+        Range scanRange = new Range(range.getFrom() - AgentStatBlockCodec.MAX_BLOCK_SPAN, range.getTo());
+        Scan scan = createScan(agentId, scanRange, HBaseTables.AGENT_STAT_CF_STATISTICS);
         scan.setCaching(1);
-        scan.addFamily(HBaseTables.AGENT_STAT_CF_STATISTICS);
 
-        return hbaseOperations2.find(HBaseTables.AGENT_STAT, scan, rowKeyDistributor, new AgentStatDataExistsResultsExtractor(this.agentStatMapper));
+        return hbaseOperations2.find(HBaseTables.AGENT_STAT, scan, rowKeyDistributor, new AgentStatDataExistsResultsExtractor(this.agentStatMapper, range));
     }
 
     private class AgentStatDataExistsResultsExtractor implements ResultsExtractor<Boolean> {
 
         private final RowMapper<List<AgentStat>> agentStatMapper;
+        private final Range range;
 
-        private AgentStatDataExistsResultsExtractor(RowMapper<List<AgentStat>> agentStatMapper) {
+        private AgentStatDataExistsResultsExtractor(RowMapper<List<AgentStat>> agentStatMapper, Range range) {
             this.agentStatMapper = agentStatMapper;
+            this.range = range;
         }
 
         @Override
         public Boolean extractData(ResultScanner results) throws Exception {
             int matchCnt = 0;
             for (Result result : results) {
-                if (!result.isEmpty()) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("stat data exists, most recent data : {}", this.agentStatMapper.mapRow(result, matchCnt++));
-                    }
-                    return true;
-                } else {
+                if (result.isEmpty()) {
                     return false;
                 }
+                // rows are scanned from the most recent one, only rows starting before the range are checked further
+                for (AgentStat agentStat : this.agentStatMapper.mapRow(result, matchCnt++)) {
+                    if (agentStat.getTimestamp() > range.getFrom() && agentStat.getTimestamp() <= range.getTo()) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("stat data exists, most recent data : {}", agentStat);
+                        }
+                        return true;
+                    }
+                }
             }
             return false;
         }
@@ -218,7 +259,7 @@ public class HbaseAgentStatDao implements AgentStatDao {
         return RowKeyUtils.concatFixedByteAndLong(bAgentId, AGENT_NAME_MAX_LEN, TimeUtils.reverseTimeMillis(timestamp));
     }
 
-    private Scan createScan(String agentId, Range range) {
+    private Scan createScan(String agentId, Range range, byte[] family) {
         Scan scan = new Scan();
         scan.setCaching(this.scanCacheSize);
 
@@ -230,7 +271,7 @@ public class HbaseAgentStatDao implements AgentStatDao {
         scan.setStopRow(startKey);
 
         //        scan.addColumn(HBaseTables.AGENT_STAT_CF_STATISTICS, HBaseTables.AGENT_STAT_CF_STATISTICS_V1);
-        scan.addFamily(HBaseTables.AGENT_STAT_CF_STATISTICS);
+        scan.addFamily(family);
         scan.setId("AgentStatScan");
 
         // toString() method of Scan converts a message to json format so it is slow for the first time.
@@ -16,6 +16,7 @@
 
 package com.navercorp.pinpoint.web.dao.hbase;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
@@ -23,6 +24,7 @@ import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
 import org.apache.hadoop.hbase.client.Get;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Repository;
 
@@ -31,6 +33,7 @@ import com.navercorp.pinpoint.common.hbase.HBaseTables;
 import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
 import com.navercorp.pinpoint.web.dao.ApiMetaDataDao;
+import com.navercorp.pinpoint.web.vo.MetaDataKey;
 
 /**
  * @author emeroad
@@ -39,7 +42,9 @@ import com.navercorp.pinpoint.web.dao.ApiMetaDataDao;
 @Repository
 public class HbaseApiMetaDataDao implements ApiMetaDataDao {
     static final String SPEL_KEY = "#agentId.toString() + '.' + #time.toString() + '.' + #apiId.toString()";
-    
+    static final String CACHE_NAME = "apiMetaData";
+
+
     @Autowired
     private HbaseOperations2 hbaseOperations2;
 
@@ -51,8 +56,13 @@ public class HbaseApiMetaDataDao implements ApiMetaDataDao {
     @Qualifier("metadataRowKeyDistributor")
     private RowKeyDistributorByHashPrefix rowKeyDistributorByHashPrefix;
 
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    private final CachedMetaDataSelector<ApiMetaDataBo> cachedMetaDataSelector = new CachedMetaDataSelector<>(CACHE_NAME);
+
     @Override
-    @Cacheable(value="apiMetaData", key=SPEL_KEY)
+    @Cacheable(value=CACHE_NAME, key=SPEL_KEY, unless="#result.isEmpty()")
     public List<ApiMetaDataBo> getApiMetaData(String agentId, long time, int apiId) {
         if (agentId == null) {
             throw new NullPointerException("agentId must not be null");
@@ -65,6 +75,23 @@ public class HbaseApiMetaDataDao implements ApiMetaDataDao {
         return hbaseOperations2.get(HBaseTables.API_METADATA, get, apiMetaDataMapper);
     }
 
+    @Override
+    public List<List<ApiMetaDataBo>> getApiMetaData(List<MetaDataKey> keyList) {
+        return cachedMetaDataSelector.select(cacheManager, keyList, new CachedMetaDataSelector.MultiGetter<ApiMetaDataBo>() {
+            @Override
+            public List<List<ApiMetaDataBo>> get(List<MetaDataKey> keyList) {
+                final List<Get> multiGet = new ArrayList<>(keyList.size());
+                for (MetaDataKey key : keyList) {
+                    ApiMetaDataBo apiMetaDataBo = new ApiMetaDataBo(key.getAgentId(), key.getAgentStartTime(), key.getId());
+                    Get get = new Get(getDistributedKey(apiMetaDataBo.toRowKey()));
+                    get.addFamily(HBaseTables.API_METADATA_CF_API);
+                    multiGet.add(get);
+                }
+                return hbaseOperations2.get(HBaseTables.API_METADATA, multiGet, apiMetaDataMapper);
+            }
+        });
+    }
+
     private byte[] getDistributedKey(byte[] rowKey) {
         return rowKeyDistributorByHashPrefix.getDistributedKey(rowKey);
     }
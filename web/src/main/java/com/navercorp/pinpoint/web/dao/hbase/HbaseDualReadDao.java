@@ -3,6 +3,7 @@ package com.navercorp.pinpoint.web.dao.hbase;
 import com.google.common.annotations.Beta;
 import com.navercorp.pinpoint.common.server.bo.SpanBo;
 import com.navercorp.pinpoint.common.util.TransactionId;
+import com.navercorp.pinpoint.web.dao.SpanListHandler;
 import com.navercorp.pinpoint.web.dao.TraceDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +16,13 @@ import java.util.List;
 @Beta
 public class HbaseDualReadDao implements TraceDao {
 
+    // streams the slave partitions without holding them, the slave is only read alongside the master
+    private static final SpanListHandler DISCARD_HANDLER = new SpanListHandler() {
+        @Override
+        public void handle(List<List<SpanBo>> transactionList) {
+        }
+    };
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final TraceDao master;
@@ -94,6 +102,23 @@ public class HbaseDualReadDao implements TraceDao {
         return result;
     }
 
+    @Override
+    public void selectAllSpans(List<TransactionId> transactionIdList, SpanListHandler handler) {
+        Throwable masterThrowable = null;
+        try {
+            master.selectAllSpans(transactionIdList, handler);
+        } catch (Throwable th) {
+            masterThrowable = th;
+        }
+        try {
+            slave.selectAllSpans(transactionIdList, DISCARD_HANDLER);
+        } catch (Throwable th) {
+            logger.debug("slave error :{}", th.getMessage(), th);
+        }
+
+        rethrowRuntimeException(masterThrowable);
+    }
+
 
     private void rethrowRuntimeException(Throwable exception) {
         if (exception != null) {
@@ -16,7 +16,12 @@
 
 package com.navercorp.pinpoint.web.dao.hbase;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.navercorp.pinpoint.common.hbase.AsyncHbaseOperations;
 import com.navercorp.pinpoint.common.hbase.HBaseTables;
+import com.navercorp.pinpoint.common.hbase.HbaseFutures;
 import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.ResultsExtractor;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
@@ -36,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -53,6 +59,9 @@ public class HbaseMapStatisticsCalleeDao implements MapStatisticsCalleeDao {
     @Autowired
     private HbaseOperations2 hbaseOperations2;
 
+    @Autowired(required = false)
+    private AsyncHbaseOperations asyncHbaseOperations;
+
     @Autowired
     @Qualifier("mapStatisticsCalleeMapper")
     private RowMapper<LinkDataMap> mapStatisticsCalleeMapper;
@@ -64,9 +73,23 @@ public class HbaseMapStatisticsCalleeDao implements MapStatisticsCalleeDao {
     @Qualifier("statisticsCalleeRowKeyDistributor")
     private RowKeyDistributorByHashPrefix rowKeyDistributorByHashPrefix;
 
+    @Autowired(required = false)
+    private MapStatisticsSlotCache mapStatisticsSlotCache;
+
+    @Value("#{pinpointWebProps['web.servermap.slotCache.enable'] ?: false}")
+    private boolean slotCacheEnable;
 
     @Override
     public LinkDataMap selectCallee(Application calleeApplication, Range range) {
+        return HbaseFutures.getResult(selectCallee(calleeApplication, range, false));
+    }
+
+    @Override
+    public ListenableFuture<LinkDataMap> selectCalleeAsync(Application calleeApplication, Range range) {
+        return selectCallee(calleeApplication, range, true);
+    }
+
+    private ListenableFuture<LinkDataMap> selectCallee(final Application calleeApplication, final Range range, final boolean async) {
         if (calleeApplication == null) {
             throw new NullPointerException("calleeApplication must not be null");
         }
@@ -75,19 +98,44 @@ public class HbaseMapStatisticsCalleeDao implements MapStatisticsCalleeDao {
         }
 
         final TimeWindow timeWindow = new TimeWindow(range, TimeWindowDownSampler.SAMPLER);
+        final ListenableFuture<LinkDataMap> linkDataMapFuture;
+        if (slotCacheEnable && mapStatisticsSlotCache != null) {
+            linkDataMapFuture = mapStatisticsSlotCache.select(HBaseTables.MAP_STATISTICS_CALLER_VER2.getNameAsString(), calleeApplication, range, timeWindow, new MapStatisticsSlotCache.LinkDataMapScanner() {
+                @Override
+                public ListenableFuture<LinkDataMap> scan(Range scanRange) {
+                    // cached per minute slot, so the raw data must not be down sampled
+                    return scanCallee(calleeApplication, scanRange, null, async);
+                }
+            });
+        } else {
+            linkDataMapFuture = scanCallee(calleeApplication, range, timeWindow, async);
+        }
+        return Futures.transform(linkDataMapFuture, new Function<LinkDataMap, LinkDataMap>() {
+            @Override
+            public LinkDataMap apply(LinkDataMap linkDataMap) {
+                logger.debug("Callee data. {}, {}", linkDataMap, range);
+                if (linkDataMap != null && linkDataMap.size() > 0) {
+                    return linkDataMap;
+                }
+
+                return new LinkDataMap();
+            }
+        });
+    }
+
+    /**
+     * @param async scan on the shared hbase query executor if it is configured, otherwise the scan runs on the calling thread
+     */
+    private ListenableFuture<LinkDataMap> scanCallee(Application calleeApplication, Range range, TimeWindow timeWindow, boolean async) {
         // find distributed key - ver2.
         final Scan scan = createScan(calleeApplication, range, HBaseTables.MAP_STATISTICS_CALLER_VER2_CF_COUNTER);
         ResultsExtractor<LinkDataMap> resultExtractor = new RowMapReduceResultExtractor<>(mapStatisticsCalleeMapper, new MapStatisticsTimeWindowReducer(timeWindow));
-        LinkDataMap linkDataMap = hbaseOperations2.findParallel(HBaseTables.MAP_STATISTICS_CALLER_VER2, scan, rowKeyDistributorByHashPrefix, resultExtractor, MAP_STATISTICS_CALLER_VER2_NUM_PARTITIONS);
-        logger.debug("Callee data. {}, {}", linkDataMap, range);
-        if (linkDataMap != null && linkDataMap.size() > 0) {
-            return linkDataMap;
+        if (async && asyncHbaseOperations != null) {
+            return asyncHbaseOperations.findParallel(HBaseTables.MAP_STATISTICS_CALLER_VER2, scan, rowKeyDistributorByHashPrefix, resultExtractor, MAP_STATISTICS_CALLER_VER2_NUM_PARTITIONS);
         }
-
-        return new LinkDataMap();
+        return Futures.immediateFuture(hbaseOperations2.findParallel(HBaseTables.MAP_STATISTICS_CALLER_VER2, scan, rowKeyDistributorByHashPrefix, resultExtractor, MAP_STATISTICS_CALLER_VER2_NUM_PARTITIONS));
     }
 
-
     private Scan createScan(Application application, Range range, byte[] family) {
         range = rangeFactory.createStatisticsRange(range);
 
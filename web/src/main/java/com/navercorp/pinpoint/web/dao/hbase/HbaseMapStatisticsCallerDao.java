@@ -16,7 +16,12 @@
 
 package com.navercorp.pinpoint.web.dao.hbase;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.navercorp.pinpoint.common.hbase.AsyncHbaseOperations;
 import com.navercorp.pinpoint.common.hbase.HBaseTables;
+import com.navercorp.pinpoint.common.hbase.HbaseFutures;
 import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.ResultsExtractor;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
@@ -36,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -53,6 +59,9 @@ public class HbaseMapStatisticsCallerDao implements MapStatisticsCallerDao {
     @Autowired
     private HbaseOperations2 hbaseOperations2;
 
+    @Autowired(required = false)
+    private AsyncHbaseOperations asyncHbaseOperations;
+
     @Autowired
     @Qualifier("mapStatisticsCallerMapper")
     private RowMapper<LinkDataMap> mapStatisticsCallerMapper;
@@ -64,9 +73,23 @@ public class HbaseMapStatisticsCallerDao implements MapStatisticsCallerDao {
     @Qualifier("statisticsCallerRowKeyDistributor")
     private RowKeyDistributorByHashPrefix rowKeyDistributorByHashPrefix;
 
+    @Autowired(required = false)
+    private MapStatisticsSlotCache mapStatisticsSlotCache;
+
+    @Value("#{pinpointWebProps['web.servermap.slotCache.enable'] ?: false}")
+    private boolean slotCacheEnable;
 
     @Override
     public LinkDataMap selectCaller(Application callerApplication, Range range) {
+        return HbaseFutures.getResult(selectCaller(callerApplication, range, false));
+    }
+
+    @Override
+    public ListenableFuture<LinkDataMap> selectCallerAsync(Application callerApplication, Range range) {
+        return selectCaller(callerApplication, range, true);
+    }
+
+    private ListenableFuture<LinkDataMap> selectCaller(final Application callerApplication, final Range range, final boolean async) {
         if (callerApplication == null) {
             throw new NullPointerException("callerApplication must not be null");
         }
@@ -75,19 +98,44 @@ public class HbaseMapStatisticsCallerDao implements MapStatisticsCallerDao {
         }
 
         final TimeWindow timeWindow = new TimeWindow(range, TimeWindowDownSampler.SAMPLER);
+        final ListenableFuture<LinkDataMap> linkDataMapFuture;
+        if (slotCacheEnable && mapStatisticsSlotCache != null) {
+            linkDataMapFuture = mapStatisticsSlotCache.select(HBaseTables.MAP_STATISTICS_CALLEE_VER2.getNameAsString(), callerApplication, range, timeWindow, new MapStatisticsSlotCache.LinkDataMapScanner() {
+                @Override
+                public ListenableFuture<LinkDataMap> scan(Range scanRange) {
+                    // cached per minute slot, so the raw data must not be down sampled
+                    return scanCaller(callerApplication, scanRange, null, async);
+                }
+            });
+        } else {
+            linkDataMapFuture = scanCaller(callerApplication, range, timeWindow, async);
+        }
+        return Futures.transform(linkDataMapFuture, new Function<LinkDataMap, LinkDataMap>() {
+            @Override
+            public LinkDataMap apply(LinkDataMap linkDataMap) {
+                logger.debug("Caller data. {}, {}", linkDataMap, range);
+                if (linkDataMap != null && linkDataMap.size() > 0) {
+                    return linkDataMap;
+                }
+
+                return new LinkDataMap();
+            }
+        });
+    }
+
+    /**
+     * @param async scan on the shared hbase query executor if it is configured, otherwise the scan runs on the calling thread
+     */
+    private ListenableFuture<LinkDataMap> scanCaller(Application callerApplication, Range range, TimeWindow timeWindow, boolean async) {
         // find distributed key.
         final Scan scan = createScan(callerApplication, range, HBaseTables.MAP_STATISTICS_CALLEE_VER2_CF_COUNTER);
         ResultsExtractor<LinkDataMap> resultExtractor = new RowMapReduceResultExtractor<>(mapStatisticsCallerMapper, new MapStatisticsTimeWindowReducer(timeWindow));
-        LinkDataMap linkDataMap = hbaseOperations2.findParallel(HBaseTables.MAP_STATISTICS_CALLEE_VER2, scan, rowKeyDistributorByHashPrefix, resultExtractor, MAP_STATISTICS_CALLEE_VER2_NUM_PARTITIONS);
-        logger.debug("Caller data. {}, {}", linkDataMap, range);
-        if (linkDataMap != null && linkDataMap.size() > 0) {
-            return linkDataMap;
+        if (async && asyncHbaseOperations != null) {
+            return asyncHbaseOperations.findParallel(HBaseTables.MAP_STATISTICS_CALLEE_VER2, scan, rowKeyDistributorByHashPrefix, resultExtractor, MAP_STATISTICS_CALLEE_VER2_NUM_PARTITIONS);
         }
-
-        return new LinkDataMap();
+        return Futures.immediateFuture(hbaseOperations2.findParallel(HBaseTables.MAP_STATISTICS_CALLEE_VER2, scan, rowKeyDistributorByHashPrefix, resultExtractor, MAP_STATISTICS_CALLEE_VER2_NUM_PARTITIONS));
     }
 
-
     private Scan createScan(Application application, Range range, byte[]... familyArgs) {
         range = rangeFactory.createStatisticsRange(range);
 
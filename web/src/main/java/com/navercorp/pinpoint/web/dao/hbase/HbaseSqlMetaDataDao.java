@@ -16,18 +16,22 @@
 
 package com.navercorp.pinpoint.web.dao.hbase;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
 
 import org.apache.hadoop.hbase.client.Get;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 
 import com.navercorp.pinpoint.common.server.bo.SqlMetaDataBo;
 import com.navercorp.pinpoint.common.hbase.HBaseTables;
 import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
 import com.navercorp.pinpoint.web.dao.SqlMetaDataDao;
+import com.navercorp.pinpoint.web.vo.MetaDataKey;
 
 /**
  * @author emeroad
@@ -35,6 +39,8 @@ import com.navercorp.pinpoint.web.dao.SqlMetaDataDao;
  */
 //@Repository
 public class HbaseSqlMetaDataDao implements SqlMetaDataDao {
+    static final String SPEL_KEY = "#agentId.toString() + '.' + #time.toString() + '.' + #hashCode.toString()";
+    static final String CACHE_NAME = "sqlMetaData";
 
     @Autowired
     private HbaseOperations2 hbaseOperations2;
@@ -47,7 +53,13 @@ public class HbaseSqlMetaDataDao implements SqlMetaDataDao {
 //    @Qualifier("metadataRowKeyDistributor2")
     private RowKeyDistributorByHashPrefix rowKeyDistributorByHashPrefix;
 
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    private final CachedMetaDataSelector<SqlMetaDataBo> cachedMetaDataSelector = new CachedMetaDataSelector<>(CACHE_NAME);
+
     @Override
+    @Cacheable(value=CACHE_NAME, key=SPEL_KEY, unless="#result.isEmpty()")
     public List<SqlMetaDataBo> getSqlMetaData(String agentId, long time, int hashCode) {
         if (agentId == null) {
             throw new NullPointerException("agentId must not be null");
@@ -62,6 +74,23 @@ public class HbaseSqlMetaDataDao implements SqlMetaDataDao {
         return hbaseOperations2.get(HBaseTables.SQL_METADATA_VER2, get, sqlMetaDataMapper);
     }
 
+    @Override
+    public List<List<SqlMetaDataBo>> getSqlMetaData(List<MetaDataKey> keyList) {
+        return cachedMetaDataSelector.select(cacheManager, keyList, new CachedMetaDataSelector.MultiGetter<SqlMetaDataBo>() {
+            @Override
+            public List<List<SqlMetaDataBo>> get(List<MetaDataKey> keyList) {
+                final List<Get> multiGet = new ArrayList<>(keyList.size());
+                for (MetaDataKey key : keyList) {
+                    SqlMetaDataBo sqlMetaData = new SqlMetaDataBo(key.getAgentId(), key.getAgentStartTime(), key.getId());
+                    Get get = new Get(getDistributedKey(sqlMetaData.toRowKey()));
+                    get.addFamily(HBaseTables.SQL_METADATA_VER2_CF_SQL);
+                    multiGet.add(get);
+                }
+                return hbaseOperations2.get(HBaseTables.SQL_METADATA_VER2, multiGet, sqlMetaDataMapper);
+            }
+        });
+    }
+
     private byte[] getDistributedKey(byte[] rowKey) {
         return rowKeyDistributorByHashPrefix.getDistributedKey(rowKey);
     }
@@ -21,13 +21,17 @@ import com.navercorp.pinpoint.common.hbase.HBaseTables;
 import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
 import com.navercorp.pinpoint.web.dao.StringMetaDataDao;
+import com.navercorp.pinpoint.web.vo.MetaDataKey;
 import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
 
 import org.apache.hadoop.hbase.client.Get;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -35,6 +39,8 @@ import java.util.List;
  */
 @Repository
 public class HbaseStringMetaDataDao implements StringMetaDataDao {
+    static final String SPEL_KEY = "#agentId.toString() + '.' + #time.toString() + '.' + #stringId.toString()";
+    static final String CACHE_NAME = "stringMetaData";
 
     @Autowired
     private HbaseOperations2 hbaseOperations2;
@@ -47,7 +53,13 @@ public class HbaseStringMetaDataDao implements StringMetaDataDao {
     @Qualifier("metadataRowKeyDistributor")
     private RowKeyDistributorByHashPrefix rowKeyDistributorByHashPrefix;
 
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    private final CachedMetaDataSelector<StringMetaDataBo> cachedMetaDataSelector = new CachedMetaDataSelector<>(CACHE_NAME);
+
     @Override
+    @Cacheable(value=CACHE_NAME, key=SPEL_KEY, unless="#result.isEmpty()")
     public List<StringMetaDataBo> getStringMetaData(String agentId, long time, int stringId) {
         if (agentId == null) {
             throw new NullPointerException("agentId must not be null");
@@ -62,6 +74,23 @@ public class HbaseStringMetaDataDao implements StringMetaDataDao {
         return hbaseOperations2.get(HBaseTables.STRING_METADATA, get, stringMetaDataMapper);
     }
 
+    @Override
+    public List<List<StringMetaDataBo>> getStringMetaData(List<MetaDataKey> keyList) {
+        return cachedMetaDataSelector.select(cacheManager, keyList, new CachedMetaDataSelector.MultiGetter<StringMetaDataBo>() {
+            @Override
+            public List<List<StringMetaDataBo>> get(List<MetaDataKey> keyList) {
+                final List<Get> multiGet = new ArrayList<>(keyList.size());
+                for (MetaDataKey key : keyList) {
+                    StringMetaDataBo stringMetaData = new StringMetaDataBo(key.getAgentId(), key.getAgentStartTime(), key.getId());
+                    Get get = new Get(getDistributedKey(stringMetaData.toRowKey()));
+                    get.addFamily(HBaseTables.STRING_METADATA_CF_STR);
+                    multiGet.add(get);
+                }
+                return hbaseOperations2.get(HBaseTables.STRING_METADATA, multiGet, stringMetaDataMapper);
+            }
+        });
+    }
+
     private byte[] getDistributedKey(byte[] rowKey) {
         return rowKeyDistributorByHashPrefix.getDistributedKey(rowKey);
     }
@@ -2,6 +2,7 @@ package com.navercorp.pinpoint.web.dao.hbase;
 
 import com.navercorp.pinpoint.common.server.bo.SpanBo;
 import com.navercorp.pinpoint.common.util.TransactionId;
+import com.navercorp.pinpoint.web.dao.SpanListHandler;
 import com.navercorp.pinpoint.web.dao.TraceDao;
 import org.apache.commons.collections.CollectionUtils;
 
@@ -58,4 +59,26 @@ public class HbaseTraceCompatibilityDao implements TraceDao {
         return slave.selectAllSpans(transactionIdList);
     }
 
+    @Override
+    public void selectAllSpans(List<TransactionId> transactionIdList, final SpanListHandler handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler must not be null");
+        }
+        final boolean[] found = new boolean[1];
+        this.master.selectAllSpans(transactionIdList, new SpanListHandler() {
+            @Override
+            public void handle(List<List<SpanBo>> transactionList) {
+                if (CollectionUtils.isNotEmpty(transactionList)) {
+                    found[0] = true;
+                }
+                handler.handle(transactionList);
+            }
+        });
+        if (found[0]) {
+            return;
+        }
+
+        slave.selectAllSpans(transactionIdList, handler);
+    }
+
 }
@@ -23,6 +23,7 @@ import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
 import com.navercorp.pinpoint.common.server.bo.serializer.RowKeyEncoder;
 import com.navercorp.pinpoint.common.util.TransactionId;
+import com.navercorp.pinpoint.web.dao.SpanListHandler;
 import com.navercorp.pinpoint.web.dao.TraceDao;
 import com.navercorp.pinpoint.web.mapper.CellTraceMapper;
 import org.apache.commons.collections.CollectionUtils;
@@ -128,6 +129,27 @@ public class HbaseTraceDao implements TraceDao {
     }
 
 
+    @Override
+    public void selectAllSpans(List<TransactionId> transactionIdList, SpanListHandler handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler must not be null");
+        }
+        if (CollectionUtils.isEmpty(transactionIdList)) {
+            return;
+        }
+
+        List<List<TransactionId>> splitTransactionIdList = partition(transactionIdList, selectAllSpansLimit);
+
+        List<byte[]> hBaseFamilyList = new ArrayList<>(2);
+        hBaseFamilyList.add(HBaseTables.TRACES_CF_SPAN);
+        hBaseFamilyList.add(HBaseTables.TRACES_CF_TERMINALSPAN);
+
+        for (List<TransactionId> partition : splitTransactionIdList) {
+            handler.handle(select0(partition, hBaseFamilyList));
+        }
+    }
+
+
     private List<List<TransactionId>> partition(List<TransactionId> transactionIdList, int eachPartitionSize) {
         return Lists.partition(transactionIdList, eachPartitionSize);
     }
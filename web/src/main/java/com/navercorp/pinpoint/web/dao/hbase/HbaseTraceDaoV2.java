@@ -2,13 +2,19 @@ package com.navercorp.pinpoint.web.dao.hbase;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.navercorp.pinpoint.common.hbase.AsyncHbaseOperations;
+import com.navercorp.pinpoint.common.hbase.HBaseAccessException;
 import com.navercorp.pinpoint.common.hbase.HBaseTables;
+import com.navercorp.pinpoint.common.hbase.HbaseFutures;
 import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
 import com.navercorp.pinpoint.common.server.bo.SpanBo;
 import com.navercorp.pinpoint.common.server.bo.serializer.RowKeyEncoder;
 import com.navercorp.pinpoint.common.server.bo.serializer.trace.v2.SpanEncoder;
 import com.navercorp.pinpoint.common.util.TransactionId;
+import com.navercorp.pinpoint.web.dao.SpanListHandler;
 import com.navercorp.pinpoint.web.dao.TraceDao;
 import com.navercorp.pinpoint.web.mapper.CellTraceMapper;
 import org.apache.commons.collections.CollectionUtils;
@@ -27,6 +33,9 @@ import org.springframework.stereotype.Repository;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * @author Woonduk Kang(emeroad)
@@ -54,6 +63,15 @@ public class HbaseTraceDaoV2 implements TraceDao {
     @Value("#{pinpointWebProps['web.hbase.selectAllSpans.limit'] ?: 500}")
     private int selectAllSpansLimit;
 
+    @Value("#{pinpointWebProps['web.hbase.selectSpans.parallel.enable'] ?: false}")
+    private boolean parallelSelect;
+
+    @Value("#{pinpointWebProps['web.hbase.selectSpans.parallel.window'] ?: 4}")
+    private int parallelSelectWindow;
+
+    @Autowired(required = false)
+    private AsyncHbaseOperations asyncTemplate;
+
     private final Filter spanFilter = createSpanQualifierFilter();
 
 
@@ -90,6 +108,10 @@ public class HbaseTraceDaoV2 implements TraceDao {
 
         List<List<TransactionId>> splitTransactionIdList = partition(transactionIdList, eachPartitionSize);
 
+        final AsyncHbaseOperations asyncTemplate = getAsyncTemplate(splitTransactionIdList);
+        if (asyncTemplate != null) {
+            return parallelSelect(asyncTemplate, splitTransactionIdList, HBaseTables.TRACE_V2_CF_SPAN, spanFilter);
+        }
         return partitionSelect(splitTransactionIdList, HBaseTables.TRACE_V2_CF_SPAN, spanFilter);
     }
 
@@ -105,10 +127,133 @@ public class HbaseTraceDaoV2 implements TraceDao {
 
         List<List<TransactionId>> partitionTransactionIdList = partition(transactionIdList, eachPartitionSize);
 
+        final AsyncHbaseOperations asyncTemplate = getAsyncTemplate(partitionTransactionIdList);
+        if (asyncTemplate != null) {
+            return parallelSelect(asyncTemplate, partitionTransactionIdList, HBaseTables.TRACE_V2_CF_SPAN, null);
+        }
         return partitionSelect(partitionTransactionIdList, HBaseTables.TRACE_V2_CF_SPAN, null);
     }
 
 
+    @Override
+    public void selectAllSpans(List<TransactionId> transactionIdList, SpanListHandler handler) {
+        selectAllSpans(transactionIdList, selectAllSpansLimit, handler);
+    }
+
+    void selectAllSpans(List<TransactionId> transactionIdList, int eachPartitionSize, SpanListHandler handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler must not be null");
+        }
+        if (CollectionUtils.isEmpty(transactionIdList)) {
+            return;
+        }
+
+        List<List<TransactionId>> partitionTransactionIdList = partition(transactionIdList, eachPartitionSize);
+
+        final AsyncHbaseOperations asyncTemplate = getAsyncTemplate(partitionTransactionIdList);
+        if (asyncTemplate == null) {
+            for (List<TransactionId> partition : partitionTransactionIdList) {
+                handler.handle(select0(partition, HBaseTables.TRACE_V2_CF_SPAN, null));
+            }
+            return;
+        }
+        parallelSelect(asyncTemplate, partitionTransactionIdList, HBaseTables.TRACE_V2_CF_SPAN, null, handler);
+    }
+
+    private AsyncHbaseOperations getAsyncTemplate(List<List<TransactionId>> partitionTransactionIdList) {
+        if (!parallelSelect || partitionTransactionIdList.size() <= 1) {
+            return null;
+        }
+        return asyncTemplate;
+    }
+
+    /**
+     * Keeps the multi get of up to {@code parallelSelectWindow} partitions in flight and collects the results in partition order.
+     */
+    private List<List<SpanBo>> parallelSelect(AsyncHbaseOperations asyncTemplate, List<List<TransactionId>> partitionTransactionIdList, byte[] columnFamily, Filter filter) {
+        final int window = getParallelSelectWindow();
+        final List<ListenableFuture<List<List<SpanBo>>>> futureList = new ArrayList<>(partitionTransactionIdList.size());
+        try {
+            final List<List<SpanBo>> spanBoList = new ArrayList<>();
+            for (int i = 0; i < partitionTransactionIdList.size(); i++) {
+                final int windowEnd = Math.min(i + window, partitionTransactionIdList.size());
+                while (futureList.size() < windowEnd) {
+                    futureList.add(selectAsync(asyncTemplate, partitionTransactionIdList.get(futureList.size()), columnFamily, filter));
+                }
+                spanBoList.addAll(HbaseFutures.getResult(futureList.get(i)));
+            }
+            return spanBoList;
+        } finally {
+            cancel(futureList);
+        }
+    }
+
+    /**
+     * Keeps the multi get of up to {@code parallelSelectWindow} partitions in flight and hands over the results in completion order.
+     * The next partition is fetched while the caller works on a completed one,
+     * so at most window + 1 partitions are held at a time.
+     */
+    private void parallelSelect(AsyncHbaseOperations asyncTemplate, List<List<TransactionId>> partitionTransactionIdList, byte[] columnFamily, Filter filter, SpanListHandler handler) {
+        final int window = Math.min(getParallelSelectWindow(), partitionTransactionIdList.size());
+        final BlockingQueue<Future<List<List<SpanBo>>>> completionQueue = new LinkedBlockingQueue<>();
+        final List<ListenableFuture<List<List<SpanBo>>>> futureList = new ArrayList<>(partitionTransactionIdList.size());
+        try {
+            while (futureList.size() < window) {
+                futureList.add(selectAsync(asyncTemplate, partitionTransactionIdList.get(futureList.size()), columnFamily, filter, completionQueue));
+            }
+            for (int i = 0; i < partitionTransactionIdList.size(); i++) {
+                final List<List<SpanBo>> transactionList = HbaseFutures.getResult(takeCompleted(completionQueue));
+                if (futureList.size() < partitionTransactionIdList.size()) {
+                    futureList.add(selectAsync(asyncTemplate, partitionTransactionIdList.get(futureList.size()), columnFamily, filter, completionQueue));
+                }
+                handler.handle(transactionList);
+            }
+        } finally {
+            cancel(futureList);
+        }
+    }
+
+    private int getParallelSelectWindow() {
+        return Math.max(parallelSelectWindow, 1);
+    }
+
+    private <V> void addOnCompletion(final ListenableFuture<V> future, final BlockingQueue<Future<V>> completionQueue) {
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                completionQueue.add(future);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    private <V> Future<V> takeCompleted(BlockingQueue<Future<V>> completionQueue) {
+        try {
+            return completionQueue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HBaseAccessException("interrupted while waiting for hbase", e);
+        }
+    }
+
+    private ListenableFuture<List<List<SpanBo>>> selectAsync(AsyncHbaseOperations asyncTemplate, List<TransactionId> transactionIdList, byte[] columnFamily, Filter filter) {
+        final List<Get> multiGet = createMultiGet(transactionIdList, columnFamily, filter);
+        return asyncTemplate.get(HBaseTables.TRACE_V2, multiGet, spanMapperV2);
+    }
+
+    private ListenableFuture<List<List<SpanBo>>> selectAsync(AsyncHbaseOperations asyncTemplate, List<TransactionId> transactionIdList, byte[] columnFamily, Filter filter, BlockingQueue<Future<List<List<SpanBo>>>> completionQueue) {
+        final ListenableFuture<List<List<SpanBo>>> future = selectAsync(asyncTemplate, transactionIdList, columnFamily, filter);
+        addOnCompletion(future, completionQueue);
+        return future;
+    }
+
+    private void cancel(List<? extends Future<?>> futureList) {
+        // no-op for completed futures. skips the queued fetches when the handler or a fetch failed
+        // running fetches are left to finish rather than interrupting the hbase client
+        for (Future<?> future : futureList) {
+            future.cancel(false);
+        }
+    }
+
     private List<List<TransactionId>> partition(List<TransactionId> transactionIdList, int maxTransactionIdListSize) {
         return Lists.partition(transactionIdList, maxTransactionIdListSize);
     }
@@ -134,12 +279,17 @@ public class HbaseTraceDaoV2 implements TraceDao {
             return Collections.emptyList();
         }
 
+        final List<Get> multiGet = createMultiGet(transactionIdList, columnFamily, filter);
+        return template2.get(HBaseTables.TRACE_V2, multiGet, spanMapperV2);
+    }
+
+    private List<Get> createMultiGet(List<TransactionId> transactionIdList, byte[] columnFamily, Filter filter) {
         final List<Get> multiGet = new ArrayList<>(transactionIdList.size());
         for (TransactionId transactionId : transactionIdList) {
             final Get get = createGet(transactionId, columnFamily, filter);
             multiGet.add(get);
         }
-        return template2.get(HBaseTables.TRACE_V2, multiGet, spanMapperV2);
+        return multiGet;
     }
 
     private Get createGet(TransactionId transactionId, byte[] columnFamily, Filter filter) {
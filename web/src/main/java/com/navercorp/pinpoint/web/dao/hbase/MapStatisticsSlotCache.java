@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.web.dao.hbase;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.navercorp.pinpoint.common.util.TimeSlot;
+import com.navercorp.pinpoint.web.applicationmap.histogram.TimeHistogram;
+import com.navercorp.pinpoint.web.applicationmap.rawdata.LinkCallData;
+import com.navercorp.pinpoint.web.applicationmap.rawdata.LinkData;
+import com.navercorp.pinpoint.web.applicationmap.rawdata.LinkDataMap;
+import com.navercorp.pinpoint.web.util.TimeWindow;
+import com.navercorp.pinpoint.web.vo.Application;
+import com.navercorp.pinpoint.web.vo.Range;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches per-minute {@link LinkDataMap} fragments of closed statistics time slots.
+ * <p>
+ * Minute slots older than {@code closedSlotDelay} no longer receive data from the collector, so a query only has to
+ * scan HBase from the first slot that is either missing from the cache or still open.
+ * Memory is bounded by the ehcache configuration of the {@code mapStatisticsSlot} cache.
+ */
+public class MapStatisticsSlotCache {
+
+    public static final String CACHE_NAME = "mapStatisticsSlot";
+
+    // DefaultTimeSlot resolution
+    private static final long SLOT_SIZE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_CLOSED_SLOT_DELAY = TimeUnit.MINUTES.toMillis(2);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Cache cache;
+    private final TimeSlot timeSlot;
+    private final long closedSlotDelay;
+
+    public MapStatisticsSlotCache(CacheManager cacheManager, TimeSlot timeSlot) {
+        this(cacheManager, timeSlot, DEFAULT_CLOSED_SLOT_DELAY);
+    }
+
+    public MapStatisticsSlotCache(CacheManager cacheManager, TimeSlot timeSlot, long closedSlotDelay) {
+        if (cacheManager == null) {
+            throw new NullPointerException("cacheManager must not be null");
+        }
+        if (timeSlot == null) {
+            throw new NullPointerException("timeSlot must not be null");
+        }
+        this.cache = cacheManager.getCache(CACHE_NAME);
+        if (this.cache == null) {
+            throw new IllegalStateException(CACHE_NAME + " cache not found");
+        }
+        this.timeSlot = timeSlot;
+        this.closedSlotDelay = closedSlotDelay;
+    }
+
+    public interface LinkDataMapScanner {
+        /**
+         * @return raw LinkDataMap of the range without time window down sampling
+         */
+        ListenableFuture<LinkDataMap> scan(Range range);
+    }
+
+    /**
+     * The scanned closed slots are put into the cache by the thread completing the scan.
+     */
+    public ListenableFuture<LinkDataMap> select(final String tableName, final Application application, Range range, TimeWindow timeWindow, LinkDataMapScanner scanner) {
+        if (application == null) {
+            throw new NullPointerException("application must not be null");
+        }
+        if (range == null) {
+            throw new NullPointerException("range must not be null");
+        }
+        if (scanner == null) {
+            throw new NullPointerException("scanner must not be null");
+        }
+
+        final long firstSlot = timeSlot.getTimeSlot(range.getFrom());
+        final long lastSlot = timeSlot.getTimeSlot(range.getTo());
+        final long lastClosedSlot = timeSlot.getTimeSlot(System.currentTimeMillis() - closedSlotDelay);
+
+        final LinkDataMap result = new LinkDataMap(timeWindow);
+
+        long scanFrom = -1;
+        for (long slot = firstSlot; slot <= lastSlot; slot += SLOT_SIZE) {
+            if (slot > lastClosedSlot) {
+                scanFrom = slot;
+                break;
+            }
+            final LinkDataMap fragment = cache.get(createKey(tableName, application, slot), LinkDataMap.class);
+            if (fragment == null) {
+                scanFrom = slot;
+                break;
+            }
+            result.addLinkDataMap(fragment);
+        }
+
+        if (scanFrom == -1) {
+            logger.debug("all slots cached. {} {} {}", tableName, application, range);
+            return Futures.immediateFuture(result);
+        }
+
+        final Range scanRange = new Range(scanFrom, range.getTo());
+        logger.debug("scan uncached slots. {} {} {}", tableName, application, scanRange);
+        final long fromSlot = scanFrom;
+        final long toSlot = Math.min(lastSlot, lastClosedSlot);
+        return Futures.transform(scanner.scan(scanRange), new Function<LinkDataMap, LinkDataMap>() {
+            @Override
+            public LinkDataMap apply(LinkDataMap scanned) {
+                if (scanned != null) {
+                    putClosedSlots(tableName, application, scanned, fromSlot, toSlot);
+                    result.addLinkDataMap(scanned);
+                }
+                return result;
+            }
+        });
+    }
+
+    private void putClosedSlots(String tableName, Application application, LinkDataMap scanned, long fromSlot, long toSlot) {
+        if (fromSlot > toSlot) {
+            return;
+        }
+        final Map<Long, LinkDataMap> fragmentMap = splitBySlot(scanned);
+        for (long slot = fromSlot; slot <= toSlot; slot += SLOT_SIZE) {
+            LinkDataMap fragment = fragmentMap.get(slot);
+            if (fragment == null) {
+                // cache empty slots as well so they are not scanned again
+                fragment = new LinkDataMap();
+            }
+            cache.put(createKey(tableName, application, slot), fragment);
+        }
+    }
+
+    private Map<Long, LinkDataMap> splitBySlot(LinkDataMap linkDataMap) {
+        final Map<Long, LinkDataMap> fragmentMap = new HashMap<>();
+        for (LinkData linkData : linkDataMap.getLinkDataList()) {
+            for (LinkCallData linkCallData : linkData.getLinkCallDataMap().getLinkDataList()) {
+                for (TimeHistogram timeHistogram : linkCallData.getTimeHistogram()) {
+                    final long slot = timeSlot.getTimeSlot(timeHistogram.getTimeStamp());
+                    LinkDataMap fragment = fragmentMap.get(slot);
+                    if (fragment == null) {
+                        fragment = new LinkDataMap();
+                        fragmentMap.put(slot, fragment);
+                    }
+                    final LinkData fragmentLinkData = new LinkData(linkData.getFromApplication(), linkData.getToApplication());
+                    fragmentLinkData.getLinkCallDataMap().addCallData(linkCallData.getSource(), linkCallData.getSourceServiceType(),
+                            linkCallData.getTarget(), linkCallData.getTargetServiceType(), Collections.singletonList(timeHistogram));
+                    fragment.addLinkData(fragmentLinkData);
+                }
+            }
+        }
+        return fragmentMap;
+    }
+
+    private String createKey(String tableName, Application application, long slot) {
+        return tableName + '^' + application.getName() + '^' + application.getServiceTypeCode() + '^' + slot;
+    }
+}
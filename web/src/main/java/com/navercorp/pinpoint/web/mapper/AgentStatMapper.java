@@ -27,12 +27,17 @@ import java.util.NavigableMap;
 import com.navercorp.pinpoint.common.server.bo.ActiveTraceHistogramBo;
 import com.navercorp.pinpoint.common.server.bo.AgentStatCpuLoadBo;
 import com.navercorp.pinpoint.common.server.bo.AgentStatMemoryGcBo;
+import com.navercorp.pinpoint.common.server.bo.serializer.stat.AgentStatBlockCodec;
 import com.navercorp.pinpoint.common.hbase.RowMapper;
 import com.navercorp.pinpoint.common.trace.BaseHistogramSchema;
 import com.navercorp.pinpoint.common.util.BytesUtils;
 import com.navercorp.pinpoint.common.util.TimeUtils;
 import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.navercorp.pinpoint.thrift.dto.TActiveTraceHistogram;
+import com.navercorp.pinpoint.thrift.dto.TCpuLoad;
 import com.navercorp.pinpoint.thrift.dto.TJvmGc;
+import com.navercorp.pinpoint.thrift.dto.TJvmGcType;
+import com.navercorp.pinpoint.thrift.dto.TTransaction;
 import com.navercorp.pinpoint.web.vo.AgentStat;
 import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
 
@@ -55,6 +60,8 @@ public class AgentStatMapper implements RowMapper<List<AgentStat>> {
 
     private TProtocolFactory factory = new TCompactProtocol.Factory();
 
+    private final AgentStatBlockCodec agentStatBlockCodec = new AgentStatBlockCodec();
+
     @Autowired
     @Qualifier("agentStatRowKeyDistributor")
     private RowKeyDistributorByHashPrefix rowKeyDistributorByHashPrefix;
@@ -69,7 +76,13 @@ public class AgentStatMapper implements RowMapper<List<AgentStat>> {
         final long timestamp = TimeUtils.recoveryTimeMillis(reverseTimestamp);
 
         NavigableMap<byte[], byte[]> qualifierMap = result.getFamilyMap(AGENT_STAT_CF_STATISTICS);
-        if (qualifierMap.containsKey(AGENT_STAT_CF_STATISTICS_V1)) {
+        if (qualifierMap.isEmpty()) {
+            // hourly rollup of AgentStatAggr, same columns as a minute rollup
+            qualifierMap = result.getFamilyMap(AGENT_STAT_AGGR_CF_HOURLY);
+        }
+        if (qualifierMap.containsKey(AGENT_STAT_COL_STAT_BLOCK)) {
+            return readAgentStatBlock(agentId, qualifierMap.get(AGENT_STAT_COL_STAT_BLOCK));
+        } else if (qualifierMap.containsKey(AGENT_STAT_CF_STATISTICS_V1)) {
             // FIXME (2014.08) Legacy support for TAgentStat Thrift DTO stored directly into hbase.
             return readAgentStatThriftDto(agentId, timestamp, qualifierMap.get(AGENT_STAT_CF_STATISTICS_V1));
         } else if (qualifierMap.containsKey(AGENT_STAT_CF_STATISTICS_MEMORY_GC) || qualifierMap.containsKey(AGENT_STAT_CF_STATISTICS_CPU_LOAD)) {
@@ -135,6 +148,55 @@ public class AgentStatMapper implements RowMapper<List<AgentStat>> {
         return rowKeyDistributorByHashPrefix.getOriginalKey(rowKey);
     }
 
+    private List<AgentStat> readAgentStatBlock(String agentId, byte[] block) {
+        final List<TAgentStat> tAgentStatList = agentStatBlockCodec.decode(agentId, block);
+        final List<AgentStat> agentStats = new ArrayList<>(tAgentStatList.size());
+        for (TAgentStat tAgentStat : tAgentStatList) {
+            agentStats.add(toAgentStat(agentId, tAgentStat));
+        }
+        return agentStats;
+    }
+
+    private AgentStat toAgentStat(String agentId, TAgentStat tAgentStat) {
+        AgentStat agentStat = new AgentStat(agentId, tAgentStat.getTimestamp());
+        agentStat.setCollectInterval(tAgentStat.getCollectInterval());
+        if (tAgentStat.isSetGc()) {
+            TJvmGc gc = tAgentStat.getGc();
+            agentStat.setGcType(gc.getType().name());
+            agentStat.setGcOldCount(gc.getJvmGcOldCount());
+            agentStat.setGcOldTime(gc.getJvmGcOldTime());
+            agentStat.setHeapUsed(gc.getJvmMemoryHeapUsed());
+            agentStat.setHeapMax(gc.getJvmMemoryHeapMax());
+            agentStat.setNonHeapUsed(gc.getJvmMemoryNonHeapUsed());
+            agentStat.setNonHeapMax(gc.getJvmMemoryNonHeapMax());
+        } else {
+            agentStat.setGcType(TJvmGcType.UNKNOWN.name());
+        }
+        if (tAgentStat.isSetCpuLoad()) {
+            TCpuLoad cpuLoad = tAgentStat.getCpuLoad();
+            if (cpuLoad.isSetJvmCpuLoad()) {
+                agentStat.setJvmCpuUsage(cpuLoad.getJvmCpuLoad());
+            }
+            if (cpuLoad.isSetSystemCpuLoad()) {
+                agentStat.setSystemCpuUsage(cpuLoad.getSystemCpuLoad());
+            }
+        }
+        if (tAgentStat.isSetTransaction()) {
+            TTransaction transaction = tAgentStat.getTransaction();
+            agentStat.setSampledNewCount(transaction.getSampledNewCount());
+            agentStat.setSampledContinuationCount(transaction.getSampledContinuationCount());
+            agentStat.setUnsampledNewCount(transaction.getUnsampledNewCount());
+            agentStat.setUnsampledContinuationCount(transaction.getUnsampledContinuationCount());
+        }
+        if (tAgentStat.isSetActiveTrace()) {
+            TActiveTraceHistogram histogram = tAgentStat.getActiveTrace().getHistogram();
+            ActiveTraceHistogramBo activeTraceHistogramBo = new ActiveTraceHistogramBo(histogram.getVersion(), histogram.getHistogramSchemaType(), histogram.getActiveTraceCount());
+            agentStat.setHistogramSchema(BaseHistogramSchema.getDefaultHistogramSchemaByTypeCode(activeTraceHistogramBo.getHistogramSchemaType()));
+            agentStat.setActiveTraceCounts(activeTraceHistogramBo.getActiveTraceCountMap());
+        }
+        return agentStat;
+    }
+
     // FIXME (2015.10) Legacy column for storing serialzied Bos separately.
     @Deprecated
     private List<AgentStat> readSerializedBos(String agentId, long timestamp, Map<byte[], byte[]> qualifierMap) {
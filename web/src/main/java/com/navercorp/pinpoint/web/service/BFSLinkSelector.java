@@ -16,6 +16,9 @@
 
 package com.navercorp.pinpoint.web.service;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.navercorp.pinpoint.common.hbase.HbaseFutures;
 import com.navercorp.pinpoint.common.trace.ServiceType;
 import com.navercorp.pinpoint.web.applicationmap.histogram.TimeHistogram;
 import com.navercorp.pinpoint.web.applicationmap.rawdata.*;
@@ -39,7 +42,7 @@ import java.util.*;
 
 /**
  * Breadth-first link search
- * not thread safe
+ * not thread safe. caller/callee scans of a level may run concurrently on the shared hbase query executor, all other state is touched by the calling thread only
  * @author emeroad
  * @author minwoo.jung
  */
@@ -63,7 +66,18 @@ public class BFSLinkSelector implements LinkSelector {
     
     private ServerMapDataFilter serverMapDataFilter;
 
+    private final boolean parallel;
+
+    private final List<Long> levelElapsedTimeList = new ArrayList<>();
+
     public BFSLinkSelector(MapStatisticsCallerDao mapStatisticsCallerDao, MapStatisticsCalleeDao mapStatisticsCalleeDao, HostApplicationMapDao hostApplicationMapDao, ServerMapDataFilter serverMapDataFilter) {
+        this(mapStatisticsCallerDao, mapStatisticsCalleeDao, hostApplicationMapDao, serverMapDataFilter, false);
+    }
+
+    /**
+     * @param parallel if true, caller/callee scans of each BFS level are issued together through the async dao methods and waited for afterwards
+     */
+    public BFSLinkSelector(MapStatisticsCallerDao mapStatisticsCallerDao, MapStatisticsCalleeDao mapStatisticsCalleeDao, HostApplicationMapDao hostApplicationMapDao, ServerMapDataFilter serverMapDataFilter, boolean parallel) {
         if (mapStatisticsCalleeDao == null) {
             throw new NullPointerException("mapStatisticsCalleeDao must not be null");
         }
@@ -77,6 +91,7 @@ public class BFSLinkSelector implements LinkSelector {
         this.mapStatisticsCallerDao = mapStatisticsCallerDao;
         this.hostApplicationMapDao = hostApplicationMapDao;
         this.serverMapDataFilter = serverMapDataFilter;
+        this.parallel = parallel;
     }
 
     /**
@@ -88,50 +103,83 @@ public class BFSLinkSelector implements LinkSelector {
      */
     private LinkDataDuplexMap selectLink(List<Application> targetApplicationList, Range range, SearchDepth callerDepth, SearchDepth calleeDepth) {
 
-        final LinkDataDuplexMap searchResult = new LinkDataDuplexMap();
-
+        // visit check is done on the calling thread before the scans are dispatched, LinkVisitChecker is not thread safe
+        final List<Application> callerTargetList = new ArrayList<>();
+        final List<Application> calleeTargetList = new ArrayList<>();
         for (Application targetApplication : targetApplicationList) {
-            final boolean searchCallerNode = checkNextCaller(targetApplication, callerDepth);
-            if (searchCallerNode) {
-                final LinkDataMap caller = mapStatisticsCallerDao.selectCaller(targetApplication, range);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Found Caller. count={}, caller={}, depth={}", caller.size(), targetApplication, callerDepth.getDepth());
-                }
+            if (checkNextCaller(targetApplication, callerDepth)) {
+                callerTargetList.add(targetApplication);
+            }
+            if (checkNextCallee(targetApplication, calleeDepth)) {
+                calleeTargetList.add(targetApplication);
+            }
+        }
 
-                final LinkDataMap replaceRpcCaller = replaceRpcCaller(caller, range);
+        final List<ListenableFuture<LinkDataMap>> callerFutureList = new ArrayList<>(callerTargetList.size());
+        for (Application callerTarget : callerTargetList) {
+            callerFutureList.add(selectCaller(callerTarget, range));
+        }
+        final List<ListenableFuture<LinkDataMap>> calleeFutureList = new ArrayList<>(calleeTargetList.size());
+        for (Application calleeTarget : calleeTargetList) {
+            calleeFutureList.add(selectCallee(calleeTarget, range));
+        }
+
+        final LinkDataDuplexMap searchResult = new LinkDataDuplexMap();
+
+        for (int i = 0; i < callerTargetList.size(); i++) {
+            final Application targetApplication = callerTargetList.get(i);
+            final LinkDataMap caller = HbaseFutures.getResult(callerFutureList.get(i));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Found Caller. count={}, caller={}, depth={}", caller.size(), targetApplication, callerDepth.getDepth());
+            }
 
-                for (LinkData link : replaceRpcCaller.getLinkDataList()) {
-                    searchResult.addSourceLinkData(link);
+            final LinkDataMap replaceRpcCaller = replaceRpcCaller(caller, range);
 
-                    final Application toApplication = link.getToApplication();
-                    // skip if nextApplication is a terminal or an unknown cloud
-                    if (toApplication.getServiceType().isTerminal() || toApplication.getServiceType().isUnknown()) {
-                        continue;
-                    }
+            for (LinkData link : replaceRpcCaller.getLinkDataList()) {
+                searchResult.addSourceLinkData(link);
 
-                    addNextNode(toApplication);
+                final Application toApplication = link.getToApplication();
+                // skip if nextApplication is a terminal or an unknown cloud
+                if (toApplication.getServiceType().isTerminal() || toApplication.getServiceType().isUnknown()) {
+                    continue;
                 }
+
+                addNextNode(toApplication);
             }
+        }
 
-            final boolean searchCalleeNode = checkNextCallee(targetApplication, calleeDepth);
-            if (searchCalleeNode) {
-                final LinkDataMap callee = mapStatisticsCalleeDao.selectCallee(targetApplication, range);
-                if (logger.isInfoEnabled()) {
-                    logger.debug("Found Callee. count={}, callee={}, depth={}", callee.size(), targetApplication, calleeDepth.getDepth());
-                }
-                for (LinkData stat : callee.getLinkDataList()) {
-                    
-                    searchResult.addTargetLinkData(stat);
+        for (int i = 0; i < calleeTargetList.size(); i++) {
+            final Application targetApplication = calleeTargetList.get(i);
+            final LinkDataMap callee = HbaseFutures.getResult(calleeFutureList.get(i));
+            if (logger.isInfoEnabled()) {
+                logger.debug("Found Callee. count={}, callee={}, depth={}", callee.size(), targetApplication, calleeDepth.getDepth());
+            }
+            for (LinkData stat : callee.getLinkDataList()) {
 
-                    final Application fromApplication = stat.getFromApplication();
-                    addNextNode(fromApplication);
-                }
+                searchResult.addTargetLinkData(stat);
+
+                final Application fromApplication = stat.getFromApplication();
+                addNextNode(fromApplication);
             }
         }
         logger.debug("{} depth search end", callerDepth.getDepth());
         return searchResult;
     }
 
+    private ListenableFuture<LinkDataMap> selectCaller(Application callerApplication, Range range) {
+        if (parallel) {
+            return mapStatisticsCallerDao.selectCallerAsync(callerApplication, range);
+        }
+        return Futures.immediateFuture(mapStatisticsCallerDao.selectCaller(callerApplication, range));
+    }
+
+    private ListenableFuture<LinkDataMap> selectCallee(Application calleeApplication, Range range) {
+        if (parallel) {
+            return mapStatisticsCalleeDao.selectCalleeAsync(calleeApplication, range);
+        }
+        return Futures.immediateFuture(mapStatisticsCalleeDao.selectCallee(calleeApplication, range));
+    }
+
     private void addNextNode(Application sourceApplication) {
         final boolean add = this.nextQueue.addNextNode(sourceApplication);
         if (!add) {
@@ -348,7 +396,11 @@ public class BFSLinkSelector implements LinkSelector {
             final List<Application> currentNode = this.nextQueue.copyAndClear();
 
             logger.debug("size:{} depth caller:{} callee:{} node:{}", currentNode.size(), callerDepth.getDepth(), calleeDepth.getDepth(), currentNode);
+            final long levelStartTime = System.currentTimeMillis();
             LinkDataDuplexMap levelData = selectLink(currentNode, range, callerDepth, calleeDepth);
+            final long levelElapsedTime = System.currentTimeMillis() - levelStartTime;
+            this.levelElapsedTimeList.add(levelElapsedTime);
+            logger.debug("depth:{} size:{} elapsed:{}ms", callerDepth.getDepth(), currentNode.size(), levelElapsedTime);
 
             linkDataDuplexMap.addLinkDataDuplexMap(levelData);
 
@@ -367,6 +419,13 @@ public class BFSLinkSelector implements LinkSelector {
     }
 
 
+    /**
+     * @return elapsed time(ms) of each BFS level searched by the last {@link #select(Application, Range, SearchOption)}
+     */
+    public List<Long> getLevelElapsedTimeList() {
+        return levelElapsedTimeList;
+    }
+
     private void checkUnsearchEmulationCalleeNode(LinkDataDuplexMap searchResult, Range range) {
 
         List<Application> unvisitedList = getUnvisitedEmulationNode();
@@ -43,8 +43,27 @@ public class DotExtractor {
 
     private final Map<Application, List<Dot>> dotMap = new HashMap<>();
 
+    // scatter data mode : dots are grouped into ScatterData as they are added instead of being kept in dotMap
+    private final boolean scatterDataMode;
+    private final long scatterFrom;
+    private final long scatterTo;
+    private final int xGroupUnitMillis;
+    private final int yGroupUnitMillis;
+    private final Map<Application, ScatterData> scatterDataMap = new HashMap<>();
+
 
     public DotExtractor(Range range, ApplicationFactory applicationFactory) {
+        this(range, applicationFactory, false, -1, -1, -1, -1);
+    }
+
+    /**
+     * Creates an extractor for {@link #getApplicationScatterData()}.
+     */
+    public DotExtractor(Range range, ApplicationFactory applicationFactory, long from, long to, int xGroupUnitMillis, int yGroupUnitMillis) {
+        this(range, applicationFactory, true, from, to, xGroupUnitMillis, yGroupUnitMillis);
+    }
+
+    private DotExtractor(Range range, ApplicationFactory applicationFactory, boolean scatterDataMode, long from, long to, int xGroupUnitMillis, int yGroupUnitMillis) {
         if (range == null) {
             throw new NullPointerException("range must not be null");
         }
@@ -53,6 +72,11 @@ public class DotExtractor {
         }
         this.range = range;
         this.applicationFactory = applicationFactory;
+        this.scatterDataMode = scatterDataMode;
+        this.scatterFrom = from;
+        this.scatterTo = to;
+        this.xGroupUnitMillis = xGroupUnitMillis;
+        this.yGroupUnitMillis = yGroupUnitMillis;
     }
 
     public void addDot(SpanBo span) {
@@ -61,14 +85,26 @@ public class DotExtractor {
         }
 
         Application spanApplication = this.applicationFactory.createApplication(span.getApplicationId(), span.getApplicationServiceType());
-        final List<Dot> dotList = getDotList(spanApplication);
 
         final TransactionId transactionId = span.getTransactionId();
         final Dot dot = new Dot(transactionId, span.getCollectorAcceptTime(), span.getElapsed(), span.getErrCode(), span.getAgentId());
-        dotList.add(dot);
+        if (scatterDataMode) {
+            getScatterData(spanApplication).addDot(dot);
+        } else {
+            getDotList(spanApplication).add(dot);
+        }
         logger.trace("Application:{} Dot:{}", spanApplication, dot);
     }
 
+    private ScatterData getScatterData(Application spanApplication) {
+        ScatterData scatterData = this.scatterDataMap.get(spanApplication);
+        if (scatterData == null) {
+            scatterData = new ScatterData(scatterFrom, scatterTo, xGroupUnitMillis, yGroupUnitMillis);
+            this.scatterDataMap.put(spanApplication, scatterData);
+        }
+        return scatterData;
+    }
+
     private List<Dot> getDotList(Application spanApplication) {
         List<Dot> dotList = this.dotMap.get(spanApplication);
         if (dotList == null) {
@@ -89,18 +125,14 @@ public class DotExtractor {
         return applicationScatterScanResult;
     }
 
-    public Map<Application, ScatterData> getApplicationScatterData(long from, long to, int xGroupUnitMillis, int yGroupUnitMillis) {
-        Map<Application, ScatterData> applicationScatterDataMap = new HashMap<>();
-        for (Map.Entry<Application, List<Dot>> entry : this.dotMap.entrySet()) {
-            Application application = entry.getKey();
-            List<Dot> dotList = entry.getValue();
-
-            ScatterData scatterData = new ScatterData(from, to, xGroupUnitMillis, yGroupUnitMillis);
-            scatterData.addDot(dotList);
-
-            applicationScatterDataMap.put(application, scatterData);
+    /**
+     * @return scatter data grouped while the dots were added. only available from the scatter data constructor
+     */
+    public Map<Application, ScatterData> getApplicationScatterData() {
+        if (!scatterDataMode) {
+            throw new IllegalStateException("not created for scatter data");
         }
-        return applicationScatterDataMap;
+        return scatterDataMap;
     }
 
 }
@@ -31,6 +31,7 @@ import com.navercorp.pinpoint.web.applicationmap.ApplicationMapWithScatterScanRe
 import com.navercorp.pinpoint.web.applicationmap.rawdata.LinkDataDuplexMap;
 import com.navercorp.pinpoint.web.applicationmap.rawdata.LinkDataMap;
 import com.navercorp.pinpoint.web.dao.ApplicationTraceIndexDao;
+import com.navercorp.pinpoint.web.dao.SpanListHandler;
 import com.navercorp.pinpoint.web.dao.TraceDao;
 import com.navercorp.pinpoint.web.filter.Filter;
 import com.navercorp.pinpoint.web.security.ServerMapDataFilter;
@@ -186,16 +187,6 @@ public class FilteredMapServiceImpl implements FilteredMapService {
         return filteredResult;
     }
 
-    private List<List<SpanBo>> filterList2(List<List<SpanBo>> transactionList, Filter filter) {
-        final List<List<SpanBo>> filteredResult = new ArrayList<>();
-        for (List<SpanBo> transaction : transactionList) {
-            if (filter.include(transaction)) {
-                filteredResult.add(transaction);
-            }
-        }
-        return filteredResult;
-    }
-
     @Override
     public ApplicationMap selectApplicationMap(TransactionId transactionId) {
         if (transactionId == null) {
@@ -223,10 +214,10 @@ public class FilteredMapServiceImpl implements FilteredMapService {
         StopWatch watch = new StopWatch();
         watch.start();
 
-        final List<List<SpanBo>> filterList = selectFilteredSpan(transactionIdList, filter);
-
-        DotExtractor dotExtractor = createDotExtractor(scanRange, filterList);
-        ApplicationMap map = createMap(originalRange, scanRange, filterList);
+        final DotExtractor dotExtractor = new DotExtractor(scanRange, applicationFactory);
+        final FilteredMapBuilder filteredMapBuilder = new FilteredMapBuilder(originalRange, filter, dotExtractor);
+        selectFilteredSpan(transactionIdList, filteredMapBuilder);
+        ApplicationMap map = filteredMapBuilder.build();
 
         ApplicationMapWithScatterScanResult applicationMapWithScatterScanResult = new ApplicationMapWithScatterScanResult(map, dotExtractor.getApplicationScatterScanResult());
 
@@ -248,12 +239,12 @@ public class FilteredMapServiceImpl implements FilteredMapService {
         StopWatch watch = new StopWatch();
         watch.start();
 
-        final List<List<SpanBo>> filterList = selectFilteredSpan(transactionIdList, filter);
+        final DotExtractor dotExtractor = new DotExtractor(scanRange, applicationFactory, originalRange.getFrom(), originalRange.getTo(), xGroupUnit, yGroupUnit);
+        final FilteredMapBuilder filteredMapBuilder = new FilteredMapBuilder(originalRange, filter, dotExtractor);
+        selectFilteredSpan(transactionIdList, filteredMapBuilder);
+        ApplicationMap map = filteredMapBuilder.build();
 
-        DotExtractor dotExtractor = createDotExtractor(scanRange, filterList);
-        ApplicationMap map = createMap(originalRange, scanRange, filterList);
-
-        ApplicationMapWithScatterData applicationMapWithScatterData = new ApplicationMapWithScatterData(map, dotExtractor.getApplicationScatterData(originalRange.getFrom(), originalRange.getTo(), xGroupUnit, yGroupUnit));
+        ApplicationMapWithScatterData applicationMapWithScatterData = new ApplicationMapWithScatterData(map, dotExtractor.getApplicationScatterData());
 
         watch.stop();
         logger.debug("Select filtered application map elapsed. {}ms", watch.getTotalTimeMillis());
@@ -261,23 +252,51 @@ public class FilteredMapServiceImpl implements FilteredMapService {
         return applicationMapWithScatterData;
     }
 
-    private List<List<SpanBo>> selectFilteredSpan(List<TransactionId> transactionIdList, Filter filter) {
+    private void selectFilteredSpan(List<TransactionId> transactionIdList, SpanListHandler handler) {
         // filters out recursive calls by looking at each objects
         // do not filter here if we change to a tree-based collision check in the future. 
         final List<TransactionId> recursiveFilterList = recursiveCallFilter(transactionIdList);
 
-        // FIXME might be better to simply traverse the List<Span> and create a process chain for execution
-        final List<List<SpanBo>> originalList = this.traceDao.selectAllSpans(recursiveFilterList);
-
-        return filterList2(originalList, filter);
+        this.traceDao.selectAllSpans(recursiveFilterList, handler);
     }
 
-    private DotExtractor createDotExtractor(Range scanRange, List<List<SpanBo>> filterList) {
-        final DotExtractor dotExtractor = new DotExtractor(scanRange, applicationFactory);
+    /**
+     * Adds each fetched transaction to the link statistics, response histograms and dots, then lets go of its spans.
+     * Heap usage is bounded by the partitions of spans held by the trace dao plus the aggregated results, regardless of the number of transactions:
+     * one partition, or up to web.hbase.selectSpans.parallel.window + 1 partitions if web.hbase.selectSpans.parallel.enable is set.
+     */
+    private class FilteredMapBuilder implements SpanListHandler {
+
+        private final Range range;
+        private final Filter filter;
+        private final DotExtractor dotExtractor;
 
-        for (List<SpanBo> transaction : filterList) {
+        // TODO inject TimeWindow from elsewhere 
+        private final TimeWindow window;
+        private final LinkDataDuplexMap linkDataDuplexMap = new LinkDataDuplexMap();
+        private final ResponseHistogramBuilder mapHistogramSummary;
+
+        private FilteredMapBuilder(Range range, Filter filter, DotExtractor dotExtractor) {
+            this.range = range;
+            this.filter = filter;
+            this.dotExtractor = dotExtractor;
+            this.window = new TimeWindow(range, TimeWindowDownSampler.SAMPLER);
+            this.mapHistogramSummary = new ResponseHistogramBuilder(range);
+        }
+
+        @Override
+        public void handle(List<List<SpanBo>> transactionList) {
+            for (List<SpanBo> transaction : transactionList) {
+                if (filter.include(transaction)) {
+                    addDot(transaction);
+                    addTransaction(transaction);
+                }
+            }
+        }
+
+        private void addDot(List<SpanBo> transaction) {
             for (SpanBo span : transaction) {
-                final Application spanApplication = this.applicationFactory.createApplication(span.getApplicationId(), span.getApplicationServiceType());
+                final Application spanApplication = applicationFactory.createApplication(span.getApplicationId(), span.getApplicationServiceType());
                 if (!spanApplication.getServiceType().isRecordStatistics() || spanApplication.getServiceType().isRpcClient()) {
                     continue;
                 }
@@ -286,27 +305,15 @@ public class FilteredMapServiceImpl implements FilteredMapService {
             }
         }
 
-        return dotExtractor;
-    }
-
-    private ApplicationMap createMap(Range range, Range scanRange, List<List<SpanBo>> filterList) {
-
-        // TODO inject TimeWindow from elsewhere 
-        final TimeWindow window = new TimeWindow(range, TimeWindowDownSampler.SAMPLER);
-
-
-        final LinkDataDuplexMap linkDataDuplexMap = new LinkDataDuplexMap();
-
-        final ResponseHistogramBuilder mapHistogramSummary = new ResponseHistogramBuilder(range);
         /**
          * Convert to statistical data
          */
-        for (List<SpanBo> transaction : filterList) {
+        private void addTransaction(List<SpanBo> transaction) {
             final Map<Long, SpanBo> transactionSpanMap = checkDuplicatedSpanId(transaction);
 
             for (SpanBo span : transaction) {
                 final Application parentApplication = createParentApplication(span, transactionSpanMap);
-                final Application spanApplication = this.applicationFactory.createApplication(span.getApplicationId(), span.getApplicationServiceType());
+                final Application spanApplication = applicationFactory.createApplication(span.getApplicationId(), span.getApplicationServiceType());
 
                 // records the Span's response time statistics
                 recordSpanResponseTime(spanApplication, span, mapHistogramSummary, span.getCollectorAcceptTime());
@@ -348,20 +355,22 @@ public class FilteredMapServiceImpl implements FilteredMapService {
                 if (serverMapDataFilter != null && serverMapDataFilter.filter(spanApplication)) {
                     continue;
                 }
-                
+
                 addNodeFromSpanEvent(span, window, linkDataDuplexMap, transactionSpanMap);
             }
         }
-        
-        ApplicationMapBuilder applicationMapBuilder = new ApplicationMapBuilder(range);
-        mapHistogramSummary.build();
-        ApplicationMap map = applicationMapBuilder.build(linkDataDuplexMap, agentInfoService, mapHistogramSummary);
 
-        if(serverMapDataFilter != null) {
-            map = serverMapDataFilter.dataFiltering(map);
+        private ApplicationMap build() {
+            ApplicationMapBuilder applicationMapBuilder = new ApplicationMapBuilder(range);
+            mapHistogramSummary.build();
+            ApplicationMap map = applicationMapBuilder.build(linkDataDuplexMap, agentInfoService, mapHistogramSummary);
+
+            if(serverMapDataFilter != null) {
+                map = serverMapDataFilter.dataFiltering(map);
+            }
+
+            return map;
         }
-        
-        return map;
     }
 
     private Map<Long, SpanBo> checkDuplicatedSpanId(List<SpanBo> transaction) {
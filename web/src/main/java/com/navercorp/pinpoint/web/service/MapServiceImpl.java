@@ -33,6 +33,7 @@ import com.navercorp.pinpoint.web.vo.SearchOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
 
@@ -69,6 +70,9 @@ public class MapServiceImpl implements MapService {
     @Autowired(required=false)
     private ServerMapDataFilter serverMapDataFilter;
 
+    @Value("#{pinpointWebProps['web.servermap.linkSelect.parallel.enable'] ?: false}")
+    private boolean parallelLinkSelect;
+
     /**
      * Used in the main UI - draws the server map by querying the timeslot by time.
      */
@@ -85,9 +89,12 @@ public class MapServiceImpl implements MapService {
         StopWatch watch = new StopWatch("ApplicationMap");
         watch.start("ApplicationMap Hbase Io Fetch(Caller,Callee) Time");
 
-        LinkSelector linkSelector = new BFSLinkSelector(this.mapStatisticsCallerDao, this.mapStatisticsCalleeDao, hostApplicationMapDao, serverMapDataFilter);
+        BFSLinkSelector linkSelector = new BFSLinkSelector(this.mapStatisticsCallerDao, this.mapStatisticsCalleeDao, hostApplicationMapDao, serverMapDataFilter, parallelLinkSelect);
         LinkDataDuplexMap linkDataDuplexMap = linkSelector.select(sourceApplication, range, searchOption);
         watch.stop();
+        if (logger.isInfoEnabled()) {
+            logger.info("ApplicationMap LinkSelect parallel:{} levelElapsedTime(ms):{}", parallelLinkSelect, linkSelector.getLevelElapsedTimeList());
+        }
 
         watch.start("ApplicationMap MapBuilding(Response) Time");
         ApplicationMapBuilder builder = new ApplicationMapBuilder(range);
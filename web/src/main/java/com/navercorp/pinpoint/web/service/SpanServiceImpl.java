@@ -17,7 +17,12 @@
 package com.navercorp.pinpoint.web.service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.navercorp.pinpoint.common.server.bo.AnnotationBo;
 import com.navercorp.pinpoint.common.server.bo.ApiMetaDataBo;
@@ -42,6 +47,7 @@ import com.navercorp.pinpoint.web.dao.StringMetaDataDao;
 import com.navercorp.pinpoint.web.dao.TraceDao;
 import com.navercorp.pinpoint.web.security.MetaDataFilter;
 import com.navercorp.pinpoint.web.security.MetaDataFilter.MetaData;
+import com.navercorp.pinpoint.web.vo.MetaDataKey;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -93,11 +99,13 @@ public class SpanServiceImpl implements SpanService {
         final SpanResult result = order(spans, selectedSpanHint);
         final CallTreeIterator callTreeIterator = result.getCallTree();
         final List<SpanAlign> values = callTreeIterator.values();
-        
-        transitionDynamicApiId(values);
-        transitionSqlId(values);
-        transitionCachedString(values);
-        transitionException(values);
+
+        // resolve all metadata of the call tree with one multi get per table
+        final MetaDataMap metaDataMap = selectMetaData(values);
+        transitionDynamicApiId(values, metaDataMap);
+        transitionSqlId(values, metaDataMap);
+        transitionCachedString(values, metaDataMap);
+        transitionException(values, metaDataMap);
         // TODO need to at least show the row data when root span is not found. 
         return result;
     }
@@ -125,7 +133,77 @@ public class SpanServiceImpl implements SpanService {
         }
     }
 
-    private void transitionSqlId(final List<SpanAlign> spans) {
+    private MetaDataMap selectMetaData(List<SpanAlign> spans) {
+        final Set<MetaDataKey> apiKeySet = new LinkedHashSet<>();
+        final Set<MetaDataKey> sqlKeySet = new LinkedHashSet<>();
+        final Set<MetaDataKey> stringKeySet = new LinkedHashSet<>();
+        for (SpanAlign spanAlign : spans) {
+            final AgentKey agentKey = getAgentKey(spanAlign);
+            apiKeySet.add(agentKey.createMetaDataKey(getApiId(spanAlign)));
+
+            final List<AnnotationBo> annotationBoList = getAnnotationBoList(spanAlign);
+            if (annotationBoList != null) {
+                for (AnnotationBo annotationBo : annotationBoList) {
+                    final int key = annotationBo.getKey();
+                    if (key == AnnotationKey.SQL_ID.getCode()) {
+                        if (metaDataFilter != null && metaDataFilter.filter(spanAlign, MetaData.SQL)) {
+                            continue;
+                        }
+                        final IntStringStringValue sqlValue = (IntStringStringValue) annotationBo.getValue();
+                        sqlKeySet.add(agentKey.createMetaDataKey(sqlValue.getIntValue()));
+                    } else if (AnnotationKeyUtils.isCachedArgsKey(key)) {
+                        stringKeySet.add(agentKey.createMetaDataKey((Integer) annotationBo.getValue()));
+                    }
+                }
+            }
+
+            if (spanAlign.isSpan()) {
+                final SpanBo spanBo = spanAlign.getSpanBo();
+                if (spanBo.hasException()) {
+                    stringKeySet.add(agentKey.createMetaDataKey(spanBo.getExceptionId()));
+                }
+            } else {
+                final SpanEventBo spanEventBo = spanAlign.getSpanEventBo();
+                if (spanEventBo.hasException()) {
+                    stringKeySet.add(agentKey.createMetaDataKey(spanEventBo.getExceptionId()));
+                }
+            }
+        }
+
+        final MetaDataMap metaDataMap = new MetaDataMap();
+        if (!apiKeySet.isEmpty()) {
+            final List<MetaDataKey> apiKeyList = new ArrayList<>(apiKeySet);
+            metaDataMap.apiMetaDataMap = toMap(apiKeyList, apiMetaDataDao.getApiMetaData(apiKeyList));
+        }
+        if (!sqlKeySet.isEmpty()) {
+            final List<MetaDataKey> sqlKeyList = new ArrayList<>(sqlKeySet);
+            metaDataMap.sqlMetaDataMap = toMap(sqlKeyList, sqlMetaDataDao.getSqlMetaData(sqlKeyList));
+        }
+        if (!stringKeySet.isEmpty()) {
+            final List<MetaDataKey> stringKeyList = new ArrayList<>(stringKeySet);
+            metaDataMap.stringMetaDataMap = toMap(stringKeyList, stringMetaDataDao.getStringMetaData(stringKeyList));
+        }
+        logger.debug("select metaData. api:{}, sql:{}, string:{}", apiKeySet.size(), sqlKeySet.size(), stringKeySet.size());
+        return metaDataMap;
+    }
+
+    private <T> Map<MetaDataKey, List<T>> toMap(List<MetaDataKey> keyList, List<List<T>> metaDataList) {
+        final Map<MetaDataKey, List<T>> map = new HashMap<>(keyList.size());
+        for (int i = 0; i < keyList.size(); i++) {
+            map.put(keyList.get(i), metaDataList.get(i));
+        }
+        return map;
+    }
+
+    private List<AnnotationBo> getAnnotationBoList(SpanAlign spanAlign) {
+        if (spanAlign.isSpan()) {
+            return spanAlign.getSpanBo().getAnnotationBoList();
+        } else {
+            return spanAlign.getSpanEventBo().getAnnotationBoList();
+        }
+    }
+
+    private void transitionSqlId(final List<SpanAlign> spans, final MetaDataMap metaDataMap) {
         this.transitionAnnotation(spans, new AnnotationReplacementCallback() {
             @Override
             public void replacement(SpanAlign spanAlign, List<AnnotationBo> annotationBoList) {
@@ -145,7 +223,7 @@ public class SpanServiceImpl implements SpanService {
                 final IntStringStringValue sqlValue = (IntStringStringValue) sqlIdAnnotation.getValue();
                 final int hashCode = sqlValue.getIntValue();
                 final String sqlParam = sqlValue.getStringValue1();
-                final List<SqlMetaDataBo> sqlMetaDataList = sqlMetaDataDao.getSqlMetaData(agentKey.getAgentId(), agentKey.getAgentStartTime(), hashCode);
+                final List<SqlMetaDataBo> sqlMetaDataList = metaDataMap.getSqlMetaData(agentKey.createMetaDataKey(hashCode));
                 final int size = sqlMetaDataList.size();
                 if (size == 0) {
                     AnnotationBo api = new AnnotationBo();
@@ -238,14 +316,14 @@ public class SpanServiceImpl implements SpanService {
     }
 
 
-    private void transitionDynamicApiId(List<SpanAlign> spans) {
+    private void transitionDynamicApiId(List<SpanAlign> spans, final MetaDataMap metaDataMap) {
         this.transitionAnnotation(spans, new AnnotationReplacementCallback() {
             @Override
             public void replacement(SpanAlign spanAlign, List<AnnotationBo> annotationBoList) {
                 final AgentKey key = getAgentKey(spanAlign);
                 final int apiId = getApiId(spanAlign);
                 // may be able to get a more accurate data using agentIdentifier.
-                List<ApiMetaDataBo> apiMetaDataList = apiMetaDataDao.getApiMetaData(key.getAgentId(), key.getAgentStartTime(), apiId);
+                List<ApiMetaDataBo> apiMetaDataList = metaDataMap.getApiMetaData(key.createMetaDataKey(apiId));
                 int size = apiMetaDataList.size();
                 if (size == 0) {
                     AnnotationBo api = new AnnotationBo();
@@ -284,7 +362,7 @@ public class SpanServiceImpl implements SpanService {
         });
     }
 
-    private void transitionCachedString(List<SpanAlign> spans) {
+    private void transitionCachedString(List<SpanAlign> spans, final MetaDataMap metaDataMap) {
         this.transitionAnnotation(spans, new AnnotationReplacementCallback() {
             @Override
             public void replacement(SpanAlign spanAlign, List<AnnotationBo> annotationBoList) {
@@ -296,7 +374,7 @@ public class SpanServiceImpl implements SpanService {
                 for (AnnotationBo annotationBo : cachedStringAnnotation) {
                     final int cachedArgsKey = annotationBo.getKey();
                     int stringMetaDataId = (Integer) annotationBo.getValue();
-                    List<StringMetaDataBo> stringMetaList = stringMetaDataDao.getStringMetaData(key.getAgentId(), key.getAgentStartTime(), stringMetaDataId);
+                    List<StringMetaDataBo> stringMetaList = metaDataMap.getStringMetaData(key.createMetaDataKey(stringMetaDataId));
                     int size = stringMetaList.size();
                     if (size == 0) {
                         logger.warn("StringMetaData not Found {}/{}/{}", key.getAgentId(), stringMetaDataId, key.getAgentStartTime());
@@ -332,18 +410,18 @@ public class SpanServiceImpl implements SpanService {
         return findAnnotationBoList;
     }
 
-    private void transitionException(List<SpanAlign> spanAlignList) {
+    private void transitionException(List<SpanAlign> spanAlignList, MetaDataMap metaDataMap) {
         for (SpanAlign spanAlign : spanAlignList) {
             if (spanAlign.isSpan()) {
                 final SpanBo spanBo = spanAlign.getSpanBo();
                 if (spanBo.hasException()) {
-                    StringMetaDataBo stringMetaData = selectStringMetaData(spanBo.getAgentId(), spanBo.getExceptionId(), spanBo.getAgentStartTime());
+                    StringMetaDataBo stringMetaData = selectStringMetaData(metaDataMap, spanBo.getAgentId(), spanBo.getExceptionId(), spanBo.getAgentStartTime());
                     spanBo.setExceptionClass(stringMetaData.getStringValue());
                 }
             } else {
                 final SpanEventBo spanEventBo = spanAlign.getSpanEventBo();
                 if (spanEventBo.hasException()) {
-                    StringMetaDataBo stringMetaData = selectStringMetaData(spanEventBo.getAgentId(), spanEventBo.getExceptionId(), spanEventBo.getAgentStartTime());
+                    StringMetaDataBo stringMetaData = selectStringMetaData(metaDataMap, spanEventBo.getAgentId(), spanEventBo.getExceptionId(), spanEventBo.getAgentStartTime());
                     if (stringMetaData != null) {
                         spanEventBo.setExceptionClass(stringMetaData.getStringValue());
                     }
@@ -353,8 +431,8 @@ public class SpanServiceImpl implements SpanService {
 
     }
 
-    private StringMetaDataBo selectStringMetaData(String agentId, int cacheId, long agentStartTime) {
-        final List<StringMetaDataBo> metaDataList = stringMetaDataDao.getStringMetaData(agentId, agentStartTime, cacheId);
+    private StringMetaDataBo selectStringMetaData(MetaDataMap metaDataMap, String agentId, int cacheId, long agentStartTime) {
+        final List<StringMetaDataBo> metaDataList = metaDataMap.getStringMetaData(new MetaDataKey(agentId, agentStartTime, cacheId));
         if (metaDataList == null || metaDataList.isEmpty()) {
             logger.warn("StringMetaData not Found agent:{}, cacheId{}, agentStartTime:{}", agentId, cacheId, agentStartTime);
             StringMetaDataBo stringMetaDataBo = new StringMetaDataBo(agentId, agentStartTime, cacheId);
@@ -447,6 +525,44 @@ public class SpanServiceImpl implements SpanService {
         private long getAgentStartTime() {
             return agentStartTime;
         }
+
+        private MetaDataKey createMetaDataKey(int id) {
+            return new MetaDataKey(agentId, agentStartTime, id);
+        }
+    }
+
+    /**
+     * metadata of a call tree selected in advance. keys missing from the map are looked up one by one.
+     */
+    private class MetaDataMap {
+
+        private Map<MetaDataKey, List<ApiMetaDataBo>> apiMetaDataMap = Collections.emptyMap();
+        private Map<MetaDataKey, List<SqlMetaDataBo>> sqlMetaDataMap = Collections.emptyMap();
+        private Map<MetaDataKey, List<StringMetaDataBo>> stringMetaDataMap = Collections.emptyMap();
+
+        private List<ApiMetaDataBo> getApiMetaData(MetaDataKey key) {
+            final List<ApiMetaDataBo> apiMetaDataList = apiMetaDataMap.get(key);
+            if (apiMetaDataList != null) {
+                return apiMetaDataList;
+            }
+            return apiMetaDataDao.getApiMetaData(key.getAgentId(), key.getAgentStartTime(), key.getId());
+        }
+
+        private List<SqlMetaDataBo> getSqlMetaData(MetaDataKey key) {
+            final List<SqlMetaDataBo> sqlMetaDataList = sqlMetaDataMap.get(key);
+            if (sqlMetaDataList != null) {
+                return sqlMetaDataList;
+            }
+            return sqlMetaDataDao.getSqlMetaData(key.getAgentId(), key.getAgentStartTime(), key.getId());
+        }
+
+        private List<StringMetaDataBo> getStringMetaData(MetaDataKey key) {
+            final List<StringMetaDataBo> stringMetaDataList = stringMetaDataMap.get(key);
+            if (stringMetaDataList != null) {
+                return stringMetaDataList;
+            }
+            return stringMetaDataDao.getStringMetaData(key.getAgentId(), key.getAgentStartTime(), key.getId());
+        }
     }
 
     public void setSqlMetaDataDao(SqlMetaDataDao sqlMetaDataDao) {
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.web.vo;
+
+/**
+ * (agentId, agentStartTime, id) of an api, sql or string metadata row.
+ */
+public final class MetaDataKey {
+
+    private final String agentId;
+    private final long agentStartTime;
+    private final int id;
+
+    public MetaDataKey(String agentId, long agentStartTime, int id) {
+        if (agentId == null) {
+            throw new NullPointerException("agentId must not be null");
+        }
+        this.agentId = agentId;
+        this.agentStartTime = agentStartTime;
+        this.id = id;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public long getAgentStartTime() {
+        return agentStartTime;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return same format as the {@code @Cacheable} keys of the metadata daos
+     */
+    public String toCacheKey() {
+        return agentId + '.' + agentStartTime + '.' + id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MetaDataKey that = (MetaDataKey) o;
+
+        if (agentStartTime != that.agentStartTime) return false;
+        if (id != that.id) return false;
+        return agentId.equals(that.agentId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = agentId.hashCode();
+        result = 31 * result + (int) (agentStartTime ^ (agentStartTime >>> 32));
+        result = 31 * result + id;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MetaDataKey{" +
+                "agentId='" + agentId + '\'' +
+                ", agentStartTime=" + agentStartTime +
+                ", id=" + id +
+                '}';
+    }
+}
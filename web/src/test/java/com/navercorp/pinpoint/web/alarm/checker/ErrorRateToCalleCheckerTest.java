@@ -25,6 +25,8 @@ import java.util.List;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.navercorp.pinpoint.common.trace.ServiceType;
 import com.navercorp.pinpoint.web.alarm.CheckerCategory;
 import com.navercorp.pinpoint.web.alarm.DataCollectorFactory.DataCollectorCategory;
@@ -81,6 +83,11 @@ public class ErrorRateToCalleCheckerTest {
                 
                 return linkDataMap;
             }
+
+            @Override
+            public ListenableFuture<LinkDataMap> selectCallerAsync(Application callerApplication, Range range) {
+                return Futures.immediateFuture(selectCaller(callerApplication, range));
+            }
         };
     }
     
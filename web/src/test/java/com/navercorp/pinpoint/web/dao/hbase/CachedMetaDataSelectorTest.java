@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.web.dao.hbase;
+
+import com.navercorp.pinpoint.web.vo.MetaDataKey;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CachedMetaDataSelectorTest {
+
+    private static final String CACHE_NAME = "metaData";
+
+    private final MetaDataKey key1 = new MetaDataKey("agent", 1000, 1);
+    private final MetaDataKey key2 = new MetaDataKey("agent", 1000, 2);
+    private final MetaDataKey notFoundKey = new MetaDataKey("agent", 1000, 3);
+
+    @Test
+    public void cachedKeysAreNotFetched() {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(CACHE_NAME);
+        CachedMetaDataSelector<String> selector = new CachedMetaDataSelector<>(CACHE_NAME);
+        RecordingMultiGetter multiGetter = new RecordingMultiGetter();
+
+        List<List<String>> first = selector.select(cacheManager, Arrays.asList(key1, notFoundKey), multiGetter);
+        Assert.assertEquals(Collections.singletonList("1"), first.get(0));
+        Assert.assertTrue(first.get(1).isEmpty());
+        Assert.assertEquals(Arrays.asList(key1, notFoundKey), multiGetter.keyListList.get(0));
+
+        // key1 comes from the cache, the not found key is fetched again
+        List<List<String>> second = selector.select(cacheManager, Arrays.asList(key2, key1, notFoundKey), multiGetter);
+        Assert.assertEquals(Collections.singletonList("2"), second.get(0));
+        Assert.assertEquals(Collections.singletonList("1"), second.get(1));
+        Assert.assertTrue(second.get(2).isEmpty());
+        Assert.assertEquals(Arrays.asList(key2, notFoundKey), multiGetter.keyListList.get(1));
+
+        Assert.assertNotNull(cacheManager.getCache(CACHE_NAME).get(key1.toCacheKey()));
+        Assert.assertNull(cacheManager.getCache(CACHE_NAME).get(notFoundKey.toCacheKey()));
+    }
+
+    @Test
+    public void allKeysCached() {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(CACHE_NAME);
+        CachedMetaDataSelector<String> selector = new CachedMetaDataSelector<>(CACHE_NAME);
+        RecordingMultiGetter multiGetter = new RecordingMultiGetter();
+
+        selector.select(cacheManager, Arrays.asList(key1, key2), multiGetter);
+        List<List<String>> result = selector.select(cacheManager, Arrays.asList(key2, key1), multiGetter);
+
+        Assert.assertEquals(1, multiGetter.keyListList.size());
+        Assert.assertEquals(Collections.singletonList("2"), result.get(0));
+        Assert.assertEquals(Collections.singletonList("1"), result.get(1));
+    }
+
+    @Test
+    public void withoutCacheManager() {
+        CachedMetaDataSelector<String> selector = new CachedMetaDataSelector<>(CACHE_NAME);
+        RecordingMultiGetter multiGetter = new RecordingMultiGetter();
+
+        selector.select(null, Arrays.asList(key1, key2), multiGetter);
+        List<List<String>> result = selector.select(null, Arrays.asList(key1, key2), multiGetter);
+
+        Assert.assertEquals(2, multiGetter.keyListList.size());
+        Assert.assertEquals(Collections.singletonList("1"), result.get(0));
+        Assert.assertEquals(Collections.singletonList("2"), result.get(1));
+    }
+
+    private class RecordingMultiGetter implements CachedMetaDataSelector.MultiGetter<String> {
+
+        private final List<List<MetaDataKey>> keyListList = new ArrayList<>();
+
+        @Override
+        public List<List<String>> get(List<MetaDataKey> keyList) {
+            keyListList.add(new ArrayList<>(keyList));
+            List<List<String>> result = new ArrayList<>(keyList.size());
+            for (MetaDataKey key : keyList) {
+                if (key.equals(notFoundKey)) {
+                    result.add(Collections.<String>emptyList());
+                } else {
+                    result.add(Collections.singletonList(String.valueOf(key.getId())));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.web.dao.hbase;
+
+import com.navercorp.pinpoint.common.hbase.AsyncHbaseTemplate;
+import com.navercorp.pinpoint.common.hbase.HbaseOperations2;
+import com.navercorp.pinpoint.common.hbase.RowMapper;
+import com.navercorp.pinpoint.common.server.bo.SpanBo;
+import com.navercorp.pinpoint.common.server.bo.serializer.RowKeyEncoder;
+import com.navercorp.pinpoint.common.util.TransactionId;
+import com.navercorp.pinpoint.web.dao.SpanListHandler;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HbaseTraceDaoV2Test {
+
+    private static final int WINDOW = 2;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ExecutorService executor;
+    private HbaseOperations2 template2;
+    private HbaseTraceDaoV2 traceDao;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        template2 = mock(HbaseOperations2.class);
+        when(template2.get(any(TableName.class), any(List.class), any(RowMapper.class))).thenAnswer(new Answer<List<List<SpanBo>>>() {
+            @Override
+            public List<List<SpanBo>> answer(InvocationOnMock invocation) throws Throwable {
+                final int current = inFlight.incrementAndGet();
+                try {
+                    updateMaxInFlight(current);
+                    Thread.sleep(1);
+                    List<Get> multiGet = (List<Get>) invocation.getArguments()[1];
+                    List<List<SpanBo>> result = new ArrayList<>(multiGet.size());
+                    for (Get get : multiGet) {
+                        SpanBo spanBo = new SpanBo();
+                        spanBo.setSpanId(Bytes.toLong(get.getRow()));
+                        result.add(Collections.singletonList(spanBo));
+                    }
+                    return result;
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        RowKeyEncoder<TransactionId> rowKeyEncoder = mock(RowKeyEncoder.class);
+        when(rowKeyEncoder.encodeRowKey(any(TransactionId.class))).thenAnswer(new Answer<byte[]>() {
+            @Override
+            public byte[] answer(InvocationOnMock invocation) throws Throwable {
+                TransactionId transactionId = (TransactionId) invocation.getArguments()[0];
+                return Bytes.toBytes(transactionId.getTransactionSequence());
+            }
+        });
+
+        traceDao = new HbaseTraceDaoV2();
+        ReflectionTestUtils.setField(traceDao, "template2", template2);
+        ReflectionTestUtils.setField(traceDao, "rowKeyEncoder", rowKeyEncoder);
+        ReflectionTestUtils.setField(traceDao, "asyncTemplate", new AsyncHbaseTemplate(template2, executor));
+        ReflectionTestUtils.setField(traceDao, "parallelSelectWindow", WINDOW);
+    }
+
+    private void updateMaxInFlight(int current) {
+        int max = maxInFlight.get();
+        while (current > max && !maxInFlight.compareAndSet(max, current)) {
+            max = maxInFlight.get();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void selectAllSpans_parallel() {
+        ReflectionTestUtils.setField(traceDao, "parallelSelect", true);
+
+        RecordingHandler handler = new RecordingHandler();
+        traceDao.selectAllSpans(createTransactionIdList(1050), 100, handler);
+
+        Assert.assertEquals(11, handler.partitionCount);
+        Assert.assertEquals(1050, handler.transactionCount);
+        Assert.assertFalse(handler.calledFromOtherThread);
+        Assert.assertTrue("maxInFlight:" + maxInFlight.get(), maxInFlight.get() <= WINDOW);
+        verify(template2, times(11)).get(any(TableName.class), any(List.class), any(RowMapper.class));
+    }
+
+    @Test
+    public void selectSpans_parallel() {
+        ReflectionTestUtils.setField(traceDao, "parallelSelect", true);
+
+        List<List<SpanBo>> traceList = traceDao.selectSpans(createTransactionIdList(1050), 100);
+
+        Assert.assertEquals(1050, traceList.size());
+        for (int i = 0; i < traceList.size(); i++) {
+            Assert.assertEquals(i, traceList.get(i).get(0).getSpanId());
+        }
+        Assert.assertTrue("maxInFlight:" + maxInFlight.get(), maxInFlight.get() <= WINDOW);
+        verify(template2, times(11)).get(any(TableName.class), any(List.class), any(RowMapper.class));
+    }
+
+    @Test
+    public void selectAllSpans_sequential() {
+        RecordingHandler handler = new RecordingHandler();
+        traceDao.selectAllSpans(createTransactionIdList(250), 100, handler);
+
+        Assert.assertEquals(3, handler.partitionCount);
+        Assert.assertEquals(250, handler.transactionCount);
+        Assert.assertFalse(handler.calledFromOtherThread);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void selectAllSpans_handlerFailure() {
+        ReflectionTestUtils.setField(traceDao, "parallelSelect", true);
+
+        traceDao.selectAllSpans(createTransactionIdList(1000), 100, new SpanListHandler() {
+            @Override
+            public void handle(List<List<SpanBo>> transactionList) {
+                throw new IllegalStateException("test");
+            }
+        });
+    }
+
+    private List<TransactionId> createTransactionIdList(int size) {
+        List<TransactionId> transactionIdList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactionIdList.add(new TransactionId("agentId", 1, i));
+        }
+        return transactionIdList;
+    }
+
+    private static class RecordingHandler implements SpanListHandler {
+
+        private final Thread callerThread = Thread.currentThread();
+
+        private int partitionCount;
+        private int transactionCount;
+        private boolean calledFromOtherThread;
+
+        @Override
+        public void handle(List<List<SpanBo>> transactionList) {
+            partitionCount++;
+            transactionCount += transactionList.size();
+            if (Thread.currentThread() != callerThread) {
+                calledFromOtherThread = true;
+            }
+        }
+    }
+}
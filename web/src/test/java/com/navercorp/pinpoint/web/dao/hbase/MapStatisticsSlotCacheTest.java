@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.web.dao.hbase;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.navercorp.pinpoint.common.hbase.HbaseFutures;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.common.util.DefaultTimeSlot;
+import com.navercorp.pinpoint.common.util.TimeSlot;
+import com.navercorp.pinpoint.web.applicationmap.rawdata.LinkDataMap;
+import com.navercorp.pinpoint.web.util.TimeWindow;
+import com.navercorp.pinpoint.web.util.TimeWindowDownSampler;
+import com.navercorp.pinpoint.web.vo.Application;
+import com.navercorp.pinpoint.web.vo.Range;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class MapStatisticsSlotCacheTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final TimeSlot timeSlot = new DefaultTimeSlot();
+
+    private final Application caller = new Application("caller", ServiceType.STAND_ALONE);
+    private final Application callee = new Application("callee", ServiceType.STAND_ALONE);
+
+    @Test
+    public void closedSlotsAreScannedOnce() {
+        MapStatisticsSlotCache slotCache = new MapStatisticsSlotCache(new ConcurrentMapCacheManager(MapStatisticsSlotCache.CACHE_NAME), timeSlot);
+
+        final long from = timeSlot.getTimeSlot(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        final Range range = new Range(from, from + 4 * MINUTE);
+        final TimeWindow timeWindow = new TimeWindow(range, TimeWindowDownSampler.SAMPLER);
+        RecordingScanner scanner = new RecordingScanner();
+
+        LinkDataMap first = HbaseFutures.getResult(slotCache.select("table", caller, range, timeWindow, scanner));
+        Assert.assertEquals(1, scanner.scanRangeList.size());
+        Assert.assertEquals(from, scanner.scanRangeList.get(0).getFrom());
+        Assert.assertEquals(5, first.getTotalCount());
+
+        LinkDataMap second = HbaseFutures.getResult(slotCache.select("table", caller, range, timeWindow, scanner));
+        Assert.assertEquals(1, scanner.scanRangeList.size());
+        Assert.assertEquals(first.getTotalCount(), second.getTotalCount());
+
+        // only the slots after the cached range are scanned
+        final Range extendedRange = new Range(from, from + 6 * MINUTE);
+        LinkDataMap third = HbaseFutures.getResult(slotCache.select("table", caller, extendedRange, new TimeWindow(extendedRange, TimeWindowDownSampler.SAMPLER), scanner));
+        Assert.assertEquals(2, scanner.scanRangeList.size());
+        Assert.assertEquals(from + 5 * MINUTE, scanner.scanRangeList.get(1).getFrom());
+        Assert.assertEquals(7, third.getTotalCount());
+    }
+
+    @Test
+    public void openSlotsAreNotCached() {
+        MapStatisticsSlotCache slotCache = new MapStatisticsSlotCache(new ConcurrentMapCacheManager(MapStatisticsSlotCache.CACHE_NAME), timeSlot);
+
+        final long to = timeSlot.getTimeSlot(System.currentTimeMillis());
+        final Range range = new Range(to - MINUTE, to);
+        final TimeWindow timeWindow = new TimeWindow(range, TimeWindowDownSampler.SAMPLER);
+        RecordingScanner scanner = new RecordingScanner();
+
+        slotCache.select("table", caller, range, timeWindow, scanner);
+        slotCache.select("table", caller, range, timeWindow, scanner);
+        Assert.assertEquals(2, scanner.scanRangeList.size());
+    }
+
+    private class RecordingScanner implements MapStatisticsSlotCache.LinkDataMapScanner {
+
+        private final List<Range> scanRangeList = new ArrayList<>();
+
+        @Override
+        public ListenableFuture<LinkDataMap> scan(Range range) {
+            scanRangeList.add(range);
+            LinkDataMap linkDataMap = new LinkDataMap();
+            for (long slot = range.getFrom(); slot <= range.getTo(); slot += MINUTE) {
+                linkDataMap.addLinkData(caller, "callerAgent", callee, "calleeAgent", slot, (short) 1000, 1);
+            }
+            return Futures.immediateFuture(linkDataMap);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static com.navercorp.pinpoint.common.hbase.HBaseTables.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -42,12 +43,15 @@ import org.mockito.MockitoAnnotations;
 
 import com.navercorp.pinpoint.common.server.bo.AgentStatCpuLoadBo;
 import com.navercorp.pinpoint.common.server.bo.AgentStatMemoryGcBo;
+import com.navercorp.pinpoint.common.server.bo.serializer.stat.AgentStatBlockCodec;
 import com.navercorp.pinpoint.common.util.BytesUtils;
 import com.navercorp.pinpoint.common.server.util.RowKeyUtils;
 import com.navercorp.pinpoint.common.util.TimeUtils;
 import com.navercorp.pinpoint.thrift.dto.TAgentStat;
+import com.navercorp.pinpoint.thrift.dto.TCpuLoad;
 import com.navercorp.pinpoint.thrift.dto.TJvmGc;
 import com.navercorp.pinpoint.thrift.dto.TJvmGcType;
+import com.navercorp.pinpoint.thrift.dto.TTransaction;
 import com.navercorp.pinpoint.web.vo.AgentStat;
 import com.sematext.hbase.wd.RowKeyDistributorByHashPrefix;
 
@@ -125,6 +129,25 @@ public class AgentStatMapperTest {
         assertTransaction(agentStat);
     }
 
+    @Test
+    public void test_hourly_rollup() throws Exception {
+        // Given
+        final long hour = 60 * 60 * 1000L;
+        final Result result = Result.create(Arrays.asList(
+                createCell(AGENT_STAT_AGGR_CF_HOURLY, AGENT_STAT_COL_INTERVAL, Bytes.toBytes(hour)),
+                createCell(AGENT_STAT_AGGR_CF_HOURLY, AGENT_STAT_COL_GC_TYPE, Bytes.toBytes(GC_TYPE.name())),
+                createCell(AGENT_STAT_AGGR_CF_HOURLY, AGENT_STAT_COL_HEAP_USED, Bytes.toBytes(HEAP_USED))
+                ));
+        // When
+        List<AgentStat> agentStats = this.mapper.mapRow(result, 0);
+        // Then
+        assertThat(agentStats.size(), is(1));
+        AgentStat agentStat = agentStats.get(0);
+        assertEquals(hour, agentStat.getCollectInterval());
+        assertEquals(GC_TYPE.name(), agentStat.getGcType());
+        assertEquals(HEAP_USED, agentStat.getHeapUsed());
+    }
+
     @Test
     public void test_legacy_with_AGENT_STAT_CF_STATISTICS_V1() throws Exception {
         // Given
@@ -166,6 +189,55 @@ public class AgentStatMapperTest {
         assertEquals(AgentStat.NOT_COLLECTED, agentStat.getUnsampledContinuationCount());
     }
 
+    @Test
+    public void test_stat_block() throws Exception {
+        // Given
+        final List<TAgentStat> tAgentStats = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final TAgentStat tAgentStat = new TAgentStat();
+            tAgentStat.setTimestamp(TIMESTAMP + i * COLLECT_INTERVAL);
+            tAgentStat.setCollectInterval(COLLECT_INTERVAL);
+            tAgentStat.setGc(createGc());
+            final TCpuLoad cpuLoad = new TCpuLoad();
+            cpuLoad.setJvmCpuLoad(JVM_CPU_USAGE);
+            cpuLoad.setSystemCpuLoad(SYS_CPU_USAGE);
+            tAgentStat.setCpuLoad(cpuLoad);
+            final TTransaction transaction = new TTransaction();
+            transaction.setSampledNewCount(SAMPLED_NEW_COUNT);
+            transaction.setSampledContinuationCount(SAMPLED_CONTINUATION_COUNT);
+            transaction.setUnsampledNewCount(UNSAMPLED_NEW_COUNT);
+            transaction.setUnsampledContinuationCount(UNSAMPLED_CONTINUATION_COUNT);
+            tAgentStat.setTransaction(transaction);
+            tAgentStats.add(tAgentStat);
+        }
+        final byte[] block = new AgentStatBlockCodec().encode(tAgentStats);
+        final Result result = Result.create(Arrays.asList(createCell(AGENT_STAT_COL_STAT_BLOCK, block)));
+        // When
+        List<AgentStat> agentStats = this.mapper.mapRow(result, 0);
+        // Then
+        assertThat(agentStats.size(), is(3));
+        assertJvmGc(agentStats.get(0));
+        for (int i = 0; i < agentStats.size(); i++) {
+            AgentStat agentStat = agentStats.get(i);
+            assertEquals(TIMESTAMP + i * COLLECT_INTERVAL, agentStat.getTimestamp());
+            assertEquals(COLLECT_INTERVAL, agentStat.getCollectInterval());
+            assertCpuUsage(agentStat);
+            assertTransaction(agentStat);
+        }
+    }
+
+    private TJvmGc createGc() {
+        final TJvmGc gc = new TJvmGc();
+        gc.setType(GC_TYPE);
+        gc.setJvmGcOldCount(GC_OLD_COUNT);
+        gc.setJvmGcOldTime(GC_OLD_TIME);
+        gc.setJvmMemoryHeapUsed(HEAP_USED);
+        gc.setJvmMemoryHeapMax(HEAP_MAX);
+        gc.setJvmMemoryNonHeapUsed(NON_HEAP_USED);
+        gc.setJvmMemoryNonHeapMax(NON_HEAP_MAX);
+        return gc;
+    }
+
     private void assertJvmGc(AgentStat agentStat) {
         assertEquals(AGENT_ID, agentStat.getAgentId());
         assertEquals(TIMESTAMP, agentStat.getTimestamp());
@@ -232,7 +304,11 @@ public class AgentStatMapperTest {
     }
 
     private Cell createCell(byte[] qualifier, byte[] value) {
-        return CellUtil.createCell(ROW_KEY, AGENT_STAT_CF_STATISTICS, qualifier, HConstants.LATEST_TIMESTAMP,
+        return createCell(AGENT_STAT_CF_STATISTICS, qualifier, value);
+    }
+
+    private Cell createCell(byte[] family, byte[] qualifier, byte[] value) {
+        return CellUtil.createCell(ROW_KEY, family, qualifier, HConstants.LATEST_TIMESTAMP,
                 KeyValue.Type.Maximum.getCode(), value);
     }
 
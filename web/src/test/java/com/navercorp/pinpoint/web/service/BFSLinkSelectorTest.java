@@ -16,6 +16,10 @@
 
 package com.navercorp.pinpoint.web.service;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.navercorp.pinpoint.common.trace.BaseHistogramSchema;
 import com.navercorp.pinpoint.common.trace.ServiceType;
 import com.navercorp.pinpoint.web.applicationmap.rawdata.*;
@@ -30,12 +34,18 @@ import com.navercorp.pinpoint.web.vo.SearchOption;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -240,5 +250,57 @@ public class BFSLinkSelectorTest {
 
 
 
+    @Test
+    public void testCaller_3tier_parallel() throws Exception {
+        // APP_A -> APP_B -> APP_C
+        int callCount_A_B = 10;
+        LinkDataMap link_A_B = new LinkDataMap();
+        link_A_B.addLinkData(APP_A, "agentA", APP_B, "agentB", 1000, BaseHistogramSchema.NORMAL_SCHEMA.getNormalSlot().getSlotTime(), callCount_A_B);
+        when(callerDao.selectCaller(eq(APP_A), any(Range.class))).thenReturn(link_A_B);
+
+        int callCount_B_C = 20;
+        LinkDataMap link_B_C = new LinkDataMap();
+        link_B_C.addLinkData(APP_B, "agentB", APP_C, "agentC", 1000, BaseHistogramSchema.NORMAL_SCHEMA.getNormalSlot().getSlotTime(), callCount_B_C);
+        when(callerDao.selectCaller(eq(APP_B), any(Range.class))).thenReturn(link_B_C);
+
+        when(calleeDao.selectCallee(any(Application.class), any(Range.class))).thenReturn(newEmptyLinkDataMap());
+        when(hostApplicationMapDao.findAcceptApplicationName(any(Application.class), any(Range.class))).thenReturn(new HashSet<AcceptApplication>());
+
+        final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+        try {
+            when(callerDao.selectCallerAsync(any(Application.class), any(Range.class))).thenAnswer(new Answer<ListenableFuture<LinkDataMap>>() {
+                @Override
+                public ListenableFuture<LinkDataMap> answer(InvocationOnMock invocation) throws Throwable {
+                    final Application application = (Application) invocation.getArguments()[0];
+                    final Range range = (Range) invocation.getArguments()[1];
+                    return executor.submit(new Callable<LinkDataMap>() {
+                        @Override
+                        public LinkDataMap call() throws Exception {
+                            return callerDao.selectCaller(application, range);
+                        }
+                    });
+                }
+            });
+            when(calleeDao.selectCalleeAsync(any(Application.class), any(Range.class))).thenReturn(Futures.immediateFuture(newEmptyLinkDataMap()));
+
+            BFSLinkSelector linkSelector = new BFSLinkSelector(this.callerDao, this.calleeDao, hostApplicationMapDao, null, true);
+            LinkDataDuplexMap linkData = linkSelector.select(APP_A, range, twoDepth);
+
+            Assert.assertEquals(linkData.size(), 2);
+            Assert.assertEquals(linkData.getTotalCount(), callCount_A_B + callCount_B_C);
+            assertSource_Target_TotalCount("APP_A->APP_B", linkData, new LinkKey(APP_A, APP_B), callCount_A_B);
+            assertSource_Target_TotalCount("APP_B->APP_C", linkData, new LinkKey(APP_B, APP_C), callCount_B_C);
+
+            // APP_A, APP_B, APP_C
+            Assert.assertEquals(3, linkSelector.getLevelElapsedTimeList().size());
+            verify(callerDao, times(1)).selectCallerAsync(eq(APP_A), any(Range.class));
+            verify(callerDao, times(1)).selectCallerAsync(eq(APP_B), any(Range.class));
+            verify(callerDao, times(1)).selectCaller(eq(APP_A), any(Range.class));
+            verify(callerDao, times(1)).selectCaller(eq(APP_B), any(Range.class));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
 
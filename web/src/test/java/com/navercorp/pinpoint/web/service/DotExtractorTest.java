@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.web.service;
+
+import com.navercorp.pinpoint.common.server.bo.SpanBo;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.common.util.TransactionId;
+import com.navercorp.pinpoint.web.scatter.ScatterData;
+import com.navercorp.pinpoint.web.vo.Application;
+import com.navercorp.pinpoint.web.vo.Range;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Map;
+
+import static org.mockito.Matchers.anyShort;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DotExtractorTest {
+
+    private final Range range = new Range(1000, 10000);
+
+    @Test
+    public void scatterData() {
+        DotExtractor dotExtractor = new DotExtractor(range, createApplicationFactory(), range.getFrom(), range.getTo(), 100, 100);
+        for (int i = 0; i < 10; i++) {
+            dotExtractor.addDot(createSpan("app1", i));
+        }
+        dotExtractor.addDot(createSpan("app2", 10));
+
+        Map<Application, ScatterData> scatterDataMap = dotExtractor.getApplicationScatterData();
+        Assert.assertEquals(2, scatterDataMap.size());
+        Assert.assertEquals(10, scatterDataMap.get(new Application("app1", ServiceType.STAND_ALONE)).getDotSize());
+        Assert.assertEquals(1, scatterDataMap.get(new Application("app2", ServiceType.STAND_ALONE)).getDotSize());
+        Assert.assertTrue(dotExtractor.getApplicationScatterScanResult().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scatterData_notScatterDataMode() {
+        DotExtractor dotExtractor = new DotExtractor(range, createApplicationFactory());
+        dotExtractor.addDot(createSpan("app1", 1));
+
+        Assert.assertEquals(1, dotExtractor.getApplicationScatterScanResult().size());
+        dotExtractor.getApplicationScatterData();
+    }
+
+    private SpanBo createSpan(String applicationId, long sequence) {
+        SpanBo span = new SpanBo();
+        span.setApplicationId(applicationId);
+        span.setApplicationServiceType(ServiceType.STAND_ALONE.getCode());
+        span.setTransactionId(new TransactionId("agentId", 1, sequence));
+        span.setAgentId("agentId");
+        span.setCollectorAcceptTime(range.getFrom() + sequence * 100);
+        span.setElapsed((int) sequence * 10);
+        return span;
+    }
+
+    private ApplicationFactory createApplicationFactory() {
+        ApplicationFactory applicationFactory = mock(ApplicationFactory.class);
+        when(applicationFactory.createApplication(anyString(), anyShort())).thenAnswer(new Answer<Application>() {
+            @Override
+            public Application answer(InvocationOnMock invocation) throws Throwable {
+                return new Application((String) invocation.getArguments()[0], ServiceType.STAND_ALONE);
+            }
+        });
+        return applicationFactory;
+    }
+}